@@ -0,0 +1,94 @@
+#!/usr/bin/env bash
+#
+# 启动耗时对比：普通镜像 (Dockerfile) vs 快速启动镜像 (Dockerfile.fast-startup)
+#
+# 测的是“从 docker run 到第一个请求成功返回”的时间 (time-to-first-request)，
+# 也就是扩容时新实例真正能接流量的时间，而不只是日志里的 "Started in x seconds"。
+#
+# 前提：本机已经启动了 MySQL (3306) 和 Redis (6379)，并且表结构已经存在
+#       (快速启动镜像使用 ddl-auto: validate，不会建表)
+#
+# 用法：
+#   scripts/measure-startup.sh            # 每种镜像跑 5 次
+#   RUNS=10 scripts/measure-startup.sh
+#   SKIP_BUILD=1 scripts/measure-startup.sh   # 复用已经构建好的镜像
+#
+# 容器使用 --network host 直接访问本机的 MySQL / Redis，
+# 需要改连接信息时，用 Spring Boot 的环境变量传进去，例如：
+#   DOCKER_ENV="-e SPRING_DATASOURCE_URL=jdbc:mysql://10.0.0.5:3306/blog_db" scripts/measure-startup.sh
+
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS="${RUNS:-5}"
+PORT="${PORT:-8081}"
+URL="http://localhost:${PORT}/api/v1/info"
+TIMEOUT_SECONDS="${TIMEOUT_SECONDS:-120}"
+DOCKER_ENV="${DOCKER_ENV:-}"
+
+build_images() {
+    echo ">>> 构建普通镜像 blog-system:baseline"
+    sh ./mvnw -q -B package -DskipTests
+    docker build -q -t blog-system:baseline . >/dev/null
+
+    echo ">>> 构建快速启动镜像 blog-system:fast (AOT + CDS + 分层)"
+    sh ./mvnw -q -B -Pfast-startup package -DskipTests
+    docker build -q -f Dockerfile.fast-startup -t blog-system:fast . >/dev/null
+}
+
+now_ms() {
+    date +%s%3N
+}
+
+# 启动一次容器，输出从 docker run 到第一个 200 响应的毫秒数
+measure_once() {
+    local image="$1"
+    local name="startup-measure-$$"
+    local start end
+
+    start=$(now_ms)
+    # shellcheck disable=SC2086
+    docker run -d --rm --name "$name" --network host $DOCKER_ENV "$image" >/dev/null
+
+    until curl -fs -o /dev/null "$URL"; do
+        if (( $(now_ms) - start > TIMEOUT_SECONDS * 1000 )); then
+            echo "启动超时 (${TIMEOUT_SECONDS}s)，最后的日志：" >&2
+            docker logs --tail 30 "$name" >&2 || true
+            docker rm -f "$name" >/dev/null 2>&1 || true
+            exit 1
+        fi
+        sleep 0.05
+    done
+    end=$(now_ms)
+
+    docker rm -f "$name" >/dev/null
+    echo $(( end - start ))
+}
+
+# 跑 RUNS 次，输出每次的结果和中位数
+measure() {
+    local image="$1"
+    local results=()
+    for ((i = 1; i <= RUNS; i++)); do
+        results+=("$(measure_once "$image")")
+    done
+    local sorted
+    sorted=$(printf '%s\n' "${results[@]}" | sort -n)
+    local median
+    median=$(echo "$sorted" | sed -n "$(( (RUNS + 1) / 2 ))p")
+    printf '%-22s runs(ms): %s  median: %s ms\n' "$image" "${results[*]}" "$median"
+}
+
+if [[ -z "${SKIP_BUILD:-}" ]]; then
+    build_images
+fi
+
+if curl -fs -o /dev/null "$URL"; then
+    echo "端口 ${PORT} 上已经有服务在运行，请先停掉它" >&2
+    exit 1
+fi
+
+echo ">>> 每种镜像启动 ${RUNS} 次，测量到第一个请求成功 (${URL}) 的时间"
+measure blog-system:baseline
+measure blog-system:fast
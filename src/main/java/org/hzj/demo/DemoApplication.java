@@ -1,17 +1,55 @@
 package org.hzj.demo;
+import org.hzj.demo.config.AdminProperties;
+import org.hzj.demo.config.AsyncLookupProperties;
+import org.hzj.demo.config.AttachmentProperties;
 import org.hzj.demo.config.BlogProperties; // 1. 导入
+import org.hzj.demo.config.CachePolicyProperties;
+import org.hzj.demo.config.ClusterJobProperties;
+import org.hzj.demo.config.ContentStoreProperties;
+import org.hzj.demo.config.DataSourceRoutingProperties;
+import org.hzj.demo.config.HotKeyProperties;
 import org.hzj.demo.config.JwtProperties;
+import org.hzj.demo.config.ListCacheProperties;
+import org.hzj.demo.config.OutboxProperties;
+import org.hzj.demo.config.PostBloomFilterProperties;
+import org.hzj.demo.config.RedisResilienceProperties;
+import org.hzj.demo.config.RevisionProperties;
+import org.hzj.demo.config.ShardingProperties;
+import org.hzj.demo.config.SqlMonitorProperties;
+import org.hzj.demo.config.TimelineProperties;
+import org.hzj.demo.config.TokenRevocationProperties;
+import org.hzj.demo.config.WarmupProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableConfigurationProperties({
         BlogProperties.class,
-        JwtProperties.class   // 2. 激活
+        JwtProperties.class,   // 2. 激活
+        SqlMonitorProperties.class,
+        DataSourceRoutingProperties.class,
+        ShardingProperties.class,
+        TimelineProperties.class,
+        WarmupProperties.class,
+        OutboxProperties.class,
+        ListCacheProperties.class,
+        RedisResilienceProperties.class,
+        HotKeyProperties.class,
+        PostBloomFilterProperties.class,
+        CachePolicyProperties.class,
+        ContentStoreProperties.class,
+        RevisionProperties.class,
+        AttachmentProperties.class,
+        TokenRevocationProperties.class,
+        ClusterJobProperties.class,
+        AsyncLookupProperties.class,
+        AdminProperties.class
 }) // 3. 激活！
 @EnableCaching // 2. 激活“自动挡”缓存功能
+@EnableScheduling // 激活 @Scheduled 定时任务 (从库健康检查等)
 public class DemoApplication {
 
     public static void main(String[] args) {
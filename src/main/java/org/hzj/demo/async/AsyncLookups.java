@@ -0,0 +1,118 @@
+package org.hzj.demo.async;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.hzj.demo.config.AsyncLookupProperties;
+import org.hzj.demo.util.ContextSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 异步查询：把 Redis / 数据库查询放到各自的线程池里执行，返回 CompletableFuture
+ *
+ * 知识点：Controller 返回 CompletableFuture (Spring MVC 异步请求)
+ * Tomcat 线程调用完 Controller 方法拿到 future 就回去处理别的请求了 (request.startAsync)，
+ * future 完成时 Spring 再“分派”一次 (ASYNC dispatch) 把结果写回去。
+ * 互相独立的几次查询 (thenCombine) 同时执行，总耗时 = 最慢的那一次，而不是加起来；
+ * 有先后依赖的 (先查 Redis 拿 id 再查库，thenCompose) 也不占着 Tomcat 线程等。
+ *
+ * 1. 线程池有界 (线程数 + 队列长度都有上限)：Redis / 数据库变慢时排队的任务不会无限增长，
+ *    队列满了直接拒绝 (RejectedExecutionException -> 503)。
+ *    Redis 和数据库分开两个池 (隔板)：数据库慢了不会把 Redis 查询也堵住。
+ * 2. 每次查询都有期限 (orTimeout)：超时 future 以 TimeoutException 失败 (-> 504)。
+ *    注意超时只是“不等了”，工作线程上的查询还会跑完 (由 JDBC / Lettuce 自己的超时兜底)。
+ *    整个请求还有一个总期限：spring.mvc.async.request-timeout (-> 503)。
+ * 3. 线程上下文 (登录用户、SQL 统计、强制主库 ...) 用 ContextSnapshot 带到工作线程。
+ * 4. 线程池指标：executor.* (tag name=async-redis / async-db)，见 /actuator/metrics
+ */
+@Component
+public class AsyncLookups {
+
+    @Autowired
+    private AsyncLookupProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolExecutor redisExecutor;
+    private ThreadPoolExecutor dbExecutor;
+
+    @PostConstruct
+    public void init() {
+        redisExecutor = newExecutor("async-redis", properties.getRedisThreads());
+        dbExecutor = newExecutor("async-db", properties.getDbThreads());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        redisExecutor.shutdown();
+        dbExecutor.shutdown();
+    }
+
+    private ThreadPoolExecutor newExecutor(String name, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                r -> {
+                    Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                // 不用 CallerRunsPolicy：调用方可能是 Tomcat 线程，在它上面执行就又变回同步阻塞了
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, name, Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    /** 在 Redis 线程池里执行，使用默认期限 */
+    public <T> CompletableFuture<T> redis(Supplier<T> lookup) {
+        return redis(lookup, Duration.ofMillis(properties.getDefaultDeadlineMs()));
+    }
+
+    public <T> CompletableFuture<T> redis(Supplier<T> lookup, Duration deadline) {
+        return submit(redisExecutor, lookup, deadline);
+    }
+
+    /** 在数据库线程池里执行，使用默认期限 */
+    public <T> CompletableFuture<T> db(Supplier<T> lookup) {
+        return db(lookup, Duration.ofMillis(properties.getDefaultDeadlineMs()));
+    }
+
+    public <T> CompletableFuture<T> db(Supplier<T> lookup, Duration deadline) {
+        return submit(dbExecutor, lookup, deadline);
+    }
+
+    private <T> CompletableFuture<T> submit(ThreadPoolExecutor executor, Supplier<T> lookup, Duration deadline) {
+        ContextSnapshot snapshot = ContextSnapshot.capture();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(snapshot.wrap(() -> {
+                // 已经超时 (在队列里等太久) 的就不用再查了
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(lookup.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
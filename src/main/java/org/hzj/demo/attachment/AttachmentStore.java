@@ -0,0 +1,429 @@
+package org.hzj.demo.attachment;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.hzj.demo.config.AttachmentProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 附件 / 图片的本地存储 (按内容寻址)
+ *
+ * 目录结构：
+ *   objects/ab/abcdef...(SHA-256).png   原文件
+ *   thumbs/ab/abcdef...-320.jpg          缩略图 (宽 320 像素)
+ *   tmp/                                  正在上传的文件
+ *
+ * 知识点：内容寻址 (content-addressed)
+ * 文件名就是内容的 SHA-256：
+ * 1. 去重：同一张图片不管上传多少次、被多少篇文章引用，磁盘上只有一份
+ * 2. 地址里带着哈希，内容永远不会变：下载时可以让浏览器 / CDN 缓存一年 (immutable)，ETag 就是哈希
+ * 3. 写入是“先写临时文件，再原子 rename”，多个实例共享一个目录也不会读到写了一半的文件
+ *
+ * 上传：边读边算哈希边写临时文件 (64KB 的缓冲区，不管文件多大都不会整个读进堆)，
+ * 文件类型按开头的“魔数”判断，不信任客户端给的文件名和 Content-Type，只接受下面几种。
+ */
+@Component
+public class AttachmentStore {
+
+    private static final Logger log = LoggerFactory.getLogger(AttachmentStore.class);
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    /** 临时文件超过这么久还在，就是上传到一半进程退出了留下的 */
+    private static final long STALE_TMP_MS = 3_600_000;
+
+    /**
+     * 允许上传的类型 (按魔数识别)
+     * 不接受 HTML / SVG：和网站同源，浏览器打开时里面的脚本能拿到用户的登录状态 (XSS)
+     */
+    public enum Type {
+        PNG("png", "image/png", true),
+        JPEG("jpg", "image/jpeg", true),
+        GIF("gif", "image/gif", true),
+        WEBP("webp", "image/webp", false),
+        PDF("pdf", "application/pdf", false);
+
+        private final String extension;
+        private final String contentType;
+        /** JDK 自带的 ImageIO 能解码 (能读尺寸、生成缩略图)；WebP 不能 */
+        private final boolean decodable;
+
+        Type(String extension, String contentType, boolean decodable) {
+            this.extension = extension;
+            this.contentType = contentType;
+            this.decodable = decodable;
+        }
+
+        public String extension() { return extension; }
+        public String contentType() { return contentType; }
+        public boolean isImage() { return contentType.startsWith("image/"); }
+
+        public static Optional<Type> ofExtension(String extension) {
+            return Arrays.stream(values()).filter(type -> type.extension.equals(extension)).findFirst();
+        }
+    }
+
+    /**
+     * 上传的结果
+     * @param deduplicated 之前已经有人传过同样的内容 (这次没有写盘)
+     * @param width        图片的宽 (不是图片 / 读不出尺寸时为 null)
+     */
+    public record Stored(String hash, Type type, long size, Integer width, Integer height,
+                         boolean thumbnail, boolean deduplicated) {
+    }
+
+    /** 要发给客户端的文件 */
+    public record Served(Path file, String contentType, long size) {
+    }
+
+    @Autowired
+    private AttachmentProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Path objects;
+    private Path thumbs;
+    private Path tmp;
+
+    private Counter storedCounter;
+    private Counter deduplicatedCounter;
+    private Counter storedBytes;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path root = Paths.get(properties.getDirectory()).toAbsolutePath();
+        objects = Files.createDirectories(root.resolve("objects"));
+        thumbs = Files.createDirectories(root.resolve("thumbs"));
+        tmp = Files.createDirectories(root.resolve("tmp"));
+        long now = System.currentTimeMillis();
+        try (Stream<Path> files = Files.list(tmp)) {
+            for (Path file : files.toList()) {
+                if (now - Files.getLastModifiedTime(file).toMillis() > STALE_TMP_MS) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        storedCounter = Counter.builder("attachment.uploads").tag("result", "stored")
+                .description("上传的附件 (新写入的)").register(meterRegistry);
+        deduplicatedCounter = Counter.builder("attachment.uploads").tag("result", "deduplicated")
+                .description("上传的附件 (内容已经存在，没有写盘)").register(meterRegistry);
+        storedBytes = Counter.builder("attachment.stored_bytes")
+                .description("新写入的附件字节数").register(meterRegistry);
+    }
+
+    // ------------------------------------------------------------------
+    // 上传
+    // ------------------------------------------------------------------
+
+    /**
+     * 保存一个上传的文件 (in 由调用方关闭)
+     * @throws IllegalArgumentException 不支持的类型 / 图片太大
+     */
+    public Stored store(InputStream in) throws IOException {
+        Path part = Files.createTempFile(tmp, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            byte[] head = new byte[16];
+            int headLength = 0;
+            long size = 0;
+            byte[] buffer = new byte[64 * 1024];
+            try (FileChannel out = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    if (headLength < head.length) {
+                        int copy = Math.min(n, head.length - headLength);
+                        System.arraycopy(buffer, 0, head, headLength, copy);
+                        headLength += copy;
+                    }
+                    digest.update(buffer, 0, n);
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+                    while (chunk.hasRemaining()) {
+                        out.write(chunk);
+                    }
+                    size += n;
+                }
+                // rename 之后别人就能读到它了，先确保内容已经落盘
+                out.force(true);
+            }
+            if (size == 0) {
+                throw new IllegalArgumentException("文件是空的");
+            }
+            Type type = sniff(head, headLength)
+                    .orElseThrow(() -> new IllegalArgumentException("不支持的文件类型 (只接受 PNG / JPEG / GIF / WebP / PDF)"));
+            String hash = HexFormat.of().formatHex(digest.digest());
+
+            int[] dimensions = type.decodable ? dimensions(part) : null;
+            if (dimensions != null && (long) dimensions[0] * dimensions[1] > properties.getMaxImagePixels()) {
+                throw new IllegalArgumentException("图片太大: " + dimensions[0] + "x" + dimensions[1]
+                        + "，最多 " + properties.getMaxImagePixels() + " 像素");
+            }
+
+            Path target = objectPath(hash, type);
+            boolean deduplicated = Files.exists(target);
+            if (deduplicated) {
+                deduplicatedCounter.increment();
+            } else {
+                Files.createDirectories(target.getParent());
+                moveAtomically(part, target);
+                storedCounter.increment();
+                storedBytes.increment(size);
+            }
+            boolean thumbnail = dimensions != null && thumbnail(hash, type, dimensions[0]) != null;
+            return new Stored(hash, type, size,
+                    dimensions != null ? dimensions[0] : null, dimensions != null ? dimensions[1] : null,
+                    thumbnail, deduplicated);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 下载
+    // ------------------------------------------------------------------
+
+    /**
+     * 原文件；地址不合法 / 不存在返回 empty
+     */
+    public Optional<Served> original(String hash, String extension) throws IOException {
+        Optional<Type> type = parse(hash, extension);
+        if (type.isEmpty()) {
+            return Optional.empty();
+        }
+        Path file = objectPath(hash, type.get());
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        return Optional.of(new Served(file, type.get().contentType(), Files.size(file)));
+    }
+
+    /**
+     * 缩略图：原图不比缩略图宽 / 不是能解码的图片时返回原文件；
+     * 缩略图不在 (改了 thumbnail-width、上传时生成失败) 就现场生成一次
+     */
+    public Optional<Served> thumbnail(String hash, String extension) throws IOException {
+        Optional<Served> original = original(hash, extension);
+        if (original.isEmpty()) {
+            return original;
+        }
+        Type type = parse(hash, extension).orElseThrow();
+        if (!type.decodable) {
+            return original;
+        }
+        Path thumb = thumbPath(hash, type);
+        if (!Files.exists(thumb)) {
+            int[] dimensions = dimensions(original.get().file());
+            if (dimensions == null || thumbnail(hash, type, dimensions[0]) == null) {
+                return original;
+            }
+        }
+        return Optional.of(new Served(thumb, thumbnailType(type).contentType(), Files.size(thumb)));
+    }
+
+    // ------------------------------------------------------------------
+
+    /**
+     * 生成缩略图 (已经有了就直接返回)
+     * @return 缩略图的路径；原图不比缩略图宽 / 生成失败返回 null
+     */
+    private Path thumbnail(String hash, Type type, int width) {
+        int targetWidth = properties.getThumbnailWidth();
+        if (targetWidth <= 0 || width <= targetWidth) {
+            return null;
+        }
+        Path thumb = thumbPath(hash, type);
+        if (Files.exists(thumb)) {
+            return thumb;
+        }
+        try {
+            BufferedImage image = decodeForWidth(objectPath(hash, type), targetWidth);
+            if (image == null) {
+                return null;
+            }
+            int targetHeight = Math.max(1, (int) Math.round((double) image.getHeight() * targetWidth / image.getWidth()));
+            Type output = thumbnailType(type);
+            BufferedImage scaled = new BufferedImage(targetWidth, targetHeight,
+                    output == Type.PNG ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = scaled.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+            } finally {
+                g.dispose();
+            }
+            // 同样先写临时文件再 rename：并发生成同一张缩略图时，谁后 rename 都是一样的内容
+            Path part = Files.createTempFile(tmp, "thumb-", ".part");
+            try {
+                try (OutputStream out = Files.newOutputStream(part)) {
+                    ImageIO.write(scaled, output == Type.PNG ? "png" : "jpeg", out);
+                }
+                Files.createDirectories(thumb.getParent());
+                moveAtomically(part, thumb);
+            } finally {
+                Files.deleteIfExists(part);
+            }
+            return thumb;
+        } catch (IOException | RuntimeException e) {
+            log.warn("生成缩略图失败: {} {}", hash, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * 解码图片，但只解码生成缩略图需要的像素
+     *
+     * 知识点：解码时降采样 (source subsampling)
+     * 一张 6000x4000 的照片完整解码要 96MB 内存 (每像素 4 字节)，而缩略图只要 320 像素宽。
+     * ImageReadParam.setSourceSubsampling(n, n) 让解码器每 n 个像素只取一个，
+     * 内存和时间都降到 1/n²，再用 Graphics2D 缩放到准确的尺寸 (降采样之后的图仍然比缩略图大，画质不受影响)。
+     */
+    private static BufferedImage decodeForWidth(Path file, int targetWidth) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = reader(input);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, reader.getWidth(0) / targetWidth);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 只读文件头里的宽高，不解码像素
+     * @return [宽, 高]；读不出来返回 null
+     */
+    private static int[] dimensions(Path file) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = reader(input);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(input, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ImageReader reader(ImageInputStream input) {
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        return readers.hasNext() ? readers.next() : null;
+    }
+
+    /** 缩略图的格式：JPEG 还是 JPEG；PNG / GIF 可能有透明背景，用 PNG */
+    private static Type thumbnailType(Type type) {
+        return type == Type.JPEG ? Type.JPEG : Type.PNG;
+    }
+
+    private static Optional<Type> sniff(byte[] head, int length) {
+        if (startsWith(head, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return Optional.of(Type.PNG);
+        }
+        if (startsWith(head, length, 0xFF, 0xD8, 0xFF)) {
+            return Optional.of(Type.JPEG);
+        }
+        if (startsWith(head, length, 'G', 'I', 'F', '8')) {
+            return Optional.of(Type.GIF);
+        }
+        if (startsWith(head, length, 'R', 'I', 'F', 'F') && length >= 12
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            return Optional.of(Type.WEBP);
+        }
+        if (startsWith(head, length, '%', 'P', 'D', 'F', '-')) {
+            return Optional.of(Type.PDF);
+        }
+        return Optional.empty();
+    }
+
+    private static boolean startsWith(byte[] head, int length, int... magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((head[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** 地址里的哈希、扩展名必须合法 (也防止 "../" 这种路径穿越) */
+    private static Optional<Type> parse(String hash, String extension) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+        return Type.ofExtension(extension);
+    }
+
+    private Path objectPath(String hash, Type type) {
+        return objects.resolve(hash.substring(0, 2)).resolve(hash + "." + type.extension());
+    }
+
+    private Path thumbPath(String hash, Type type) {
+        return thumbs.resolve(hash.substring(0, 2))
+                .resolve(hash + "-" + properties.getThumbnailWidth() + "." + thumbnailType(type).extension());
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // tmp 和目标不在同一个文件系统上 (正常不会发生：都在 attachment.directory 下面)
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package org.hzj.demo.auth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.hzj.demo.cluster.ClusterBroadcaster;
+import org.hzj.demo.config.JwtProperties;
+import org.hzj.demo.config.TokenRevocationProperties;
+import org.hzj.demo.util.LongBloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JWT 吊销列表：退出登录之后，手上的 Token 在过期之前也不能再用
+ *
+ * 问题：JWT 是“无状态”的，签发之后服务端不记录，有效期 (1 小时) 内一直能用。
+ * 最直接的做法是每个请求去 Redis 查一次“黑名单”，但那样每个登录请求都多一次网络往返。
+ *
+ * 做法：每个节点内存里都有一份完整的吊销列表，检查时不访问网络
+ * 1. 布隆过滤器 (按 jti 的哈希)：绝大多数请求的 Token 没被吊销，查几个位就能确定“一定没吊销”
+ * 2. 精确集合 (jti -> 过期时间)：过滤器说“可能吊销”时再查一次，排除误判
+ * 3. 用户级吊销 (用户 id -> 吊销时间)：“退出所有设备”，这个时间之前签发的 Token 全部作废
+ *    (只有最近一个 Token 有效期内点过的用户在里面，通常是空的)
+ *
+ * 一致性：
+ * - Redis (两个 ZSET，分数 = 过期时间 / 吊销时间) 是“权威”的那一份，吊销时先写 Redis，再改本机、广播给其他节点
+ * - 广播可能丢失：每 reload-interval-ms 从 Redis 全量加载一次 (启动时也加载一次)
+ *   所以别的节点最坏要等这么久才会拒绝被吊销的 Token
+ * - Token 过期之后条目就没用了：加载时清掉过期的条目 (本机和 Redis 都清)，并重建布隆过滤器
+ *   (布隆过滤器不能删除，只能重建)
+ * - 加载失败 (Redis 不可用) 时继续使用本机已有的列表
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    private static final String TOKENS_KEY = "auth:revoked:tokens";
+    private static final String USERS_KEY = "auth:revoked:users";
+    private static final String TOKEN_CHANNEL = "auth:revoked-token";
+    private static final String USER_CHANNEL = "auth:revoked-user";
+
+    @Autowired
+    private TokenRevocationProperties properties;
+
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ClusterBroadcaster broadcaster;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** 被吊销的 jti -> Token 的过期时间 (毫秒) */
+    private final Map<String, Long> tokens = new ConcurrentHashMap<>();
+
+    /** 用户 id -> 吊销时间 (毫秒)：签发时间不晚于它的 Token 全部作废 */
+    private final Map<Long, Long> users = new ConcurrentHashMap<>();
+
+    private volatile LongBloomFilter current;
+
+    /** 重建中的新过滤器 (重建期间新增的 jti 两边都加)；不在重建时为 null */
+    private volatile LongBloomFilter building;
+
+    private final Object reloadLock = new Object();
+
+    private Counter rejected;
+    private Counter falsePositives;
+
+    @PostConstruct
+    public void init() {
+        current = new LongBloomFilter(properties.getExpectedRevocations(), properties.getFalsePositiveRate());
+        rejected = Counter.builder("token_revocation.rejected")
+                .description("因为已吊销而被拒绝的 Token 数").register(meterRegistry);
+        falsePositives = Counter.builder("token_revocation.bloom_false_positives")
+                .description("布隆过滤器误判 (说“可能吊销”，精确集合里没有) 的次数").register(meterRegistry);
+        Gauge.builder("token_revocation.size", tokens, Map::size)
+                .description("本机吊销列表里还没过期的 Token 数").register(meterRegistry);
+
+        broadcaster.subscribe(TOKEN_CHANNEL, message -> {
+            int sep = message.lastIndexOf(':');
+            addTokenLocal(message.substring(0, sep), Long.parseLong(message.substring(sep + 1)));
+        });
+        broadcaster.subscribe(USER_CHANNEL, message -> {
+            int sep = message.lastIndexOf(':');
+            users.merge(Long.valueOf(message.substring(0, sep)), Long.parseLong(message.substring(sep + 1)), Math::max);
+        });
+        // 先订阅再加载：加载期间发生的吊销不会漏掉
+        // (在 Web 服务开始接收请求之前执行，所以第一个请求就能看到完整的列表)
+        if (properties.isEnabled()) {
+            try {
+                reload();
+            } catch (Exception e) {
+                log.error("启动时加载 JWT 吊销列表失败 (等下一次定时加载): {}", e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "${token-revocation.reload-interval-ms:60000}",
+            fixedDelayString = "${token-revocation.reload-interval-ms:60000}")
+    public void scheduledReload() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("定时加载 JWT 吊销列表失败 (继续使用本机的): {}", e.getMessage());
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 检查 (每个带 Token 的请求都会调用，只访问内存)
+    // ------------------------------------------------------------------
+
+    /**
+     * @param jti      Token 编号 (老 Token 没有，为 null)
+     * @param userId   Token 里的用户 id
+     * @param issuedAt Token 的签发时间 (JWT 里精确到秒)
+     */
+    public boolean isRevoked(String jti, Long userId, Date issuedAt) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+        if (jti != null && current.mightContain(hash(jti))) {
+            if (tokens.containsKey(jti)) {
+                rejected.increment();
+                return true;
+            }
+            falsePositives.increment();
+        }
+        if (userId != null && issuedAt != null && !users.isEmpty()) {
+            Long revokedAt = users.get(userId);
+            if (revokedAt != null && issuedAt.getTime() <= revokedAt) {
+                rejected.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ------------------------------------------------------------------
+    // 吊销
+    // ------------------------------------------------------------------
+
+    /**
+     * 吊销一个 Token (退出登录)
+     * 先写 Redis：Redis 写失败时直接抛异常，本机和其他节点都不改，调用方会收到失败
+     *
+     * @param expiresAt Token 的过期时间 (毫秒)，过了这个时间条目就可以清掉了
+     */
+    public void revokeToken(String jti, long expiresAt) {
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        stringRedisTemplate.opsForZSet().add(TOKENS_KEY, jti, expiresAt);
+        addTokenLocal(jti, expiresAt);
+        broadcaster.publish(TOKEN_CHANNEL, jti + ":" + expiresAt);
+    }
+
+    /**
+     * 吊销一个用户现在为止签发的所有 Token (退出所有设备)
+     *
+     * 【注意】JWT 的签发时间只精确到秒：吊销之后同一秒内重新登录拿到的新 Token 也会被拒绝 (再登录一次就好)，
+     * 反过来则不会漏掉任何一个旧 Token
+     */
+    public void revokeUser(Long userId) {
+        long revokedAt = System.currentTimeMillis();
+        stringRedisTemplate.opsForZSet().add(USERS_KEY, userId.toString(), revokedAt);
+        users.merge(userId, revokedAt, Math::max);
+        broadcaster.publish(USER_CHANNEL, userId + ":" + revokedAt);
+    }
+
+    private void addTokenLocal(String jti, long expiresAt) {
+        tokens.put(jti, expiresAt);
+        // 先放进精确集合再置位：重建时扫描精确集合，扫描开始后才放进来的由 building 兜住
+        long hash = hash(jti);
+        current.add(hash);
+        LongBloomFilter next = building;
+        if (next != null) {
+            next.add(hash);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 加载 / 重建
+    // ------------------------------------------------------------------
+
+    /**
+     * 从 Redis 全量加载，合并进本机的列表 (本机只会多不会少：条目只在过期之后才删除)，
+     * 清掉过期的条目，再按精确集合重建布隆过滤器
+     */
+    public void reload() {
+        synchronized (reloadLock) {
+            long start = System.currentTimeMillis();
+            ZSetOperations<String, String> zSet = stringRedisTemplate.opsForZSet();
+            // 一个用户在“吊销时间 + Token 有效期”之后，之前签发的 Token 都已经自然过期了
+            long userCutoff = start - jwtProperties.getExpirationMs();
+            zSet.removeRangeByScore(TOKENS_KEY, 0, start);
+            zSet.removeRangeByScore(USERS_KEY, 0, userCutoff);
+
+            Set<ZSetOperations.TypedTuple<String>> revokedTokens =
+                    zSet.rangeByScoreWithScores(TOKENS_KEY, start, Double.POSITIVE_INFINITY);
+            Set<ZSetOperations.TypedTuple<String>> revokedUsers =
+                    zSet.rangeByScoreWithScores(USERS_KEY, userCutoff, Double.POSITIVE_INFINITY);
+            if (revokedTokens != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : revokedTokens) {
+                    tokens.merge(tuple.getValue(), tuple.getScore().longValue(), Math::max);
+                }
+            }
+            if (revokedUsers != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : revokedUsers) {
+                    users.merge(Long.valueOf(tuple.getValue()), tuple.getScore().longValue(), Math::max);
+                }
+            }
+            tokens.values().removeIf(expiresAt -> expiresAt <= start);
+            users.values().removeIf(revokedAt -> revokedAt <= userCutoff);
+
+            long capacity = Math.max(properties.getExpectedRevocations(), tokens.size() * 2L);
+            LongBloomFilter next = new LongBloomFilter(capacity, properties.getFalsePositiveRate());
+            building = next;
+            try {
+                tokens.keySet().forEach(jti -> next.add(hash(jti)));
+                current = next;
+            } finally {
+                building = null;
+            }
+            log.debug("JWT 吊销列表加载完成: {} 个 Token, {} 个用户, 耗时 {}ms",
+                    tokens.size(), users.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * jti 的 64 位哈希 (FNV-1a)，布隆过滤器内部还会再打散一次
+     */
+    private static long hash(String jti) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < jti.length(); i++) {
+            h ^= jti.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,317 @@
+package org.hzj.demo.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.hzj.demo.config.CachePolicyProperties;
+import org.hzj.demo.job.ClusterJobScheduler;
+import org.hzj.demo.job.JobLease;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 统计每个缓存在 Redis 里有多少个 key、占多少内存，超出内存上限时删掉一部分
+ *
+ * 1. 统计：SCAN 出这个缓存的所有 key (只数个数)，同时抽样 memory-sample-size 个 (蓄水池抽样)，
+ *    用 MEMORY USAGE 量出样本的平均大小，x key 数 = 估算的总内存
+ * 2. 超出上限：按超出的比例算出要删几个 key，再 SCAN 一遍，删掉剩余时间 (PTTL) 最短的那些
+ *    (读的时候会续期，所以剩余时间最短的基本上就是最久没人读的；没有 TTL 的 key 最后才删)
+ *    文章列表缓存 (post_list) 是一个整体，删一部分没有意义：超出上限就整个删掉，之后暂时不再重建，直接查库；
+ *    过了 OVER_BUDGET_HOLD_RUNS 次统计之后放开，让它重建一次再量 (文章删了一些 / 上限调大了就能恢复，还超就再删掉)
+ * 3. 上报：结果写进 Redis 的 cache:stats，每个节点都从那里读，在 Micrometer 指标
+ *    (cache.redis.keys / cache.redis.bytes / cache.redis.evictions，tag cache=缓存名) 和
+ *    /actuator/cachestats 里显示
+ *
+ * SCAN 要遍历所有 key，比较慢：每个缓存每 stats-interval-ms 只统计一次，不同的缓存分给不同的节点做
+ * (集群定时任务 cache-stats，按缓存名分片，见 ClusterJobScheduler)
+ */
+@Component
+public class CacheBudgetMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheBudgetMonitor.class);
+
+    private static final String STATS_KEY = "cache:stats";
+
+    /** SCAN 每次大约返回多少个 key / 一个 pipeline 里多少条命令 */
+    private static final int SCAN_COUNT = 1000;
+
+    /** post_list 整个删掉之后，连续这么多次统计都当作“还超着”，然后放开重建一次重新量 (默认间隔下是半小时) */
+    private static final int OVER_BUDGET_HOLD_RUNS = 6;
+
+    /**
+     * 一批 key 的内存合计 (MEMORY USAGE)
+     * 返回 {字节数合计, 量到的 key 数} (中间过期的 key 不算)
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> MEMORY_USAGE = new DefaultRedisScript<>(
+            "local total, n = 0, 0 " +
+            "for _, k in ipairs(KEYS) do " +
+            "  local b = redis.call('MEMORY', 'USAGE', k) " +
+            "  if b then total = total + b n = n + 1 end " +
+            "end " +
+            "return {total, n}",
+            List.class);
+
+    /**
+     * 一个缓存最近一次的统计结果
+     * @param overBudgetSince 从什么时候开始超出上限的 (毫秒)；没超出为 0
+     */
+    public record CacheStats(long keys, long bytes, long maxBytes, long evicted, long collectedAt, long overBudgetSince) {
+
+        public boolean overBudget() {
+            return maxBytes > 0 && bytes > maxBytes;
+        }
+    }
+
+    @Autowired
+    private CachePolicyProperties properties;
+
+    @Autowired
+    private CachePolicies cachePolicies;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ClusterJobScheduler jobScheduler;
+
+    private final Map<String, CacheStats> stats = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> evictions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (String name : cachePolicies.cacheNames()) {
+            Gauge.builder("cache.redis.keys", stats, s -> s.containsKey(name) ? s.get(name).keys() : 0)
+                    .description("缓存在 Redis 里的 key 数").tag("cache", name).register(meterRegistry);
+            Gauge.builder("cache.redis.bytes", stats, s -> s.containsKey(name) ? s.get(name).bytes() : 0)
+                    .description("缓存在 Redis 里占用的内存 (字节，抽样估算)").tag("cache", name).register(meterRegistry);
+            evictions.put(name, Counter.builder("cache.redis.evictions")
+                    .description("超出内存上限删掉的 key 数").tag("cache", name).register(meterRegistry));
+        }
+    }
+
+    /** 这个缓存最近一次统计时超出了内存上限吗 */
+    public boolean isOverBudget(String cacheName) {
+        CacheStats current = stats.get(cacheName);
+        return current != null && current.overBudget();
+    }
+
+    /**
+     * 定时统计：每个节点统计 / 淘汰分给自己的那几个缓存，结果写进 cache:stats；所有节点都从 cache:stats 读最新结果
+     */
+    @Scheduled(initialDelayString = "${cache-policy.stats-interval-ms:300000}",
+            fixedDelayString = "${cache-policy.stats-interval-ms:300000}")
+    public void collect() {
+        if (!redisGuard.isClosed()) {
+            return;
+        }
+        try {
+            jobScheduler.runSharded("cache-stats", cachePolicies.cacheNames(),
+                    Duration.ofMillis(properties.getStatsIntervalMs()), this::collectOne);
+            load();
+        } catch (RuntimeException e) {
+            log.warn("统计缓存内存失败: {}", e.getMessage());
+        }
+    }
+
+    private void collectOne(String name, JobLease lease) {
+        long start = System.currentTimeMillis();
+        CacheStats result = measure(name);
+        // 带 fencing token 写：这个节点卡住期间别的节点已经接手、写了更新的结果，就不要再用旧结果覆盖
+        jobScheduler.fencedHashPut(lease, STATS_KEY, name, result.keys() + "," + result.bytes() + ","
+                + result.evicted() + "," + result.collectedAt() + "," + result.overBudgetSince());
+        log.info("缓存 {}: {} 个 key, 约 {} KB (上限 {} KB), 删除 {} 个, 耗时 {}ms", name, result.keys(),
+                result.bytes() / 1024, result.maxBytes() / 1024, result.evicted(), System.currentTimeMillis() - start);
+    }
+
+    private void load() {
+        Map<Object, Object> encoded = stringRedisTemplate.opsForHash().entries(STATS_KEY);
+        encoded.forEach((name, value) -> {
+            String[] parts = value.toString().split(",");
+            // 老格式没有第 5 个字段 (超出上限的开始时间)：当作很久以前，下次统计就放开重建
+            stats.put(name.toString(), new CacheStats(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                    cachePolicies.maxMemoryBytes(name.toString()), Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                    parts.length > 4 ? Long.parseLong(parts[4]) : 0));
+        });
+    }
+
+    // ------------------------------------------------------------------
+    // 统计 + 淘汰
+    // ------------------------------------------------------------------
+
+    private CacheStats measure(String name) {
+        String pattern = cachePolicies.keyPattern(name);
+        int sampleSize = Math.max(properties.getMemorySampleSize(), 1);
+        List<String> sample = new ArrayList<>(sampleSize);
+        long count = 0;
+        try (Cursor<String> cursor = scan(pattern)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                count++;
+                // 蓄水池抽样：每个 key 被抽中的概率都是 sampleSize / count
+                if (sample.size() < sampleSize) {
+                    sample.add(key);
+                } else {
+                    long j = ThreadLocalRandom.current().nextLong(count);
+                    if (j < sampleSize) {
+                        sample.set((int) j, key);
+                    }
+                }
+            }
+        }
+        long bytes = estimateBytes(sample, count);
+        long maxBytes = cachePolicies.maxMemoryBytes(name);
+        long now = System.currentTimeMillis();
+
+        CacheStats previous = stats.get(name);
+        if (PostListCache.CACHE_NAME.equals(name) && count == 0 && previous != null && previous.overBudget()
+                && now - previous.overBudgetSince() < OVER_BUDGET_HOLD_RUNS * properties.getStatsIntervalMs()) {
+            // 已经整个删掉了：先按删之前的大小算，免得每次统计都“重建 -> 超出 -> 删掉”来回反复
+            // (过了这段时间就按实际的 0 算，列表缓存重建一次，下次统计重新量)
+            return new CacheStats(0, previous.bytes(), maxBytes, 0, now, previous.overBudgetSince());
+        }
+
+        long evicted = 0;
+        if (maxBytes > 0 && bytes > maxBytes && count > 0) {
+            if (PostListCache.CACHE_NAME.equals(name)) {
+                evicted = unlinkAll(pattern);
+            } else {
+                long excess = (long) Math.ceil(count * (double) (bytes - maxBytes) / bytes);
+                evicted = evictShortestTtl(pattern, (int) Math.min(excess, properties.getMaxEvictionsPerRun()));
+            }
+            evictions.get(name).increment(evicted);
+            log.warn("缓存 {} 超出内存上限 (约 {} KB > {} KB)，删除了 {} 个 key",
+                    name, bytes / 1024, maxBytes / 1024, evicted);
+        }
+        long overBudgetSince = maxBytes > 0 && bytes > maxBytes
+                ? (previous != null && previous.overBudgetSince() > 0 ? previous.overBudgetSince() : now) : 0;
+        return new CacheStats(count, bytes, maxBytes, evicted, now, overBudgetSince);
+    }
+
+    @SuppressWarnings("unchecked")
+    private long estimateBytes(List<String> sample, long count) {
+        if (sample.isEmpty()) {
+            return 0;
+        }
+        List<Long> reply = stringRedisTemplate.execute(MEMORY_USAGE, sample);
+        if (reply == null || reply.size() < 2 || reply.get(1) == 0) {
+            return 0;
+        }
+        return reply.get(0) * count / reply.get(1);
+    }
+
+    /**
+     * 删掉剩余时间最短的 limit 个 key
+     * SCAN 一遍，每批 key 一个 pipeline 查 PTTL，用大顶堆只保留最短的 limit 个
+     */
+    private long evictShortestTtl(String pattern, int limit) {
+        if (limit <= 0) {
+            return 0;
+        }
+        PriorityQueue<Map.Entry<String, Long>> shortest =
+                new PriorityQueue<>(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        List<String> batch = new ArrayList<>(SCAN_COUNT);
+        try (Cursor<String> cursor = scan(pattern)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() == SCAN_COUNT || !cursor.hasNext()) {
+                    List<Object> ttls = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                        StringRedisConnection redis = (StringRedisConnection) connection;
+                        batch.forEach(redis::pTtl);
+                        return null;
+                    });
+                    for (int i = 0; i < batch.size(); i++) {
+                        long ttl = ttls.get(i) instanceof Long value ? value : -2;
+                        if (ttl == -2) {
+                            continue; // 已经过期 / 被删掉了
+                        }
+                        // 没有 TTL (-1) 的排在最后
+                        shortest.add(Map.entry(batch.get(i), ttl < 0 ? Long.MAX_VALUE : ttl));
+                        if (shortest.size() > limit) {
+                            shortest.poll();
+                        }
+                    }
+                    batch.clear();
+                }
+            }
+        }
+        List<String> victims = shortest.stream().map(Map.Entry::getKey).toList();
+        return unlink(victims);
+    }
+
+    private long unlinkAll(String pattern) {
+        List<String> keys = new ArrayList<>();
+        try (Cursor<String> cursor = scan(pattern)) {
+            cursor.forEachRemaining(keys::add);
+        }
+        return unlink(keys);
+    }
+
+    /** UNLINK：在后台线程释放内存，不阻塞 Redis */
+    private long unlink(List<String> keys) {
+        long removed = 0;
+        for (int i = 0; i < keys.size(); i += SCAN_COUNT) {
+            List<String> chunk = keys.subList(i, Math.min(i + SCAN_COUNT, keys.size()));
+            Long count = stringRedisTemplate.unlink(chunk);
+            removed += count != null ? count : 0;
+        }
+        return removed;
+    }
+
+    private Cursor<String> scan(String pattern) {
+        return stringRedisTemplate.scan(ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build());
+    }
+
+    /** /actuator/cachestats 用 */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String name : cachePolicies.cacheNames()) {
+            CachePolicyProperties.Policy policy = properties.policyFor(name);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("ttlSeconds", policy.getTtlSeconds());
+            entry.put("jitterPercent", policy.getJitterPercent());
+            entry.put("extendBelowMs", cachePolicies.extendBelowMs(name));
+            entry.put("maxMemoryBytes", cachePolicies.maxMemoryBytes(name));
+            CacheStats current = stats.get(name);
+            if (current != null) {
+                entry.put("keys", current.keys());
+                entry.put("bytes", current.bytes());
+                entry.put("overBudget", current.overBudget());
+                if (current.overBudgetSince() > 0) {
+                    entry.put("overBudgetSince", current.overBudgetSince());
+                }
+                entry.put("lastEvicted", current.evicted());
+                entry.put("collectedAt", current.collectedAt());
+            }
+            result.put(name, entry);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,99 @@
+package org.hzj.demo.cache;
+
+import org.hzj.demo.config.CachePolicyProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 各个 Redis 缓存的过期策略 (配置见 CachePolicyProperties)
+ *
+ * 以前只有一个 RedisCacheConfiguration，没有 TTL：post::{id} 和 post_list 永不过期，
+ * 删掉的、没人看的文章一直占着 Redis 内存。现在每个缓存单独配置：
+ * 1. TTL + 随机抖动：每个 key 的过期时间都不一样，不会在同一秒一起过期、一起回源
+ * 2. 读的时候续期：剩余时间不到一定比例时重新设置 TTL (在读缓存的 Lua 脚本里顺便做，不多一次往返)
+ * 3. 内存上限：见 CacheBudgetMonitor
+ *
+ * 写缓存的地方都从这里取 TTL：RedisCacheManager (@Cacheable / @CachePut)、PostCache、PostListCache
+ */
+@Component
+public class CachePolicies {
+
+    @Autowired
+    private CachePolicyProperties properties;
+
+    // RedisConfig 里定义的缓存配置 (key 前缀、JSON 序列化)，这里在它的基础上加上 TTL
+    @Autowired
+    private RedisCacheConfiguration baseConfiguration;
+
+    /**
+     * 这个缓存下一个 key 的过期时间 (每次调用都重新抖动)
+     * @return Duration.ZERO 表示永不过期
+     */
+    public Duration ttlFor(String cacheName) {
+        CachePolicyProperties.Policy policy = properties.policyFor(cacheName);
+        long ttlMs = policy.getTtlSeconds() * 1000;
+        if (ttlMs <= 0) {
+            return Duration.ZERO;
+        }
+        long jitterMs = ttlMs * policy.getJitterPercent() / 100;
+        if (jitterMs > 0) {
+            ttlMs += ThreadLocalRandom.current().nextLong(jitterMs);
+        }
+        return Duration.ofMillis(ttlMs);
+    }
+
+    /**
+     * 读的时候剩余时间 (毫秒) 低于多少就续期；0 = 不续期
+     */
+    public long extendBelowMs(String cacheName) {
+        CachePolicyProperties.Policy policy = properties.policyFor(cacheName);
+        if (!policy.isExtendOnRead() || policy.getTtlSeconds() <= 0) {
+            return 0;
+        }
+        return policy.getTtlSeconds() * 1000 * policy.getExtendBelowPercent() / 100;
+    }
+
+    public long maxMemoryBytes(String cacheName) {
+        return properties.policyFor(cacheName).getMaxMemoryMb() * 1024 * 1024;
+    }
+
+    /**
+     * 给 RedisCacheManager 用的配置：序列化方式不变，TTL 按这个缓存的策略 (每个 key 单独抖动)
+     */
+    public RedisCacheConfiguration configFor(String cacheName) {
+        return baseConfiguration.entryTtl((key, value) -> ttlFor(cacheName));
+    }
+
+    /**
+     * 这个缓存在 Redis 里的 key 的匹配模式 (统计 / 淘汰时 SCAN 用)
+     * Spring Cache 的缓存是 "{name}::{key}"；文章列表缓存是 PostListCache 自己的几个 key
+     */
+    public String keyPattern(String cacheName) {
+        if (PostListCache.CACHE_NAME.equals(cacheName)) {
+            return PostListCache.KEY_PATTERN;
+        }
+        return baseConfiguration.getKeyPrefixFor(cacheName) + "*";
+    }
+
+    /** 要统计的缓存：post、post_list，加上配置里单独列出来的 */
+    public Set<String> cacheNames() {
+        Set<String> names = new LinkedHashSet<>();
+        names.add(PostCache.CACHE_NAME);
+        names.add(PostListCache.CACHE_NAME);
+        names.addAll(properties.getCaches().keySet());
+        return names;
+    }
+
+    /** RedisCacheManager 管理的缓存 (文章列表缓存不归它管) */
+    public Set<String> springCacheNames() {
+        Set<String> names = cacheNames();
+        names.remove(PostListCache.CACHE_NAME);
+        return names;
+    }
+}
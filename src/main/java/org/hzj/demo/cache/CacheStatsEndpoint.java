@@ -0,0 +1,27 @@
+package org.hzj.demo.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 自定义 Actuator 端点：/actuator/cachestats
+ * - GET /actuator/cachestats  每个缓存的策略 (TTL、抖动、续期阈值、内存上限) 和最近一次统计的 key 数 / 内存
+ */
+@Component
+@Endpoint(id = "cachestats")
+public class CacheStatsEndpoint {
+
+    private final CacheBudgetMonitor budgetMonitor;
+
+    public CacheStatsEndpoint(CacheBudgetMonitor budgetMonitor) {
+        this.budgetMonitor = budgetMonitor;
+    }
+
+    @ReadOperation
+    public Map<String, Object> cacheStats() {
+        return budgetMonitor.snapshot();
+    }
+}
@@ -0,0 +1,129 @@
+package org.hzj.demo.cache;
+
+import org.hzj.demo.model.Post;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 给 Spring Cache (@Cacheable) 套上 Redis 熔断器
+ *
+ * 以前 RedisCache 读写失败，异常直接从 @Cacheable 抛出去，整个请求 500；
+ * 现在每次缓存读写都经过 RedisGuard：
+ * - 读：Redis 不可用时 "post" 缓存先查本地缓存 (LocalPostCache)，还没有就当作没命中 -> 执行方法查库
+ * - 写 / 删：Redis 不可用时跳过 (文章的增删改由发件箱负责清缓存，失败会重试，不依赖这里)
+ */
+public class GuardedCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final RedisGuard redisGuard;
+    private final LocalPostCache localPostCache;
+
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public GuardedCacheManager(CacheManager delegate, RedisGuard redisGuard, LocalPostCache localPostCache) {
+        this.delegate = delegate;
+        this.redisGuard = redisGuard;
+        this.localPostCache = localPostCache;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache target = delegate.getCache(name);
+        return target == null ? null : caches.computeIfAbsent(name, n -> new GuardedCache(target));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+
+    private class GuardedCache implements Cache {
+
+        private final Cache target;
+
+        GuardedCache(Cache target) {
+            this.target = target;
+        }
+
+        @Override
+        public String getName() {
+            return target.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return target.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            return redisGuard.call(() -> target.get(key), () -> localFallback(key));
+        }
+
+        @Override
+        public <T> T get(Object key, Class<T> type) {
+            ValueWrapper wrapper = get(key);
+            return wrapper == null ? null : type.cast(wrapper.get());
+        }
+
+        /** @Cacheable(sync = true) 走这里：先读，没命中再调用 valueLoader (查库不放进熔断器里计时) */
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            ValueWrapper wrapper = get(key);
+            if (wrapper != null) {
+                return (T) wrapper.get();
+            }
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            put(key, value);
+            return value;
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            redisGuard.call(() -> {
+                target.put(key, value);
+                return null;
+            }, () -> null);
+        }
+
+        @Override
+        public void evict(Object key) {
+            redisGuard.call(() -> {
+                target.evict(key);
+                return null;
+            }, () -> null);
+        }
+
+        @Override
+        public void clear() {
+            redisGuard.call(() -> {
+                target.clear();
+                return null;
+            }, () -> null);
+        }
+
+        private ValueWrapper localFallback(Object key) {
+            if (PostCache.CACHE_NAME.equals(target.getName()) && key instanceof Long id) {
+                Post post = localPostCache.get(id);
+                return post == null ? null : new SimpleValueWrapper(post);
+            }
+            return null;
+        }
+    }
+}
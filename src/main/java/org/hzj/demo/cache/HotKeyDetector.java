@@ -0,0 +1,273 @@
+package org.hzj.demo.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.hzj.demo.config.HotKeyProperties;
+import org.hzj.demo.model.Post;
+import org.hzj.demo.service.PostService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 热点文章探测 + 本地副本
+ *
+ * 问题：一篇文章突然爆了，每个请求都读 "post::{id}" 同一个 key、都 ZINCRBY 同一个 ZSet，
+ * 这两个 key 所在的那台 Redis 先扛不住 (加机器也没用，同一个 key 只在一台上)。
+ *
+ * 1. 探测：每次读文章都在 Count-Min Sketch 里给这个 id +1
+ *    (depth 行 x width 列的计数器，每行用不同的哈希函数，估计值 = 各行里最小的那个；
+ *     内存固定，不管有多少篇文章；只会多估、不会少估)
+ *    每个窗口 (window-ms) 结束时清零，所以统计的是“最近一个窗口的访问次数”
+ * 2. 晋升：一个窗口内访问 >= threshold 次就成为热点，保持 promote-ms (期间还热就续期)
+ * 3. 吸收：热点文章直接读本机的副本 (LocalPostCache，超过 replica-ttl-ms 才回 Redis 读一次)，
+ *    点击数在本机累加，每个窗口结束时一个 pipeline 写回 ZSet (每篇文章一条 ZINCRBY)
+ *    这样每个节点对一个热点 key 每秒只访问 Redis 一两次，而不是几千次
+ * 4. 观察：/actuator/hotkeys 查看当前热点和上一个窗口访问最多的 top-k
+ *
+ * 代价：热点文章被修改之后，各节点最多 replica-ttl-ms 之后才能看到；点击数最多晚一个窗口写进 Redis。
+ */
+@Component
+public class HotKeyDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(HotKeyDetector.class);
+
+    /** 每行哈希函数的种子 (随便选的奇数) */
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x27D4EB2F165667C5L, 0x94D049BB133111EBL
+    };
+
+    /** Count-Min Sketch：一个窗口一个，窗口结束时整个换掉 */
+    private static final class Sketch {
+        private final AtomicLongArray[] rows;
+        private final int mask;
+
+        Sketch(int depth, int width) {
+            rows = new AtomicLongArray[depth];
+            for (int i = 0; i < depth; i++) {
+                rows[i] = new AtomicLongArray(width);
+            }
+            mask = width - 1;
+        }
+
+        /** +1 并返回估计值 (各行里最小的计数) */
+        long add(long key) {
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < rows.length; i++) {
+                min = Math.min(min, rows[i].incrementAndGet(index(key, i)));
+            }
+            return min;
+        }
+
+        private int index(long key, int row) {
+            // murmur3 的 fmix64：把 id 打散 (雪花 id 的低位变化很规律)
+            long h = key ^ SEEDS[row];
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return (int) h & mask;
+        }
+    }
+
+    @Autowired
+    private HotKeyProperties properties;
+
+    @Autowired
+    private LocalPostCache localPostCache;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private ViewCountBuffer viewCountBuffer;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile Sketch sketch;
+
+    /** 当前窗口里估计值比较大的 id (用来算 top-k；有上限) */
+    private final Map<Long, Long> candidates = new ConcurrentHashMap<>();
+
+    /** 热点文章 id -> 热点到期时间 */
+    private final Map<Long, Long> hotUntil = new ConcurrentHashMap<>();
+
+    /** 热点文章在本机累加、还没写进 Redis 的点击数 */
+    private final Map<Long, Long> pendingViews = new ConcurrentHashMap<>();
+
+    /** 上一个窗口访问最多的 top-k */
+    private volatile List<Map<String, Object>> lastTop = List.of();
+
+    private Counter promotions;
+    private Counter replicaHits;
+
+    @PostConstruct
+    public void init() {
+        sketch = newSketch();
+        promotions = Counter.builder("hotkey.promotions").description("成为热点的次数").register(meterRegistry);
+        replicaHits = Counter.builder("hotkey.replica.hits").description("热点文章直接读本地副本的次数").register(meterRegistry);
+        Gauge.builder("hotkey.active", hotUntil, Map::size).description("当前的热点文章数").register(meterRegistry);
+    }
+
+    private Sketch newSketch() {
+        int depth = Math.min(Math.max(properties.getSketchDepth(), 1), SEEDS.length);
+        // 向上取 2 的幂 (取下标时用位运算代替取模)
+        int width = Integer.highestOneBit(Math.max(properties.getSketchWidth(), 64) - 1) << 1;
+        return new Sketch(depth, width);
+    }
+
+    /**
+     * 记一次访问
+     * @return 这篇文章现在是不是热点
+     */
+    public boolean record(Long id) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+        long estimate = sketch.add(id);
+        long threshold = properties.getThreshold();
+        // 达到阈值的 1/4 才进候选 (冷门文章不占 Map)
+        if (estimate >= threshold / 4 && (candidates.size() < properties.getTopK() * 8 || candidates.containsKey(id))) {
+            candidates.merge(id, estimate, Math::max);
+        }
+        long now = System.currentTimeMillis();
+        if (estimate >= threshold) {
+            Long until = hotUntil.get(id);
+            // 剩余时间不到一半才续期 (热点每秒几千次访问，不用每次都写 Map)
+            if (until == null || until - now < properties.getPromoteMs() / 2) {
+                if (hotUntil.put(id, now + properties.getPromoteMs()) == null) {
+                    promotions.increment();
+                    log.info("文章 {} 成为热点 (最近 {}ms 内本节点访问 {} 次)", id, properties.getWindowMs(), estimate);
+                }
+            }
+            return true;
+        }
+        Long until = hotUntil.get(id);
+        return until != null && until > now;
+    }
+
+    /**
+     * 热点文章：读本机副本 (不超过 replica-ttl-ms)，并在本机给点击数 +1
+     * @return 副本太旧 / 没有时返回 null，调用方走正常流程 (会刷新副本)
+     */
+    public Post readReplica(Long id) {
+        Post post = localPostCache.getFresh(id, properties.getReplicaTtlMs());
+        if (post == null) {
+            return null;
+        }
+        replicaHits.increment();
+        long known = post.getViewCount() != null ? post.getViewCount() : 0;
+        post.setViewCount(known + pendingViews.merge(id, 1L, Long::sum));
+        return post;
+    }
+
+    /**
+     * 窗口结束：记下 top-k，清零计数，摘掉过期的热点，把本机累加的点击数写回 Redis
+     */
+    @Scheduled(fixedRateString = "${hot-key.window-ms:1000}")
+    public void roll() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        List<Map.Entry<Long, Long>> top = new ArrayList<>(candidates.entrySet());
+        top.sort(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()));
+        List<Map<String, Object>> snapshot = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : top.subList(0, Math.min(properties.getTopK(), top.size()))) {
+            snapshot.add(Map.of("id", entry.getKey(), "count", entry.getValue()));
+        }
+        lastTop = snapshot;
+
+        sketch = newSketch();
+        candidates.clear();
+
+        long now = System.currentTimeMillis();
+        hotUntil.entrySet().removeIf(entry -> {
+            if (entry.getValue() <= now) {
+                log.info("文章 {} 不再是热点", entry.getKey());
+                return true;
+            }
+            return false;
+        });
+
+        flushViews();
+    }
+
+    /**
+     * 本机累加的点击数写回 ZSet (一个 pipeline)，顺便用返回的新点击数更新本地副本
+     * Redis 不可用时交给 ViewCountBuffer (恢复后回放)
+     */
+    private void flushViews() {
+        if (pendingViews.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        for (Long id : List.copyOf(pendingViews.keySet())) {
+            Long delta = pendingViews.remove(id);
+            if (delta != null) {
+                ids.add(id);
+                deltas.add(delta);
+            }
+        }
+        List<Object> scores = redisGuard.call(() -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (int i = 0; i < ids.size(); i++) {
+                redis.zIncrBy(PostService.POST_VIEW_COUNT_KEY, deltas.get(i), ids.get(i).toString());
+            }
+            return null;
+        }), () -> null);
+        if (scores == null) {
+            for (int i = 0; i < ids.size(); i++) {
+                viewCountBuffer.add(ids.get(i), deltas.get(i));
+            }
+            return;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            if (scores.get(i) instanceof Double score) {
+                localPostCache.recordViewCount(ids.get(i), score.longValue());
+            }
+        }
+    }
+
+    /** /actuator/hotkeys 用 */
+    public Map<String, Object> snapshot() {
+        long now = System.currentTimeMillis();
+        Map<String, Long> hot = new LinkedHashMap<>();
+        hotUntil.forEach((id, until) -> {
+            if (until > now) {
+                hot.put(id.toString(), until - now);
+            }
+        });
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", properties.isEnabled());
+        result.put("windowMs", properties.getWindowMs());
+        result.put("threshold", properties.getThreshold());
+        result.put("hot", hot); // 文章 id -> 还剩多少毫秒
+        result.put("topLastWindow", lastTop);
+        result.put("promotions", (long) promotions.count());
+        result.put("replicaHits", (long) replicaHits.count());
+        result.put("pendingViews", pendingViews.size());
+        return result;
+    }
+}
@@ -0,0 +1,27 @@
+package org.hzj.demo.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 自定义 Actuator 端点：/actuator/hotkeys
+ * - GET /actuator/hotkeys  当前的热点文章 (id -> 还剩多少毫秒)、上一个窗口访问最多的 top-k
+ */
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeyEndpoint {
+
+    private final HotKeyDetector hotKeyDetector;
+
+    public HotKeyEndpoint(HotKeyDetector hotKeyDetector) {
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    @ReadOperation
+    public Map<String, Object> hotKeys() {
+        return hotKeyDetector.snapshot();
+    }
+}
@@ -0,0 +1,208 @@
+package org.hzj.demo.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.hzj.demo.config.RedisResilienceProperties;
+import org.hzj.demo.model.Post;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 本机内存里的文章缓存 (Redis 熔断时读；热点文章平时也读，见最后一段)
+ *
+ * - 每次从 Redis 成功读到 / 写回一篇文章，顺手在这里留一份 (直接存 Redis 里的 JSON 字节，不用额外序列化)
+ * - 第一次读的时候反序列化一次，解析出来的 Post 留在条目里；之后每次返回它的 copy()
+ *   (调用方会 setViewCount，不能共用同一个对象；copy 比再走一遍 Jackson 便宜得多)
+ * - 有上限 (近似 LRU：超出时一次删掉最久没访问的一批) 和有效期 (降级期间文章被修改，最多 local-cache-ttl-seconds 之后能看到)
+ * - ConcurrentHashMap，读不加锁：热点文章每秒几千次读不会排在同一把锁上
+ *
+ * 另外记着每篇文章最后一次从 Redis 读到的点击数：降级时显示 “最后的点击数 + 降级期间的点击数”。
+ *
+ * 热点文章 (HotKeyDetector) 平时也读这里：只用 replica-ttl-ms 以内的副本。
+ */
+@Component
+public class LocalPostCache {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalPostCache.class);
+
+    /** 超出上限时一次删掉多少比例 (最久没访问的)，不用每放一篇就扫一遍 */
+    private static final double EVICT_FRACTION = 0.1;
+
+    private static final class Entry {
+        final byte[] json;
+        final long createdAt;
+        final long expiresAt;
+        volatile long viewCount;
+        /** 最后一次访问的时间 (近似 LRU 用) */
+        volatile long accessedAt;
+        /** 解析好的文章 (第一次读的时候解析)；只读，对外返回 copy() */
+        volatile Post post;
+
+        Entry(byte[] json, long createdAt, long expiresAt, long viewCount) {
+            this.json = json;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+            this.viewCount = viewCount;
+            this.accessedAt = createdAt;
+        }
+    }
+
+    @Autowired
+    private RedisResilienceProperties properties;
+
+    @Autowired
+    private RedisCacheConfiguration cacheConfiguration;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /** 同一时间只有一个线程做淘汰，其他线程不等 */
+    private final ReentrantLock evictLock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("redis.degraded.local_cache.size", this, LocalPostCache::size)
+                .description("本地文章缓存 (Redis 降级用) 里的文章数")
+                .register(meterRegistry);
+    }
+
+    /** 记录一篇文章的 JSON (和 Redis 里 "post::{id}" 一样的格式) */
+    public void put(Long id, byte[] json) {
+        put(id, json, -1);
+    }
+
+    /** @param viewCount 最后知道的点击数；-1 = 不知道 (保留原来记着的) */
+    public void put(Long id, byte[] json, long viewCount) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + properties.getLocalCacheTtlSeconds() * 1000;
+        entries.compute(id, (key, previous) -> {
+            long known = viewCount >= 0 ? viewCount : (previous != null ? previous.viewCount : 0);
+            return new Entry(json, now, expiresAt, known);
+        });
+        if (entries.size() > properties.getLocalCacheMaxEntries()) {
+            evictLeastRecentlyUsed();
+        }
+    }
+
+    /**
+     * 删掉最久没访问的一批 (上限的 EVICT_FRACTION)，删完低于上限
+     * 排序是 O(n log n)，但每删一批才做一次，摊到每次 put 上很小
+     */
+    private void evictLeastRecentlyUsed() {
+        if (!evictLock.tryLock()) {
+            return;
+        }
+        try {
+            int maxEntries = properties.getLocalCacheMaxEntries();
+            int excess = entries.size() - maxEntries;
+            if (excess <= 0) {
+                return;
+            }
+            int count = excess + (int) Math.ceil(maxEntries * EVICT_FRACTION);
+            List<Map.Entry<Long, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+            snapshot.sort(Comparator.comparingLong(e -> e.getValue().accessedAt));
+            for (Map.Entry<Long, Entry> victim : snapshot.subList(0, Math.min(count, snapshot.size()))) {
+                // 期间被重新 put 过的 (新的 Entry) 不删
+                entries.remove(victim.getKey(), victim.getValue());
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    public void recordViewCount(Long id, long viewCount) {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            entry.viewCount = viewCount;
+        }
+    }
+
+    /**
+     * @return 一个新的 Post 对象 (viewCount = 最后知道的点击数)；没有 / 过期 / 解析失败时返回 null
+     */
+    public Post get(Long id) {
+        return get(id, Long.MAX_VALUE);
+    }
+
+    /**
+     * 只要不超过 maxAgeMs 的副本 (热点文章用，见 HotKeyDetector)
+     */
+    public Post getFresh(Long id, long maxAgeMs) {
+        return get(id, maxAgeMs);
+    }
+
+    private Post get(Long id, long maxAgeMs) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt < now) {
+            entries.remove(id, entry);
+            return null;
+        }
+        if (now - entry.createdAt > maxAgeMs) {
+            return null;
+        }
+        entry.accessedAt = now;
+        Post post = entry.post;
+        if (post == null) {
+            // 并发的第一次读可能各自解析一遍，结果一样，谁写进去都行
+            post = decode(id, entry.json);
+            if (post == null) {
+                return null;
+            }
+            entry.post = post;
+        }
+        Post copy = post.copy();
+        copy.setViewCount(entry.viewCount);
+        return copy;
+    }
+
+    private Post decode(Long id, byte[] json) {
+        try {
+            Object value = cacheConfiguration.getValueSerializationPair().read(ByteBuffer.wrap(json));
+            if (value instanceof Post post) {
+                return post;
+            }
+        } catch (Exception e) {
+            log.warn("解析本地文章缓存失败 id={}: {}", id, e.getMessage());
+        }
+        return null;
+    }
+
+    public Map<Long, Post> getAll(List<Long> ids) {
+        Map<Long, Post> hits = new HashMap<>();
+        for (Long id : ids) {
+            Post post = get(id);
+            if (post != null) {
+                hits.put(id, post);
+            }
+        }
+        return hits;
+    }
+
+    public void evict(Collection<Long> ids) {
+        ids.forEach(entries::remove);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
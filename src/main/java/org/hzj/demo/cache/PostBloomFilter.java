@@ -0,0 +1,247 @@
+package org.hzj.demo.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.hzj.demo.cluster.ClusterBroadcaster;
+import org.hzj.demo.config.PostBloomFilterProperties;
+import org.hzj.demo.repository.PostRepository;
+import org.hzj.demo.sharding.ShardRouter;
+import org.hzj.demo.sharding.ShardedPostStore;
+import org.hzj.demo.util.LongBloomFilter;
+import org.hzj.demo.util.SnowflakeIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 防“缓存穿透”：请求不存在的文章 id 时，不查缓存、不查库，直接 404
+ *
+ * 问题：缓存不存 null (disableCachingNullValues)，不存在的 id 每次都是“缓存没命中 -> 查库 -> 查不到”，
+ * 爬虫 / 扫描器拿着随机 id 一直请求，压力全部落到 MySQL 上。
+ *
+ * 两层：
+ * 1. 布隆过滤器 (本机内存)：所有存在的文章 id 都在里面。
+ *    它说“不存在”就一定不存在；说“可能存在”有 false-positive-rate 的概率误判
+ *    (k 个哈希函数，每个 id 在位数组里置 k 个位；查询时 k 个位都是 1 才算“可能存在”)
+ * 2. “确认不存在”缓存 (本机内存，几十秒过期)：过滤器误判 / 已经删掉的文章，查过一次库之后记下来，
+ *    短时间内不会反复查库
+ *
+ * 一致性：
+ * - 启动时从所有库全量加载 id (只查 id 一列)，加载完之前全部放行
+ * - 本节点创建文章之后立刻加进去，并广播给其他节点 (ClusterBroadcaster)
+ * - 广播可能晚到 / 丢失：雪花 id 里带着创建时间，最近 recent-id-seconds 秒内创建的 id 不查过滤器
+ * - 布隆过滤器不能删除：删掉的文章留在里面 (只是会多查一次库)，定期全量重建时才清掉
+ */
+@Component
+public class PostBloomFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(PostBloomFilter.class);
+
+    private static final String CHANNEL = "post:bloom";
+    private static final int SCAN_BATCH_SIZE = 5000;
+
+    @Autowired
+    private PostBloomFilterProperties properties;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private ShardedPostStore postStore;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ClusterBroadcaster broadcaster;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile LongBloomFilter current;
+
+    /** 重建中的新过滤器 (重建期间新增的 id 两边都加)；不在重建时为 null */
+    private volatile LongBloomFilter building;
+
+    private volatile boolean ready;
+
+    /** 上一次重建时的文章数 */
+    private volatile long lastCount;
+
+    private final Object rebuildLock = new Object();
+
+    /** “确认不存在”的 id -> 过期时间 (LRU) */
+    private Map<Long, Long> missing;
+
+    private Counter rejected;
+    private Counter negativeHits;
+
+    @PostConstruct
+    public void init() {
+        int maxEntries = properties.getNegativeCacheMaxEntries();
+        missing = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        rejected = Counter.builder("post_bloom.rejected")
+                .description("布隆过滤器判断不存在、直接返回的请求数").register(meterRegistry);
+        negativeHits = Counter.builder("post_bloom.negative_cache.hits")
+                .description("命中“确认不存在”缓存的请求数").register(meterRegistry);
+        broadcaster.subscribe(CHANNEL, message -> addLocal(Long.parseLong(message)));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // 加载完之前全部放行，等下一次定时重建
+            log.error("启动时加载文章 id 布隆过滤器失败: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${post-bloom.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${post-bloom.rebuild-interval-ms:3600000}")
+    public void scheduledRebuild() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("定时重建文章 id 布隆过滤器失败 (继续使用旧的): {}", e.getMessage());
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 查询
+    // ------------------------------------------------------------------
+
+    /**
+     * 这篇文章可能存在吗？返回 false 时一定不存在 (或者刚确认过不存在)，不用查缓存和数据库
+     */
+    public boolean mightExist(Long id) {
+        if (!properties.isEnabled() || isRecent(id)) {
+            return true;
+        }
+        if (ready && !current.mightContain(id)) {
+            rejected.increment();
+            return false;
+        }
+        Long expiresAt;
+        synchronized (missing) {
+            expiresAt = missing.get(id);
+        }
+        if (expiresAt != null && expiresAt > System.currentTimeMillis()) {
+            negativeHits.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /** 查库确认不存在之后调用 */
+    public void recordMissing(Long id) {
+        if (!properties.isEnabled() || isRecent(id)) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + properties.getNegativeCacheTtlSeconds() * 1000;
+        synchronized (missing) {
+            missing.put(id, expiresAt);
+        }
+    }
+
+    private boolean isRecent(long id) {
+        Instant created = SnowflakeIdGenerator.timestampOf(id);
+        return created.isAfter(Instant.now().minusSeconds(properties.getRecentIdSeconds()));
+    }
+
+    // ------------------------------------------------------------------
+    // 写
+    // ------------------------------------------------------------------
+
+    /** 文章创建之后调用 (事务已提交)：本机加进去，并广播给其他节点 */
+    public void add(Long id) {
+        addLocal(id);
+        broadcaster.publish(CHANNEL, id.toString());
+    }
+
+    private void addLocal(long id) {
+        LongBloomFilter bits = current;
+        if (bits != null) {
+            bits.add(id);
+        }
+        LongBloomFilter next = building;
+        if (next != null) {
+            next.add(id);
+        }
+        synchronized (missing) {
+            missing.remove(id);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 重建
+    // ------------------------------------------------------------------
+
+    /**
+     * 从所有库全量加载 id，建一个新的过滤器后整体替换 (重建期间查询照常使用旧的)
+     * 位数组大小按 max(expected-posts, 上一次的文章数 x 2) 分配，文章变多之后下一次重建会自动变大
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            long capacity = Math.max(properties.getExpectedPosts(), lastCount * 2);
+            LongBloomFilter next = new LongBloomFilter(capacity, properties.getFalsePositiveRate());
+            // 先设置 building 再扫描：扫描开始前已经提交的文章一定会被扫到，之后提交的由 addLocal 加进来
+            building = next;
+            long total = 0;
+            try {
+                for (Integer shard : shardRouter.allShards()) {
+                    total += scanShard(shard, next);
+                }
+                current = next;
+                ready = true;
+                lastCount = total;
+            } finally {
+                building = null;
+            }
+            if (total > capacity) {
+                log.warn("文章数 ({}) 超过了布隆过滤器的容量 ({})，误判率会升高，下一次重建时自动扩容", total, capacity);
+            }
+            log.info("文章 id 布隆过滤器重建完成: {} 篇文章, {} 位, {} 个哈希函数, 耗时 {}ms",
+                    total, next.bitCount(), next.hashes(), System.currentTimeMillis() - start);
+        }
+    }
+
+    private long scanShard(int shard, LongBloomFilter target) {
+        long count = 0;
+        long cursor = 0;
+        while (true) {
+            long afterId = cursor;
+            List<Long> ids = postStore.read(shard, () ->
+                    postRepository.findIdsAfter(afterId, PageRequest.of(0, SCAN_BATCH_SIZE)));
+            if (ids.isEmpty()) {
+                return count;
+            }
+            ids.forEach(target::add);
+            cursor = ids.get(ids.size() - 1);
+            count += ids.size();
+        }
+    }
+}
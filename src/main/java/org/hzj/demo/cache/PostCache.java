@@ -0,0 +1,385 @@
+package org.hzj.demo.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hzj.demo.model.Post;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 直接读写 Spring Cache 的 "post" 缓存 (Redis 里的 post::{id})
+ *
+ * @Cacheable 一次只能处理一个 key，批量接口 (一页几十篇文章) 如果逐个调用，
+ * 就是几十次 Redis 往返。这里绕过 Spring Cache 的注解，直接用同样的 key 格式和序列化方式：
+ * 1. 读：一条 MGET 取回所有 key (要读时续期的话换成一段 Lua 脚本，还是一次往返)
+ * 2. 写：所有 SET 放在一个 pipeline 里发出去
+ * 因为格式完全一样，这里写进去的缓存 @Cacheable 能读，@CachePut / @CacheEvict 也能覆盖 / 删除。
+ *
+ * 另外：部分修改 (PATCH) 之后直接改缓存里的 JSON 字段，见 patch()；
+ * 单篇读取 + 点击数在一段 Lua 脚本里完成，见 getAndCountView()
+ */
+@Component
+public class PostCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PostCache.class);
+
+    public static final String CACHE_NAME = "post";
+
+    /**
+     * 缓存里的文章版本号 < ARGV[1] 才删除 (已经是新版本了，例如 PATCH 已经原地改好，就不用删)
+     * 缓存的 JSON 解析失败也删除
+     * 缓存的值是 ["org.hzj.demo.model.Post", {...}] (见 patchJson)，Lua 的数组下标从 1 开始，对象是 doc[2]
+     */
+    static final String EVICT_IF_OLDER =
+            "local v = redis.call('GET', KEYS[1]) " +
+            "if not v then return 0 end " +
+            "local ok, doc = pcall(cjson.decode, v) " +
+            "local post = nil " +
+            "if ok and type(doc) == 'table' then " +
+            "  if type(doc[2]) == 'table' then post = doc[2] else post = doc end " +
+            "end " +
+            "if post and tonumber(post['version']) " +
+            "   and tonumber(post['version']) >= tonumber(ARGV[1]) then return 0 end " +
+            "redis.call('DEL', KEYS[1]) return 1";
+
+    /**
+     * 读单篇文章 + 点击数 +1，一次往返 (GET /posts/{id} 用)
+     * 命中：返回 {缓存的 JSON, 新的点击数}；没命中：返回空数组 (不计数，文章可能根本不存在)
+     * 命中时顺便续期：剩余时间 < ARGV[2] 毫秒就重新设置成 ARGV[3] 毫秒 (见 CachePolicies)
+     * KEYS: post::{id}, 点击数 ZSet   ARGV: id, 续期阈值, 新的 TTL
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> GET_AND_COUNT_VIEW = new DefaultRedisScript<>(
+            "local v = redis.call('GET', KEYS[1]) " +
+            "if not v then return {} end " +
+            "local t = redis.call('PTTL', KEYS[1]) " +
+            "if t >= 0 and t < tonumber(ARGV[2]) then redis.call('PEXPIRE', KEYS[1], ARGV[3]) end " +
+            "return {v, redis.call('ZINCRBY', KEYS[2], 1, ARGV[1])}",
+            List.class);
+
+    /**
+     * 批量读 + 续期 (代替 MGET，还是一次往返)
+     * 没命中的位置返回 false (到 Java 里是 null)
+     * KEYS: post::{id}...   ARGV: 续期阈值, 每个 key 各自的新 TTL (分别抖动过)
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> MULTI_GET_AND_EXTEND = new DefaultRedisScript<>(
+            "local below = tonumber(ARGV[1]) " +
+            "local out = {} " +
+            "for i, k in ipairs(KEYS) do " +
+            "  local v = redis.call('GET', k) " +
+            "  if v then " +
+            "    local t = redis.call('PTTL', k) " +
+            "    if t >= 0 and t < below then redis.call('PEXPIRE', k, ARGV[i + 1]) end " +
+            "    out[i] = v " +
+            "  else out[i] = false end " +
+            "end " +
+            "return out",
+            List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /** Redis 熔断时用的本地副本：这里每次读到 / 写回文章都顺手更新一下 */
+    @Autowired
+    private LocalPostCache localPostCache;
+
+    // RedisConfig 里定义的缓存配置 (key 前缀、JSON 序列化)
+    @Autowired
+    private RedisCacheConfiguration cacheConfiguration;
+
+    /** 过期时间 / 读时续期 (和 RedisCacheManager 用的是同一套策略) */
+    @Autowired
+    private CachePolicies cachePolicies;
+
+    /** 只用来读写 JSON 树 (不需要类型信息)，和缓存序列化用的 ObjectMapper 无关 */
+    private final ObjectMapper treeMapper = new ObjectMapper();
+
+    public String key(Long id) {
+        return cacheConfiguration.getKeyPrefixFor(CACHE_NAME) + id;
+    }
+
+    /**
+     * 一次往返读取一批文章 (不续期时是 MGET；要续期时是 MULTI_GET_AND_EXTEND 脚本)
+     * @return 命中的文章 (id -> Post)；没命中 / 反序列化失败的 id 不在里面
+     */
+    public Map<Long, Post> multiGet(List<Long> ids) {
+        Map<Long, Post> hits = new HashMap<>();
+        if (ids.isEmpty()) {
+            return hits;
+        }
+        List<byte[]> values = readAll(ids);
+        if (values == null) {
+            return hits;
+        }
+        for (int i = 0; i < values.size(); i++) {
+            byte[] value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            try {
+                Object post = cacheConfiguration.getValueSerializationPair().read(ByteBuffer.wrap(value));
+                if (post instanceof Post p) {
+                    hits.put(ids.get(i), p);
+                    localPostCache.put(ids.get(i), value);
+                }
+            } catch (Exception e) {
+                // 格式不对 (例如 Post 类改过字段) 就当没命中，下面会从数据库重新加载并覆盖
+                log.warn("解析文章缓存失败 id={}: {}", ids.get(i), e.getMessage());
+            }
+        }
+        return hits;
+    }
+
+    /** 缓存命中的文章和它的新点击数 */
+    public record ViewedPost(Post post, long viewCount) {
+    }
+
+    /**
+     * 一次往返：取缓存里的文章，命中的话同时把点击数 +1 (Lua 脚本，EVALSHA 执行)
+     *
+     * 以前是两次往返：@Cacheable 的 GET，然后 incrementViewCount 的 ZINCRBY。
+     * 单篇文章是整个系统里请求最多的接口，省掉的这一次往返对延迟 (和 Redis 的 QPS) 影响最大。
+     *
+     * @return 没命中 / 缓存格式不对时返回 null (调用方查库，再用 appendPutIfAbsent + ZINCRBY 一个 pipeline 补上)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ViewedPost getAndCountView(Long id, String viewCountKey) {
+        // 结果用 byteArray 序列化器：JSON 原样交给缓存的反序列化器，不用先转成 String
+        List<byte[]> reply = stringRedisTemplate.execute(GET_AND_COUNT_VIEW,
+                RedisSerializer.string(), (RedisSerializer) RedisSerializer.byteArray(),
+                List.of(key(id), viewCountKey), id.toString(),
+                Long.toString(cachePolicies.extendBelowMs(CACHE_NAME)),
+                Long.toString(cachePolicies.ttlFor(CACHE_NAME).toMillis()));
+        if (reply == null || reply.size() < 2) {
+            return null;
+        }
+        Post post = deserialize(reply.get(0));
+        if (post == null) {
+            return null;
+        }
+        long viewCount = (long) Double.parseDouble(new String(reply.get(1), StandardCharsets.UTF_8));
+        localPostCache.put(id, reply.get(0), viewCount);
+        return new ViewedPost(post, viewCount);
+    }
+
+    /**
+     * 在 pipeline 里追加“写回缓存”的命令 (由调用方的 executePipelined 统一发送)
+     *
+     * 用 SET NX (不存在才写)：从数据库读出来到写回缓存之间，
+     * 如果有人刚更新了文章 (@CachePut 写入了新值)，我们手里的旧值不能把它覆盖掉
+     */
+    public void appendPutIfAbsent(StringRedisConnection redis, Collection<Post> posts) {
+        for (Post post : posts) {
+            byte[] key = key(post.getId()).getBytes(StandardCharsets.UTF_8);
+            byte[] value = toBytes(cacheConfiguration.getValueSerializationPair().write(post));
+            redis.stringCommands().set(key, value, expirationFor(post), RedisStringCommands.SetOption.ifAbsent());
+            localPostCache.put(post.getId(), value);
+        }
+    }
+
+    /**
+     * 部分修改之后，直接在缓存里的 JSON 上改这几个字段 (PATCH /posts/{id} 用)
+     *
+     * 为什么不用 @CachePut？它需要一个完整的 Post 作为返回值，
+     * 而部分修改根本没有从数据库读 content，为了放缓存再读一次就白省了。
+     * Redis 的字符串没法“只改其中一段”，所以这里是：取出 JSON -> 只替换改动的字段和 version -> 写回，
+     * content 原样保留 (不经过数据库，也不经过 Post 对象)。
+     *
+     * 并发：用 WATCH / MULTI / EXEC (乐观事务)，取出到写回之间 key 被别人改了，EXEC 就会放弃，
+     * 这时直接删掉缓存，下次读的时候重新加载。缓存里的版本号和 expectedVersion 对不上 (缓存本身就旧了) 也删掉。
+     *
+     * @param changes 字段名 (Post 的属性名) -> 新值，和 ShardedPostStore.patch 的参数一样
+     */
+    public void patch(Long id, long expectedVersion, long newVersion, Map<String, Object> changes) {
+        String key = key(id);
+        try {
+            Boolean patched = stringRedisTemplate.execute(new SessionCallback<Boolean>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Boolean execute(RedisOperations operations) {
+                    RedisOperations<String, String> redis = (RedisOperations<String, String>) operations;
+                    redis.watch(key);
+                    String json = redis.opsForValue().get(key);
+                    if (json == null) {
+                        // 没缓存，不用管
+                        redis.unwatch();
+                        return true;
+                    }
+                    byte[] patchedJson;
+                    try {
+                        patchedJson = patchJson(json, expectedVersion, newVersion, changes);
+                    } catch (Exception e) {
+                        patchedJson = null;
+                    }
+                    if (patchedJson == null) {
+                        redis.unwatch();
+                        return false;
+                    }
+                    byte[] value = patchedJson;
+                    redis.multi();
+                    // KEEPTTL：保留原来的过期时间
+                    redis.execute((RedisCallback<Object>) connection -> connection.stringCommands().set(
+                            key.getBytes(StandardCharsets.UTF_8), value,
+                            Expiration.keepTtl(), RedisStringCommands.SetOption.upsert()));
+                    List<Object> results = redis.exec();
+                    return results != null && !results.isEmpty();
+                }
+            });
+            if (!Boolean.TRUE.equals(patched)) {
+                stringRedisTemplate.delete(key);
+            }
+        } catch (Exception e) {
+            log.warn("修改文章缓存失败 id={}, 改为删除: {}", id, e.getMessage());
+            stringRedisTemplate.delete(key);
+        }
+    }
+
+    /**
+     * 在缓存的 JSON 上替换字段和 version
+     *
+     * 缓存的序列化器开了默认类型 (RedisConfig)，Post 存成 ["org.hzj.demo.model.Post", {...字段...}]，
+     * 要改的是数组的第二个元素
+     *
+     * @return 改好的 JSON；缓存里的版本号不是 expectedVersion (缓存本身就旧了) 时返回 null
+     */
+    byte[] patchJson(String json, long expectedVersion, long newVersion, Map<String, Object> changes) throws IOException {
+        JsonNode root = treeMapper.readTree(json);
+        ObjectNode post = postNode(root);
+        if (post == null || post.path("version").asLong(-1) != expectedVersion) {
+            return null;
+        }
+        // post 是 root 里的节点，直接改，写回整个 root (类型包装保留原样)
+        changes.forEach((field, newValue) -> post.set(field, toJsonNode(newValue)));
+        post.put("version", newVersion);
+        return treeMapper.writeValueAsBytes(root);
+    }
+
+    /** 类型包装数组 [类名, 对象] 里的对象 (没有包装时就是它本身)；格式不对返回 null */
+    private static ObjectNode postNode(JsonNode root) {
+        if (root.isArray() && root.size() == 2 && root.get(1) instanceof ObjectNode post) {
+            return post;
+        }
+        return root instanceof ObjectNode post ? post : null;
+    }
+
+    /**
+     * 新值转成和缓存里一样的 JSON 格式 (用缓存的序列化器，集合会带上类型信息，例如 ["java.util.ArrayList", [...]])
+     */
+    private JsonNode toJsonNode(Object value) {
+        // List.of(...) 之类的不可变集合是 final 类，默认类型不会给它加类型包装，读缓存时就解析不了，统一换成 ArrayList
+        Object normalized = value instanceof List<?> list ? new ArrayList<>(list) : value;
+        try {
+            return treeMapper.readTree(toBytes(cacheConfiguration.getValueSerializationPair().write(normalized)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 批量清除缓存 (一个 pipeline，OutboxDispatcher 用)
+     * @param versions 文章 id -> 修改之后的版本号；版本号为 null 表示无条件删除 (例如文章被删了)
+     */
+    public void evictOlderThan(Map<Long, Long> versions) {
+        if (versions.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            versions.forEach((id, version) -> {
+                if (version == null) {
+                    redis.del(key(id));
+                } else {
+                    redis.scriptingCommands().eval(EVICT_IF_OLDER.getBytes(StandardCharsets.UTF_8), ReturnType.INTEGER, 1,
+                            key(id).getBytes(StandardCharsets.UTF_8), version.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            });
+            return null;
+        });
+    }
+
+    /** 只写回缓存 (一个 pipeline) */
+    public void putAllIfAbsent(Collection<Post> posts) {
+        if (posts.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            appendPutIfAbsent((StringRedisConnection) connection, posts);
+            return null;
+        });
+    }
+
+    /** 用和 "post" 缓存一样的格式序列化 (PostListCache 也用这个格式) */
+    public byte[] serialize(Post post) {
+        return toBytes(cacheConfiguration.getValueSerializationPair().write(post));
+    }
+
+    /** @return 解析失败时返回 null */
+    public Post deserialize(byte[] value) {
+        try {
+            Object post = cacheConfiguration.getValueSerializationPair().read(ByteBuffer.wrap(value));
+            return post instanceof Post p ? p : null;
+        } catch (Exception e) {
+            log.warn("解析文章缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<byte[]> readAll(List<Long> ids) {
+        long extendBelowMs = cachePolicies.extendBelowMs(CACHE_NAME);
+        if (extendBelowMs <= 0) {
+            byte[][] keys = new byte[ids.size()][];
+            for (int i = 0; i < ids.size(); i++) {
+                keys[i] = key(ids.get(i)).getBytes(StandardCharsets.UTF_8);
+            }
+            return stringRedisTemplate.execute(
+                    (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(keys));
+        }
+        List<String> keys = new ArrayList<>(ids.size());
+        Object[] args = new Object[ids.size() + 1];
+        args[0] = Long.toString(extendBelowMs);
+        for (int i = 0; i < ids.size(); i++) {
+            keys.add(key(ids.get(i)));
+            args[i + 1] = Long.toString(cachePolicies.ttlFor(CACHE_NAME).toMillis());
+        }
+        return stringRedisTemplate.execute(MULTI_GET_AND_EXTEND,
+                RedisSerializer.string(), (RedisSerializer) RedisSerializer.byteArray(), keys, args);
+    }
+
+    /** 和 RedisCache 一样，按 "post" 缓存的策略过期 (带抖动)；TTL 为 0 就是永不过期 */
+    private Expiration expirationFor(Post post) {
+        Duration ttl = cachePolicies.ttlFor(CACHE_NAME);
+        return ttl.isZero() ? Expiration.persistent() : Expiration.from(ttl);
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,359 @@
+package org.hzj.demo.cache;
+
+import org.hzj.demo.config.ListCacheProperties;
+import org.hzj.demo.model.Post;
+import org.hzj.demo.model.PostField;
+import org.hzj.demo.sharding.ShardedPostStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.DefaultStringTuple;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 文章列表缓存 (GET /posts)：增量维护，而不是“有写入就整个删掉”
+ *
+ * 以前 "post_list" 是 @Cacheable 缓存的【一整个 List】，任何一次写入都 allEntries 清空，
+ * 写得频繁的时候缓存几乎总是空的，findAll() 一直在重新执行。
+ *
+ * 现在拆成两部分：
+ * - post_list:ids    ZSet，成员和分数都是文章 id (决定顺序，按 id 取一页就是 ZRANGE)
+ * - post_list:items  Hash，id -> 文章 JSON (和 "post" 缓存同样的格式)
+ * - post_list:heads  Hash，id -> 去掉正文 (content) 的文章 JSON：?fields= 里没有 content 时读这个，
+ *                    正文是文章里最大的字段，列表只要标题的时候不用把所有正文从 Redis 传过来
+ * - post_list:ready  标记“列表已经完整加载过” (区分“没有文章”和“还没加载”)
+ * 写入之后 (由 OutboxDispatcher 调用)：
+ * - 新建：ZADD + HSET      修改：只有列表里有这篇时才 HSET (原地替换)      删除：ZREM + HDEL
+ *   (items 和 heads 两个 Hash 一起改)
+ * 每个操作都是一段 Lua 脚本 (原子执行)，只动这一篇文章，其他文章 / 其他页的缓存都不受影响。
+ *
+ * 重建 (冷启动 / 过期)：
+ * 1. 抢重建锁 (post_list:building)，抢不到的节点这次直接查库，不一起重建
+ * 2. 从数据库读出所有文章写进临时 key，最后用 RENAME 一次性替换 (读的人看不到“写了一半”的列表)
+ * 3. 重建期间发生的写入没法直接改 (列表还没好)，Lua 脚本会把 id 记到 post_list:dirty，
+ *    替换完成后再按这些 id 从数据库重新读一遍修正
+ *
+ * 过期时间按 "post_list" 缓存的策略 (CachePolicies，读的时候不续期：过期重建本来就是兜底)；
+ * 超出内存上限时 CacheBudgetMonitor 会删掉整个列表，之后这里不再重建，直接查库
+ */
+@Component
+public class PostListCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PostListCache.class);
+
+    public static final String CACHE_NAME = "post_list";
+
+    /** 这个缓存的所有 key (统计内存用) */
+    public static final String KEY_PATTERN = "post_list:*";
+
+    private static final String IDS_KEY = "post_list:ids";
+    private static final String ITEMS_KEY = "post_list:items";
+    private static final String HEADS_KEY = "post_list:heads";
+    private static final String READY_KEY = "post_list:ready";
+    private static final String BUILDING_KEY = "post_list:building";
+    private static final String DIRTY_KEY = "post_list:dirty";
+    private static final String TMP_IDS_KEY = "post_list:ids:tmp";
+    private static final String TMP_ITEMS_KEY = "post_list:items:tmp";
+    private static final String TMP_HEADS_KEY = "post_list:heads:tmp";
+
+    /** 重建时每条 ZADD / HSET 带多少篇文章 */
+    private static final int WRITE_CHUNK = 500;
+
+    /**
+     * 新建 / 修改一篇文章
+     * KEYS: ids, items, ready, building, dirty, heads   ARGV: id, JSON, "add" | "replace", 不带正文的 JSON
+     */
+    private static final String UPSERT =
+            "if redis.call('EXISTS', KEYS[3]) == 1 then " +
+            "  if ARGV[3] == 'add' or redis.call('HEXISTS', KEYS[2], ARGV[1]) == 1 then " +
+            "    redis.call('ZADD', KEYS[1], ARGV[1], ARGV[1]) " +
+            "    redis.call('HSET', KEYS[2], ARGV[1], ARGV[2]) " +
+            "    redis.call('HSET', KEYS[6], ARGV[1], ARGV[4]) " +
+            "  end " +
+            "elseif redis.call('EXISTS', KEYS[4]) == 1 then " +
+            "  redis.call('SADD', KEYS[5], ARGV[1]) " +
+            "end " +
+            "return 1";
+
+    /**
+     * 删除一篇文章
+     * KEYS: ids, items, ready, building, dirty, heads   ARGV: id
+     */
+    private static final String REMOVE =
+            "if redis.call('EXISTS', KEYS[3]) == 1 then " +
+            "  redis.call('ZREM', KEYS[1], ARGV[1]) " +
+            "  redis.call('HDEL', KEYS[2], ARGV[1]) " +
+            "  redis.call('HDEL', KEYS[6], ARGV[1]) " +
+            "elseif redis.call('EXISTS', KEYS[4]) == 1 then " +
+            "  redis.call('SADD', KEYS[5], ARGV[1]) " +
+            "end " +
+            "return 1";
+
+    /**
+     * 读一页：ZRANGE 取 id，再 HMGET 取文章 (分批，Lua 的 unpack 参数个数有限)
+     * 返回 {"0"} = 列表还没加载 (或者 Hash 里缺了某篇，例如升级前建的列表没有 heads，当作没加载重建一次)；
+     * {"1", json1, json2 ...} = 命中
+     * KEYS: ids, items (或 heads), ready   ARGV: start, stop
+     */
+    private static final String READ =
+            "if redis.call('EXISTS', KEYS[3]) == 0 then return {'0'} end " +
+            "local ids = redis.call('ZRANGE', KEYS[1], ARGV[1], ARGV[2]) " +
+            "local result = {'1'} " +
+            "for i = 1, #ids, 500 do " +
+            "  local chunk = {} " +
+            "  for j = i, math.min(i + 499, #ids) do chunk[#chunk + 1] = ids[j] end " +
+            "  local values = redis.call('HMGET', KEYS[2], unpack(chunk)) " +
+            "  for k = 1, #values do " +
+            "    if not values[k] then return {'0'} end " +
+            "    result[#result + 1] = values[k] " +
+            "  end " +
+            "end " +
+            "return result";
+
+    /**
+     * 重建完成：临时 key 一次性替换正式 key，并设置过期时间
+     * KEYS: tmpIds, tmpItems, ids, items, ready, tmpHeads, heads   ARGV: ttl 毫秒数 (0 = 不过期)
+     */
+    private static final String FINALIZE =
+            "local ttl = tonumber(ARGV[1]) " +
+            "redis.call('DEL', KEYS[3], KEYS[4], KEYS[7]) " +
+            "if redis.call('EXISTS', KEYS[1]) == 1 then redis.call('RENAME', KEYS[1], KEYS[3]) end " +
+            "if redis.call('EXISTS', KEYS[2]) == 1 then redis.call('RENAME', KEYS[2], KEYS[4]) end " +
+            "if redis.call('EXISTS', KEYS[6]) == 1 then redis.call('RENAME', KEYS[6], KEYS[7]) end " +
+            "redis.call('SET', KEYS[5], '1') " +
+            "if ttl > 0 then " +
+            "  for _, i in ipairs({3, 4, 5, 7}) do redis.call('PEXPIRE', KEYS[i], ttl) end " +
+            "end " +
+            "return 1";
+
+    /** 只释放自己持有的重建锁 (锁过期后被别人抢到，就不能再删) */
+    private static final DefaultRedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private PostCache postCache;
+
+    @Autowired
+    private ShardedPostStore postStore;
+
+    @Autowired
+    private ListCacheProperties properties;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private CachePolicies cachePolicies;
+
+    @Autowired
+    private CacheBudgetMonitor budgetMonitor;
+
+    // ------------------------------------------------------------------
+    // 读
+    // ------------------------------------------------------------------
+
+    /**
+     * 按 id 从小到大取 [start, stop] 这一段 (下标从 0 开始，stop = -1 表示到最后)
+     * 列表没加载时先重建；别的节点正在重建 / Redis 熔断中 (见 RedisGuard) / 超出内存上限时直接查库
+     */
+    public List<Post> range(long start, long stop) {
+        return range(start, stop, null);
+    }
+
+    /**
+     * 只要 fields 里的字段 (null = 全部)
+     * 不要正文时读 post_list:heads；直接查库时也只 SELECT 这几列 (见 ShardedPostStore.findProjected)
+     * 返回的 Post 可能还带着其他字段，输出时由 PostView 只写 fields 里的
+     */
+    public List<Post> range(long start, long stop, Set<PostField> fields) {
+        boolean withContent = PostField.needsContent(fields);
+        List<Post> cached = redisGuard.call(() -> read(start, stop, withContent), () -> null);
+        if (cached != null) {
+            return cached;
+        }
+        List<Post> all = redisGuard.isAvailable() && !budgetMonitor.isOverBudget(CACHE_NAME) ? rebuild() : null;
+        if (all == null) {
+            all = fields == null ? postStore.findAll() : postStore.findProjected(null, fields);
+        }
+        return slice(all, start, stop);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Post> read(long start, long stop, boolean withContent) {
+        String itemsKey = withContent ? ITEMS_KEY : HEADS_KEY;
+        List<byte[]> reply = stringRedisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.scriptingCommands().eval(READ.getBytes(StandardCharsets.UTF_8), ReturnType.MULTI, 3,
+                        bytes(IDS_KEY), bytes(itemsKey), bytes(READY_KEY),
+                        bytes(Long.toString(start)), bytes(Long.toString(stop))));
+        if (reply == null || reply.isEmpty() || reply.get(0)[0] == '0') {
+            return null;
+        }
+        List<Post> posts = new ArrayList<>(reply.size() - 1);
+        for (int i = 1; i < reply.size(); i++) {
+            Post post = postCache.deserialize(reply.get(i));
+            if (post == null) {
+                // 格式不对 (例如 Post 类改过字段)：当作没加载，重建一次
+                stringRedisTemplate.delete(READY_KEY);
+                return null;
+            }
+            posts.add(post);
+        }
+        return posts;
+    }
+
+    private static List<Post> slice(List<Post> all, long start, long stop) {
+        int from = (int) Math.min(start, all.size());
+        int to = stop < 0 ? all.size() : (int) Math.min(stop + 1, all.size());
+        return from >= to ? List.of() : new ArrayList<>(all.subList(from, to));
+    }
+
+    // ------------------------------------------------------------------
+    // 增量维护 (OutboxDispatcher 调用)
+    // ------------------------------------------------------------------
+
+    /**
+     * 一批写入对列表的影响，一个 pipeline 发出去 (每篇文章一段 Lua 脚本)
+     * 顺序：新建 -> 修改 -> 删除 (同一批里“建了又删”的文章最后是删掉的)
+     *
+     * @param created 新建的文章 (从数据库读出来的最新内容)
+     * @param updated 修改过的文章
+     * @param deleted 删除的文章 id
+     */
+    public void applyChanges(Collection<Post> created, Collection<Post> updated, Collection<Long> deleted) {
+        if (created.isEmpty() && updated.isEmpty() && deleted.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            created.forEach(post -> upsert(redis, post, "add"));
+            updated.forEach(post -> upsert(redis, post, "replace"));
+            for (Long id : deleted) {
+                redis.eval(REMOVE, ReturnType.INTEGER, 6,
+                        IDS_KEY, ITEMS_KEY, READY_KEY, BUILDING_KEY, DIRTY_KEY, HEADS_KEY, id.toString());
+            }
+            return null;
+        });
+    }
+
+    private void upsert(StringRedisConnection redis, Post post, String mode) {
+        redis.scriptingCommands().eval(bytes(UPSERT), ReturnType.INTEGER, 6,
+                bytes(IDS_KEY), bytes(ITEMS_KEY), bytes(READY_KEY), bytes(BUILDING_KEY), bytes(DIRTY_KEY),
+                bytes(HEADS_KEY),
+                bytes(post.getId().toString()), postCache.serialize(post), bytes(mode), head(post));
+    }
+
+    /** 去掉正文的 JSON (post_list:heads 里存的) */
+    private byte[] head(Post post) {
+        Post head = post.copy();
+        head.setContent(null);
+        return postCache.serialize(head);
+    }
+
+    // ------------------------------------------------------------------
+    // 重建
+    // ------------------------------------------------------------------
+
+    /**
+     * @return 数据库里的所有文章 (按 id 从小到大)；没抢到重建锁时返回 null
+     */
+    private List<Post> rebuild() {
+        String token = UUID.randomUUID().toString();
+        boolean locked = redisGuard.call(() -> Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(
+                BUILDING_KEY, token, Duration.ofSeconds(properties.getRebuildLockSeconds()))), () -> false);
+        if (!locked) {
+            return null;
+        }
+        try {
+            long startTime = System.currentTimeMillis();
+            // 查库不放进熔断器里 (数据库慢不能算成 Redis 慢)
+            redisGuard.run(() -> stringRedisTemplate.delete(DIRTY_KEY));
+            List<Post> posts = postStore.findAll();
+            redisGuard.run(() -> writeAll(posts));
+
+            int fixed = fixDirty();
+            log.info("文章列表缓存重建完成: {} 篇, 修正重建期间的写入 {} 篇, 耗时 {}ms",
+                    posts.size(), fixed, System.currentTimeMillis() - startTime);
+            return posts;
+        } catch (RuntimeException e) {
+            // 重建失败 (Redis 出问题)：这一次直接用查到的数据 / 查库，下次再重建
+            log.warn("文章列表缓存重建失败: {}", e.getMessage());
+            return null;
+        } finally {
+            redisGuard.call(() -> stringRedisTemplate.execute(RELEASE_LOCK, List.of(BUILDING_KEY), token), () -> 0L);
+        }
+    }
+
+    /** 写临时 key，最后一次性替换正式 key (一个 pipeline) */
+    private void writeAll(List<Post> posts) {
+        long ttlMs = cachePolicies.ttlFor(CACHE_NAME).toMillis();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.del(TMP_IDS_KEY, TMP_ITEMS_KEY, TMP_HEADS_KEY);
+            for (int i = 0; i < posts.size(); i += WRITE_CHUNK) {
+                List<Post> chunk = posts.subList(i, Math.min(i + WRITE_CHUNK, posts.size()));
+                Set<StringRedisConnection.StringTuple> tuples = new HashSet<>();
+                Map<byte[], byte[]> items = new LinkedHashMap<>();
+                Map<byte[], byte[]> heads = new LinkedHashMap<>();
+                for (Post post : chunk) {
+                    String id = post.getId().toString();
+                    tuples.add(new DefaultStringTuple(id, post.getId()));
+                    items.put(bytes(id), postCache.serialize(post));
+                    heads.put(bytes(id), head(post));
+                }
+                redis.zAdd(TMP_IDS_KEY, tuples);
+                redis.hashCommands().hMSet(bytes(TMP_ITEMS_KEY), items);
+                redis.hashCommands().hMSet(bytes(TMP_HEADS_KEY), heads);
+            }
+            redis.eval(FINALIZE, ReturnType.INTEGER, 7,
+                    TMP_IDS_KEY, TMP_ITEMS_KEY, IDS_KEY, ITEMS_KEY, READY_KEY, TMP_HEADS_KEY, HEADS_KEY,
+                    Long.toString(ttlMs));
+            return null;
+        });
+    }
+
+    /**
+     * 重建期间被修改过的文章：按 id 从数据库重新读，存在的写进列表，不存在的从列表删掉
+     */
+    private int fixDirty() {
+        Set<String> dirty = redisGuard.call(() -> {
+            Set<String> members = stringRedisTemplate.opsForSet().members(DIRTY_KEY);
+            stringRedisTemplate.delete(DIRTY_KEY);
+            return members;
+        }, () -> null);
+        if (dirty == null || dirty.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = dirty.stream().map(Long::parseLong).toList();
+        Map<Long, Post> found = postStore.findAllById(ids).stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+        List<Long> missing = ids.stream().filter(id -> !found.containsKey(id)).toList();
+        redisGuard.run(() -> applyChanges(found.values(), List.of(), missing));
+        return ids.size();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
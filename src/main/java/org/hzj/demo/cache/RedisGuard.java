@@ -0,0 +1,166 @@
+package org.hzj.demo.cache;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.lettuce.core.RedisException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.hzj.demo.config.RedisResilienceProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Redis 熔断器：所有“有降级方案”的 Redis 调用都经过这里
+ *
+ * 以前每个 Redis 调用各自 try/catch：Redis 卡住的时候，每个请求都要等满客户端超时才失败，
+ * 然后才走 catch 里的兜底逻辑；@Cacheable 读缓存失败更是直接让整个请求报错。
+ *
+ * 熔断器 (resilience4j) 统计最近 sliding-window-size 次调用：
+ * - CLOSED    正常：失败率 / 慢调用比例超过阈值 -> OPEN
+ * - OPEN      熔断：【不再访问 Redis】，立刻走降级 (本地缓存 / 查库 / 点击数先记在内存里)
+ * - HALF_OPEN 过了 open-state-ms 之后放几个请求过去试探，成功了 -> CLOSED，还失败 -> OPEN
+ * 只有 Redis 自己的异常 (连接失败、超时、命令出错) 计入失败率，业务异常照常抛出。
+ *
+ * 降级状态可以在 /actuator/health 的 redisGuard (DEGRADED) 和
+ * /actuator/metrics/resilience4j.circuitbreaker.state 里看到。
+ */
+@Component
+public class RedisGuard implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisGuard.class);
+
+    /** 降级运行：Redis 不可用，但请求还能正常返回 (所以不是 DOWN) */
+    public static final Status DEGRADED = new Status("DEGRADED", "Redis 不可用，正在降级运行");
+
+    @Autowired
+    private RedisResilienceProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private CircuitBreaker breaker;
+
+    /** Redis 恢复 (回到 CLOSED) 之后要执行的动作，例如回放缓冲的点击数 */
+    private final List<Runnable> recoveryListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(properties.getSlidingWindowSize())
+                .minimumNumberOfCalls(properties.getMinimumCalls())
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .slowCallDurationThreshold(Duration.ofMillis(properties.getSlowCallMs()))
+                .slowCallRateThreshold(properties.getSlowCallRateThreshold())
+                .waitDurationInOpenState(Duration.ofMillis(properties.getOpenStateMs()))
+                .permittedNumberOfCallsInHalfOpenState(properties.getHalfOpenCalls())
+                .recordException(RedisGuard::isRedisFailure)
+                .build();
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
+        breaker = registry.circuitBreaker("redis");
+        // resilience4j.circuitbreaker.state / calls / failure.rate ... 指标
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+
+        breaker.getEventPublisher().onStateTransition(event -> {
+            log.warn("Redis 熔断器状态变化: {}", event.getStateTransition());
+            if (event.getStateTransition().getToState() == CircuitBreaker.State.CLOSED) {
+                // 状态变化是在某个请求线程里触发的，回调放到后台线程执行，不拖慢这个请求
+                recoveryListeners.forEach(listener -> CompletableFuture.runAsync(listener)
+                        .exceptionally(e -> {
+                            log.warn("Redis 恢复后的回调执行失败: {}", e.getMessage());
+                            return null;
+                        }));
+            }
+        });
+    }
+
+    /**
+     * 调用 Redis；熔断中或者 Redis 出错时返回 fallback 的结果
+     * (fallback 不经过熔断器：里面查库慢了不会被算成 Redis 慢)
+     */
+    public <T> T call(Supplier<T> redisCall, Supplier<T> fallback) {
+        try {
+            return breaker.executeSupplier(redisCall);
+        } catch (CallNotPermittedException e) {
+            return fallback.get();
+        } catch (RuntimeException e) {
+            if (!isRedisFailure(e)) {
+                throw e;
+            }
+            log.debug("Redis 调用失败，走降级: {}", e.getMessage());
+            return fallback.get();
+        }
+    }
+
+    /**
+     * 调用 Redis，没有降级方案：熔断中直接抛 CallNotPermittedException (不等超时)
+     * 用于发件箱这类“失败了会重试”的后台任务
+     */
+    public void run(Runnable redisCall) {
+        breaker.executeRunnable(redisCall);
+    }
+
+    /** 当前是否可以访问 Redis (熔断中返回 false) */
+    public boolean isAvailable() {
+        CircuitBreaker.State state = breaker.getState();
+        return state != CircuitBreaker.State.OPEN && state != CircuitBreaker.State.FORCED_OPEN;
+    }
+
+    public boolean isClosed() {
+        return breaker.getState() == CircuitBreaker.State.CLOSED;
+    }
+
+    public void onRecovered(Runnable listener) {
+        recoveryListeners.add(listener);
+    }
+
+    /**
+     * 是不是 Redis 本身的问题 (连接失败 / 超时 / 命令出错)
+     * Lettuce 的超时会被 Spring 转换成 QueryTimeoutException
+     */
+    static boolean isRedisFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RedisConnectionFailureException
+                    || t instanceof RedisSystemException
+                    || t instanceof RedisPipelineException
+                    || t instanceof QueryTimeoutException
+                    || t instanceof RedisException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Health health() {
+        CircuitBreaker.Metrics metrics = breaker.getMetrics();
+        Health.Builder builder = isClosed() ? Health.up() : Health.status(DEGRADED);
+        return builder
+                .withDetail("state", breaker.getState())
+                .withDetail("failureRate", metrics.getFailureRate())
+                .withDetail("slowCallRate", metrics.getSlowCallRate())
+                .withDetail("notPermittedCalls", metrics.getNumberOfNotPermittedCalls())
+                .build();
+    }
+}
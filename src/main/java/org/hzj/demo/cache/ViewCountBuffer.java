@@ -0,0 +1,119 @@
+package org.hzj.demo.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.hzj.demo.config.RedisResilienceProperties;
+import org.hzj.demo.service.PostService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Redis 熔断期间的点击数缓冲：先记在内存里 (文章 id -> 还没写进 Redis 的点击数)，恢复后一次性回放
+ *
+ * - 计数用 ConcurrentHashMap.merge (同一个 key 是原子的)，回放时用 remove 把整个值取走，
+ *   取走之后再来的点击会重新开始计数，不会丢，也不会重复回放
+ * - 有上限：最多记 view-buffer-max-entries 篇文章，超出的新文章不再计数 (记在 dropped 指标里)
+ * - 回放：熔断器回到 CLOSED 时立刻回放一次；另外每 view-replay-interval-ms 检查一次 (兜底)
+ * - 进程在恢复之前重启，缓冲的点击数会丢失 (点击数本来就只是一个“大致”的统计)
+ */
+@Component
+public class ViewCountBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(ViewCountBuffer.class);
+
+    @Autowired
+    private RedisResilienceProperties properties;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+
+    private Counter dropped;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("redis.degraded.view_buffer.size", pending, Map::size)
+                .description("还没写进 Redis 的点击数涉及的文章数")
+                .register(meterRegistry);
+        dropped = Counter.builder("redis.degraded.view_buffer.dropped")
+                .description("缓冲已满、没有计入的点击数")
+                .register(meterRegistry);
+        redisGuard.onRecovered(this::replay);
+    }
+
+    /**
+     * 记一次点击
+     * @return 这篇文章在缓冲里的点击数 (还没写进 Redis 的部分)
+     */
+    public long increment(Long postId) {
+        if (pending.size() >= properties.getViewBufferMaxEntries() && !pending.containsKey(postId)) {
+            dropped.increment();
+            return 0;
+        }
+        return pending.merge(postId, 1L, Long::sum);
+    }
+
+    /** 一次记多次点击 (热点文章本机累加的点击数写 Redis 失败时转到这里) */
+    public void add(Long postId, long delta) {
+        if (pending.size() >= properties.getViewBufferMaxEntries() && !pending.containsKey(postId)) {
+            dropped.increment(delta);
+            return;
+        }
+        pending.merge(postId, delta, Long::sum);
+    }
+
+    /**
+     * 把缓冲的点击数写回 Redis (一个 pipeline，每篇文章一条 ZINCRBY)
+     * 写失败就原样加回缓冲，下次再试
+     */
+    @Scheduled(fixedDelayString = "${redis-resilience.view-replay-interval-ms:5000}")
+    public void replay() {
+        if (pending.isEmpty() || !redisGuard.isClosed()) {
+            return;
+        }
+        Map<Long, Long> batch = new HashMap<>();
+        for (Long id : List.copyOf(pending.keySet())) {
+            Long delta = pending.remove(id);
+            if (delta != null) {
+                batch.put(id, delta);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        boolean replayed = redisGuard.call(() -> {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                batch.forEach((id, delta) ->
+                        redis.zIncrBy(PostService.POST_VIEW_COUNT_KEY, delta, id.toString()));
+                return null;
+            });
+            return true;
+        }, () -> false);
+        if (replayed) {
+            log.info("已回放 Redis 降级期间缓冲的点击数: {} 篇文章", batch.size());
+        } else {
+            batch.forEach((id, delta) -> pending.merge(id, delta, Long::sum));
+        }
+    }
+}
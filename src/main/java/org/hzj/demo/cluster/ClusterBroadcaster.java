@@ -0,0 +1,73 @@
+package org.hzj.demo.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 集群广播 (Redis Pub/Sub)：一个节点发消息，其他所有节点都能收到
+ *
+ * 用途：每个节点内存里都有一份“本地状态” (例如标签位图索引)，
+ * 某个节点处理了写请求后，通过广播让其他节点也更新自己的那一份。
+ *
+ * 注意：
+ * 1. 消息会带上“发送者节点号”，节点收到自己发的消息会直接忽略 (本地已经处理过了)
+ * 2. Pub/Sub 不保证送达 (订阅者断线期间的消息会丢)，
+ *    所以使用方必须有“兜底” (例如定期 / 启动时全量重建)
+ */
+@Component
+public class ClusterBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterBroadcaster.class);
+
+    private static final char SEPARATOR = '|';
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 广播一条消息 (失败只记日志，不影响主流程)
+     */
+    public void publish(String channel, String payload) {
+        try {
+            stringRedisTemplate.convertAndSend(channel, nodeId + SEPARATOR + payload);
+        } catch (Exception e) {
+            log.warn("集群广播失败 channel={}: {}", channel, e.getMessage());
+        }
+    }
+
+    /**
+     * 订阅某个频道 (只会收到【其他节点】发的消息)
+     */
+    public void subscribe(String channel, Consumer<String> handler) {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int sep = body.indexOf(SEPARATOR);
+            if (sep < 0 || body.substring(0, sep).equals(nodeId)) {
+                return;
+            }
+            try {
+                handler.accept(body.substring(sep + 1));
+            } catch (Exception e) {
+                log.warn("处理集群广播失败 channel={}: {}", channel, e.getMessage());
+            }
+        }, new ChannelTopic(channel));
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,20 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 管理员配置 (前缀 "admin")
+ * 列表里的手机号登录后带 ROLE_ADMIN 角色，可以调用会改动数据的运维接口 (例如 POST /actuator/resharding)
+ * 默认是空的：没配置就没有人是管理员 (宁可谁都调不了，也不能谁都能调)
+ */
+@ConfigurationProperties(prefix = "admin")
+public class AdminProperties {
+
+    private List<String> phones = new ArrayList<>();
+
+    public List<String> getPhones() { return phones; }
+    public void setPhones(List<String> phones) { this.phones = phones; }
+}
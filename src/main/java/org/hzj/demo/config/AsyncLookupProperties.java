@@ -0,0 +1,31 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 异步查询线程池的配置 (前缀 "async-lookup")，见 AsyncLookups
+ */
+@ConfigurationProperties(prefix = "async-lookup")
+public class AsyncLookupProperties {
+
+    /** 执行 Redis 查询的线程数 */
+    private int redisThreads = 16;
+
+    /** 执行数据库查询的线程数 (不要超过连接池大小 (HikariCP 默认 10)，多出来的线程只会排队等连接) */
+    private int dbThreads = 10;
+
+    /** 每个线程池最多排队多少个任务，再多就直接拒绝 (503)，不让请求越堆越多 */
+    private int queueCapacity = 256;
+
+    /** 每次查询的默认期限 (毫秒)：超过了这个查询就算失败 (504)，不会一直等下去 */
+    private long defaultDeadlineMs = 2_000;
+
+    public int getRedisThreads() { return redisThreads; }
+    public void setRedisThreads(int redisThreads) { this.redisThreads = redisThreads; }
+    public int getDbThreads() { return dbThreads; }
+    public void setDbThreads(int dbThreads) { this.dbThreads = dbThreads; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+    public long getDefaultDeadlineMs() { return defaultDeadlineMs; }
+    public void setDefaultDeadlineMs(long defaultDeadlineMs) { this.defaultDeadlineMs = defaultDeadlineMs; }
+}
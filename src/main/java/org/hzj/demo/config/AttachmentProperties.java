@@ -0,0 +1,35 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 附件 / 图片上传的配置 (前缀 "attachment")，见 AttachmentStore
+ * 单个文件的大小上限在 spring.servlet.multipart.max-file-size
+ */
+@ConfigurationProperties(prefix = "attachment")
+public class AttachmentProperties {
+
+    /**
+     * 附件存放的目录
+     * 文件名就是内容的 SHA-256，同样的内容只存一份；多实例部署时所有实例要挂同一个目录 (共享卷)
+     */
+    private String directory = "data/attachments";
+
+    /** 缩略图的宽度 (像素)；原图不比它宽就不生成，直接用原图 */
+    private int thumbnailWidth = 320;
+
+    /** 图片最多多少像素 (宽 × 高)，超过的拒绝上传 (防止“解压炸弹”：文件很小、解码后要几个 GB 内存) */
+    private long maxImagePixels = 50_000_000;
+
+    /** 下载时的 Cache-Control max-age (秒)：地址里带着内容的哈希，内容不会变，可以缓存很久 */
+    private long cacheMaxAgeSeconds = 365L * 24 * 3600;
+
+    public String getDirectory() { return directory; }
+    public void setDirectory(String directory) { this.directory = directory; }
+    public int getThumbnailWidth() { return thumbnailWidth; }
+    public void setThumbnailWidth(int thumbnailWidth) { this.thumbnailWidth = thumbnailWidth; }
+    public long getMaxImagePixels() { return maxImagePixels; }
+    public void setMaxImagePixels(long maxImagePixels) { this.maxImagePixels = maxImagePixels; }
+    public long getCacheMaxAgeSeconds() { return cacheMaxAgeSeconds; }
+    public void setCacheMaxAgeSeconds(long cacheMaxAgeSeconds) { this.cacheMaxAgeSeconds = cacheMaxAgeSeconds; }
+}
@@ -0,0 +1,58 @@
+package org.hzj.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.hzj.demo.vo.ProtobufResultHttpMessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * 接口响应的二进制格式：按请求头 Accept 选择输出格式 (内容协商)
+ * - 没有 Accept / Accept: application/json / *\/*  → JSON (和以前一样)
+ * - Accept: application/cbor                      → CBOR (JSON 的二进制版，字段和 JSON 完全一样)
+ * - Accept: application/x-protobuf                → Protobuf (消息定义见 resources/proto/blog.proto)
+ *
+ * 知识点：Spring MVC 拿 Accept 和每个 HttpMessageConverter 支持的 MediaType 逐个匹配，
+ * 第一个能写的 converter 负责输出；JSON 排在前面，所以不带 Accept 的请求仍然是 JSON。
+ * GlobalExceptionHandler 的错误响应也是 ResultVO，同样走这套协商，客户端不用单独处理 JSON 格式的错误。
+ *
+ * 移动端 / 服务间调用可以用二进制格式：数字不用转成十进制字符串、字段名不重复 (Protobuf) ，
+ * 响应更小，解析也更快；浏览器和调试时继续用 JSON。
+ */
+@Configuration
+public class BinaryFormatConfig implements WebMvcConfigurer {
+
+    // Spring Boot 配置好的 builder (prototype，每次注入一个新的)：带着 JacksonConfig 里注册的 Module 和日期格式
+    @Autowired
+    private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // CBOR 和 JSON 用同一套配置，ResponseJsonModule 的专用序列化器对 CBORGenerator 一样有效
+        ObjectMapper cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+        MappingJackson2CborHttpMessageConverter cbor = new MappingJackson2CborHttpMessageConverter(cborMapper);
+        // classpath 上有 jackson-dataformat-cbor 时 Spring MVC 自己会加一个 CBOR converter，
+        // 但它用的是全新的 ObjectMapper (没有上面的 Module)，这里原地换掉
+        boolean replaced = false;
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2CborHttpMessageConverter) {
+                converters.set(i, cbor);
+                replaced = true;
+                break;
+            }
+        }
+        if (!replaced) {
+            converters.add(cbor);
+        }
+        converters.add(new ProtobufResultHttpMessageConverter(objectMapper));
+    }
+}
@@ -0,0 +1,80 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Redis 缓存的过期 / 内存策略 (前缀 "cache-policy")，见 CachePolicies 和 CacheBudgetMonitor
+ *
+ * 每个缓存 (post、post_list，以后新加的也一样) 单独配置，没配置的缓存用 defaults
+ */
+@ConfigurationProperties(prefix = "cache-policy")
+public class CachePolicyProperties {
+
+    /** 一个缓存的策略 */
+    public static class Policy {
+
+        /** 过期时间 (秒)；0 = 永不过期 (不建议，内存会一直涨) */
+        private long ttlSeconds = 3600;
+
+        /**
+         * 随机抖动 (百分比)：实际过期时间 = ttl x (1 + [0, jitter%) 之间的随机数)
+         * 同一批写进去的 key (例如启动预热) 不会在同一秒一起过期、一起回源
+         */
+        private int jitterPercent = 10;
+
+        /**
+         * 读的时候续期：剩余时间不到 ttl 的 extend-below-percent% 时，重新设置成一个完整的 ttl
+         * 经常被读的 key 一直留着，没人读的到期自然删掉 (只有后半段被读过才续期，不是每次读都写)
+         */
+        private boolean extendOnRead = true;
+
+        private int extendBelowPercent = 50;
+
+        /** 内存上限 (MB)；0 = 不限制。超出之后按剩余时间从短到长删 key，见 CacheBudgetMonitor */
+        private long maxMemoryMb = 0;
+
+        public long getTtlSeconds() { return ttlSeconds; }
+        public void setTtlSeconds(long ttlSeconds) { this.ttlSeconds = ttlSeconds; }
+        public int getJitterPercent() { return jitterPercent; }
+        public void setJitterPercent(int jitterPercent) { this.jitterPercent = jitterPercent; }
+        public boolean isExtendOnRead() { return extendOnRead; }
+        public void setExtendOnRead(boolean extendOnRead) { this.extendOnRead = extendOnRead; }
+        public int getExtendBelowPercent() { return extendBelowPercent; }
+        public void setExtendBelowPercent(int extendBelowPercent) { this.extendBelowPercent = extendBelowPercent; }
+        public long getMaxMemoryMb() { return maxMemoryMb; }
+        public void setMaxMemoryMb(long maxMemoryMb) { this.maxMemoryMb = maxMemoryMb; }
+    }
+
+    /** 没有单独配置的缓存用这个 */
+    private Policy defaults = new Policy();
+
+    /** 缓存名 -> 策略 */
+    private Map<String, Policy> caches = new LinkedHashMap<>();
+
+    /** 多久统计一次各缓存的 key 数和内存 (毫秒) */
+    private long statsIntervalMs = 300_000;
+
+    /** 统计内存时抽样多少个 key 执行 MEMORY USAGE (平均值 x key 数 = 估算的总内存) */
+    private int memorySampleSize = 200;
+
+    /** 超出内存上限时，一次最多删多少个 key (剩下的下一轮再删) */
+    private int maxEvictionsPerRun = 10_000;
+
+    public Policy policyFor(String cacheName) {
+        return caches.getOrDefault(cacheName, defaults);
+    }
+
+    public Policy getDefaults() { return defaults; }
+    public void setDefaults(Policy defaults) { this.defaults = defaults; }
+    public Map<String, Policy> getCaches() { return caches; }
+    public void setCaches(Map<String, Policy> caches) { this.caches = caches; }
+    public long getStatsIntervalMs() { return statsIntervalMs; }
+    public void setStatsIntervalMs(long statsIntervalMs) { this.statsIntervalMs = statsIntervalMs; }
+    public int getMemorySampleSize() { return memorySampleSize; }
+    public void setMemorySampleSize(int memorySampleSize) { this.memorySampleSize = memorySampleSize; }
+    public int getMaxEvictionsPerRun() { return maxEvictionsPerRun; }
+    public void setMaxEvictionsPerRun(int maxEvictionsPerRun) { this.maxEvictionsPerRun = maxEvictionsPerRun; }
+}
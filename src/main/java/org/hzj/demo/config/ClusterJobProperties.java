@@ -0,0 +1,26 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 集群定时任务的配置 (前缀 "cluster-job")，见 ClusterJobScheduler
+ */
+@ConfigurationProperties(prefix = "cluster-job")
+public class ClusterJobProperties {
+
+    /** 租约的过期时间 (毫秒)：任务运行期间每 1/3 续期一次；节点卡住 / 挂掉之后最多这么久别的节点才能接手 */
+    private long leaseTtlMs = 30_000;
+
+    /** 节点心跳间隔 (毫秒) */
+    private long heartbeatIntervalMs = 5_000;
+
+    /** 多久没有心跳就认为节点已经下线 (毫秒)，它负责的分片会分给其他节点 */
+    private long nodeTtlMs = 15_000;
+
+    public long getLeaseTtlMs() { return leaseTtlMs; }
+    public void setLeaseTtlMs(long leaseTtlMs) { this.leaseTtlMs = leaseTtlMs; }
+    public long getHeartbeatIntervalMs() { return heartbeatIntervalMs; }
+    public void setHeartbeatIntervalMs(long heartbeatIntervalMs) { this.heartbeatIntervalMs = heartbeatIntervalMs; }
+    public long getNodeTtlMs() { return nodeTtlMs; }
+    public void setNodeTtlMs(long nodeTtlMs) { this.nodeTtlMs = nodeTtlMs; }
+}
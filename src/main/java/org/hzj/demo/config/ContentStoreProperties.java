@@ -0,0 +1,58 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 大正文外置存储的配置 (前缀 "content-store")，见 ContentSegmentStore、PostContentStore
+ */
+@ConfigurationProperties(prefix = "content-store")
+public class ContentStoreProperties {
+
+    /**
+     * 默认关闭 (正文全部存在 blog_posts.content)
+     * 段文件在本机磁盘上，只适合单实例部署；多实例部署请保持关闭
+     */
+    private boolean enabled = false;
+
+    /** 段文件所在的目录 (同一时间只能有一个进程使用，启动时会加文件锁) */
+    private String directory = "data/content";
+
+    /** 正文 (UTF-8) 超过多少字节就存到段文件里 */
+    private int thresholdBytes = 16 * 1024;
+
+    /** 外置之后 content 列里留下的摘要长度 (字符数) */
+    private int excerptChars = 200;
+
+    /** 单个段文件的大小上限 (MB)，写满就换一个新文件 (mmap 一次最多映射 2GB，所以不能超过 2047) */
+    private int segmentMaxMb = 256;
+
+    /** 压缩 (回收已经没有文章引用的正文) 的间隔 (毫秒) */
+    private long compactIntervalMs = 3_600_000;
+
+    /** 一个段文件里没用的字节占多少 (%) 以上才压缩它 */
+    private int compactGarbagePercent = 50;
+
+    /**
+     * 宽限期 (毫秒)：
+     * 1. 这段时间内写入 / 复用过的正文，压缩时一律当作还在用 (文章的事务可能还没提交)
+     * 2. 压缩掉的段文件过这么久才删除 (正在 sendfile 的响应还在读它)
+     */
+    private long graceMs = 600_000;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public String getDirectory() { return directory; }
+    public void setDirectory(String directory) { this.directory = directory; }
+    public int getThresholdBytes() { return thresholdBytes; }
+    public void setThresholdBytes(int thresholdBytes) { this.thresholdBytes = thresholdBytes; }
+    public int getExcerptChars() { return excerptChars; }
+    public void setExcerptChars(int excerptChars) { this.excerptChars = excerptChars; }
+    public int getSegmentMaxMb() { return segmentMaxMb; }
+    public void setSegmentMaxMb(int segmentMaxMb) { this.segmentMaxMb = segmentMaxMb; }
+    public long getCompactIntervalMs() { return compactIntervalMs; }
+    public void setCompactIntervalMs(long compactIntervalMs) { this.compactIntervalMs = compactIntervalMs; }
+    public int getCompactGarbagePercent() { return compactGarbagePercent; }
+    public void setCompactGarbagePercent(int compactGarbagePercent) { this.compactGarbagePercent = compactGarbagePercent; }
+    public long getGraceMs() { return graceMs; }
+    public void setGraceMs(long graceMs) { this.graceMs = graceMs; }
+}
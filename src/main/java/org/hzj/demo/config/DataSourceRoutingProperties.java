@@ -0,0 +1,58 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读写分离配置 (前缀 "datasource-routing")
+ * 主库仍然读取 spring.datasource.*，这里只配置“从库”列表
+ */
+@ConfigurationProperties(prefix = "datasource-routing")
+public class DataSourceRoutingProperties {
+
+    /** 默认关闭：只有一个 MySQL 的时候，什么都不变 */
+    private boolean enabled = false;
+
+    /** 从库列表 (可以有多个，读请求在健康的从库之间轮询) */
+    private List<Replica> replicas = new ArrayList<>();
+
+    /** 从库健康检查间隔 (毫秒) */
+    private long healthCheckIntervalMs = 5000;
+
+    /** 健康检查时 Connection.isValid() 的超时 (秒) */
+    private int healthCheckTimeoutSeconds = 1;
+
+    /**
+     * “读己之写”窗口 (毫秒)：
+     * 用户写完之后的这段时间里，他的读请求一律走主库，避免读到还没同步过来的旧数据
+     * (应当大于主从复制的正常延迟)
+     */
+    private long readYourWritesWindowMs = 5000;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public List<Replica> getReplicas() { return replicas; }
+    public void setReplicas(List<Replica> replicas) { this.replicas = replicas; }
+    public long getHealthCheckIntervalMs() { return healthCheckIntervalMs; }
+    public void setHealthCheckIntervalMs(long healthCheckIntervalMs) { this.healthCheckIntervalMs = healthCheckIntervalMs; }
+    public int getHealthCheckTimeoutSeconds() { return healthCheckTimeoutSeconds; }
+    public void setHealthCheckTimeoutSeconds(int healthCheckTimeoutSeconds) { this.healthCheckTimeoutSeconds = healthCheckTimeoutSeconds; }
+    public long getReadYourWritesWindowMs() { return readYourWritesWindowMs; }
+    public void setReadYourWritesWindowMs(long readYourWritesWindowMs) { this.readYourWritesWindowMs = readYourWritesWindowMs; }
+
+    /** 单个从库的连接信息 */
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+    }
+}
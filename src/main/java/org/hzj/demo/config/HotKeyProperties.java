@@ -0,0 +1,50 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 热点 key 探测配置 (前缀 "hot-key")，见 HotKeyDetector
+ */
+@ConfigurationProperties(prefix = "hot-key")
+public class HotKeyProperties {
+
+    private boolean enabled = true;
+
+    /** Count-Min Sketch 每一行的计数器个数 (取 2 的幂)；越大误差越小 */
+    private int sketchWidth = 4096;
+
+    /** Count-Min Sketch 的行数 (独立哈希函数个数) */
+    private int sketchDepth = 4;
+
+    /** 统计窗口 (毫秒)：每个窗口结束时清零重新计数 */
+    private long windowMs = 1000;
+
+    /** 一个窗口内 (本节点) 访问超过多少次算热点 */
+    private long threshold = 200;
+
+    /** /actuator/hotkeys 里显示访问最多的前几个 */
+    private int topK = 20;
+
+    /** 成为热点之后保持多久 (毫秒)；期间还是热点就自动续期 */
+    private long promoteMs = 10_000;
+
+    /** 热点文章的本地副本最多用多久 (毫秒)，超过之后回 Redis 读一次新的 */
+    private long replicaTtlMs = 1000;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public int getSketchWidth() { return sketchWidth; }
+    public void setSketchWidth(int sketchWidth) { this.sketchWidth = sketchWidth; }
+    public int getSketchDepth() { return sketchDepth; }
+    public void setSketchDepth(int sketchDepth) { this.sketchDepth = sketchDepth; }
+    public long getWindowMs() { return windowMs; }
+    public void setWindowMs(long windowMs) { this.windowMs = windowMs; }
+    public long getThreshold() { return threshold; }
+    public void setThreshold(long threshold) { this.threshold = threshold; }
+    public int getTopK() { return topK; }
+    public void setTopK(int topK) { this.topK = topK; }
+    public long getPromoteMs() { return promoteMs; }
+    public void setPromoteMs(long promoteMs) { this.promoteMs = promoteMs; }
+    public long getReplicaTtlMs() { return replicaTtlMs; }
+    public void setReplicaTtlMs(long replicaTtlMs) { this.replicaTtlMs = replicaTtlMs; }
+}
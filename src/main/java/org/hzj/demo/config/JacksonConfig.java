@@ -0,0 +1,24 @@
+package org.hzj.demo.config;
+
+import com.fasterxml.jackson.databind.Module;
+import org.hzj.demo.vo.ResponseJsonModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring MVC 输出 JSON 用的 ObjectMapper 的配置
+ *
+ * 知识点：容器里的 Jackson Module Bean 会被 Spring Boot 自动注册到它创建的 ObjectMapper 上
+ * (JacksonAutoConfiguration)，所以这里只需要声明一个 Bean，不用自己 new ObjectMapper。
+ *
+ * 注意：Redis 缓存用的是 RedisConfig 里单独 new 的 ObjectMapper (带类型信息)，不受影响。
+ */
+@Configuration
+public class JacksonConfig {
+
+    /** ResultVO / Post / FeedPage 的专用序列化器，见 ResponseJsonModule */
+    @Bean
+    public Module responseJsonModule() {
+        return new ResponseJsonModule();
+    }
+}
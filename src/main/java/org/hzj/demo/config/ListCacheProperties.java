@@ -0,0 +1,17 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 文章列表缓存配置 (前缀 "list-cache")，见 PostListCache
+ * 过期时间在 cache-policy.caches.post_list 里配置 (和其他缓存一起)
+ */
+@ConfigurationProperties(prefix = "list-cache")
+public class ListCacheProperties {
+
+    /** 重建锁的有效期 (秒)：同一时间只有一个节点从数据库重建，其他节点这段时间直接查库 */
+    private long rebuildLockSeconds = 60;
+
+    public long getRebuildLockSeconds() { return rebuildLockSeconds; }
+    public void setRebuildLockSeconds(long rebuildLockSeconds) { this.rebuildLockSeconds = rebuildLockSeconds; }
+}
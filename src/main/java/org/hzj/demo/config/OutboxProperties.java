@@ -0,0 +1,34 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 事务性发件箱配置 (前缀 "outbox")
+ */
+@ConfigurationProperties(prefix = "outbox")
+public class OutboxProperties {
+
+    /** 每次从一个库里认领多少个事件 */
+    private int batchSize = 100;
+
+    /**
+     * 兜底轮询间隔 (毫秒)
+     * 正常情况下写完文章会立刻唤醒分发器，轮询只是为了：重试失败的事件、处理其他节点崩溃前没处理完的事件
+     */
+    private long pollIntervalMs = 1000;
+
+    /** 最多重试几次，超过之后不再自动处理 (见 /actuator/health 里的 outbox) */
+    private int maxAttempts = 10;
+
+    /** 重试间隔：1s, 2s, 4s ... 最长不超过这个值 (毫秒) */
+    private long maxBackoffMs = 300_000;
+
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+    public long getPollIntervalMs() { return pollIntervalMs; }
+    public void setPollIntervalMs(long pollIntervalMs) { this.pollIntervalMs = pollIntervalMs; }
+    public int getMaxAttempts() { return maxAttempts; }
+    public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+    public long getMaxBackoffMs() { return maxBackoffMs; }
+    public void setMaxBackoffMs(long maxBackoffMs) { this.maxBackoffMs = maxBackoffMs; }
+}
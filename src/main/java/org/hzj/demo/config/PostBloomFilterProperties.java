@@ -0,0 +1,48 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 文章 id 布隆过滤器 + 不存在缓存的配置 (前缀 "post-bloom")，见 PostBloomFilter
+ */
+@ConfigurationProperties(prefix = "post-bloom")
+public class PostBloomFilterProperties {
+
+    private boolean enabled = true;
+
+    /** 预计的文章数 (重建时按 max(这个值, 实际文章数 x 2) 分配位数组) */
+    private long expectedPosts = 1_000_000;
+
+    /** 期望的误判率 (不存在的 id 被判断成“可能存在”的概率) */
+    private double falsePositiveRate = 0.01;
+
+    /** 定期全量重建的间隔 (毫秒)：删掉的文章只有重建之后才会从过滤器里消失 */
+    private long rebuildIntervalMs = 3_600_000;
+
+    /**
+     * 雪花 id 里的时间在最近多少秒内的，不查过滤器 (直接放行)
+     * 别的节点刚创建的文章，广播可能还没到，不能误判成“不存在”
+     */
+    private long recentIdSeconds = 30;
+
+    /** “确认不存在”的 id 缓存多久 (秒)：布隆过滤器误判的 id 不会反复查库 */
+    private long negativeCacheTtlSeconds = 30;
+
+    /** “确认不存在”的 id 最多缓存多少个 */
+    private int negativeCacheMaxEntries = 10_000;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public long getExpectedPosts() { return expectedPosts; }
+    public void setExpectedPosts(long expectedPosts) { this.expectedPosts = expectedPosts; }
+    public double getFalsePositiveRate() { return falsePositiveRate; }
+    public void setFalsePositiveRate(double falsePositiveRate) { this.falsePositiveRate = falsePositiveRate; }
+    public long getRebuildIntervalMs() { return rebuildIntervalMs; }
+    public void setRebuildIntervalMs(long rebuildIntervalMs) { this.rebuildIntervalMs = rebuildIntervalMs; }
+    public long getRecentIdSeconds() { return recentIdSeconds; }
+    public void setRecentIdSeconds(long recentIdSeconds) { this.recentIdSeconds = recentIdSeconds; }
+    public long getNegativeCacheTtlSeconds() { return negativeCacheTtlSeconds; }
+    public void setNegativeCacheTtlSeconds(long negativeCacheTtlSeconds) { this.negativeCacheTtlSeconds = negativeCacheTtlSeconds; }
+    public int getNegativeCacheMaxEntries() { return negativeCacheMaxEntries; }
+    public void setNegativeCacheMaxEntries(int negativeCacheMaxEntries) { this.negativeCacheMaxEntries = negativeCacheMaxEntries; }
+}
@@ -0,0 +1,152 @@
+package org.hzj.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hzj.demo.datasource.ReadWriteRoutingDataSource;
+import org.hzj.demo.datasource.ReadYourWrites;
+import org.hzj.demo.datasource.ReplicaSet;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 读写分离的 DataSource 装配 (datasource-routing.enabled=true 时生效)
+ *
+ * 最终结构：
+ *   LazyConnectionDataSourceProxy
+ *     └── ReadWriteRoutingDataSource
+ *           ├── primary   (spring.datasource.*)
+ *           ├── replica-0 (datasource-routing.replicas[0])
+ *           └── replica-1 ...
+ *
+ * 知识点：为什么要 LazyConnectionDataSourceProxy？
+ * JPA 的事务一开始 (doBegin) 就会去拿连接，而 Spring 是在 doBegin【之后】
+ * 才把 “当前事务是只读的” 这个标记放进 TransactionSynchronizationManager。
+ * Lazy 代理先给一个“假连接”，等第一条 SQL 真正执行时才去路由、拿真连接，
+ * 这时候 readOnly 标记已经就位了。
+ *
+ * 我们自己定义了 DataSource Bean，Spring Boot 默认的 DataSource 自动配置就会“让路”。
+ * (同时开启了分库时，由 ShardingDataSourceConfig 负责装配，每个库各自读写分离)
+ */
+@Configuration
+@ConditionalOnExpression("${datasource-routing.enabled:false} && !${sharding.enabled:false}")
+public class ReadWriteDataSourceConfig {
+
+    @Bean
+    public ReplicaSet replicaSet(DataSourceProperties primaryProperties,
+                                 DataSourceRoutingProperties routingProperties,
+                                 Environment environment) {
+        return buildReplicaSet("replica-", routingProperties.getReplicas(), primaryProperties.determineUsername(),
+                primaryProperties.determinePassword(), primaryProperties, routingProperties, environment);
+    }
+
+    /**
+     * 按配置创建一组从库 (分库时每个库也用它创建自己的从库)
+     * 从库没配置用户名 / 密码时，沿用对应主库的
+     */
+    static ReplicaSet buildReplicaSet(String poolPrefix,
+                                      List<DataSourceRoutingProperties.Replica> configured,
+                                      String defaultUsername,
+                                      String defaultPassword,
+                                      DataSourceProperties primaryProperties,
+                                      DataSourceRoutingProperties routingProperties,
+                                      Environment environment) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < configured.size(); i++) {
+            DataSourceRoutingProperties.Replica replica = configured.get(i);
+            HikariDataSource dataSource = buildPool(primaryProperties, environment, poolPrefix + i,
+                    replica.getUrl(),
+                    replica.getUsername() != null ? replica.getUsername() : defaultUsername,
+                    replica.getPassword() != null ? replica.getPassword() : defaultPassword);
+            dataSource.setReadOnly(true);
+            replicas.put(poolPrefix + i, dataSource);
+        }
+        return new ReplicaSet(replicas, routingProperties.getHealthCheckTimeoutSeconds());
+    }
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties primaryProperties,
+                                 ReplicaSet replicaSet,
+                                 ReadYourWrites readYourWrites,
+                                 Environment environment) {
+        HikariDataSource primary = primaryProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        bindHikari(environment, primary);
+        primary.setPoolName("primary");
+
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replicaSet, readYourWrites);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * 定时健康检查：把连不上的从库摘掉，恢复的加回来
+     */
+    @Bean
+    public ReplicaHealthCheck replicaHealthCheck(ReplicaSet replicaSet) {
+        return new ReplicaHealthCheck(replicaSet);
+    }
+
+    /**
+     * /actuator/health 里的 "replicas"：全部从库都挂了时显示 DOWN (此时读请求已回退到主库)
+     */
+    @Bean
+    public HealthIndicator replicasHealthIndicator(ReplicaSet replicaSet) {
+        return () -> {
+            Health.Builder builder = replicaSet.getHealthy().isEmpty() && !replicaSet.getAll().isEmpty()
+                    ? Health.down() : Health.up();
+            return builder
+                    .withDetail("configured", replicaSet.getAll())
+                    .withDetail("healthy", replicaSet.getHealthy())
+                    .build();
+        };
+    }
+
+    /**
+     * 创建一个 Hikari 连接池，沿用主库的驱动和连接池参数 (spring.datasource.hikari.*)
+     */
+    static HikariDataSource buildPool(DataSourceProperties primaryProperties, Environment environment,
+                                      String poolName, String url, String username, String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(primaryProperties.determineDriverClassName())
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        bindHikari(environment, dataSource);
+        dataSource.setPoolName(poolName);
+        return dataSource;
+    }
+
+    static void bindHikari(Environment environment, HikariDataSource dataSource) {
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+    }
+
+    public static class ReplicaHealthCheck {
+        private final ReplicaSet replicaSet;
+
+        ReplicaHealthCheck(ReplicaSet replicaSet) {
+            this.replicaSet = replicaSet;
+        }
+
+        @Scheduled(fixedDelayString = "${datasource-routing.health-check-interval-ms:5000}")
+        public void check() {
+            replicaSet.checkHealth();
+        }
+    }
+}
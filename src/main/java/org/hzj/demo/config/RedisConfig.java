@@ -3,14 +3,23 @@ package org.hzj.demo.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.hzj.demo.cache.CachePolicies;
+import org.hzj.demo.cache.GuardedCacheManager;
+import org.hzj.demo.cache.LocalPostCache;
+import org.hzj.demo.cache.RedisGuard;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
-import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Spring Cache 的 Redis 配置类
@@ -56,12 +65,46 @@ public class RedisConfig {
                 // 我们把它改成我们刚配置好的 JSON 序列化器
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jsonSerializer))
 
-                // (可选) 设置缓存默认过期时间，例如 30 分钟
-                // .entryTtl(Duration.ofMinutes(30))
+                // 过期时间不在这里设置：每个缓存有自己的 TTL (见 CachePolicies / cacheManager)
 
                 // 禁用缓存 null 值（防止缓存穿透）
                 .disableCachingNullValues();
 
         return config;
     }
-}
\ No newline at end of file
+
+    /**
+     * Spring Cache 的 CacheManager：Redis 缓存外面再套一层熔断器 (见 GuardedCacheManager)
+     * 自己定义之后，Spring Boot 就不再自动创建 RedisCacheManager
+     *
+     * 每个缓存按自己的策略过期 (cache-policy.caches.{name})；没单独配置的缓存用 cache-policy.defaults
+     */
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     CachePolicies cachePolicies,
+                                     RedisGuard redisGuard,
+                                     LocalPostCache localPostCache) {
+        Map<String, RedisCacheConfiguration> perCache = new HashMap<>();
+        for (String name : cachePolicies.springCacheNames()) {
+            perCache.put(name, cachePolicies.configFor(name));
+        }
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                // 没有列出来的缓存名 policyFor 取到的就是 defaults
+                .cacheDefaults(cachePolicies.configFor(""))
+                .withInitialCacheConfigurations(perCache)
+                .build();
+        redisCacheManager.initializeCaches();
+        return new GuardedCacheManager(redisCacheManager, redisGuard, localPostCache);
+    }
+
+    /**
+     * Redis Pub/Sub 的“订阅容器” (集群广播 ClusterBroadcaster 用它订阅频道)
+     * 它在后台维护一条订阅连接，收到消息后回调我们注册的监听器
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
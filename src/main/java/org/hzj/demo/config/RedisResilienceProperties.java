@@ -0,0 +1,66 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Redis 熔断 / 降级配置 (前缀 "redis-resilience")，见 RedisGuard
+ */
+@ConfigurationProperties(prefix = "redis-resilience")
+public class RedisResilienceProperties {
+
+    /** 统计最近多少次 Redis 调用 */
+    private int slidingWindowSize = 50;
+
+    /** 至少有这么多次调用之后才开始计算失败率 (刚启动时一两次失败不熔断) */
+    private int minimumCalls = 20;
+
+    /** 失败率超过多少 (%) 就熔断 */
+    private float failureRateThreshold = 50;
+
+    /** 超过多少毫秒算“慢调用” */
+    private long slowCallMs = 500;
+
+    /** 慢调用比例超过多少 (%) 也熔断 (Redis 没挂但是很卡) */
+    private float slowCallRateThreshold = 80;
+
+    /** 熔断之后多久 (毫秒) 放几个请求过去试探 Redis 是否恢复 */
+    private long openStateMs = 10_000;
+
+    /** 试探时放过去几个请求 */
+    private int halfOpenCalls = 5;
+
+    /** 本地文章缓存最多放多少篇 (降级时用，LRU 淘汰) */
+    private int localCacheMaxEntries = 10_000;
+
+    /** 本地文章缓存的有效期 (秒)：降级期间文章被修改，最多这么久之后能看到 */
+    private long localCacheTtlSeconds = 60;
+
+    /** 降级期间最多缓冲多少篇文章的点击数 (超过之后新文章的点击不再计数) */
+    private int viewBufferMaxEntries = 100_000;
+
+    /** 恢复之后多久 (毫秒) 回放一次缓冲的点击数 */
+    private long viewReplayIntervalMs = 5_000;
+
+    public int getSlidingWindowSize() { return slidingWindowSize; }
+    public void setSlidingWindowSize(int slidingWindowSize) { this.slidingWindowSize = slidingWindowSize; }
+    public int getMinimumCalls() { return minimumCalls; }
+    public void setMinimumCalls(int minimumCalls) { this.minimumCalls = minimumCalls; }
+    public float getFailureRateThreshold() { return failureRateThreshold; }
+    public void setFailureRateThreshold(float failureRateThreshold) { this.failureRateThreshold = failureRateThreshold; }
+    public long getSlowCallMs() { return slowCallMs; }
+    public void setSlowCallMs(long slowCallMs) { this.slowCallMs = slowCallMs; }
+    public float getSlowCallRateThreshold() { return slowCallRateThreshold; }
+    public void setSlowCallRateThreshold(float slowCallRateThreshold) { this.slowCallRateThreshold = slowCallRateThreshold; }
+    public long getOpenStateMs() { return openStateMs; }
+    public void setOpenStateMs(long openStateMs) { this.openStateMs = openStateMs; }
+    public int getHalfOpenCalls() { return halfOpenCalls; }
+    public void setHalfOpenCalls(int halfOpenCalls) { this.halfOpenCalls = halfOpenCalls; }
+    public int getLocalCacheMaxEntries() { return localCacheMaxEntries; }
+    public void setLocalCacheMaxEntries(int localCacheMaxEntries) { this.localCacheMaxEntries = localCacheMaxEntries; }
+    public long getLocalCacheTtlSeconds() { return localCacheTtlSeconds; }
+    public void setLocalCacheTtlSeconds(long localCacheTtlSeconds) { this.localCacheTtlSeconds = localCacheTtlSeconds; }
+    public int getViewBufferMaxEntries() { return viewBufferMaxEntries; }
+    public void setViewBufferMaxEntries(int viewBufferMaxEntries) { this.viewBufferMaxEntries = viewBufferMaxEntries; }
+    public long getViewReplayIntervalMs() { return viewReplayIntervalMs; }
+    public void setViewReplayIntervalMs(long viewReplayIntervalMs) { this.viewReplayIntervalMs = viewReplayIntervalMs; }
+}
@@ -0,0 +1,34 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 文章历史版本的配置 (前缀 "revision")，见 PostRevisionStore
+ */
+@ConfigurationProperties(prefix = "revision")
+public class RevisionProperties {
+
+    /** 关闭后不再记录新版本 (已有的版本仍然可以查看) */
+    private boolean enabled = true;
+
+    /**
+     * 每隔多少个版本存一次完整快照 (其余的版本只存 delta)
+     * 越大越省空间，但还原一个版本最多要依次应用这么多个 delta
+     */
+    private int snapshotEvery = 20;
+
+    /** 按行比较时最多算多少处编辑，超过就把整段当作“替换” (防止整篇重写时比较太慢、太占内存) */
+    private int maxDiffEdits = 2000;
+
+    /** diff 接口里每处改动前后带几行没变的上下文 */
+    private int diffContextLines = 3;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public int getSnapshotEvery() { return snapshotEvery; }
+    public void setSnapshotEvery(int snapshotEvery) { this.snapshotEvery = snapshotEvery; }
+    public int getMaxDiffEdits() { return maxDiffEdits; }
+    public void setMaxDiffEdits(int maxDiffEdits) { this.maxDiffEdits = maxDiffEdits; }
+    public int getDiffContextLines() { return diffContextLines; }
+    public void setDiffContextLines(int diffContextLines) { this.diffContextLines = diffContextLines; }
+}
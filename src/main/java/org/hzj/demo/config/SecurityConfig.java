@@ -1,5 +1,6 @@
 package org.hzj.demo.config;
 
+import jakarta.servlet.DispatcherType;
 import org.hzj.demo.filter.JwtAuthFilter;
 import org.hzj.demo.service.AuthService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -43,6 +44,11 @@ public class SecurityConfig {
         // 3. 【【核心：配置“授权规则”】】
         http.authorizeHttpRequests(auth -> auth
                 .requestMatchers("/").permitAll()
+                // 异步请求 (Controller 返回 CompletableFuture) 写回结果时的第二次分派：
+                // 第一次分派已经检查过权限了，这次 JwtAuthFilter 不会再执行，不放行就会被当成“未登录”拦住
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                // 退出登录要知道是“哪个 Token”，必须带着有效的 Token (写在下面的 permitAll 之前，先匹配先生效)
+                .requestMatchers(HttpMethod.POST, "/api/v1/auth/logout", "/api/v1/auth/logout-all").authenticated()
                 // --- “放行” (Permit All) ---
                 // (1) 登录/注册 API
                 .requestMatchers("/api/v1/auth/**").permitAll()
@@ -52,6 +58,14 @@ public class SecurityConfig {
 
                 // (3) “只读”的 GET API (我们允许“游客”查看文章)
                 .requestMatchers(HttpMethod.GET, "/api/v1/posts/**").permitAll()
+                .requestMatchers(HttpMethod.GET, "/api/v1/tags").permitAll()
+                // 附件 / 图片下载 (文章里的图片游客也要能看到；上传走下面的 anyRequest，需要登录)
+                .requestMatchers(HttpMethod.GET, "/api/v1/attachments/**").permitAll()
+                // 作者主页 / 粉丝数 (关注、时间线需要登录)
+                .requestMatchers(HttpMethod.GET, "/api/v1/users/*/posts", "/api/v1/users/*/follow-stats").permitAll()
+                // 在线迁移会搬动数据，只有管理员 (AdminProperties 里配置的手机号) 才能触发；
+                // 只是“登录”不够：任何人都能自己注册一个账号
+                .requestMatchers(HttpMethod.POST, "/actuator/resharding").hasRole("ADMIN")
                 // 【【【 新增：放行 Actuator 所有接口 】】】
                 // (注意：在生产环境中，这里通常需要 "hasRole('ADMIN')" 权限)
                 .requestMatchers("/actuator/**").permitAll()
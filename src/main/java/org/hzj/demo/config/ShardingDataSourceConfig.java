@@ -0,0 +1,170 @@
+package org.hzj.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hzj.demo.datasource.ReadWriteRoutingDataSource;
+import org.hzj.demo.datasource.ReadYourWrites;
+import org.hzj.demo.datasource.ReplicaSet;
+import org.hzj.demo.sharding.ShardRoutingDataSource;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分库的 DataSource 装配 (sharding.enabled=true 时生效)
+ *
+ * 最终结构：
+ *   LazyConnectionDataSourceProxy
+ *     └── ShardRoutingDataSource           (按 ShardContext 选库)
+ *           ├── 0: spring.datasource         (开了读写分离时是 ReadWriteRoutingDataSource)
+ *           ├── 1: sharding.shards[0]
+ *           └── 2: sharding.shards[1] ...
+ *
+ * 注意：JPA 的 ddl-auto 只会作用在 0 号库上 (启动时只拿 0 号库的连接)，
+ * 额外的库需要事先用同样的表结构建好 blog_posts 表。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "sharding", name = "enabled", havingValue = "true")
+public class ShardingDataSourceConfig {
+
+    @Bean
+    public ShardReplicaSets shardReplicaSets(DataSourceProperties primaryProperties,
+                                             DataSourceRoutingProperties routingProperties,
+                                             ShardingProperties shardingProperties,
+                                             Environment environment) {
+        Map<Integer, ReplicaSet> replicaSets = new LinkedHashMap<>();
+        if (routingProperties.isEnabled() && !routingProperties.getReplicas().isEmpty()) {
+            replicaSets.put(0, ReadWriteDataSourceConfig.buildReplicaSet("replica-", routingProperties.getReplicas(),
+                    primaryProperties.determineUsername(), primaryProperties.determinePassword(),
+                    primaryProperties, routingProperties, environment));
+        }
+        List<ShardingProperties.Shard> shards = shardingProperties.getShards();
+        for (int i = 0; i < shards.size(); i++) {
+            ShardingProperties.Shard shard = shards.get(i);
+            if (!shard.getReplicas().isEmpty()) {
+                int index = i + 1;
+                replicaSets.put(index, ReadWriteDataSourceConfig.buildReplicaSet("shard-" + index + "-replica-",
+                        shard.getReplicas(), username(shard, primaryProperties), password(shard, primaryProperties),
+                        primaryProperties, routingProperties, environment));
+            }
+        }
+        return new ShardReplicaSets(replicaSets);
+    }
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties primaryProperties,
+                                 ShardingProperties shardingProperties,
+                                 ShardReplicaSets shardReplicaSets,
+                                 ReadYourWrites readYourWrites,
+                                 Environment environment) {
+        List<DataSource> shards = new ArrayList<>();
+
+        // 0 号库：spring.datasource
+        HikariDataSource primary = primaryProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        ReadWriteDataSourceConfig.bindHikari(environment, primary);
+        primary.setPoolName("primary");
+        shards.add(withReplicas(primary, shardReplicaSets.get(0), readYourWrites));
+
+        // 1..N 号库
+        List<ShardingProperties.Shard> configured = shardingProperties.getShards();
+        for (int i = 0; i < configured.size(); i++) {
+            ShardingProperties.Shard shard = configured.get(i);
+            int index = i + 1;
+            HikariDataSource dataSource = ReadWriteDataSourceConfig.buildPool(primaryProperties, environment,
+                    "shard-" + index, shard.getUrl(),
+                    username(shard, primaryProperties), password(shard, primaryProperties));
+            shards.add(withReplicas(dataSource, shardReplicaSets.get(index), readYourWrites));
+        }
+
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(shards);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * 定时健康检查 (所有库的从库)
+     */
+    @Bean
+    public ShardReplicaHealthCheck shardReplicaHealthCheck(ShardReplicaSets shardReplicaSets) {
+        return new ShardReplicaHealthCheck(shardReplicaSets);
+    }
+
+    /**
+     * /actuator/health 里的 "shardReplicas"：某个库的从库全挂了时显示 DOWN
+     */
+    @Bean
+    public HealthIndicator shardReplicasHealthIndicator(ShardReplicaSets shardReplicaSets) {
+        return () -> {
+            Health.Builder builder = Health.up();
+            shardReplicaSets.getAll().forEach((shard, replicaSet) -> {
+                if (replicaSet.getHealthy().isEmpty() && !replicaSet.getAll().isEmpty()) {
+                    builder.down();
+                }
+                builder.withDetail("shard-" + shard, Map.of(
+                        "configured", replicaSet.getAll(),
+                        "healthy", replicaSet.getHealthy()));
+            });
+            return builder.build();
+        };
+    }
+
+    private static DataSource withReplicas(DataSource primary, ReplicaSet replicaSet, ReadYourWrites readYourWrites) {
+        if (replicaSet == null) {
+            return primary;
+        }
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replicaSet, readYourWrites);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    private static String username(ShardingProperties.Shard shard, DataSourceProperties primaryProperties) {
+        return shard.getUsername() != null ? shard.getUsername() : primaryProperties.determineUsername();
+    }
+
+    private static String password(ShardingProperties.Shard shard, DataSourceProperties primaryProperties) {
+        return shard.getPassword() != null ? shard.getPassword() : primaryProperties.determinePassword();
+    }
+
+    /** 库编号 -> 这个库的从库 (没配从库的库不在里面) */
+    public static class ShardReplicaSets {
+        private final Map<Integer, ReplicaSet> replicaSets;
+
+        ShardReplicaSets(Map<Integer, ReplicaSet> replicaSets) {
+            this.replicaSets = replicaSets;
+        }
+
+        public ReplicaSet get(int shard) {
+            return replicaSets.get(shard);
+        }
+
+        public Map<Integer, ReplicaSet> getAll() {
+            return replicaSets;
+        }
+    }
+
+    public static class ShardReplicaHealthCheck {
+        private final ShardReplicaSets shardReplicaSets;
+
+        ShardReplicaHealthCheck(ShardReplicaSets shardReplicaSets) {
+            this.shardReplicaSets = shardReplicaSets;
+        }
+
+        @Scheduled(fixedDelayString = "${datasource-routing.health-check-interval-ms:5000}")
+        public void check() {
+            shardReplicaSets.getAll().values().forEach(ReplicaSet::checkHealth);
+        }
+    }
+}
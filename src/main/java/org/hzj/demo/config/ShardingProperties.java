@@ -0,0 +1,75 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分库配置 (前缀 "sharding")
+ *
+ * 约定：
+ * - 0 号库永远是 spring.datasource (以及 datasource-routing 里的从库)，
+ *   users 等“不分库”的表只存在 0 号库
+ * - shards 里配置的是【额外的】库，依次编号 1, 2, 3 ...
+ */
+@ConfigurationProperties(prefix = "sharding")
+public class ShardingProperties {
+
+    /** 默认关闭：只有 0 号库，一切照旧 */
+    private boolean enabled = false;
+
+    /**
+     * 逻辑桶的数量 (id -> 桶 -> 库)。
+     * 扩容时只需要把一部分“桶”搬到新库，而不是按 id % N 全量重新分布。
+     * 一旦有数据就不能再改。
+     */
+    private int buckets = 1024;
+
+    /** 额外的分库 (1 号库开始) */
+    private List<Shard> shards = new ArrayList<>();
+
+    /** 各节点从 Redis 刷新“桶 -> 库”映射的间隔 (毫秒) */
+    private long mapRefreshIntervalMs = 5000;
+
+    /** 扫描 / 迁移数据时每批的行数 */
+    private int migrationBatchSize = 500;
+
+    /** 并行查询各个库 (scatter-gather) 的线程数 */
+    private int queryThreads = 8;
+
+    /** 节点号 (0~31)，用于生成全局唯一 id；-1 表示启动时从 Redis 自动领取 */
+    private int workerId = -1;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public int getBuckets() { return buckets; }
+    public void setBuckets(int buckets) { this.buckets = buckets; }
+    public List<Shard> getShards() { return shards; }
+    public void setShards(List<Shard> shards) { this.shards = shards; }
+    public long getMapRefreshIntervalMs() { return mapRefreshIntervalMs; }
+    public void setMapRefreshIntervalMs(long mapRefreshIntervalMs) { this.mapRefreshIntervalMs = mapRefreshIntervalMs; }
+    public int getMigrationBatchSize() { return migrationBatchSize; }
+    public void setMigrationBatchSize(int migrationBatchSize) { this.migrationBatchSize = migrationBatchSize; }
+    public int getQueryThreads() { return queryThreads; }
+    public void setQueryThreads(int queryThreads) { this.queryThreads = queryThreads; }
+    public int getWorkerId() { return workerId; }
+    public void setWorkerId(int workerId) { this.workerId = workerId; }
+
+    /** 单个分库：一个主库 + 可选的从库 */
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+        private List<DataSourceRoutingProperties.Replica> replicas = new ArrayList<>();
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+        public List<DataSourceRoutingProperties.Replica> getReplicas() { return replicas; }
+        public void setReplicas(List<DataSourceRoutingProperties.Replica> replicas) { this.replicas = replicas; }
+    }
+}
@@ -0,0 +1,61 @@
+package org.hzj.demo.config;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.hzj.demo.monitor.SqlEndpointInterceptor;
+import org.hzj.demo.monitor.SqlStatsEndpoint;
+import org.hzj.demo.monitor.SqlStatsListener;
+import org.hzj.demo.monitor.SqlStatsRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+
+/**
+ * SQL 监控的装配
+ *
+ * 知识点：BeanPostProcessor
+ * Spring 每创建完一个 Bean，都会把它交给所有 BeanPostProcessor “加工”一遍。
+ * 我们在这里把 DataSource 换成一个“代理 DataSource”：
+ * JPA / Hibernate 拿到的是代理，每条 SQL 都会先经过我们的 SqlStatsListener，
+ * 而业务代码【一行都不用改】。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "sql-monitor", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SqlMonitorConfig implements WebMvcConfigurer {
+
+    /**
+     * 必须是 static：BeanPostProcessor 要比普通 Bean 更早创建，
+     * 用 ObjectProvider 延迟获取 SqlStatsRegistry，避免它被“提前实例化”
+     */
+    @Bean
+    public static BeanPostProcessor sqlStatsDataSourcePostProcessor(ObjectProvider<SqlStatsRegistry> registry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(beanName)
+                            .listener(new SqlStatsListener(registry.getObject()))
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public SqlStatsEndpoint sqlStatsEndpoint(SqlStatsRegistry registry) {
+        return new SqlStatsEndpoint(registry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new SqlEndpointInterceptor());
+    }
+}
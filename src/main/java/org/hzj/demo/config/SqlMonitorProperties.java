@@ -0,0 +1,50 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * SQL 监控配置 (前缀 "sql-monitor")
+ *
+ * 知识点：为什么不用 spring.jpa.show-sql？
+ * show-sql 会把【每一条】SQL 同步打印到 stdout，高并发下这本身就是瓶颈，
+ * 而且它不记录耗时。这里改为在 DataSource 层做“统计 + 只记录慢 SQL”。
+ */
+@ConfigurationProperties(prefix = "sql-monitor")
+public class SqlMonitorProperties {
+
+    /** 是否给 DataSource 套上统计代理 */
+    private boolean enabled = true;
+
+    /** 慢查询阈值 (毫秒)，超过的 SQL 会被异步写入日志 */
+    private long slowThresholdMs = 200;
+
+    /** 同一个请求里，同一“形状”的 SQL 执行次数达到此值，就认为是 N+1 */
+    private int repeatedQueryThreshold = 10;
+
+    /** 最多统计多少种 SQL “形状” (防止拼接 SQL 把内存撑爆) */
+    private int maxStatementShapes = 500;
+
+    /** 最多统计多少个接口 (超过的归到 "<other>"；路由模板本来就是有限的，这只是兜底) */
+    private int maxEndpoints = 200;
+
+    /** 异步日志队列长度，队列满了就丢弃 (宁可少打日志，也不能拖慢请求) */
+    private int logQueueSize = 1000;
+
+    /** actuator 里保留最近多少条慢查询 / N+1 记录 */
+    private int recentEvents = 50;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public long getSlowThresholdMs() { return slowThresholdMs; }
+    public void setSlowThresholdMs(long slowThresholdMs) { this.slowThresholdMs = slowThresholdMs; }
+    public int getRepeatedQueryThreshold() { return repeatedQueryThreshold; }
+    public void setRepeatedQueryThreshold(int repeatedQueryThreshold) { this.repeatedQueryThreshold = repeatedQueryThreshold; }
+    public int getMaxStatementShapes() { return maxStatementShapes; }
+    public void setMaxStatementShapes(int maxStatementShapes) { this.maxStatementShapes = maxStatementShapes; }
+    public int getMaxEndpoints() { return maxEndpoints; }
+    public void setMaxEndpoints(int maxEndpoints) { this.maxEndpoints = maxEndpoints; }
+    public int getLogQueueSize() { return logQueueSize; }
+    public void setLogQueueSize(int logQueueSize) { this.logQueueSize = logQueueSize; }
+    public int getRecentEvents() { return recentEvents; }
+    public void setRecentEvents(int recentEvents) { this.recentEvents = recentEvents; }
+}
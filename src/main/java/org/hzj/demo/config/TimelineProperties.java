@@ -0,0 +1,44 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 关注时间线配置 (前缀 "timeline")
+ */
+@ConfigurationProperties(prefix = "timeline")
+public class TimelineProperties {
+
+    /** 每个用户的时间线 (Redis List) 最多保留多少条文章 id，更早的要去作者主页看 */
+    private int maxLength = 800;
+
+    /**
+     * 粉丝数超过这个值的作者算“大V”：发文章时【不】推送给每个粉丝 (写扩散太贵)，
+     * 而是在粉丝读时间线时再去拉取 (读扩散)
+     */
+    private long fanOutThreshold = 5000;
+
+    /** 每个作者“最近文章” (Redis List) 保留多少条，读扩散时从这里取 */
+    private int authorRecentLength = 200;
+
+    /** 时间线多少天没被读过就过期 (不活跃用户不占内存，下次读时从数据库重建) */
+    private int ttlDays = 7;
+
+    /** 推送 (fan-out) 的后台线程数 */
+    private int fanOutThreads = 2;
+
+    /** 推送时每批读取多少个粉丝 id */
+    private int fanOutBatchSize = 1000;
+
+    public int getMaxLength() { return maxLength; }
+    public void setMaxLength(int maxLength) { this.maxLength = maxLength; }
+    public long getFanOutThreshold() { return fanOutThreshold; }
+    public void setFanOutThreshold(long fanOutThreshold) { this.fanOutThreshold = fanOutThreshold; }
+    public int getAuthorRecentLength() { return authorRecentLength; }
+    public void setAuthorRecentLength(int authorRecentLength) { this.authorRecentLength = authorRecentLength; }
+    public int getTtlDays() { return ttlDays; }
+    public void setTtlDays(int ttlDays) { this.ttlDays = ttlDays; }
+    public int getFanOutThreads() { return fanOutThreads; }
+    public void setFanOutThreads(int fanOutThreads) { this.fanOutThreads = fanOutThreads; }
+    public int getFanOutBatchSize() { return fanOutBatchSize; }
+    public void setFanOutBatchSize(int fanOutBatchSize) { this.fanOutBatchSize = fanOutBatchSize; }
+}
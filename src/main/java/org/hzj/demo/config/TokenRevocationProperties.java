@@ -0,0 +1,33 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * JWT 吊销列表的配置 (前缀 "token-revocation")，见 TokenRevocationList
+ */
+@ConfigurationProperties(prefix = "token-revocation")
+public class TokenRevocationProperties {
+
+    private boolean enabled = true;
+
+    /** 预计同时有效的吊销条目数 (布隆过滤器按 max(这个值, 实际条目数 x 2) 分配位数组) */
+    private long expectedRevocations = 100_000;
+
+    /** 期望的误判率 (没吊销的 Token 被判断成“可能吊销”、需要再查一次精确集合的概率) */
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * 从 Redis 全量重新加载的间隔 (毫秒)
+     * 广播丢失时，其他节点最多要等这么久才会拒绝被吊销的 Token；同时清掉已过期的条目、重建布隆过滤器
+     */
+    private long reloadIntervalMs = 60_000;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public long getExpectedRevocations() { return expectedRevocations; }
+    public void setExpectedRevocations(long expectedRevocations) { this.expectedRevocations = expectedRevocations; }
+    public double getFalsePositiveRate() { return falsePositiveRate; }
+    public void setFalsePositiveRate(double falsePositiveRate) { this.falsePositiveRate = falsePositiveRate; }
+    public long getReloadIntervalMs() { return reloadIntervalMs; }
+    public void setReloadIntervalMs(long reloadIntervalMs) { this.reloadIntervalMs = reloadIntervalMs; }
+}
@@ -0,0 +1,46 @@
+package org.hzj.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 启动预热配置 (前缀 "warmup")
+ */
+@ConfigurationProperties(prefix = "warmup")
+public class WarmupProperties {
+
+    /** 是否在 readiness 变为 UP 之前预热 */
+    private boolean enabled = true;
+
+    /** 预加载点击数最高的多少篇文章到 "post" 缓存 */
+    private int topPosts = 500;
+
+    /** 预加载缓存的并行线程数 */
+    private int threads = 4;
+
+    /** JIT 预热：每一轮执行多少次模拟请求 */
+    private int roundIterations = 200;
+
+    /** JIT 预热：一轮里新增的编译耗时低于这个值 (毫秒)，就认为这一轮“稳定”了 */
+    private long stableCompileMs = 20;
+
+    /** JIT 预热：连续多少轮稳定就结束 */
+    private int stableRounds = 3;
+
+    /** 整个预热最多花多少时间 (毫秒)，到时间就直接放流量进来，不会一直卡在启动阶段 */
+    private long maxDurationMs = 60_000;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public int getTopPosts() { return topPosts; }
+    public void setTopPosts(int topPosts) { this.topPosts = topPosts; }
+    public int getThreads() { return threads; }
+    public void setThreads(int threads) { this.threads = threads; }
+    public int getRoundIterations() { return roundIterations; }
+    public void setRoundIterations(int roundIterations) { this.roundIterations = roundIterations; }
+    public long getStableCompileMs() { return stableCompileMs; }
+    public void setStableCompileMs(long stableCompileMs) { this.stableCompileMs = stableCompileMs; }
+    public int getStableRounds() { return stableRounds; }
+    public void setStableRounds(int stableRounds) { this.stableRounds = stableRounds; }
+    public long getMaxDurationMs() { return maxDurationMs; }
+    public void setMaxDurationMs(long maxDurationMs) { this.maxDurationMs = maxDurationMs; }
+}
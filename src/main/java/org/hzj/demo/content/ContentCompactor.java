@@ -0,0 +1,53 @@
+package org.hzj.demo.content;
+
+import org.hzj.demo.sharding.ShardRouter;
+import org.hzj.demo.sharding.ShardedPostStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * 定时压缩正文段文件：查出所有文章还在引用的正文地址，其余的由 ContentSegmentStore.compact 回收
+ *
+ * 改文章 (换了正文)、删文章之后，旧正文还留在段文件里 (只追加，从不原地删除)，靠这里回收磁盘空间。
+ * 分库迁移期间不压缩：文章在两个库之间搬动，分库查询可能两边都没查到它，它的正文会被误删。
+ */
+@Component
+public class ContentCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentCompactor.class);
+
+    @Autowired
+    private ContentSegmentStore segments;
+
+    @Autowired
+    private ShardedPostStore postStore;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Scheduled(initialDelayString = "${content-store.compact-interval-ms:3600000}",
+            fixedDelayString = "${content-store.compact-interval-ms:3600000}")
+    public void compact() {
+        if (!segments.isEnabled()) {
+            return;
+        }
+        if (shardRouter.isSharded() && !shardRouter.currentMap().getMigrating().isEmpty()) {
+            log.info("分库迁移中，跳过这次正文段文件压缩");
+            return;
+        }
+        try {
+            Set<String> liveRefs = postStore.findContentRefs();
+            long reclaimed = segments.compact(liveRefs);
+            if (reclaimed > 0) {
+                log.info("正文段文件压缩完成: 引用中的正文 {} 条, 回收 {} 字节", liveRefs.size(), reclaimed);
+            }
+        } catch (Exception e) {
+            log.warn("正文段文件压缩失败 (下次再试): {}", e.getMessage());
+        }
+    }
+}
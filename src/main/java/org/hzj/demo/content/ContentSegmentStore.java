@@ -0,0 +1,536 @@
+package org.hzj.demo.content;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.hzj.demo.config.ContentStoreProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加 (append-only)、按内容寻址的段文件存储：大正文存在这里，blog_posts 里只留一个引用 (见 PostContentStore)
+ *
+ * 知识点：按内容寻址 (content-addressed)
+ * 一段正文的“地址”就是它的 SHA-256 (64 位十六进制字符串，存在 Post.contentRef)。
+ * 1. 同样的正文只存一份 (改文章时没改正文、转载同一篇文章，都不会多写)
+ * 2. 地址对应的内容永远不变，所以读的时候不用加锁、不用担心“读到一半被改了”
+ *
+ * 文件格式：目录下一串 00000001.seg、00000002.seg ...，每个文件是一条接一条的记录：
+ *   [magic 4B][SHA-256 32B][正文长度 4B][正文][CRC32 4B]
+ * 只有最新的一个段文件在追加 (active)，写满 segment-max-mb 就封存、换下一个。
+ * 内存里只有索引 (SHA-256 -> 段文件 + 偏移 + 长度)，启动时扫描所有段文件重建；
+ * 最后一个文件末尾不完整的记录 (写到一半进程挂了) 直接截掉。
+ *
+ * 读：
+ * - 封存的段文件整个 mmap (只读)：读正文就是从映射的内存里拷贝，不经过 read() 系统调用，热数据常驻 page cache
+ * - 正在追加的段文件还在变长，不能 mmap (映射超出文件末尾的部分会 SIGBUS)，用 FileChannel 按位置读 (pread)
+ * - 直接发给客户端：返回 Blob (文件 + 偏移 + 长度)，由 Tomcat 用 sendfile 发送 (零拷贝，见 PostController)
+ *
+ * 删除：正文从来不原地删除。没有文章引用的正文由 compact() 回收 (见 ContentCompactor)：
+ * 没用的字节超过一定比例的段文件，把还在用的记录拷贝到 active 段 (FileChannel.transferTo，内核里直接拷贝)，
+ * 再删掉整个旧文件。
+ *
+ * 同一个目录只能有一个进程在用 (启动时对 LOCK 文件加锁，拿不到就启动失败)，所以只适合单实例部署。
+ */
+@Component
+public class ContentSegmentStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentSegmentStore.class);
+
+    private static final int MAGIC = 0x43534547; // "CSEG"
+    private static final int HASH_BYTES = 32;
+    private static final int HEADER_BYTES = 4 + HASH_BYTES + 4;
+    private static final int TRAILER_BYTES = 4;
+    private static final String SUFFIX = ".seg";
+    private static final HexFormat HEX = HexFormat.of();
+
+    /**
+     * 一条正文的位置 (正文本身的偏移和长度，不含记录头尾)，给 sendfile / transferTo 用
+     */
+    public record Blob(Path file, long offset, int length) {
+    }
+
+    /** 一个段文件 */
+    private static final class Segment {
+        final long seq;
+        final Path path;
+        final FileChannel channel;
+        /** 有效数据的长度 (active 段追加之后才更新，读的时候不会超过它) */
+        volatile long size;
+        /** 封存之后整个文件的只读映射；active 段为 null */
+        volatile MappedByteBuffer mapped;
+        /** 被压缩掉的时间 (过了宽限期才真正删除文件)；0 = 在用 */
+        volatile long retiredAt;
+
+        Segment(long seq, Path path, FileChannel channel, long size) {
+            this.seq = seq;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+
+        void read(long offset, byte[] target) throws IOException {
+            MappedByteBuffer buffer = mapped;
+            if (buffer != null) {
+                buffer.get((int) offset, target);
+                return;
+            }
+            ByteBuffer wrapped = ByteBuffer.wrap(target);
+            while (wrapped.hasRemaining()) {
+                if (channel.read(wrapped, offset + wrapped.position()) < 0) {
+                    throw new IOException("段文件提前结束: " + path);
+                }
+            }
+        }
+
+        void seal() throws IOException {
+            if (mapped == null && size > 0) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+    }
+
+    /** 索引里的一项；touchedAt = 最后一次写入 / 复用的时间 (压缩时宽限期内的不回收) */
+    private static final class Entry {
+        final Segment segment;
+        final long offset;
+        final int length;
+        volatile long touchedAt;
+
+        Entry(Segment segment, long offset, int length, long touchedAt) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.touchedAt = touchedAt;
+        }
+
+        long recordBytes() {
+            return HEADER_BYTES + length + TRAILER_BYTES;
+        }
+    }
+
+    @Autowired
+    private ContentStoreProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Path directory;
+    private long segmentMaxBytes;
+
+    private FileChannel lockChannel;
+    private FileLock directoryLock;
+
+    /** SHA-256 (十六进制) -> 位置 */
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+
+    /** 在用的段文件 (按序号) */
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    /** 压缩掉、等宽限期过了再删的段文件 */
+    private final List<Segment> retired = new ArrayList<>();
+
+    /** 追加 (包括压缩时的拷贝) 都在这把锁里，保证同一时间只有一个线程写 active 段 */
+    private final Object writeLock = new Object();
+
+    private volatile Segment active;
+
+    private Counter reclaimedBytes;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (properties.getSegmentMaxMb() < 1 || properties.getSegmentMaxMb() > 2047) {
+            throw new IllegalStateException("content-store.segment-max-mb 必须在 1 到 2047 之间");
+        }
+        segmentMaxBytes = properties.getSegmentMaxMb() * 1024L * 1024L;
+        directory = Paths.get(properties.getDirectory()).toAbsolutePath();
+        Files.createDirectories(directory);
+
+        lockChannel = FileChannel.open(directory.resolve("LOCK"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            directoryLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // 同一个 JVM 里已经锁过 (tryLock 只在别的进程持有时才返回 null)
+            directoryLock = null;
+        }
+        if (directoryLock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("正文段文件目录正被另一个进程使用: " + directory);
+        }
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < files.size(); i++) {
+            Segment segment = open(files.get(i), i == files.size() - 1);
+            segments.put(segment.seq, segment);
+        }
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        for (Segment segment : segments.values()) {
+            if (segment != last || segment.size >= segmentMaxBytes) {
+                segment.seal();
+            }
+        }
+        active = last != null && last.mapped == null ? last : createSegment(last == null ? 1 : last.seq + 1);
+        log.info("正文段文件加载完成: {} 个文件, {} 条正文, 耗时 {}ms, 目录 {}",
+                segments.size(), index.size(), System.currentTimeMillis() - start, directory);
+
+        Gauge.builder("content_store.segments", segments, Map::size)
+                .description("正文段文件个数").register(meterRegistry);
+        Gauge.builder("content_store.bytes", this, store -> store.totalBytes())
+                .description("正文段文件的总大小 (包括还没回收的)").register(meterRegistry);
+        Gauge.builder("content_store.blobs", index, Map::size)
+                .description("索引里的正文条数").register(meterRegistry);
+        reclaimedBytes = Counter.builder("content_store.reclaimed_bytes")
+                .description("压缩回收的字节数").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        synchronized (writeLock) {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            for (Segment segment : retired) {
+                segment.channel.close();
+            }
+        }
+        if (directoryLock != null) {
+            directoryLock.release();
+            lockChannel.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return active != null;
+    }
+
+    // ------------------------------------------------------------------
+    // 写
+    // ------------------------------------------------------------------
+
+    /**
+     * 存一段正文 (已经存过的不会再写)，返回它的地址
+     * 返回之前已经 fsync，数据库里引用它的那一行提交时正文一定在磁盘上了
+     */
+    public String put(byte[] body) {
+        byte[] hash = sha256(body);
+        String ref = HEX.formatHex(hash);
+        long now = System.currentTimeMillis();
+        // 已经有了：只更新时间 (在 compute 里改，和压缩时的“判断 + 删除”互斥，不会刚复用就被回收)
+        if (touch(ref, now)) {
+            return ref;
+        }
+        synchronized (writeLock) {
+            if (touch(ref, now)) {
+                return ref;
+            }
+            try {
+                Segment segment = activeFor(HEADER_BYTES + body.length + TRAILER_BYTES);
+                long position = segment.size;
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).put(hash).putInt(body.length).flip();
+                ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES).putInt((int) crc.getValue()).flip();
+                writeFully(segment.channel, position, header, ByteBuffer.wrap(body), trailer);
+                segment.channel.force(false);
+                segment.size = position + HEADER_BYTES + body.length + TRAILER_BYTES;
+                index.put(ref, new Entry(segment, position + HEADER_BYTES, body.length, now));
+            } catch (IOException e) {
+                throw new UncheckedIOException("写正文段文件失败", e);
+            }
+        }
+        return ref;
+    }
+
+    private boolean touch(String ref, long now) {
+        return index.computeIfPresent(ref, (key, entry) -> {
+            entry.touchedAt = now;
+            return entry;
+        }) != null;
+    }
+
+    /** 当前 active 段放得下就用它，放不下就封存、换一个新的 (必须在 writeLock 里调用) */
+    private Segment activeFor(long recordBytes) throws IOException {
+        Segment current = active;
+        if (current.size > 0 && current.size + recordBytes > segmentMaxBytes) {
+            current.seal();
+            active = createSegment(current.seq + 1);
+        }
+        return active;
+    }
+
+    private Segment createSegment(long seq) throws IOException {
+        Path path = directory.resolve(String.format("%08d%s", seq, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(seq, path, channel, 0);
+        segments.put(seq, segment);
+        return segment;
+    }
+
+    private static void writeFully(FileChannel channel, long position, ByteBuffer... buffers) throws IOException {
+        long offset = position;
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 读
+    // ------------------------------------------------------------------
+
+    /**
+     * 读出一段正文
+     * @return null = 没有这个地址 (段文件丢了 / 被误删)
+     */
+    public byte[] read(String ref) {
+        Entry entry = index.get(ref);
+        if (entry == null) {
+            return null;
+        }
+        byte[] body = new byte[entry.length];
+        try {
+            entry.segment.read(entry.offset, body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读正文段文件失败: " + entry.segment.path, e);
+        }
+        return body;
+    }
+
+    /** 正文在哪个文件的哪一段 (sendfile 用)；null = 没有这个地址 */
+    public Blob locate(String ref) {
+        Entry entry = index.get(ref);
+        return entry == null ? null : new Blob(entry.segment.path, entry.offset, entry.length);
+    }
+
+    /**
+     * 把正文写进 target (不支持 sendfile 时用)
+     * FileChannel.transferTo：target 是 socket 时由内核直接拷贝；这里 target 一般是 Servlet 输出流，至少不经过 String
+     * @return false = 没有这个地址
+     */
+    public boolean transferTo(String ref, WritableByteChannel target) throws IOException {
+        Entry entry = index.get(ref);
+        if (entry == null) {
+            return false;
+        }
+        long position = entry.offset;
+        long end = entry.offset + entry.length;
+        while (position < end) {
+            long sent = entry.segment.channel.transferTo(position, end - position, target);
+            if (sent <= 0) {
+                throw new IOException("段文件提前结束: " + entry.segment.path);
+            }
+            position += sent;
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------
+    // 压缩
+    // ------------------------------------------------------------------
+
+    /**
+     * 回收没用的正文
+     *
+     * @param liveRefs 数据库里还有文章引用的地址 (宽限期内写入 / 复用过的也当作在用)
+     * @return 回收的字节数
+     */
+    public synchronized long compact(Set<String> liveRefs) throws IOException {
+        long now = System.currentTimeMillis();
+        long cutoff = now - properties.getGraceMs();
+
+        // 1. 没用的从索引里去掉 (在 compute 里判断 touchedAt，和 put 的复用互斥)；算出每个段文件还在用的字节数
+        Map<Segment, Long> liveBytes = new IdentityHashMap<>();
+        for (Map.Entry<String, Entry> item : index.entrySet()) {
+            String ref = item.getKey();
+            Entry kept = index.computeIfPresent(ref, (key, entry) ->
+                    liveRefs.contains(key) || entry.touchedAt >= cutoff ? entry : null);
+            if (kept != null) {
+                liveBytes.merge(kept.segment, kept.recordBytes(), Long::sum);
+            }
+        }
+
+        // 2. 没用的字节超过比例的封存段：还在用的记录拷贝到 active 段，整个文件退役
+        long reclaimed = 0;
+        for (Segment segment : List.copyOf(segments.values())) {
+            if (segment.mapped == null || segment == active) {
+                continue;
+            }
+            long live = liveBytes.getOrDefault(segment, 0L);
+            long garbage = segment.size - live;
+            if (garbage * 100 < segment.size * properties.getCompactGarbagePercent()) {
+                continue;
+            }
+            if (live > 0) {
+                moveLiveRecords(segment);
+            }
+            segments.remove(segment.seq);
+            segment.retiredAt = now;
+            synchronized (writeLock) {
+                retired.add(segment);
+            }
+            reclaimed += garbage;
+            log.info("正文段文件压缩: {} (有效 {} / {} 字节)", segment.path.getFileName(), live, segment.size);
+        }
+
+        // 3. 退役超过宽限期的文件真正删掉 (期间可能还有 sendfile 在读)
+        synchronized (writeLock) {
+            for (Segment segment : List.copyOf(retired)) {
+                if (segment.retiredAt < cutoff) {
+                    segment.channel.close();
+                    Files.deleteIfExists(segment.path);
+                    retired.remove(segment);
+                }
+            }
+        }
+        if (reclaimed > 0) {
+            reclaimedBytes.increment(reclaimed);
+        }
+        return reclaimed;
+    }
+
+    private void moveLiveRecords(Segment source) throws IOException {
+        synchronized (writeLock) {
+            for (Map.Entry<String, Entry> item : index.entrySet()) {
+                Entry entry = item.getValue();
+                if (entry.segment != source) {
+                    continue;
+                }
+                Segment target = activeFor(entry.recordBytes());
+                long position = target.size;
+                long from = entry.offset - HEADER_BYTES;
+                long copied = 0;
+                while (copied < entry.recordBytes()) {
+                    copied += source.channel.transferTo(from + copied, entry.recordBytes() - copied,
+                            target.channel.position(position + copied));
+                }
+                target.size = position + entry.recordBytes();
+                Entry moved = new Entry(target, position + HEADER_BYTES, entry.length, entry.touchedAt);
+                index.replace(item.getKey(), entry, moved);
+            }
+            active.channel.force(false);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 启动时扫描
+    // ------------------------------------------------------------------
+
+    /**
+     * 打开一个段文件，逐条校验记录并加入索引 (后面的文件覆盖前面的：压缩时记录是往后搬的)
+     * @param last 是不是最后一个文件：它的末尾可能有写到一半的记录，截掉
+     */
+    private Segment open(Path path, boolean last) throws IOException {
+        String name = path.getFileName().toString();
+        long seq = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(seq, path, channel, 0);
+        long fileSize = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+        byte[] hash = new byte[HASH_BYTES];
+        long now = System.currentTimeMillis();
+        while (position + HEADER_BYTES + TRAILER_BYTES <= fileSize) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            int magic = header.getInt();
+            header.get(hash);
+            int length = header.getInt();
+            long end = position + HEADER_BYTES + length + TRAILER_BYTES;
+            if (magic != MAGIC || length < 0 || end > fileSize) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            long bodyPosition = position + HEADER_BYTES;
+            long remaining = length;
+            while (remaining > 0) {
+                chunk.clear().limit((int) Math.min(chunk.capacity(), remaining));
+                readFully(channel, chunk, bodyPosition + length - remaining);
+                chunk.flip();
+                remaining -= chunk.remaining();
+                crc.update(chunk);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+            readFully(channel, trailer, end - TRAILER_BYTES);
+            if (trailer.flip().getInt() != (int) crc.getValue()) {
+                break;
+            }
+            index.put(HEX.formatHex(hash), new Entry(segment, bodyPosition, length, now));
+            position = end;
+        }
+        if (position < fileSize) {
+            if (last) {
+                log.warn("正文段文件末尾有不完整的记录 (上次写到一半退出)，截掉 {} 字节: {}", fileSize - position, path);
+                channel.truncate(position);
+            } else {
+                log.error("正文段文件 {} 在偏移 {} 处损坏，后面的 {} 字节读不出来", path, position, fileSize - position);
+            }
+        }
+        segment.size = position;
+        return segment;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("段文件提前结束");
+            }
+        }
+    }
+
+    private long totalBytes() {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.size;
+        }
+        return total;
+    }
+
+    private static byte[] sha256(byte[] body) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
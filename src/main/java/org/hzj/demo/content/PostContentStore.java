@@ -0,0 +1,168 @@
+package org.hzj.demo.content;
+
+import org.hzj.demo.config.ContentStoreProperties;
+import org.hzj.demo.model.Post;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 文章正文的外置 / 读回 (ShardedPostStore 写库之前、读库之后调用)
+ *
+ * 以前 content 是 blog_posts 里的一个 LONGTEXT：几十 KB 的长文让每一行都很大，
+ * InnoDB buffer pool 里缓存的大部分是正文，连“按作者翻页”这种只要标题的查询也要把正文读出来 (findAll 的整行)。
+ * 开启 content-store 之后，超过 threshold-bytes 的正文存进段文件 (ContentSegmentStore)：
+ * - content 列只留前 excerpt-chars 个字符的摘要 (列是 NOT NULL 的，留个摘要直接查库时也看得懂)
+ * - content_ref 列存正文的地址 (SHA-256)；为 null 表示正文就在 content 列里 (短文章 / 开启之前的老文章)
+ * 读库之后 resolve 把完整正文放回 Post.content，上层 (缓存、接口) 看到的和以前一样。
+ *
+ * 【注意】开启之后不能直接关掉：已经外置的正文只在段文件里，关掉后读出来的只有摘要
+ */
+@Component
+public class PostContentStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PostContentStore.class);
+
+    /**
+     * 要发给客户端的正文 (GET /posts/{id}/content)：
+     * - blob 不为 null：在段文件里，可以直接 sendfile
+     * - 否则：正文就在 content 列里 (text 是它的 UTF-8 字节)
+     */
+    public record Body(String ref, ContentSegmentStore.Blob blob, byte[] text) {
+
+        public long length() {
+            return blob != null ? blob.length() : text.length;
+        }
+    }
+
+    @Autowired
+    private ContentStoreProperties properties;
+
+    @Autowired
+    private ContentSegmentStore segments;
+
+    public boolean isEnabled() {
+        return segments.isEnabled();
+    }
+
+    /**
+     * 写库之前调用：正文太长就存进段文件，content 换成摘要、填上 contentRef；不长就清掉 contentRef
+     * (contentRef 只由这里决定，客户端传来的值会被覆盖)
+     *
+     * @return 换下来的完整正文 (写完库之后用 post.setContent 放回去，返回给调用方的还是完整的文章)；没有外置返回 null
+     */
+    public String externalize(Post post) {
+        String content = post.getContent();
+        String ref = isEnabled() && content != null ? store(content) : null;
+        post.setContentRef(ref);
+        if (ref == null) {
+            return null;
+        }
+        post.setContent(excerpt(content));
+        return content;
+    }
+
+    /**
+     * PATCH 用：changes (属性名 -> 新值) 里有 content 时，换成摘要 + contentRef
+     * @return 写库用的新 Map (传进来的不改，缓存还要用完整的正文去改)
+     */
+    public Map<String, Object> externalize(Map<String, Object> changes) {
+        if (!changes.containsKey("content")) {
+            return changes;
+        }
+        String content = (String) changes.get("content");
+        String ref = isEnabled() ? store(content) : null;
+        Map<String, Object> columns = new LinkedHashMap<>(changes);
+        columns.put("contentRef", ref);
+        if (ref != null) {
+            columns.put("content", excerpt(content));
+        }
+        return columns;
+    }
+
+    /**
+     * 读库之后调用：外置的正文从段文件读回 Post.content
+     * 【只能用在不受 JPA 管理的对象上】(只读事务结束之后)，否则改了 content 会被当成修改写回数据库，用 resolvedCopy
+     * (ShardedPostStore.update 是例外：读回之后马上又 externalize，content 变回原来的摘要)
+     */
+    public Post resolve(Post post) {
+        String ref = post.getContentRef();
+        if (ref == null || !isEnabled()) {
+            return post;
+        }
+        byte[] body = segments.read(ref);
+        if (body == null) {
+            // 段文件丢了：只能返回摘要
+            log.error("文章的正文不在段文件里: post={}, ref={}", post.getId(), ref);
+            return post;
+        }
+        post.setContent(new String(body, StandardCharsets.UTF_8));
+        return post;
+    }
+
+    /**
+     * 写事务里读出来的 (受管的) 文章：拷贝一份再读回正文，不碰原对象
+     */
+    public Post resolvedCopy(Post post) {
+        if (post.getContentRef() == null || !isEnabled()) {
+            return post;
+        }
+        return resolve(post.copy());
+    }
+
+    /**
+     * findBody 查出来的文章 (外置的正文没有读回) -> 要发给客户端的正文
+     */
+    public Body body(Post post) {
+        String ref = post.getContentRef();
+        if (ref != null && isEnabled()) {
+            ContentSegmentStore.Blob blob = segments.locate(ref);
+            if (blob != null) {
+                return new Body(ref, blob, null);
+            }
+            log.error("文章的正文不在段文件里: post={}, ref={}", post.getId(), ref);
+        }
+        return new Body(null, null, post.getContent().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 不能 sendfile 时把正文写进 target (段文件里的用 FileChannel.transferTo，不解码成 String)
+     */
+    public void writeTo(Body body, WritableByteChannel target) throws IOException {
+        if (body.blob() != null && segments.transferTo(body.ref(), target)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body.text() != null ? body.text() : new byte[0]);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private String store(String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= properties.getThresholdBytes()) {
+            return null;
+        }
+        return segments.put(bytes);
+    }
+
+    private String excerpt(String content) {
+        int length = Math.max(1, properties.getExcerptChars());
+        if (content.length() <= length) {
+            return content;
+        }
+        // 不要把一个 emoji (代理对) 切成两半
+        if (Character.isHighSurrogate(content.charAt(length - 1))) {
+            length--;
+        }
+        return content.substring(0, Math.max(1, length));
+    }
+}
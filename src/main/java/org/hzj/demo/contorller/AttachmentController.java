@@ -0,0 +1,183 @@
+package org.hzj.demo.contorller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hzj.demo.attachment.AttachmentStore;
+import org.hzj.demo.config.AttachmentProperties;
+import org.hzj.demo.exception.ResourceNotFoundException;
+import org.hzj.demo.model.LoginUser;
+import org.hzj.demo.util.Sendfile;
+import org.hzj.demo.vo.AttachmentView;
+import org.hzj.demo.vo.ResultVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 附件 / 图片：上传 (需要登录) 和下载 (游客也可以，文章里的图片要能直接显示)
+ * 权限规则见 SecurityConfig
+ */
+@RestController
+@RequestMapping("/api/v1")
+public class AttachmentController {
+
+    private static final Logger log = LoggerFactory.getLogger(AttachmentController.class);
+
+    @Autowired
+    private AttachmentStore attachmentStore;
+
+    @Autowired
+    private AttachmentProperties properties;
+
+    /**
+     * 上传：multipart/form-data，字段名 file
+     * curl -H "Authorization: Bearer ..." -F file=@photo.jpg http://localhost:8081/api/v1/attachments
+     *
+     * Tomcat 先把请求体写到临时文件 (spring.servlet.multipart.file-size-threshold = 0)，
+     * 这里再边读边算哈希边写进附件目录，整个过程只用一个 64KB 的缓冲区
+     */
+    @PostMapping(value = "/attachments", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResultVO<AttachmentView> upload(@RequestParam("file") MultipartFile file) throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("文件是空的");
+        }
+        AttachmentStore.Stored stored;
+        try (InputStream in = file.getInputStream()) {
+            stored = attachmentStore.store(in);
+        }
+        log.info("上传附件: user={}, name={}, {} ({} 字节){}", LoginUser.currentUserId(), file.getOriginalFilename(),
+                stored.hash(), stored.size(), stored.deduplicated() ? " [已存在]" : "");
+        return ResultVO.success(AttachmentView.of(stored));
+    }
+
+    /**
+     * 下载原文件：/api/v1/attachments/{sha256}.png
+     */
+    @GetMapping("/attachments/{hash}.{extension}")
+    public void download(@PathVariable String hash, @PathVariable String extension,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AttachmentStore.Served served = attachmentStore.original(hash, extension)
+                .orElseThrow(() -> new ResourceNotFoundException("附件不存在"));
+        serve(served, "\"" + hash + "\"", request, response);
+    }
+
+    /**
+     * 下载缩略图：/api/v1/attachments/thumbnails/{sha256}.png (扩展名是原图的)
+     */
+    @GetMapping("/attachments/thumbnails/{hash}.{extension}")
+    public void thumbnail(@PathVariable String hash, @PathVariable String extension,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AttachmentStore.Served served = attachmentStore.thumbnail(hash, extension)
+                .orElseThrow(() -> new ResourceNotFoundException("附件不存在"));
+        serve(served, "\"" + hash + "-t" + properties.getThumbnailWidth() + "\"", request, response);
+    }
+
+    /**
+     * 发送文件 (支持 Range 断点续传 / 视频拖动、条件请求)
+     *
+     * 知识点：HTTP 缓存
+     * 地址里带着内容的哈希，同一个地址的内容永远不变：
+     * - Cache-Control: public, max-age=一年, immutable   浏览器 / CDN 直接用缓存，连“是否过期”都不用问
+     * - ETag = 哈希，If-None-Match 对上了返回 304 (没有响应体)
+     *
+     * 知识点：Range 请求 (RFC 9110)
+     * Range: bytes=0-1023 只要文件的一段，返回 206 Partial Content + Content-Range；
+     * 超出文件大小返回 416；多段 (bytes=0-1,5-6) 这里不支持，按规范可以忽略 Range 返回整个文件。
+     * 一段区间正好对应 sendfile 的 [start, end)，仍然是零拷贝。
+     */
+    private void serve(AttachmentStore.Served served, String etag,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + properties.getCacheMaxAgeSeconds() + ", immutable");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // 不许浏览器自己猜类型 / 在这个源下执行里面的内容 (PDF 里的脚本等)
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader("Content-Security-Policy", "sandbox");
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.contains(etag))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long size = served.size();
+        long start = 0;
+        long end = size;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // If-Range：客户端手上的版本还是这个，才按 Range 续传，否则给整个文件
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] parsed = parseRange(range, size);
+            if (parsed != null && parsed.length == 0) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+            if (parsed != null) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + size);
+            }
+        }
+        response.setContentType(served.contentType());
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (Sendfile.offer(request, served.file(), start, end)) {
+            return;
+        }
+        Sendfile.transfer(served.file(), start, end, response.getOutputStream());
+    }
+
+    /**
+     * 解析单段的 Range 头
+     * @return [start, end)；空数组 = 区间超出文件 (416)；null = 不认识 / 多段 (忽略 Range，返回整个文件)
+     */
+    private static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // bytes=-500：最后 500 个字节
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return new long[0];
+                }
+                return new long[]{Math.max(0, size - suffix), size};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE - 1 : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= size) {
+                return new long[0];
+            }
+            return new long[]{start, Math.min(end, size - 1) + 1};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package org.hzj.demo.contorller;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.http.HttpServletResponse;
 import org.hzj.demo.dto.SendCodeRequest;
+import org.hzj.demo.filter.JwtAuthFilter;
+import org.hzj.demo.model.LoginUser;
 import org.hzj.demo.dto.SmsLoginRequest;
 import org.hzj.demo.service.AuthService;
 import org.hzj.demo.vo.ResultVO;
@@ -44,6 +47,26 @@ public class AuthController {
         //  下一步它将变成 JWT Token)
         return ResultVO.success(loginResult);
     }
+
+    /**
+     * 3. 退出登录 API (需要登录，见 SecurityConfig)
+     * 当前 Token 立刻在所有节点失效 (见 TokenRevocationList)
+     */
+    @PostMapping("/logout")
+    public ResultVO<Object> logout(@RequestAttribute(JwtAuthFilter.CLAIMS_ATTRIBUTE) Claims claims) {
+        authService.logout(claims);
+        return ResultVO.success();
+    }
+
+    /**
+     * 4. 退出所有设备 API (需要登录)
+     * 手机丢了 / Token 泄露时用：这个用户之前签发的 Token 全部失效
+     */
+    @PostMapping("/logout-all")
+    public ResultVO<Object> logoutAll() {
+        authService.logoutAll(LoginUser.currentUserId());
+        return ResultVO.success();
+    }
     // 1. 注入我们刚配置的“入场券”
     @Value("${github.client-id}")
     private String githubClientId;
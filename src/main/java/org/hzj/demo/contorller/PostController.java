@@ -131,26 +131,53 @@ package org.hzj.demo.contorller;
 // 11.04
 
 import org.hzj.demo.config.BlogProperties;
+import org.hzj.demo.content.PostContentStore;
+import org.hzj.demo.dto.PostPatchRequest;
 import org.hzj.demo.exception.ResourceNotFoundException;
 import org.hzj.demo.model.Post;
+import org.hzj.demo.model.PostField;
 import org.hzj.demo.repository.PostRepository;
 import org.hzj.demo.service.PostService;
+import org.hzj.demo.util.Sendfile;
+import org.hzj.demo.util.TagUtils;
+import org.hzj.demo.vo.FeedPage;
+import org.hzj.demo.vo.PostView;
 import org.hzj.demo.vo.ResultVO; // 1. 导入 ResultVO
+import org.hzj.demo.vo.RevisionDetail;
+import org.hzj.demo.vo.RevisionDiff;
+import org.hzj.demo.vo.RevisionSummary;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity; // 2. (等下会用到) 导入 ResponseEntity
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1")
 public class PostController {
 
+    /** 批量接口一次最多查多少篇 */
+    private static final int MAX_BATCH_IDS = 100;
+
+    /** 文章列表分页时一页最多多少篇 */
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private PostService postService;
     @Autowired
     private PostRepository postRepository;
+    @Autowired
+    private PostContentStore postContentStore;
 
     // 2. 注入我们新创建的配置 Bean
     @Autowired
@@ -183,11 +210,51 @@ public class PostController {
     /**
      * 2. (GET) 获取所有文章
      * 修改：返回值从 List<Post> 改为 ResultVO<List<Post>>
+     *
+     * 按标签筛选：/api/v1/posts?tags=java,redis&mode=and
+     * - mode=and (默认)：同时带有所有标签
+     * - mode=or        ：带有任意一个标签
+     * - limit          ：最多返回多少篇 (最新的在前，默认 100，最大 1000)
+     *
+     * 不带标签时可以分页：/api/v1/posts?page=0&size=20 (按 id 从小到大；不传 size 返回全部)
+     *
+     * 只要部分字段：/api/v1/posts?fields=id,title (id 总是会返回；不传 fields 返回全部字段)
+     * 不要 content 时，缓存读的是不带正文的那份、查库也只 SELECT 这几列 (按标签筛选时只在输出时去掉)
      */
     @GetMapping("/posts")
-    public ResultVO<List<Post>> getAllPosts() {
-        List<Post> posts = postService.getAllPosts();
-        return ResultVO.success(posts);
+    public ResultVO<List<?>> getAllPosts(@RequestParam(value = "tags", required = false) String tags,
+                                         @RequestParam(value = "mode", defaultValue = "and") String mode,
+                                         @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                         @RequestParam(value = "page", defaultValue = "0") int page,
+                                         @RequestParam(value = "size", required = false) Integer size,
+                                         @RequestParam(value = "fields", required = false) String fields) {
+        Set<PostField> fieldSet = PostField.parse(fields);
+        List<String> tagList = TagUtils.parse(tags);
+        if (tagList.isEmpty()) {
+            if (size == null) {
+                return ResultVO.success(PostView.of(postService.getAllPosts(fieldSet), fieldSet));
+            }
+            if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("page 不能小于 0，size 必须在 1 到 " + MAX_PAGE_SIZE + " 之间");
+            }
+            return ResultVO.success(PostView.of(postService.getPostPage(page, size, fieldSet), fieldSet));
+        }
+        if (!"and".equalsIgnoreCase(mode) && !"or".equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("mode 只能是 and 或 or");
+        }
+        if (limit < 1 || limit > 1000) {
+            throw new IllegalArgumentException("limit 必须在 1 到 1000 之间");
+        }
+        List<Post> posts = postService.getPostsByTags(tagList, "and".equalsIgnoreCase(mode), limit);
+        return ResultVO.success(PostView.of(posts, fieldSet));
+    }
+
+    /**
+     * 所有标签及每个标签下的文章数 (按文章数倒序)
+     */
+    @GetMapping("/tags")
+    public ResultVO<Map<String, Long>> getTags() {
+        return ResultVO.success(postService.getTagCounts());
     }
 
     /**
@@ -199,25 +266,93 @@ public class PostController {
     @GetMapping("/posts/{id}")
     public ResultVO<Post> getPostById(@PathVariable("id") Long id) {
 
-        // 1. 【首先】获取文章
-        // 这一步会触发 @Cacheable，
-        // 它要么从缓存（极快），要么从数据库（较慢）获取 Post
-        Post post = postService.getPostById(id)
+        // 读文章 + 点击数 +1 (缓存命中时只有一次 Redis 往返，见 PostService.viewPost)
+        // 文章不存在时抛出 404，【不会】给“不存在的文章”增加点击率
+        Post post = postService.viewPost(id)
+                .orElseThrow(() -> new ResourceNotFoundException("文章未找到, ID: " + id));
+
+        return ResultVO.success(post);
+    }
+
+    /**
+     * 只要正文：/api/v1/posts/{id}/content
+     * 返回 text/markdown 原文 (不包 ResultVO，不增加点击数)，适合“先取标题等字段，再单独拉正文”的客户端
+     *
+     * 知识点：零拷贝 (sendfile，见 Sendfile)
+     * 外置到段文件里的长正文 (见 ContentSegmentStore) 不读进 JVM：
+     * 把文件名和区间交给 Tomcat，由它调用 sendfile；连接器不支持时退回 FileChannel.transferTo。
+     */
+    @GetMapping("/posts/{id}/content")
+    public void getPostContent(@PathVariable Long id, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        PostContentStore.Body body = postService.getPostBody(id)
                 .orElseThrow(() -> new ResourceNotFoundException("文章未找到, ID: " + id));
+        response.setContentType("text/markdown;charset=UTF-8");
+        response.setContentLengthLong(body.length());
+        if (body.blob() != null && Sendfile.offer(request, body.blob().file(),
+                body.blob().offset(), body.blob().offset() + body.blob().length())) {
+            return;
+        }
+        postContentStore.writeTo(body, Channels.newChannel(response.getOutputStream()));
+    }
 
-        // 2. 【然后】增加点击率
-        // 关键：如果 .orElseThrow() 抛出了异常（404），
-        // 下面这行代码【不会】被执行。
-        // 这就保证了我们【不会】给“不存在的文章”增加点击率！
-        // 这一步是“手动挡”，它【每次】都会执行 Redis ZINCRBY。
-        Long newViewCount = postService.incrementViewCount(id);
+    /**
+     * 文章的历史版本 (每次修改一个版本，新的在前)
+     * 第一页：/api/v1/posts/1/revisions?size=20
+     * 下一页：/api/v1/posts/1/revisions?size=20&cursor={上一页的 nextCursor}
+     */
+    @GetMapping("/posts/{id}/revisions")
+    public ResultVO<FeedPage<RevisionSummary>> getRevisions(@PathVariable Long id,
+                                                            @RequestParam(value = "cursor", required = false) Long cursor,
+                                                            @RequestParam(value = "size", defaultValue = "20") int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size 必须在 1 到 " + MAX_PAGE_SIZE + " 之间");
+        }
+        return ResultVO.success(postService.getRevisions(id, cursor, size));
+    }
 
+    /**
+     * 比较两个版本：/api/v1/posts/1/revisions/diff?from=3&to=5 (正文按行比较，格式同 diff -u)
+     * (路径里的 "diff" 比下面的 {revision} 更具体，Spring MVC 会优先匹配它)
+     */
+    @GetMapping("/posts/{id}/revisions/diff")
+    public ResultVO<RevisionDiff> diffRevisions(@PathVariable Long id,
+                                                @RequestParam("from") long from,
+                                                @RequestParam("to") long to) {
+        return ResultVO.success(postService.diffRevisions(id, from, to));
+    }
 
-        // 3. 【拼装】把“热”数据，塞进“冷”数据
-        post.setViewCount(newViewCount);
+    /**
+     * 某个版本的完整内容：/api/v1/posts/1/revisions/3
+     */
+    @GetMapping("/posts/{id}/revisions/{revision}")
+    public ResultVO<RevisionDetail> getRevision(@PathVariable Long id, @PathVariable long revision) {
+        return ResultVO.success(postService.getRevision(id, revision));
+    }
 
-        // 4. 【最后】返回“融合”后的数据
-        return ResultVO.success(post);
+    /**
+     * 批量获取文章：/api/v1/posts/batch?ids=3,1,2
+     * 按 ids 的顺序返回 (重复的 id 只返回一次，不存在的文章跳过)，一次最多 100 个
+     * 每篇文章和单篇接口一样会 +1 点击数
+     */
+    @GetMapping("/posts/batch")
+    public ResultVO<List<Post>> getPostsByIds(@RequestParam("ids") String ids) {
+        Set<Long> idSet = new LinkedHashSet<>();
+        for (String part : ids.split(",")) {
+            String trimmed = part.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            try {
+                idSet.add(Long.parseLong(trimmed));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("ids 只能是逗号分隔的数字: " + trimmed);
+            }
+        }
+        if (idSet.isEmpty() || idSet.size() > MAX_BATCH_IDS) {
+            throw new IllegalArgumentException("ids 的个数必须在 1 到 " + MAX_BATCH_IDS + " 之间");
+        }
+        return ResultVO.success(postService.getPostsByIds(new ArrayList<>(idSet)));
     }
 
     // ... in PostService.java
@@ -235,6 +370,17 @@ public class PostController {
         return postService.updatePost(id, postDetails);
     }
 
+    /**
+     * 部分修改：只传要改的字段 + 读到的版本号
+     * 例如 PATCH /api/v1/posts/1  {"version": 3, "title": "新标题"}
+     * 返回新的版本号；版本号对不上 (别人已经改过) 返回 409
+     */
+    @PatchMapping("/posts/{id}")
+    public ResultVO<Map<String, Long>> patchPost(@PathVariable Long id, @Valid @RequestBody PostPatchRequest patch) {
+        long version = postService.patchPost(id, patch);
+        return ResultVO.success(Map.of("id", id, "version", version));
+    }
+
     /**
      * 5. (DELETE) 删除一篇文章
      *
@@ -260,11 +406,15 @@ public class PostController {
 
     /**
      * 【新 API】获取 Top 5 热榜
+     * 只要部分字段：/api/v1/posts/top?fields=id,title,viewCount (查库时只 SELECT 这几列)
+     *
+     * 返回 CompletableFuture：Redis 和数据库查询在 AsyncLookups 的线程池里执行，不占用 Tomcat 线程
      */
     @GetMapping("/posts/top")
-    public ResultVO<List<Post>> getTop5Posts() {
+    public CompletableFuture<ResultVO<List<?>>> getTop5Posts(@RequestParam(value = "fields", required = false) String fields) {
+        Set<PostField> fieldSet = PostField.parse(fields);
         // 我们硬编码 Top 5
-        List<Post> topPosts = postService.getTopViewedPosts(5);
-        return ResultVO.success(topPosts);
+        return postService.getTopViewedPostsAsync(5, fieldSet)
+                .thenApply(topPosts -> ResultVO.success(PostView.of(topPosts, fieldSet)));
     }
 }
\ No newline at end of file
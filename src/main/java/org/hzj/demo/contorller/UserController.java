@@ -0,0 +1,110 @@
+package org.hzj.demo.contorller;
+
+import org.hzj.demo.async.AsyncLookups;
+import org.hzj.demo.model.LoginUser;
+import org.hzj.demo.model.Post;
+import org.hzj.demo.service.FollowService;
+import org.hzj.demo.service.PostService;
+import org.hzj.demo.service.TimelineService;
+import org.hzj.demo.vo.FeedPage;
+import org.hzj.demo.vo.ResultVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 用户相关：作者主页、关注 / 取消关注、关注时间线
+ */
+@RestController
+@RequestMapping("/api/v1")
+public class UserController {
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private FollowService followService;
+
+    @Autowired
+    private TimelineService timelineService;
+
+    @Autowired
+    private AsyncLookups asyncLookups;
+
+    /**
+     * 作者主页：某个作者的文章 (最新的在前)
+     * 第一页：/api/v1/users/1/posts?size=20
+     * 下一页：/api/v1/users/1/posts?size=20&cursor={上一页的 nextCursor}
+     */
+    @GetMapping("/users/{id}/posts")
+    public ResultVO<FeedPage<Post>> getUserPosts(@PathVariable Long id,
+                                                 @RequestParam(value = "cursor", required = false) Long cursor,
+                                                 @RequestParam(value = "size", defaultValue = "20") int size) {
+        return ResultVO.success(postService.getAuthorPosts(id, cursor, checkSize(size)));
+    }
+
+    /**
+     * 粉丝数 / 关注数
+     * 两个 COUNT 互不依赖，同时在数据库线程池里执行 (见 AsyncLookups)，耗时取两者中慢的那个
+     */
+    @GetMapping("/users/{id}/follow-stats")
+    public CompletableFuture<ResultVO<Map<String, Long>>> getFollowStats(@PathVariable Long id) {
+        CompletableFuture<Long> followers = asyncLookups.db(() -> followService.followerCount(id));
+        CompletableFuture<Long> following = asyncLookups.db(() -> followService.followingCount(id));
+        return followers.thenCombine(following, (followerCount, followingCount) ->
+                ResultVO.success(Map.of("followers", followerCount, "following", followingCount)));
+    }
+
+    /**
+     * 关注 (需要登录)
+     */
+    @PostMapping("/users/{id}/follow")
+    public ResultVO<Boolean> follow(@PathVariable Long id) {
+        Long me = requireLogin();
+        boolean changed = followService.follow(me, id);
+        if (changed) {
+            timelineService.onFollowingChanged(me);
+        }
+        return ResultVO.success(changed);
+    }
+
+    /**
+     * 取消关注 (需要登录)
+     */
+    @DeleteMapping("/users/{id}/follow")
+    public ResultVO<Boolean> unfollow(@PathVariable Long id) {
+        Long me = requireLogin();
+        boolean changed = followService.unfollow(me, id);
+        if (changed) {
+            timelineService.onFollowingChanged(me);
+        }
+        return ResultVO.success(changed);
+    }
+
+    /**
+     * 我的关注时间线 (需要登录)：我关注的人 (和我自己) 发的文章，最新的在前
+     */
+    @GetMapping("/timeline")
+    public ResultVO<FeedPage<Post>> getTimeline(@RequestParam(value = "cursor", required = false) Long cursor,
+                                                @RequestParam(value = "size", defaultValue = "20") int size) {
+        return ResultVO.success(postService.getTimeline(requireLogin(), cursor, checkSize(size)));
+    }
+
+    private static Long requireLogin() {
+        Long userId = LoginUser.currentUserId();
+        if (userId == null) {
+            throw new AuthenticationCredentialsNotFoundException("请先登录");
+        }
+        return userId;
+    }
+
+    private static int checkSize(int size) {
+        if (size < 1 || size > 100) {
+            throw new IllegalArgumentException("size 必须在 1 到 100 之间");
+        }
+        return size;
+    }
+}
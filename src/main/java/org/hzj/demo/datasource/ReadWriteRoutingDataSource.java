@@ -0,0 +1,53 @@
+package org.hzj.demo.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 读写分离的“路由” DataSource
+ *
+ * 知识点：AbstractRoutingDataSource
+ * 它本身不持有连接，每次 getConnection() 时先调用 determineCurrentLookupKey()，
+ * 根据返回的 key 去真正的 DataSource (主库 / 某个从库) 拿连接。
+ *
+ * 路由规则：
+ * 1. 不是只读事务 (写操作)           -> 主库
+ * 2. 被强制走主库 / 处于“读己之写”窗口 -> 主库
+ * 3. 只读事务 (@Transactional(readOnly = true)) -> 轮询一个健康的从库
+ * 4. 没有健康的从库                  -> 回退主库
+ *
+ * 注意：它必须被 LazyConnectionDataSourceProxy 包一层 (见 ReadWriteDataSourceConfig)，
+ * 否则事务开始时就去拿连接，那时候 “readOnly” 标记还没设置好，永远会路由到主库。
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final ReplicaSet replicas;
+    private final ReadYourWrites readYourWrites;
+
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaSet replicas, ReadYourWrites readYourWrites) {
+        this.replicas = replicas;
+        this.readYourWrites = readYourWrites;
+
+        Map<Object, Object> targets = new HashMap<>(replicas.getDataSources());
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || RoutingContext.isPrimaryForced()
+                || readYourWrites.shouldReadPrimary()) {
+            return PRIMARY;
+        }
+        String replica = replicas.next();
+        return replica != null ? replica : PRIMARY;
+    }
+}
@@ -0,0 +1,197 @@
+package org.hzj.demo.datasource;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hzj.demo.config.DataSourceRoutingProperties;
+import org.hzj.demo.config.JwtProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * “读己之写” (Read-Your-Writes)
+ *
+ * 问题：作者刚 createPost / updatePost (写主库)，马上刷新页面 (读从库)，
+ *      从库还没同步过来 -> 作者看到的是旧数据，以为“没保存成功”。
+ *
+ * 解决：写完之后，在一个时间窗口内，让【这个作者】的读请求都走主库。
+ * 我们用两种方式记住“这个人刚写过”：
+ * 1. Cookie (rw_primary_until)：浏览器会自动带回来，请求落到【任何一个节点】都能识别
+ * 2. 本机内存 (按登录用户名)：不带 Cookie 的 API 客户端，落在同一个节点时也能识别
+ *
+ * 知识点：Cookie 是客户端发来的，不能原样相信
+ * 如果直接相信 "rw_primary_until=9999999999999"，谁都可以让自己的所有读请求永远走主库 (绕过从库，把主库压垮)。
+ * 所以 Cookie 的值是 "截止时间.签名" (HMAC-SHA256，密钥和 JWT 共用，所有节点都能验证)，
+ * 签名不对、或者截止时间比“现在 + 窗口”还晚的，都当作没有。
+ */
+@Component
+public class ReadYourWrites {
+
+    static final String COOKIE_NAME = "rw_primary_until";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    @Autowired
+    private DataSourceRoutingProperties properties;
+
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    /** 超过这么多条时，顺手清理一次过期的记录，防止 Map 无限增长 */
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    /** 用户名 -> 在此时间之前读主库 (毫秒时间戳) */
+    private final Map<String, Long> stickyUsers = new ConcurrentHashMap<>();
+
+    /**
+     * 业务层在“写”成功之后调用
+     */
+    public void markWrite() {
+        markWrite(currentUser());
+    }
+
+    /**
+     * 还没有登录态时 (例如登录时自动注册的新用户)，显式指定是哪个用户写的
+     * @param user 登录用户名 (手机号)，和 Authentication.getName() 一致
+     */
+    public void markWrite(String user) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long until = System.currentTimeMillis() + properties.getReadYourWritesWindowMs();
+
+        if (user != null) {
+            if (stickyUsers.size() > SWEEP_THRESHOLD) {
+                long now = System.currentTimeMillis();
+                stickyUsers.values().removeIf(t -> t <= now);
+            }
+            stickyUsers.put(user, until);
+        }
+
+        HttpServletResponse response = currentResponse();
+        if (response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(COOKIE_NAME, until + "." + sign(until));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, properties.getReadYourWritesWindowMs() / 1000));
+            response.addCookie(cookie);
+        }
+    }
+
+    /**
+     * 路由 DataSource 在决定“只读事务走哪个库”时调用
+     */
+    public boolean shouldReadPrimary() {
+        return shouldReadPrimary(currentUser());
+    }
+
+    private boolean shouldReadPrimary(String user) {
+        long now = System.currentTimeMillis();
+
+        HttpServletRequest request = currentRequest();
+        if (request != null && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (COOKIE_NAME.equals(cookie.getName()) && isValidCookie(cookie.getValue(), now)) {
+                    return true;
+                }
+            }
+        }
+
+        if (user != null) {
+            Long until = stickyUsers.get(user);
+            if (until != null) {
+                if (until > now) {
+                    return true;
+                }
+                stickyUsers.remove(user, until); // 过期了，顺手清理
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 先按正常路由查 (只读 -> 从库)；查不到时，可能只是“复制延迟”，再去主库确认一次。
+     * 只有当前用户还在读己之写窗口内 (刚写过) 才回主库：
+     * 否则每个“查不到”的请求 (随便编一个 id / 手机号) 都会打到主库一次，等于给了别人一个压垮主库的入口。
+     * 没开读写分离时只查一次 (主库查不到就是真的没有)。
+     */
+    public <T> Optional<T> findWithPrimaryFallback(Supplier<Optional<T>> query) {
+        return findWithPrimaryFallback(currentUser(), query);
+    }
+
+    /**
+     * 还没有登录态时 (例如 JwtAuthFilter 按 Token 里的手机号加载用户)，显式指定是哪个用户
+     */
+    public <T> Optional<T> findWithPrimaryFallback(String user, Supplier<Optional<T>> query) {
+        Optional<T> result = query.get();
+        if (result.isPresent() || !properties.isEnabled() || !shouldReadPrimary(user)) {
+            return result;
+        }
+        return RoutingContext.onPrimary(query);
+    }
+
+    /** Cookie 的值："截止时间.签名"；签名对、没过期、而且不超过“现在 + 窗口” */
+    boolean isValidCookie(String value, long now) {
+        int dot = value.indexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+        long until;
+        try {
+            until = Long.parseLong(value.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (until <= now || until > now + properties.getReadYourWritesWindowMs()) {
+            return false;
+        }
+        byte[] expected = sign(until).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, value.substring(dot + 1).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String sign(long until) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(jwtProperties.getSecret().getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            byte[] signature = mac.doFinal((COOKIE_NAME + ":" + until).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 不可用", e);
+        }
+    }
+
+    private String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private HttpServletRequest currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes servlet ? servlet.getRequest() : null;
+    }
+
+    private HttpServletResponse currentResponse() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes servlet ? servlet.getResponse() : null;
+    }
+}
@@ -0,0 +1,91 @@
+package org.hzj.demo.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一组从库：负责【负载均衡】和【健康检查】
+ *
+ * - 负载均衡：在“当前健康”的从库之间轮询 (round-robin)
+ * - 健康检查：定时对每个从库执行 Connection.isValid()，
+ *   失败的从库被摘掉，恢复后自动加回来
+ * - 一个健康的都没有：返回 null，由路由 DataSource 回退到主库
+ */
+public class ReplicaSet {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaSet.class);
+
+    private final List<String> keys;
+    private final Map<String, DataSource> dataSources;
+    private final int validationTimeoutSeconds;
+
+    /** 当前健康的从库 key (整体替换，读的时候不需要加锁) */
+    private volatile List<String> healthy;
+
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    public ReplicaSet(Map<String, DataSource> dataSources, int validationTimeoutSeconds) {
+        this.dataSources = new LinkedHashMap<>(dataSources);
+        this.keys = List.copyOf(dataSources.keySet());
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        // 启动时先乐观地认为都健康，第一次检查后再修正
+        this.healthy = keys;
+    }
+
+    /**
+     * 选一个从库 (轮询)；没有健康的从库时返回 null
+     */
+    public String next() {
+        List<String> current = healthy;
+        if (current.isEmpty()) {
+            return null;
+        }
+        int index = Math.floorMod(cursor.getAndIncrement(), current.size());
+        return current.get(index);
+    }
+
+    /**
+     * 健康检查 (由定时任务调用)
+     */
+    public void checkHealth() {
+        List<String> alive = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            if (isValid(key)) {
+                alive.add(key);
+            }
+        }
+        if (!alive.equals(healthy)) {
+            log.warn("从库健康状态变化: {} -> {}", healthy, alive);
+        }
+        healthy = Collections.unmodifiableList(alive);
+    }
+
+    private boolean isValid(String key) {
+        try (Connection connection = dataSources.get(key).getConnection()) {
+            return connection.isValid(validationTimeoutSeconds);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    public Map<String, DataSource> getDataSources() {
+        return dataSources;
+    }
+
+    public List<String> getAll() {
+        return keys;
+    }
+
+    public List<String> getHealthy() {
+        return healthy;
+    }
+}
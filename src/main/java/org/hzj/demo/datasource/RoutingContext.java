@@ -0,0 +1,41 @@
+package org.hzj.demo.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * 路由的“强制走主库”开关 (ThreadLocal)
+ *
+ * 用法：从库查不到 (可能是复制延迟) 时，再去主库确认一次
+ * <pre>
+ *     repository.findXxx(...)
+ *             .or(() -> RoutingContext.onPrimary(() -> repository.findXxx(...)));
+ * </pre>
+ */
+public final class RoutingContext {
+
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+    private RoutingContext() {
+    }
+
+    public static boolean isPrimaryForced() {
+        return Boolean.TRUE.equals(FORCE_PRIMARY.get());
+    }
+
+    /**
+     * 在 supplier 执行期间，所有只读事务也走主库
+     */
+    public static <T> T onPrimary(Supplier<T> supplier) {
+        Boolean previous = FORCE_PRIMARY.get();
+        FORCE_PRIMARY.set(Boolean.TRUE);
+        try {
+            return supplier.get();
+        } finally {
+            if (previous == null) {
+                FORCE_PRIMARY.remove();
+            } else {
+                FORCE_PRIMARY.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.hzj.demo.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * PATCH /posts/{id} 的请求体：只传要改的字段 (null = 不修改)
+ * version 必填：客户端读到的文章版本号，和数据库里的不一致说明别人已经改过了 (返回 409)
+ */
+public class PostPatchRequest {
+
+    @NotNull(message = "版本号(version)不能为空")
+    private Long version;
+
+    @Size(min = 3, max = 200, message = "文章标题(title)长度必须在 3 到 200 之间")
+    private String title;
+
+    @Pattern(regexp = "(?s).*\\S.*", message = "文章内容(content)不能为空")
+    private String content;
+
+    @Size(max = 10, message = "标签(tags)最多 10 个")
+    private List<@Size(max = 32, message = "单个标签长度不能超过 32") String> tags;
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+    public List<String> getTags() { return tags; }
+    public void setTags(List<String> tags) { this.tags = tags; }
+
+    public boolean isEmpty() {
+        return title == null && content == null && tags == null;
+    }
+}
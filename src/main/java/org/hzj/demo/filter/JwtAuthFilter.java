@@ -1,5 +1,7 @@
 package org.hzj.demo.filter;
 
+import io.jsonwebtoken.Claims;
+import org.hzj.demo.auth.TokenRevocationList;
 import org.hzj.demo.util.JwtUtil;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -15,6 +17,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Date;
 
 /**
  * JWT 认证过滤器
@@ -25,9 +28,15 @@ import java.io.IOException;
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
+    /** 认证成功后，Token 的声明放在这个请求属性里 (退出登录时要用里面的 jti 和过期时间) */
+    public static final String CLAIMS_ATTRIBUTE = "org.hzj.demo.filter.JwtAuthFilter.claims";
+
     @Autowired
     private JwtUtil jwtUtil; // 我们的“Token 工厂” (解码/验证)
 
+    @Autowired
+    private TokenRevocationList revocationList; // 已吊销 (退出登录) 的 Token
+
     @Autowired
     private UserDetailsService userDetailsService; // 我们的“用户加载器” (AuthService)
 
@@ -62,13 +71,18 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         // 4. 【【解码】】
         //    (这里就是 5.2 阶段“死代码”被“激活”的地方)
-        final String userPhone = jwtUtil.extractSubject(jwt);
+        //    只解析 (验签) 一次，下面要用的字段都从 claims 里取
+        final Claims claims = jwtUtil.extractAllClaims(jwt);
+        final String userPhone = claims.getSubject();
 
         // 5. 【检查“是否已认证”】
         //    (SecurityContextHolder 是 Spring Security 的“全局上下文”)
         //    如果 userPhone 不是 null，并且“上下文”中【还未】设置认证
+        //    已经被吊销 (退出登录) 的 Token 当作没带：只查本机内存，不访问 Redis，
+        //    而且放在加载用户之前，被吊销的 Token 也不会再查一次数据库
         if (userPhone != null &&
-                SecurityContextHolder.getContext().getAuthentication() == null) {
+                SecurityContextHolder.getContext().getAuthentication() == null &&
+                !revocationList.isRevoked(claims.getId(), JwtUtil.userIdOf(claims), claims.getIssuedAt())) {
 
             // 6. 【加载】用户
             //    (这将调用我们的 AuthService.loadUserByUsername(...))
@@ -77,8 +91,8 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             // 7. 【验证】Token
             //    (检查 Token 是否过期，并且 Token 里的
             //     "subject" 是否真的和 UserDetails 里的 "username" 匹配)
-            if (!jwtUtil.isTokenExpired(jwt) &&
-                    jwtUtil.extractSubject(jwt).equals(userDetails.getUsername())) {
+            if (claims.getExpiration().after(new Date()) &&
+                    userPhone.equals(userDetails.getUsername())) {
 
                 // 8. 【【认证成功！】】
                 //    创建一个“认证凭证” (Token)
@@ -98,6 +112,7 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                 //    Spring Security 在此之后，
                 //    就“知道”这个请求是“已认证”的了。
                 SecurityContextHolder.getContext().setAuthentication(authToken);
+                request.setAttribute(CLAIMS_ATTRIBUTE, claims);
             }
         }
 
@@ -0,0 +1,74 @@
+package org.hzj.demo.filter;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hzj.demo.monitor.SqlRequestContext;
+import org.hzj.demo.monitor.SqlStatsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * SQL 统计的“请求边界”
+ * 1. 必须排在【最前面】(HIGHEST_PRECEDENCE)，
+ *    这样 JwtAuthFilter 里的 findByPhone 也能算进当前接口
+ * 2. 请求结束时检查有没有 N+1
+ * 3. 异步请求 (返回 CompletableFuture) 等整个请求完成才结算
+ *    (结果写回时的 ASYNC 分派不会再进这个过滤器，OncePerRequestFilter 默认跳过)
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "sql-monitor", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SqlRequestContextFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private SqlStatsRegistry sqlStatsRegistry;
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        // 先用固定的 "<unmatched>" 占位，等 HandlerMapping 匹配到路由模板后再替换 (见 SqlEndpointInterceptor)
+        SqlRequestContext context = SqlRequestContext.begin(SqlRequestContext.UNMATCHED);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlRequestContext.end();
+            if (isAsyncStarted(request)) {
+                // 异步请求 (Controller 返回 CompletableFuture)：查询还在工作线程上跑，等整个请求完成再结算
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        sqlStatsRegistry.finishRequest(context);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                sqlStatsRegistry.finishRequest(context);
+            }
+        }
+    }
+}
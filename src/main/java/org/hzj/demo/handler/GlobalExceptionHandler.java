@@ -2,6 +2,7 @@ package org.hzj.demo.handler;
 
 import org.hzj.demo.exception.ResourceNotFoundException;
 import org.hzj.demo.vo.ResultVO;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.AuthenticationException;
@@ -10,6 +11,11 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 知识点：@RestControllerAdvice
@@ -93,6 +99,53 @@ public class GlobalExceptionHandler {
         return ResultVO.error(400, errorMessage);
     }
 
+    /**
+     * 捕获“参数不合法”异常 (400)
+     * (例如：?mode=xxx 不是 and / or)
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResultVO<Object> handleIllegalArgument(IllegalArgumentException e) {
+        return ResultVO.error(400, e.getMessage());
+    }
+
+    /**
+     * 捕获“乐观锁冲突”异常 (409)
+     * (修改时带的版本号和数据库里的不一致：读取之后，别人已经改过这篇文章了)
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ResultVO<Object> handleOptimisticLockingFailure(OptimisticLockingFailureException e) {
+        return ResultVO.error(409, "文章已被修改，请刷新后重试");
+    }
+
+    /**
+     * 上传的文件超过 spring.servlet.multipart.max-file-size (413)
+     */
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public ResultVO<Object> handleMaxUploadSizeExceeded(MaxUploadSizeExceededException e) {
+        return ResultVO.error(413, "文件太大");
+    }
+
+    /**
+     * 异步查询超过了自己的期限 (504)，见 AsyncLookups
+     */
+    @ExceptionHandler(TimeoutException.class)
+    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+    public ResultVO<Object> handleLookupTimeout(TimeoutException e) {
+        return ResultVO.error(504, "查询超时，请稍后重试");
+    }
+
+    /**
+     * 异步查询的线程池排满了 (503)，或者整个异步请求超过了 spring.mvc.async.request-timeout (503)
+     */
+    @ExceptionHandler({RejectedExecutionException.class, AsyncRequestTimeoutException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResultVO<Object> handleOverloaded(Exception e) {
+        return ResultVO.error(503, "服务繁忙，请稍后重试");
+    }
+
     /**
      * 3. 捕获所有“其他”异常 (500)
      *
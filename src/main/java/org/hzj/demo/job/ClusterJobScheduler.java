@@ -0,0 +1,352 @@
+package org.hzj.demo.job;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.hzj.demo.cluster.ClusterBroadcaster;
+import org.hzj.demo.config.ClusterJobProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 集群定时任务：@Scheduled 在每个节点上都会触发，这里保证同一个任务 (的同一个分片) 同一时间只在一个节点上执行
+ *
+ * 用法：在 @Scheduled 方法里调用
+ * - runExclusive(任务名, 间隔, lease -> ...)           整个集群每个间隔只执行一次
+ * - runSharded(任务名, 分片列表, 间隔, (分片, lease) -> ...)  分片分给在线的节点，各做各的
+ * Redis 不可用时直接抛异常，由调用方决定是跳过还是在本机执行 (任务本身幂等时)
+ *
+ * 1. 租约 (job:lease:{任务}:{分片})：SET NX PX 抢占，运行期间后台每 lease-ttl-ms / 3 续期一次；
+ *    节点挂掉 / 卡住之后租约过期，别的节点接手。
+ *    执行成功后租约不马上删除，而是保留到“本次开始时间 + 间隔的 90%”：
+ *    各节点的 @Scheduled 触发时间不一样，这样这个间隔里其他节点再来也抢不到，整个集群每个间隔只执行一次。
+ *    执行失败则马上删除，下一次触发时 (任意节点) 重试。
+ * 2. fencing token (job:fence:{任务}:{分片})：每次抢到租约 +1，见 JobLease
+ * 3. 分片：每个节点每 heartbeat-interval-ms 在 job:nodes (ZSET，分数 = 心跳时间) 里报到；
+ *    分片按 rendezvous 哈希分给在线节点 (每个节点对每个分片算一个分数，分数最高的负责)，
+ *    节点增减时只有它负责的那些分片会换人。
+ *    各节点看到的节点列表可能短暂不一致 (两个节点都认为自己负责 / 谁都不负责)：
+ *    前者靠租约保证只有一个能执行，后者下一次触发时就补上了。
+ * 4. 指标 (tag job=任务名)：
+ *    - cluster_job.duration (Timer，tag result=success/failure/lost)：每次执行的耗时
+ *    - cluster_job.lag (秒)：距离“最久没成功的那个分片”上一次成功过了多久 (整个集群，不管在哪个节点执行的)，
+ *      明显超过间隔就说明任务没在跑 (例如负责的节点一直失败)
+ */
+@Component
+public class ClusterJobScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterJobScheduler.class);
+
+    private static final String NODES_KEY = "job:nodes";
+    private static final String LEASE_KEY_PREFIX = "job:lease:";
+    private static final String FENCE_KEY_PREFIX = "job:fence:";
+    private static final String LAST_SUCCESS_KEY = "job:last-success";
+
+    private static final String EXCLUSIVE_PARTITION = "all";
+
+    /** 抢占：成功时令牌 +1 并返回新令牌；已经被占用返回 0 */
+    private static final DefaultRedisScript<Long> ACQUIRE = new DefaultRedisScript<>(
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then " +
+            "  return redis.call('INCR', KEYS[2]) " +
+            "end " +
+            "return 0",
+            Long.class);
+
+    /** 续期：只有租约仍然属于自己时才延长 */
+    private static final DefaultRedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+            "return 0",
+            Long.class);
+
+    /** 执行完：保留到 ARGV[2] 毫秒之后过期 (<= 0 则马上删除)，只处理自己的租约 */
+    private static final DefaultRedisScript<Long> FINISH = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end " +
+            "if tonumber(ARGV[2]) > 0 then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+            "return redis.call('DEL', KEYS[1])",
+            Long.class);
+
+    /** 带令牌的 HSET：令牌不是最新的 (已经有人重新抢到了租约) 就不写 */
+    private static final DefaultRedisScript<Long> FENCED_HSET = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end " +
+            "redis.call('HSET', KEYS[2], ARGV[2], ARGV[3]) " +
+            "return 1",
+            Long.class);
+
+    @Autowired
+    private ClusterJobProperties properties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ClusterBroadcaster broadcaster;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** 续期用的后台线程 (任务本身在调用方的线程里执行) */
+    private ScheduledExecutorService renewer;
+
+    /** 任务名 -> 整个集群里最久没成功的分片上一次成功的时间 (毫秒)；0 = 还不知道 */
+    private final Map<String, AtomicLong> oldestSuccess = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cluster-job-lease");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+        try {
+            // 马上让出分片，不用等心跳过期
+            stringRedisTemplate.opsForZSet().remove(NODES_KEY, nodeId());
+        } catch (Exception ignored) {
+            // 删不掉也没关系，心跳过期之后自然下线
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cluster-job.heartbeat-interval-ms:5000}")
+    public void heartbeat() {
+        try {
+            long now = System.currentTimeMillis();
+            stringRedisTemplate.opsForZSet().add(NODES_KEY, nodeId(), now);
+            stringRedisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, 0, now - properties.getNodeTtlMs());
+        } catch (Exception e) {
+            log.warn("集群任务节点心跳失败: {}", e.getMessage());
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 执行
+    // ------------------------------------------------------------------
+
+    /**
+     * 整个集群每个 interval 只执行一次
+     * @return 这次是不是在本节点执行的
+     */
+    public boolean runExclusive(String job, Duration interval, Consumer<JobLease> task) {
+        return !runSharded(job, List.of(EXCLUSIVE_PARTITION), interval, (partition, lease) -> task.accept(lease)).isEmpty();
+    }
+
+    /**
+     * 把分片分给在线的节点，本节点只执行分给自己的那些 (每个分片每个 interval 只执行一次)
+     * 某个分片执行失败只记日志和指标，不影响其他分片
+     *
+     * @param partitions 分片 (例如缓存名、库号)，按 toString() 区分
+     * @return 本节点这次执行了的分片
+     */
+    public <K> List<K> runSharded(String job, Collection<K> partitions, Duration interval, BiConsumer<K, JobLease> task) {
+        List<String> nodes = liveNodes();
+        List<K> executed = new ArrayList<>();
+        for (K partition : partitions) {
+            String name = partition.toString();
+            if (!nodeId().equals(ownerOf(job, name, nodes))) {
+                continue;
+            }
+            JobLease lease = tryAcquire(job, name);
+            if (lease == null) {
+                // 别的节点正在执行，或者这个间隔里已经执行过了
+                continue;
+            }
+            execute(lease, interval, () -> task.accept(partition, lease));
+            executed.add(partition);
+        }
+        refreshLag(job, partitions);
+        return executed;
+    }
+
+    private JobLease tryAcquire(String job, String partition) {
+        String owner = nodeId() + ":" + UUID.randomUUID();
+        Long token = stringRedisTemplate.execute(ACQUIRE, List.of(leaseKey(job, partition), fenceKey(job, partition)),
+                owner, String.valueOf(properties.getLeaseTtlMs()));
+        if (token == null || token == 0L) {
+            return null;
+        }
+        return new JobLease(job, partition, owner, token);
+    }
+
+    private void execute(JobLease lease, Duration interval, Runnable task) {
+        long ttl = properties.getLeaseTtlMs();
+        ScheduledFuture<?> renewal = renewer.scheduleAtFixedRate(() -> renew(lease), ttl / 3, ttl / 3, TimeUnit.MILLISECONDS);
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        String result = "failure";
+        try {
+            task.run();
+            result = lease.isValid() ? "success" : "lost";
+        } catch (RuntimeException e) {
+            log.warn("集群任务 {} [{}] 执行失败 (下次触发时重试): {}", lease.getJob(), lease.getPartition(), e.getMessage());
+        } finally {
+            renewal.cancel(false);
+        }
+        Timer.builder("cluster_job.duration")
+                .description("集群定时任务每次执行的耗时")
+                .tag("job", lease.getJob()).tag("result", result)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+
+        boolean success = "success".equals(result);
+        long holdMs = success ? start + interval.toMillis() * 9 / 10 - System.currentTimeMillis() : 0;
+        try {
+            stringRedisTemplate.execute(FINISH, List.of(leaseKey(lease.getJob(), lease.getPartition())),
+                    lease.getOwner(), String.valueOf(holdMs));
+            if (success) {
+                stringRedisTemplate.opsForHash().put(LAST_SUCCESS_KEY,
+                        lease.getJob() + ":" + lease.getPartition(), String.valueOf(start));
+            }
+        } catch (Exception e) {
+            // 租约会自己过期
+            log.warn("集群任务 {} [{}] 释放租约失败: {}", lease.getJob(), lease.getPartition(), e.getMessage());
+        }
+    }
+
+    private void renew(JobLease lease) {
+        try {
+            Long ok = stringRedisTemplate.execute(RENEW, List.of(leaseKey(lease.getJob(), lease.getPartition())),
+                    lease.getOwner(), String.valueOf(properties.getLeaseTtlMs()));
+            if (ok == null || ok == 0L) {
+                lease.markLost();
+                log.warn("集群任务 {} [{}] 的租约已经丢失 (可能已被其他节点接手)", lease.getJob(), lease.getPartition());
+            }
+        } catch (Exception e) {
+            // 暂时连不上 Redis：下一次再续，真的过期了下一次会发现
+            log.warn("集群任务 {} [{}] 续期失败: {}", lease.getJob(), lease.getPartition(), e.getMessage());
+        }
+    }
+
+    /**
+     * 带 fencing token 写 Redis 哈希的一个字段：租约已经被别人重新抢到时不写
+     * @return 写进去了吗
+     */
+    public boolean fencedHashPut(JobLease lease, String key, String field, String value) {
+        Long ok = stringRedisTemplate.execute(FENCED_HSET, List.of(fenceKey(lease.getJob(), lease.getPartition()), key),
+                String.valueOf(lease.getFencingToken()), field, value);
+        if (ok == null || ok == 0L) {
+            lease.markLost();
+            log.warn("集群任务 {} [{}] 的令牌 {} 已经过时，放弃写入 {}", lease.getJob(), lease.getPartition(),
+                    lease.getFencingToken(), key);
+            return false;
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------
+    // 节点 / 分片分配
+    // ------------------------------------------------------------------
+
+    /** 在线的节点 (按节点号排序，本节点一定在里面) */
+    public List<String> liveNodes() {
+        long now = System.currentTimeMillis();
+        Set<String> members = stringRedisTemplate.opsForZSet()
+                .rangeByScore(NODES_KEY, now - properties.getNodeTtlMs(), Double.POSITIVE_INFINITY);
+        List<String> nodes = new ArrayList<>(members == null ? Set.of() : members);
+        if (!nodes.contains(nodeId())) {
+            nodes.add(nodeId());
+        }
+        nodes.sort(null);
+        return nodes;
+    }
+
+    /**
+     * rendezvous 哈希 (最高随机权重)：分数最高的节点负责这个分片
+     * 和“按节点数取模”相比，节点增减时其他节点负责的分片不会变
+     */
+    static String ownerOf(String job, String partition, List<String> nodes) {
+        String owner = null;
+        long best = 0;
+        for (String node : nodes) {
+            long score = hash(node + '|' + job + '|' + partition);
+            if (owner == null || Long.compareUnsigned(score, best) > 0) {
+                owner = node;
+                best = score;
+            }
+        }
+        return owner;
+    }
+
+    /** FNV-1a 再用 murmur3 的 fmix64 打散 */
+    private static long hash(String value) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // ------------------------------------------------------------------
+    // 指标
+    // ------------------------------------------------------------------
+
+    /** 读出每个分片上一次成功的时间 (所有节点写的)，取最早的那个 */
+    private <K> void refreshLag(String job, Collection<K> partitions) {
+        AtomicLong oldest = oldestSuccess.computeIfAbsent(job, name -> {
+            AtomicLong holder = new AtomicLong();
+            Gauge.builder("cluster_job.lag", holder,
+                            h -> h.get() == 0 ? Double.NaN : (System.currentTimeMillis() - h.get()) / 1000.0)
+                    .description("距离集群任务最久没成功的分片上一次成功过了多久")
+                    .baseUnit("seconds").tag("job", name).register(meterRegistry);
+            return holder;
+        });
+        try {
+            List<Object> fields = new ArrayList<>(partitions.size());
+            partitions.forEach(partition -> fields.add(job + ":" + partition));
+            long min = 0;
+            for (Object value : stringRedisTemplate.opsForHash().multiGet(LAST_SUCCESS_KEY, fields)) {
+                if (value != null) {
+                    long at = Long.parseLong(value.toString());
+                    min = min == 0 ? at : Math.min(min, at);
+                }
+            }
+            oldest.set(min);
+        } catch (Exception e) {
+            log.debug("读取集群任务 {} 的上次成功时间失败: {}", job, e.getMessage());
+        }
+    }
+
+    private String nodeId() {
+        return broadcaster.getNodeId();
+    }
+
+    private static String leaseKey(String job, String partition) {
+        return LEASE_KEY_PREFIX + job + ":" + partition;
+    }
+
+    private static String fenceKey(String job, String partition) {
+        return FENCE_KEY_PREFIX + job + ":" + partition;
+    }
+}
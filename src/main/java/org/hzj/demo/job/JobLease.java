@@ -0,0 +1,44 @@
+package org.hzj.demo.job;
+
+/**
+ * 一次任务运行持有的租约 (见 ClusterJobScheduler)
+ *
+ * 知识点：fencing token (防护令牌)
+ * 租约过期只说明“Redis 认为它不再是持有者”，持有者本身可能还在跑 (例如 GC 停顿了一分钟，醒来后并不知道租约已经丢了)。
+ * 每次有人拿到租约，令牌都 +1；写共享数据时带上令牌，由存储端拒绝比当前令牌旧的写入
+ * (见 ClusterJobScheduler.fencedHashPut)，停顿醒来的旧持有者就写不进去了。
+ */
+public final class JobLease {
+
+    private final String job;
+    private final String partition;
+    private final String owner;
+    private final long fencingToken;
+
+    /** 续期失败 (租约已经被别人拿走或者过期了) */
+    private volatile boolean lost;
+
+    JobLease(String job, String partition, String owner, long fencingToken) {
+        this.job = job;
+        this.partition = partition;
+        this.owner = owner;
+        this.fencingToken = fencingToken;
+    }
+
+    public String getJob() { return job; }
+    public String getPartition() { return partition; }
+    String getOwner() { return owner; }
+    public long getFencingToken() { return fencingToken; }
+
+    /**
+     * 租约还在吗？耗时长的任务每处理一批检查一次，不在了就停下来 (剩下的交给新的持有者)
+     * 注意：这只是“尽早停下”，真正防止旧持有者写坏数据的是 fencing token
+     */
+    public boolean isValid() {
+        return !lost;
+    }
+
+    void markLost() {
+        lost = true;
+    }
+}
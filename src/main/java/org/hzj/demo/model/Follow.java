@@ -0,0 +1,58 @@
+package org.hzj.demo.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 关注关系：follower (粉丝) 关注了 followee (作者)
+ *
+ * 两个索引：
+ * - (follower_id, followee_id) 唯一：防止重复关注，同时用于“我关注了谁”
+ * - (followee_id, follower_id)     ：用于“作者的粉丝有哪些”(发文章时推送给粉丝)
+ *
+ * 和 users 一样不分库，只存在 0 号库。
+ */
+@Entity
+@Table(name = "user_follows",
+        uniqueConstraints = @UniqueConstraint(name = "uk_user_follows_follower_followee",
+                columnNames = {"follower_id", "followee_id"}),
+        indexes = @Index(name = "idx_user_follows_followee_follower", columnList = "followee_id, follower_id"))
+public class Follow implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "follower_id", nullable = false)
+    private Long followerId;
+
+    @Column(name = "followee_id", nullable = false)
+    private Long followeeId;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createTime;
+
+    public Follow() {
+    }
+
+    public Follow(Long followerId, Long followeeId) {
+        this.followerId = followerId;
+        this.followeeId = followeeId;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getFollowerId() { return followerId; }
+    public void setFollowerId(Long followerId) { this.followerId = followerId; }
+    public Long getFolloweeId() { return followeeId; }
+    public void setFolloweeId(Long followeeId) { this.followeeId = followeeId; }
+    public LocalDateTime getCreateTime() { return createTime; }
+    public void setCreateTime(LocalDateTime createTime) { this.createTime = createTime; }
+}
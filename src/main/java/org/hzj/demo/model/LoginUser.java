@@ -0,0 +1,44 @@
+package org.hzj.demo.model;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * 登录用户 (Spring Security 的“当事人” Principal)
+ *
+ * 在 Spring Security 自带的 User (用户名 = 手机号) 基础上，多带一个我们自己的用户 id，
+ * 这样业务代码拿到当前用户时，不需要再按手机号查一次数据库。
+ */
+public class LoginUser extends org.springframework.security.core.userdetails.User {
+
+    private final Long id;
+
+    public LoginUser(Long id, String phone, String password) {
+        this(id, phone, password, new ArrayList<>());
+    }
+
+    public LoginUser(Long id, String phone, String password, Collection<? extends GrantedAuthority> authorities) {
+        super(phone, password, authorities);
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * 当前请求的登录用户 id；没登录 (或者是游客) 时返回 null
+     */
+    public static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getPrincipal() instanceof LoginUser user ? user.getId() : null;
+    }
+}
@@ -0,0 +1,112 @@
+package org.hzj.demo.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 事务性发件箱 (Transactional Outbox) 里的一条“领域事件”：文章被创建 / 修改 / 删除了
+ *
+ * 知识点：为什么要有发件箱？
+ * 写文章之后还有一堆“附带工作”：清缓存、更新标签索引、推送时间线、清理点击数 ZSet ...
+ * 1. 在请求里同步做：写接口变慢，而且数据库提交了、Redis 却失败了，缓存就一直是旧的 (没人重试)
+ * 2. 提交之后发 MQ / 异步执行：进程刚好在提交后崩溃，事件就丢了
+ * 发件箱的做法：事件和文章写在【同一个数据库事务】里 (要么都成功，要么都失败)，
+ * 再由后台的 OutboxDispatcher 读出来批量执行附带工作，失败就重试，执行成功才删除事件。
+ *
+ * 分库时每个库都有自己的 post_outbox 表，事件和文章写在同一个库里 (额外的库需要事先建好这张表)。
+ */
+@Entity
+@Table(name = "post_outbox",
+        indexes = @Index(name = "idx_post_outbox_next_attempt", columnList = "next_attempt_at, id"))
+public class OutboxEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    /** 事件只会在本库内读写，不会跨库搬迁，所以可以直接用自增 id */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+
+    @Column(name = "author_id")
+    private Long authorId;
+
+    /** 修改之后的版本号 (清缓存时用来判断缓存是不是已经是新的了) */
+    private Long version;
+
+    /**
+     * 修改之后的标签 (逗号分隔)；null = 标签没变，"" = 没有标签
+     * (不用 TagListConverter：它会把 null 读成空列表，就分不清“没变”和“清空了”)
+     */
+    @Column(length = 400)
+    private String tags;
+
+    /** 已经失败了几次 */
+    @Column(nullable = false)
+    private int attempts;
+
+    /** 下一次可以执行的时间 (失败之后按指数退避往后推) */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createTime;
+
+    public OutboxEvent() {
+    }
+
+    public static OutboxEvent of(Type type, Long postId, Long authorId, Long version, List<String> tags) {
+        OutboxEvent event = new OutboxEvent();
+        event.type = type;
+        event.postId = postId;
+        event.authorId = authorId;
+        event.version = version;
+        event.tags = tags == null ? null : String.join(",", tags);
+        event.nextAttemptAt = LocalDateTime.now();
+        return event;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+    public Long getPostId() { return postId; }
+    public void setPostId(Long postId) { this.postId = postId; }
+    public Long getAuthorId() { return authorId; }
+    public void setAuthorId(Long authorId) { this.authorId = authorId; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+    public String getTags() { return tags; }
+    public void setTags(String tags) { this.tags = tags; }
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    public LocalDateTime getCreateTime() { return createTime; }
+    public void setCreateTime(LocalDateTime createTime) { this.createTime = createTime; }
+
+    /** 标签列表；null = 标签没变 */
+    public List<String> tagList() {
+        if (tags == null) {
+            return null;
+        }
+        return tags.isEmpty() ? List.of() : List.of(tags.split(","));
+    }
+}
@@ -3,11 +3,14 @@ package org.hzj.demo.model;
 import jakarta.persistence.*; // 注意是 jakarta.persistence
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hzj.demo.util.TagUtils;
 
 import java.io.Serial;
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 知识点：@Entity
@@ -17,7 +20,9 @@ import java.time.LocalDateTime;
  * 我们可以用 @Table 自定义表名。
  */
 @Entity
-@Table(name = "blog_posts")
+@Table(name = "blog_posts",
+        // 作者主页按 “author_id = ? ORDER BY id DESC” 分页，联合索引可以直接按顺序扫描，不用排序
+        indexes = @Index(name = "idx_blog_posts_author_id", columnList = "author_id, id"))
 public class Post implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
@@ -41,14 +46,27 @@ public class Post implements Serializable {
      * 知识点：@Id
      * 声明这个字段是主键。
      *
-     * 知识点：@GeneratedValue(strategy = GenerationType.IDENTITY)
-     * 声明主键的生成策略。IDENTITY 表示使用数据库的“自增”特性（如 MySQL 的 AUTO_INCREMENT）。
+     * 知识点：@SnowflakeId (替代原来的 @GeneratedValue(strategy = GenerationType.IDENTITY))
+     * 分库之后不能再用 MySQL 的 AUTO_INCREMENT (每个库各自自增，id 会重复)，
+     * 改成在 Java 里生成“全局唯一”的雪花 id，见 SnowflakeIdGenerator。
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     @Column(nullable = false, length = 200)
     private Long id;
 
+    /**
+     * 知识点：@Version (乐观锁版本号)
+     * 1. 每次 UPDATE 时 Hibernate 自动 +1，并带上 "WHERE version = ?"
+     * 2. 分库时 id 是我们提前生成好的，Hibernate / Spring Data 靠 "version == null"
+     *    判断“这是一条新数据”，直接 INSERT，而不是先 SELECT 一次再决定
+     * 3. @ColumnDefault("0")：老数据加列时填 0
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     /**
      * 知识点：@Column
      * 用于定义字段的属性。
@@ -70,6 +88,32 @@ public class Post implements Serializable {
     @NotEmpty(message = "文章内容(content)不能为空")
     private String content;
 
+    /**
+     * 外置正文的地址 (SHA-256)，见 PostContentStore
+     * 不为 null 时 content 列里只有摘要，完整正文在段文件里 (读库之后会自动放回 content)
+     */
+    @Column(name = "content_ref", length = 64)
+    private String contentRef;
+
+    /**
+     * 作者 (users.id)。创建文章时由服务端根据登录用户填写，客户端传来的值会被忽略
+     * (老数据没有作者，为 null)
+     *
+     * 为什么不用 @ManyToOne User？
+     * 分库之后 blog_posts 和 users 可能不在同一个库，跨库没法 JOIN，只存 id 最简单。
+     */
+    @Column(name = "author_id")
+    private Long authorId;
+
+    /**
+     * 标签 (存成一个逗号分隔的字符串列，见 TagListConverter)
+     * null 表示“客户端没传”：更新文章时不传 tags 就保留原来的标签
+     */
+    @Convert(converter = TagListConverter.class)
+    @Column(length = 400)
+    @Size(max = 10, message = "标签(tags)最多 10 个")
+    private List<@Size(max = 32, message = "单个标签长度不能超过 32") String> tags;
+
     /**
      * 知识点：@CreationTimestamp
      * 由 Hibernate 提供，当数据第一次被插入时，自动将当前时间戳填充到这个字段。
@@ -92,6 +136,31 @@ public class Post implements Serializable {
     public void setTitle(String title) { this.title = title; }
     public String getContent() { return content; }
     public void setContent(String content) { this.content = content; }
+    public String getContentRef() { return contentRef; }
+    public void setContentRef(String contentRef) { this.contentRef = contentRef; }
     public LocalDateTime getCreateTime() { return createTime; }
     public void setCreateTime(LocalDateTime createTime) { this.createTime = createTime; }
+    public Long getAuthorId() { return authorId; }
+    public void setAuthorId(Long authorId) { this.authorId = authorId; }
+    public List<String> getTags() { return tags; }
+    public void setTags(List<String> tags) { this.tags = tags == null ? null : TagUtils.normalize(tags); }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
+    /**
+     * 拷贝所有“持久化”字段 (分库迁移 / 双写时，把一行数据原样搬到另一个库)
+     * 【新增字段时记得在这里也拷贝一份】
+     */
+    public Post copy() {
+        Post copy = new Post();
+        copy.id = id;
+        copy.version = version;
+        copy.title = title;
+        copy.content = content;
+        copy.contentRef = contentRef;
+        copy.authorId = authorId;
+        copy.tags = tags;
+        copy.createTime = createTime;
+        return copy;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package org.hzj.demo.model;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 文章的字段 (稀疏字段集 ?fields=id,title,viewCount 用)
+ *
+ * 声明顺序 = JSON 里的输出顺序 (和 ResponseJsonModule.PostSerializer 一样)
+ * name 既是 JSON 的字段名，也是 JPQL 里的属性名 (viewCount 除外，它不在数据库里，来自 Redis)
+ */
+public enum PostField {
+
+    VIEW_COUNT("viewCount", false),
+    ID("id", true),
+    VERSION("version", true),
+    TITLE("title", true),
+    CONTENT("content", true),
+    AUTHOR_ID("authorId", true),
+    TAGS("tags", true),
+    CREATE_TIME("createTime", true);
+
+    private final String fieldName;
+    private final boolean persistent;
+
+    PostField(String fieldName, boolean persistent) {
+        this.fieldName = fieldName;
+        this.persistent = persistent;
+    }
+
+    public String fieldName() { return fieldName; }
+
+    /** 是不是数据库里的列 (可以放进 SELECT) */
+    public boolean isPersistent() { return persistent; }
+
+    /**
+     * 解析 ?fields=id,title (逗号分隔，不区分大小写)
+     * @return null 表示没传 (返回全部字段)；id 总是包含在内
+     * @throws IllegalArgumentException 有不认识的字段名
+     */
+    public static Set<PostField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<PostField> result = EnumSet.of(ID);
+        for (String part : fields.split(",")) {
+            String name = part.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            result.add(of(name));
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    private static PostField of(String name) {
+        for (PostField field : values()) {
+            if (field.fieldName.equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("fields 里有不认识的字段: " + name);
+    }
+
+    /** 要不要正文 (null = 全部字段，当然要) */
+    public static boolean needsContent(Set<PostField> fields) {
+        return fields == null || fields.contains(CONTENT);
+    }
+
+    /** 把查出来的一列填进 Post (投影查询用) */
+    public void set(Post post, Object value) {
+        switch (this) {
+            case ID -> post.setId((Long) value);
+            case VERSION -> post.setVersion((Long) value);
+            case TITLE -> post.setTitle((String) value);
+            case CONTENT -> post.setContent((String) value);
+            case AUTHOR_ID -> post.setAuthorId((Long) value);
+            case TAGS -> {
+                @SuppressWarnings("unchecked")
+                List<String> tags = (List<String>) value;
+                post.setTags(tags);
+            }
+            case CREATE_TIME -> post.setCreateTime((LocalDateTime) value);
+            case VIEW_COUNT -> post.setViewCount((Long) value);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.hzj.demo.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文章的一个历史版本 (每次新增 / 修改文章写一条，见 PostRevisionStore)
+ *
+ * 知识点：增量 (delta) 存储
+ * 每个版本都存一份完整正文的话，一篇改了 100 次的长文就是 100 份拷贝。
+ * 这里大部分版本只存“相对上一个版本改了什么” (payload 是压缩过的编辑操作：从上一版拷贝哪一段 / 插入什么文字)，
+ * 改一个错别字只占几十个字节；每隔 snapshot-every 个版本存一次完整的快照 (也是压缩过的)，
+ * 还原任意一个版本最多只需要“一个快照 + snapshot-every 个 delta”。
+ *
+ * 标题、标签很短，每个版本都直接存完整的值 (列表接口不用还原正文就能显示)。
+ *
+ * 版本和文章存在同一个库里 (分库迁移时跟着文章一起搬，见 ReshardingService)，
+ * 额外的库需要事先建好这张表。
+ */
+@Entity
+@Table(name = "post_revisions",
+        indexes = @Index(name = "uk_post_revisions_post_revision", columnList = "post_id, revision", unique = true))
+public class PostRevision {
+
+    public enum Kind {
+        /** payload 是完整正文 (压缩过的 UTF-8) */
+        SNAPSHOT,
+        /** payload 是相对 baseRevision 的编辑操作 (压缩过的，见 TextDelta) */
+        DELTA
+    }
+
+    /** 用雪花 id：分库迁移时版本要原样拷贝到目标库，自增 id 会冲突 */
+    @Id
+    @SnowflakeId
+    private Long id;
+
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+
+    /** 版本号 = 这次写入之后文章的 version (新建是 0，每次修改 +1) */
+    @Column(nullable = false)
+    private long revision;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Kind kind;
+
+    /** DELTA 是在哪个版本的基础上改的 (总是上一个版本)；SNAPSHOT 为 null */
+    @Column(name = "base_revision")
+    private Long baseRevision;
+
+    /** 距离最近的快照隔了几个 delta (快照本身是 0)：还原这个版本要依次应用的 delta 个数 */
+    @Column(nullable = false)
+    private int chain;
+
+    @Column(nullable = false, length = 200)
+    private String title;
+
+    @Convert(converter = TagListConverter.class)
+    @Column(length = 400)
+    private List<String> tags = new ArrayList<>();
+
+    /** 谁改的 (新建时是作者) */
+    @Column(name = "editor_id")
+    private Long editorId;
+
+    /** 这个版本正文的字符数 (只改标题的版本，delta 就是“拷贝上一版的 0 ~ contentLength”，不用还原正文) */
+    @Column(name = "content_length", nullable = false)
+    private int contentLength;
+
+    /** payload 的字节数 (列表接口用来展示存储开销，不用把 payload 读出来) */
+    @Column(name = "stored_bytes", nullable = false)
+    private int storedBytes;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] payload;
+
+    /** 不用 @CreationTimestamp：迁移拷贝到目标库时要保留原来的时间 (由 PostRevisionStore 赋值) */
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createTime;
+
+    public PostRevision() {
+    }
+
+    /**
+     * 拷贝一份 (迁移时插入到目标库，id 和创建时间保持不变)
+     */
+    public PostRevision copy() {
+        PostRevision copy = new PostRevision();
+        copy.id = id;
+        copy.postId = postId;
+        copy.revision = revision;
+        copy.kind = kind;
+        copy.baseRevision = baseRevision;
+        copy.chain = chain;
+        copy.title = title;
+        copy.tags = tags == null ? null : new ArrayList<>(tags);
+        copy.editorId = editorId;
+        copy.contentLength = contentLength;
+        copy.storedBytes = storedBytes;
+        copy.payload = payload;
+        copy.createTime = createTime;
+        return copy;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getPostId() { return postId; }
+    public void setPostId(Long postId) { this.postId = postId; }
+    public long getRevision() { return revision; }
+    public void setRevision(long revision) { this.revision = revision; }
+    public Kind getKind() { return kind; }
+    public void setKind(Kind kind) { this.kind = kind; }
+    public Long getBaseRevision() { return baseRevision; }
+    public void setBaseRevision(Long baseRevision) { this.baseRevision = baseRevision; }
+    public int getChain() { return chain; }
+    public void setChain(int chain) { this.chain = chain; }
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+    public List<String> getTags() { return tags; }
+    public void setTags(List<String> tags) { this.tags = tags; }
+    public Long getEditorId() { return editorId; }
+    public void setEditorId(Long editorId) { this.editorId = editorId; }
+    public int getContentLength() { return contentLength; }
+    public void setContentLength(int contentLength) { this.contentLength = contentLength; }
+    public int getStoredBytes() { return storedBytes; }
+    public void setStoredBytes(int storedBytes) { this.storedBytes = storedBytes; }
+    public byte[] getPayload() { return payload; }
+    public void setPayload(byte[] payload) { this.payload = payload; }
+    public LocalDateTime getCreateTime() { return createTime; }
+    public void setCreateTime(LocalDateTime createTime) { this.createTime = createTime; }
+}
@@ -0,0 +1,18 @@
+package org.hzj.demo.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记主键使用 {@link org.hzj.demo.util.SnowflakeIdGenerator} 生成
+ * (替代 @GeneratedValue(strategy = GenerationType.IDENTITY))
+ */
+@IdGeneratorType(SnowflakeIdentifierGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface SnowflakeId {
+}
@@ -0,0 +1,40 @@
+package org.hzj.demo.model;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hzj.demo.util.SnowflakeIdGenerator;
+
+import java.util.EnumSet;
+
+/**
+ * Hibernate 的主键生成器：INSERT 之前在 Java 里生成 id (不需要数据库参与)
+ *
+ * 如果实体已经带着 id (分库时我们会先生成 id 再决定写哪个库；迁移数据时会原样拷贝 id)，
+ * 就直接使用它。
+ */
+public class SnowflakeIdentifierGenerator implements BeforeExecutionGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        if (currentValue != null) {
+            return currentValue;
+        }
+        Object assigned = session.getEntityPersister(null, owner).getIdentifier(owner, session);
+        if (assigned != null) {
+            return assigned;
+        }
+        return SnowflakeIdGenerator.global().nextId();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+}
@@ -0,0 +1,33 @@
+package org.hzj.demo.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 知识点：AttributeConverter
+ * 把 Java 里的 List<String> 存成数据库里的一个字符串列 ("java,spring,redis")。
+ *
+ * 为什么不用一张 post_tags 关联表？
+ * 1. 按标签查询走的是内存里的位图索引 (TagIndex)，根本不需要 SQL JOIN
+ * 2. 分库之后，标签跟着文章在同一行里，迁移 / 拷贝时天然一起搬走
+ */
+@Converter
+public class TagListConverter implements AttributeConverter<List<String>, String> {
+
+    @Override
+    public String convertToDatabaseColumn(List<String> tags) {
+        return tags == null || tags.isEmpty() ? null : String.join(",", tags);
+    }
+
+    @Override
+    public List<String> convertToEntityAttribute(String column) {
+        if (column == null || column.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(column.split(",")));
+    }
+}
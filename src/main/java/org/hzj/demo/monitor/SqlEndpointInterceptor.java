@@ -0,0 +1,23 @@
+package org.hzj.demo.monitor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * 把 SQL 统计的“接口名”从占位的 "<unmatched>" 换成路由模板 (/api/v1/posts/{id})
+ * (不用原始 URI (/api/v1/posts/42)，否则每个 id 都会被当成一个接口)
+ */
+public class SqlEndpointInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SqlRequestContext context = SqlRequestContext.current();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (context != null && pattern != null) {
+            context.setEndpoint(request.getMethod() + " " + pattern);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,86 @@
+package org.hzj.demo.monitor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 当前请求的 SQL 上下文 (ThreadLocal)
+ *
+ * 知识点：为什么用 ThreadLocal？
+ * Tomcat 是“一个请求一个线程”，JDBC 回调里拿不到 HttpServletRequest，
+ * 但它和 Controller 跑在【同一个线程】上，
+ * 所以把“当前是哪个接口”放进 ThreadLocal，监听器就能按接口归类统计。
+ */
+public final class SqlRequestContext {
+
+    private static final ThreadLocal<SqlRequestContext> CURRENT = new ThreadLocal<>();
+
+    /** 没有 HTTP 请求时 (定时任务、启动阶段) 的归类名 */
+    public static final String NO_ENDPOINT = "<background>";
+
+    /**
+     * 还没匹配到路由 (或者根本没有对应的路由，例如 404、扫描器乱发的路径) 时的归类名
+     * 不用原始 URI：URI 是客户端随便发的，每个不同的路径都会变成一个“接口”，统计表会被撑爆
+     */
+    public static final String UNMATCHED = "<unmatched>";
+
+    private String endpoint;
+
+    /** 本请求内：SQL 形状 -> 执行次数 (用于识别 N+1) */
+    private final Map<String, int[]> shapeCounts = new HashMap<>();
+
+    private SqlRequestContext(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public static SqlRequestContext begin(String endpoint) {
+        SqlRequestContext context = new SqlRequestContext(endpoint);
+        CURRENT.set(context);
+        return context;
+    }
+
+    public static SqlRequestContext current() {
+        return CURRENT.get();
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 把请求线程的上下文“搬”到工作线程上 (并行查询多个库时用，见 ContextSnapshot)
+     */
+    public static void restore(SqlRequestContext context) {
+        if (context == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(context);
+        }
+    }
+
+    public static String currentEndpoint() {
+        SqlRequestContext context = CURRENT.get();
+        return context != null ? context.endpoint : NO_ENDPOINT;
+    }
+
+    /**
+     * HandlerMapping 解析出路由模板后 ("/api/v1/posts/{id}")，
+     * 用模板替换原始 URI，避免每个 id 都变成一个单独的“接口”。
+     */
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    // synchronized：并行查询多个分库时，同一个请求的上下文会被多个线程同时写
+    synchronized void recordShape(String shape) {
+        shapeCounts.computeIfAbsent(shape, k -> new int[1])[0]++;
+    }
+
+    synchronized Map<String, int[]> getShapeCounts() {
+        return shapeCounts;
+    }
+}
@@ -0,0 +1,33 @@
+package org.hzj.demo.monitor;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.Map;
+
+/**
+ * 自定义 Actuator 端点：/actuator/sqlstats
+ * - GET    /actuator/sqlstats?top=20  查看统计 (按总耗时倒序)
+ * - DELETE /actuator/sqlstats         清空统计 (压测前先清零)
+ */
+@Endpoint(id = "sqlstats")
+public class SqlStatsEndpoint {
+
+    private final SqlStatsRegistry registry;
+
+    public SqlStatsEndpoint(SqlStatsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats(@Nullable Integer top) {
+        return registry.snapshot(top != null ? top : 20);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        registry.reset();
+    }
+}
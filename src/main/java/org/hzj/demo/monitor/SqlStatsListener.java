@@ -0,0 +1,56 @@
+package org.hzj.demo.monitor;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.StatementType;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * datasource-proxy 的回调：每条 SQL 执行完之后，交给 {@link SqlStatsRegistry} 记账
+ *
+ * 知识点：什么是 SQL 的“形状” (shape)？
+ * "SELECT * FROM blog_posts WHERE id = 1" 和 "... WHERE id = 2" 是同一种查询。
+ * Hibernate 用的都是 PreparedStatement，SQL 本身就是 "... WHERE id = ?"，天然就是形状；
+ * 只有普通 Statement (字面量拼在 SQL 里) 才需要把数字 / 字符串替换成 "?"。
+ */
+public class SqlStatsListener implements QueryExecutionListener {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final SqlStatsRegistry registry;
+
+    public SqlStatsListener(SqlStatsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        // 只关心执行之后的耗时
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        boolean normalize = execInfo.getStatementType() == StatementType.STATEMENT;
+        for (QueryInfo queryInfo : queryInfoList) {
+            String shape = shapeOf(queryInfo.getQuery(), normalize);
+            if (execInfo.isBatch()) {
+                shape = "[batch] " + shape;
+            }
+            registry.record(shape, execInfo.getElapsedTime(), execInfo.isSuccess());
+        }
+    }
+
+    static String shapeOf(String sql, boolean replaceLiterals) {
+        String shape = sql;
+        if (replaceLiterals) {
+            shape = STRING_LITERAL.matcher(shape).replaceAll("?");
+            shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        }
+        return WHITESPACE.matcher(shape.trim()).replaceAll(" ");
+    }
+}
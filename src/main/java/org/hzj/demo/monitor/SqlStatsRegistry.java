@@ -0,0 +1,252 @@
+package org.hzj.demo.monitor;
+
+import jakarta.annotation.PreDestroy;
+import org.hzj.demo.config.SqlMonitorProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL 统计中心
+ * 1. 按“SQL 形状”统计：次数 / 总耗时 / 最大耗时 / 失败数
+ * 2. 按“接口”统计：请求数 / SQL 条数 / 总耗时 / N+1 次数
+ * 3. 慢查询、N+1 交给一个【单独的后台线程】写日志，请求线程只负责“丢进队列”
+ */
+@Component
+public class SqlStatsRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger("sql.slow");
+
+    /** 超过 maxStatementShapes 之后的 SQL 都归到这里 */
+    static final String OVERFLOW_SHAPE = "<other>";
+
+    /** 超过 maxEndpoints 之后的接口都归到这里 */
+    static final String OVERFLOW_ENDPOINT = "<other>";
+
+    private final SqlMonitorProperties properties;
+
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+    private final Deque<Map<String, Object>> recentSlowQueries = new ArrayDeque<>();
+    private final Deque<Map<String, Object>> recentNPlusOne = new ArrayDeque<>();
+
+    private final AtomicLong droppedLogs = new AtomicLong();
+
+    /**
+     * 异步日志线程池：1 个线程 + 有界队列，满了直接丢弃并计数
+     * (慢查询最多的时候，往往就是系统最忙的时候，这时候绝不能再让日志阻塞请求)
+     */
+    private final ThreadPoolExecutor logExecutor;
+
+    public SqlStatsRegistry(SqlMonitorProperties properties) {
+        this.properties = properties;
+        this.logExecutor = new ThreadPoolExecutor(
+                1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getLogQueueSize()),
+                r -> {
+                    Thread t = new Thread(r, "sql-slow-log");
+                    t.setDaemon(true);
+                    return t;
+                },
+                (r, executor) -> droppedLogs.incrementAndGet()
+        );
+    }
+
+    /**
+     * 记录一次 SQL 执行 (由 {@link SqlStatsListener} 在 JDBC 执行完之后调用)
+     */
+    public void record(String sql, long elapsedMs, boolean success) {
+        String shape = sql;
+        StatementStats stats = statements.get(shape);
+        if (stats == null) {
+            if (statements.size() >= properties.getMaxStatementShapes()) {
+                shape = OVERFLOW_SHAPE;
+            }
+            stats = statements.computeIfAbsent(shape, k -> new StatementStats());
+        }
+        String statementShape = shape;
+        stats.record(elapsedMs, success);
+
+        SqlRequestContext context = SqlRequestContext.current();
+        String endpoint = context != null ? context.getEndpoint() : SqlRequestContext.NO_ENDPOINT;
+        endpointStats(endpoint).recordStatement(elapsedMs);
+        if (context != null) {
+            context.recordShape(statementShape);
+        }
+
+        if (elapsedMs >= properties.getSlowThresholdMs()) {
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("time", Instant.now().toString());
+            event.put("endpoint", endpoint);
+            event.put("elapsedMs", elapsedMs);
+            event.put("sql", statementShape);
+            remember(recentSlowQueries, event);
+            logAsync(() -> log.warn("慢 SQL [{} ms] endpoint={} sql={}", elapsedMs, endpoint, statementShape));
+        }
+    }
+
+    /**
+     * 请求结束：记录接口请求数，并检查本请求有没有 N+1
+     */
+    public void finishRequest(SqlRequestContext context) {
+        EndpointStats endpointStats = endpointStats(context.getEndpoint());
+        endpointStats.requests.increment();
+
+        int threshold = properties.getRepeatedQueryThreshold();
+        for (Map.Entry<String, int[]> entry : context.getShapeCounts().entrySet()) {
+            int count = entry.getValue()[0];
+            if (count >= threshold) {
+                endpointStats.nPlusOne.increment();
+                String endpoint = context.getEndpoint();
+                String shape = entry.getKey();
+                Map<String, Object> event = new LinkedHashMap<>();
+                event.put("time", Instant.now().toString());
+                event.put("endpoint", endpoint);
+                event.put("executions", count);
+                event.put("sql", shape);
+                remember(recentNPlusOne, event);
+                logAsync(() -> log.warn("疑似 N+1: endpoint={} 同一条 SQL 执行了 {} 次: {}", endpoint, count, shape));
+            }
+        }
+    }
+
+    /** 和 SQL 形状一样封顶：超过 maxEndpoints 之后新出现的接口都归到 "<other>" */
+    private EndpointStats endpointStats(String endpoint) {
+        EndpointStats stats = endpoints.get(endpoint);
+        if (stats != null) {
+            return stats;
+        }
+        if (endpoints.size() >= properties.getMaxEndpoints()) {
+            endpoint = OVERFLOW_ENDPOINT;
+        }
+        return endpoints.computeIfAbsent(endpoint, k -> new EndpointStats());
+    }
+
+    private void remember(Deque<Map<String, Object>> deque, Map<String, Object> event) {
+        synchronized (deque) {
+            deque.addFirst(event);
+            while (deque.size() > properties.getRecentEvents()) {
+                deque.removeLast();
+            }
+        }
+    }
+
+    private void logAsync(Runnable task) {
+        logExecutor.execute(task);
+    }
+
+    /**
+     * 给 actuator 用的快照：按总耗时倒序
+     */
+    public Map<String, Object> snapshot(int top) {
+        Map<String, Object> result = new LinkedHashMap<>();
+
+        List<Map<String, Object>> statementList = new ArrayList<>();
+        statements.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, StatementStats> e) -> e.getValue().totalMs.sum()).reversed())
+                .limit(top)
+                .forEach(e -> statementList.add(e.getValue().toMap(e.getKey())));
+        result.put("statements", statementList);
+
+        Map<String, Object> endpointMap = new LinkedHashMap<>();
+        endpoints.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, EndpointStats> e) -> e.getValue().totalMs.sum()).reversed())
+                .forEach(e -> endpointMap.put(e.getKey(), e.getValue().toMap()));
+        result.put("endpoints", endpointMap);
+
+        synchronized (recentSlowQueries) {
+            result.put("recentSlowQueries", new ArrayList<>(recentSlowQueries));
+        }
+        synchronized (recentNPlusOne) {
+            result.put("recentNPlusOne", new ArrayList<>(recentNPlusOne));
+        }
+        result.put("droppedLogs", droppedLogs.get());
+        return result;
+    }
+
+    public void reset() {
+        statements.clear();
+        endpoints.clear();
+        synchronized (recentSlowQueries) {
+            recentSlowQueries.clear();
+        }
+        synchronized (recentNPlusOne) {
+            recentNPlusOne.clear();
+        }
+        droppedLogs.set(0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logExecutor.shutdown();
+    }
+
+    /** 单个 SQL 形状的统计 (全部用 LongAdder，避免多线程争抢同一个计数器) */
+    static class StatementStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalMs = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final AtomicLong maxMs = new AtomicLong();
+
+        void record(long elapsedMs, boolean success) {
+            count.increment();
+            totalMs.add(elapsedMs);
+            if (!success) {
+                errors.increment();
+            }
+            maxMs.accumulateAndGet(elapsedMs, Math::max);
+        }
+
+        Map<String, Object> toMap(String shape) {
+            long n = count.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("sql", shape);
+            map.put("count", n);
+            map.put("totalMs", totalMs.sum());
+            map.put("avgMs", n == 0 ? 0 : (double) totalMs.sum() / n);
+            map.put("maxMs", maxMs.get());
+            map.put("errors", errors.sum());
+            return map;
+        }
+    }
+
+    /** 单个接口的统计 */
+    static class EndpointStats {
+        final LongAdder requests = new LongAdder();
+        final LongAdder statements = new LongAdder();
+        final LongAdder totalMs = new LongAdder();
+        final LongAdder nPlusOne = new LongAdder();
+
+        void recordStatement(long elapsedMs) {
+            statements.increment();
+            totalMs.add(elapsedMs);
+        }
+
+        Map<String, Object> toMap() {
+            long r = requests.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requests", r);
+            map.put("statements", statements.sum());
+            map.put("statementsPerRequest", r == 0 ? 0 : (double) statements.sum() / r);
+            map.put("totalSqlMs", totalMs.sum());
+            map.put("nPlusOneDetections", nPlusOne.sum());
+            return map;
+        }
+    }
+}
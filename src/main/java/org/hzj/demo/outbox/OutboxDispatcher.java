@@ -0,0 +1,348 @@
+package org.hzj.demo.outbox;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.hzj.demo.cache.LocalPostCache;
+import org.hzj.demo.cache.PostCache;
+import org.hzj.demo.cache.PostListCache;
+import org.hzj.demo.cache.RedisGuard;
+import org.hzj.demo.config.OutboxProperties;
+import org.hzj.demo.content.PostContentStore;
+import org.hzj.demo.model.OutboxEvent;
+import org.hzj.demo.model.Post;
+import org.hzj.demo.repository.OutboxEventRepository;
+import org.hzj.demo.repository.PostRepository;
+import org.hzj.demo.service.PostService;
+import org.hzj.demo.service.TimelineService;
+import org.hzj.demo.sharding.ShardRouter;
+import org.hzj.demo.sharding.ShardedPostStore;
+import org.hzj.demo.tag.TagIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发件箱分发器：从每个库的 post_outbox 里认领事件，批量执行文章写入之后的附带工作
+ *
+ * 一批事件的处理顺序：
+ * 1. 文章列表缓存：只改动这批事件涉及的文章 (新建 / 修改的从数据库读出最新内容写进去，删除的移除)
+ * 2. 清 "post::{id}" 缓存 (一个 pipeline；修改事件只删版本比事件旧的缓存)
+ * 3. 删除的文章从点击数 ZSet (post:view_counts) 里移除 (一条 ZREM)
+ * 4. 标签位图索引 (本节点更新 + 广播给其他节点)
+ * 5. 关注时间线 (放最后：它自己不会抛异常，前面失败整批重试时不会重复推送)
+ * 全部成功才删除这批事件；任何一步失败，这批事件按指数退避重试 (1s, 2s, 4s ...)，
+ * 重试 max-attempts 次还失败就不再自动处理，记在 /actuator/health 的 outboxDispatcher 里。
+ *
+ * 触发方式：写完文章后 wakeUp() 立刻处理；另外每隔 poll-interval-ms 轮询一次兜底
+ * (重试到期的事件、本节点或其他节点崩溃前没处理完的事件)。
+ *
+ * 附带工作都是“幂等”的 (删缓存、按数据库最新内容覆盖列表缓存、ZREM、把标签设成某个值)，所以“至少执行一次”就够了：
+ * 执行成功但删除事件前崩溃，重启后再执行一遍也没关系。
+ */
+@Component
+public class OutboxDispatcher implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    /**
+     * 有需要人工处理的事件：应用本身还在正常服务，所以不是 DOWN
+     * (自定义状态不参与汇总，/actuator/health 整体还是 UP、HTTP 200，不会让负载均衡把所有节点摘掉)
+     */
+    public static final Status DEAD_LETTERS = new Status("DEAD_LETTERS", "有重试次数用完的事件，需要人工处理");
+
+    /** 重试次数用完的事件数多久重新统计一次 (每个库一条 COUNT，不在每次健康检查时执行) */
+    private static final long DEAD_LETTER_REFRESH_MS = 60_000;
+
+    @Autowired
+    private OutboxProperties properties;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private ShardedPostStore postStore;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private PostCache postCache;
+
+    @Autowired
+    private PostListCache postListCache;
+
+    @Autowired
+    private LocalPostCache localPostCache;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private TagIndex tagIndex;
+
+    @Autowired
+    private TimelineService timelineService;
+
+    @Autowired
+    private PostContentStore contentStore;
+
+    /** 单线程：同一个节点上不会有两批事件同时处理 (不同节点之间靠 SKIP LOCKED 区分) */
+    private ExecutorService executor;
+
+    /** 已经有一次“处理”在排队了，就不用再提交 (多次 wakeUp 合并成一次) */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    /** 上一次统计的重试次数用完的事件数 (-1 = 还没统计过)，由分发线程更新，健康检查只读它 */
+    private volatile long deadLetters = -1;
+    private long deadLettersCountedAt;
+    private long deadLettersCountedFailures = -1;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "outbox-dispatcher");
+            t.setDaemon(true);
+            return t;
+        });
+        // Redis 恢复之后立刻处理积压的事件 (熔断期间不处理，见 drainAll)
+        redisGuard.onRecovered(this::wakeUp);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /** 写操作的事务提交之后调用：尽快处理，不阻塞调用方 */
+    public void wakeUp() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drainAll);
+            } catch (RejectedExecutionException e) {
+                // 正在关闭，剩下的事件由下次启动 (或其他节点) 处理
+                scheduled.set(false);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    private void drainAll() {
+        // 先清标记再处理：处理期间来的 wakeUp 会再排一次，不会漏掉新事件
+        scheduled.set(false);
+        refreshDeadLetters();
+        // Redis 熔断中：附带工作几乎都要写 Redis，现在处理只会白白消耗重试次数，等恢复之后再说
+        if (!redisGuard.isAvailable()) {
+            return;
+        }
+        for (Integer shard : shardRouter.allShards()) {
+            try {
+                while (drainBatch(shard) >= properties.getBatchSize()) {
+                    // 一批满了说明可能还有，继续
+                }
+            } catch (Exception e) {
+                log.warn("处理 {} 号库的发件箱失败: {}", shard, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 在 shard 号库上开一个写事务：认领一批事件 -> 执行 -> 删除 (或记录失败)
+     * @return 这一批的事件数
+     */
+    private int drainBatch(int shard) {
+        return postStore.write(shard, () -> {
+            List<OutboxEvent> events = outboxEventRepository.lockDue(
+                    LocalDateTime.now(), properties.getMaxAttempts(), properties.getBatchSize());
+            if (events.isEmpty()) {
+                return 0;
+            }
+            try {
+                apply(events);
+                outboxEventRepository.deleteAllInBatch(events);
+                dispatched.addAndGet(events.size());
+            } catch (Exception e) {
+                failedBatches.incrementAndGet();
+                log.warn("发件箱事件处理失败 ({} 个，稍后重试): {}", events.size(), e.getMessage());
+                // 认领出来的是受管实体，改字段之后事务提交时自动 UPDATE
+                for (OutboxEvent event : events) {
+                    event.setAttempts(event.getAttempts() + 1);
+                    event.setNextAttemptAt(LocalDateTime.now().plus(backoffMs(event.getAttempts()), ChronoUnit.MILLIS));
+                    event.setLastError(truncate(String.valueOf(e.getMessage())));
+                }
+            }
+            return events.size();
+        });
+    }
+
+    private void apply(List<OutboxEvent> events) {
+        // 1. 列表缓存：新建 / 修改的文章在当前事务里 (同一个库) 一条 IN 查询读出最新内容
+        //    读不到说明已经被删了 (后面会有它的 DELETED 事件)，跳过
+        List<Long> changedIds = events.stream()
+                .filter(event -> event.getType() != OutboxEvent.Type.DELETED)
+                .map(OutboxEvent::getPostId)
+                .distinct()
+                .toList();
+        Map<Long, Post> latest = new HashMap<>();
+        if (!changedIds.isEmpty()) {
+            // 受管的实体不能直接改 content (会被写回数据库)，外置的正文读回到拷贝上
+            postRepository.findAllById(changedIds).forEach(post -> latest.put(post.getId(), contentStore.resolvedCopy(post)));
+        }
+        Map<Long, Post> created = new LinkedHashMap<>();
+        Map<Long, Post> updated = new LinkedHashMap<>();
+        Set<Long> deleted = new LinkedHashSet<>();
+        for (OutboxEvent event : events) {
+            Post post = latest.get(event.getPostId());
+            switch (event.getType()) {
+                case CREATED -> {
+                    if (post != null) {
+                        created.put(post.getId(), post);
+                    }
+                }
+                case UPDATED -> {
+                    if (post != null && !created.containsKey(post.getId())) {
+                        updated.put(post.getId(), post);
+                    }
+                }
+                case DELETED -> deleted.add(event.getPostId());
+            }
+        }
+        redisGuard.run(() -> postListCache.applyChanges(created.values(), updated.values(), deleted));
+
+        // 2. 单篇缓存：id -> 版本号 (null = 无条件删除)
+        Map<Long, Long> evictions = new HashMap<>();
+        List<String> deletedIds = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            switch (event.getType()) {
+                case UPDATED -> {
+                    // 同一篇文章改了多次，按最大的版本号判断；已经要无条件删除的就不用管了
+                    Long previous = evictions.get(event.getPostId());
+                    if (!evictions.containsKey(event.getPostId())) {
+                        evictions.put(event.getPostId(), event.getVersion());
+                    } else if (previous != null) {
+                        evictions.put(event.getPostId(), Math.max(previous, event.getVersion()));
+                    }
+                }
+                case DELETED -> {
+                    evictions.put(event.getPostId(), null);
+                    deletedIds.add(event.getPostId().toString());
+                }
+                default -> {
+                }
+            }
+        }
+        redisGuard.run(() -> postCache.evictOlderThan(evictions));
+        // 本机的降级缓存也删掉 (其他节点的本地副本靠有效期过期)
+        localPostCache.evict(evictions.keySet());
+
+        // 3. 点击数排行榜
+        if (!deletedIds.isEmpty()) {
+            redisGuard.run(() -> stringRedisTemplate.opsForZSet().remove(
+                    PostService.POST_VIEW_COUNT_KEY, deletedIds.toArray()));
+        }
+
+        // 4. 标签索引
+        for (OutboxEvent event : events) {
+            if (event.getType() == OutboxEvent.Type.DELETED) {
+                tagIndex.onDeleted(event.getPostId());
+            } else if (event.tagList() != null) {
+                tagIndex.onSaved(event.getPostId(), event.tagList());
+            }
+        }
+
+        // 5. 时间线
+        for (OutboxEvent event : events) {
+            if (event.getType() == OutboxEvent.Type.CREATED) {
+                Post post = new Post();
+                post.setId(event.getPostId());
+                post.setAuthorId(event.getAuthorId());
+                timelineService.onPostCreated(post);
+            } else if (event.getType() == OutboxEvent.Type.DELETED) {
+                timelineService.onPostDeleted(event.getAuthorId(), event.getPostId());
+            }
+        }
+    }
+
+    /**
+     * 重新统计重试次数用完的事件数：距上次超过 DEAD_LETTER_REFRESH_MS，或者这之后本节点有批次失败过
+     * (只在分发线程里调用)
+     */
+    private void refreshDeadLetters() {
+        long now = System.currentTimeMillis();
+        long failures = failedBatches.get();
+        if (now - deadLettersCountedAt < DEAD_LETTER_REFRESH_MS && failures == deadLettersCountedFailures) {
+            return;
+        }
+        try {
+            long count = 0;
+            for (Integer shard : shardRouter.allShards()) {
+                count += postStore.read(shard,
+                        () -> outboxEventRepository.countByAttemptsGreaterThanEqual(properties.getMaxAttempts()));
+            }
+            deadLetters = count;
+            deadLettersCountedAt = now;
+            deadLettersCountedFailures = failures;
+        } catch (Exception e) {
+            log.warn("统计发件箱里重试次数用完的事件失败: {}", e.getMessage());
+        }
+    }
+
+    private long backoffMs(int attempts) {
+        long backoff = 1000L << Math.min(attempts - 1, 20);
+        return Math.min(backoff, properties.getMaxBackoffMs());
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    /**
+     * /actuator/health 里的 "outboxDispatcher"：有重试次数用完的事件 (需要人工处理) 时显示 DEAD_LETTERS
+     * 只读分发线程统计好的数字，健康检查本身不查库
+     */
+    @Override
+    public Health health() {
+        long deadLetters = this.deadLetters;
+        Health.Builder builder = deadLetters > 0 ? Health.status(DEAD_LETTERS) : Health.up();
+        return builder
+                .withDetail("dispatched", dispatched.get())
+                .withDetail("failedBatches", failedBatches.get())
+                .withDetail("deadLetters", deadLetters)
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package org.hzj.demo.repository;
+
+import org.hzj.demo.model.Follow;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FollowRepository extends JpaRepository<Follow, Long> {
+
+    /**
+     * 插入关注关系，已经存在时什么都不做 (INSERT IGNORE，唯一索引挡住重复的那一条)
+     * 不用 save + 捕获 DataIntegrityViolationException：异常穿过仓库的事务代理时，外层事务已经被标记为只能回滚
+     * @return 1 = 新插入；0 = 已经存在
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO user_follows (follower_id, followee_id, create_time) " +
+            "VALUES (:followerId, :followeeId, NOW())", nativeQuery = true)
+    int insertIfAbsent(@Param("followerId") Long followerId, @Param("followeeId") Long followeeId);
+
+    @Modifying
+    @Query("DELETE FROM Follow f WHERE f.followerId = :followerId AND f.followeeId = :followeeId")
+    int deleteRelation(@Param("followerId") Long followerId, @Param("followeeId") Long followeeId);
+
+    long countByFolloweeId(Long followeeId);
+
+    long countByFollowerId(Long followerId);
+
+    /**
+     * 作者的粉丝 id (游标分页：follower_id > ?，走 (followee_id, follower_id) 索引)
+     * 发文章推送给粉丝时分批读取，避免一次性把几十万个 id 读进内存
+     */
+    @Query("SELECT f.followerId FROM Follow f WHERE f.followeeId = :followeeId AND f.followerId > :afterId ORDER BY f.followerId")
+    List<Long> findFollowerIds(@Param("followeeId") Long followeeId, @Param("afterId") Long afterId, Pageable pageable);
+
+    /** 我关注的所有作者 */
+    @Query("SELECT f.followeeId FROM Follow f WHERE f.followerId = :followerId")
+    List<Long> findFolloweeIds(@Param("followerId") Long followerId);
+
+    /** 我关注的作者里，哪些在 candidates 中 (用于找出我关注的“大V”) */
+    @Query("SELECT f.followeeId FROM Follow f WHERE f.followerId = :followerId AND f.followeeId IN :candidates")
+    List<Long> findFolloweeIdsIn(@Param("followerId") Long followerId, @Param("candidates") Collection<Long> candidates);
+}
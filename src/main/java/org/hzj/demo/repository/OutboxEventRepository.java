@@ -0,0 +1,30 @@
+package org.hzj.demo.repository;
+
+import org.hzj.demo.model.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * “认领”一批到期的事件 (必须在写事务里调用)
+     *
+     * 知识点：FOR UPDATE SKIP LOCKED (MySQL 8.0+)
+     * 多个节点同时跑 OutboxDispatcher 时，被别的节点锁住的行直接跳过，而不是等它的事务结束，
+     * 这样每个事件只会被一个节点处理，多个节点也能并行处理不同的事件。
+     */
+    @Query(value = "SELECT * FROM post_outbox WHERE attempts < :maxAttempts AND next_attempt_at <= :now " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvent> lockDue(@Param("now") LocalDateTime now,
+                              @Param("maxAttempts") int maxAttempts,
+                              @Param("limit") int limit);
+
+    /** 重试次数用完、不再自动处理的事件 (需要人工排查) */
+    long countByAttemptsGreaterThanEqual(int maxAttempts);
+}
@@ -1,8 +1,19 @@
 package org.hzj.demo.repository;
 import org.hzj.demo.model.Post;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * 知识点：@Repository
  * 告诉 Spring 容器："这是一个数据访问 Bean"，请管理它（并处理相关的数据库异常）。
@@ -26,4 +37,62 @@ import org.springframework.stereotype.Repository;
 public interface PostRepository extends JpaRepository<Post, Long> {
     // 未来我们还可以在这里定义自定义查询，比如：
     // List<Post> findByTitleContaining(String title);
+
+    /**
+     * “游标分页” (keyset pagination)：WHERE id > ? ORDER BY id LIMIT n
+     * 和 OFFSET 分页不同，翻到再后面也只扫描 n 行 (分库迁移时用来分批扫描整张表)
+     */
+    List<Post> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * 作者主页 (游标分页)：WHERE author_id = ? AND id < ? ORDER BY id DESC LIMIT n
+     * 走 (author_id, id) 联合索引，翻到第几页都只扫描 n 行
+     */
+    List<Post> findByAuthorIdAndIdLessThanOrderByIdDesc(Long authorId, Long id, Pageable pageable);
+
+    /**
+     * 一批作者最新文章的 id (只查 id 一列，用于重建关注时间线)
+     */
+    @Query("SELECT p.id FROM Post p WHERE p.authorId IN :authorIds ORDER BY p.id DESC")
+    List<Long> findIdsByAuthorIds(@Param("authorIds") Collection<Long> authorIds, Pageable pageable);
+
+    /**
+     * 只查 (id, tags) 两列，游标分页：启动时重建标签位图索引用
+     * (不加载 content 大字段；返回的每一行是 [Long id, List<String> tags])
+     */
+    @Query("SELECT p.id, p.tags FROM Post p WHERE p.id > :afterId AND p.tags IS NOT NULL ORDER BY p.id")
+    List<Object[]> findTagsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * 只查 id 一列，游标分页：启动时 / 定期重建文章 id 的布隆过滤器用
+     */
+    @Query("SELECT p.id FROM Post p WHERE p.id > :afterId ORDER BY p.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * 删除文章：一条 DELETE，作者判断也在 WHERE 里 (不用先 SELECT 出整行)
+     * editorId 为 null 时 "author_id = NULL" 永远不成立，只能删没有作者的老文章
+     * @return 删除的行数 (0 = 文章不存在，或者不是作者)
+     */
+    @Modifying
+    @Query("DELETE FROM Post p WHERE p.id = :id AND (p.authorId IS NULL OR p.authorId = :editorId)")
+    int deleteOwned(@Param("id") Long id, @Param("editorId") Long editorId);
+
+    /**
+     * 查出一行并加行锁 (SELECT ... FOR UPDATE)，锁到事务结束
+     * 迁移时拷贝和双写可能同时写目标库的同一行，先锁住再比较版本号，两边就只能排队
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Post p WHERE p.id = :id")
+    Optional<Post> findForUpdate(@Param("id") Long id);
+
+    /**
+     * 迁移数据时，把“原样拷贝”的行的版本号和创建时间改回源库的值
+     * (INSERT 时 Hibernate 会把 version 置 0、createTime 置为当前时间)
+     */
+    @Modifying
+    @Query(value = "UPDATE blog_posts SET version = :version, create_time = :createTime WHERE id = :id", nativeQuery = true)
+    int restoreCopiedMetadata(@Param("id") Long id,
+                              @Param("version") Long version,
+                              @Param("createTime") LocalDateTime createTime);
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package org.hzj.demo.repository;
+
+import org.hzj.demo.model.PostRevision;
+import org.hzj.demo.vo.RevisionSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PostRevisionRepository extends JpaRepository<PostRevision, Long> {
+
+    /** 文章的最新版本 (写新版本时用来决定存 delta 还是快照) */
+    Optional<PostRevision> findTopByPostIdOrderByRevisionDesc(Long postId);
+
+    Optional<PostRevision> findByPostIdAndRevision(Long postId, long revision);
+
+    /** 还原一个版本要用到的一段：从快照到它本身，按版本号升序 (走 (post_id, revision) 唯一索引) */
+    List<PostRevision> findByPostIdAndRevisionBetweenOrderByRevisionAsc(Long postId, long from, long to);
+
+    /**
+     * 版本列表 (游标分页，新的在前)：只查列表要显示的几列，不读 payload
+     */
+    @Query("SELECT new org.hzj.demo.vo.RevisionSummary(r.revision, r.title, r.editorId, r.kind, " +
+            "r.contentLength, r.storedBytes, r.createTime) " +
+            "FROM PostRevision r WHERE r.postId = :postId AND r.revision < :before ORDER BY r.revision DESC")
+    List<RevisionSummary> findSummaries(@Param("postId") Long postId,
+                                        @Param("before") long before,
+                                        Pageable pageable);
+
+    /** 迁移用：一批文章的全部版本 */
+    List<PostRevision> findByPostIdIn(Collection<Long> postIds);
+
+    /** 迁移用：目标库里已经有的版本 (只查 id) */
+    @Query("SELECT r.id FROM PostRevision r WHERE r.postId IN :postIds")
+    List<Long> findIdsByPostIds(@Param("postIds") Collection<Long> postIds);
+
+    /** 删除文章 / 迁移清理时，一条 DELETE 删掉这些文章的全部版本 */
+    @Modifying
+    @Query("DELETE FROM PostRevision r WHERE r.postId IN :postIds")
+    int deleteByPostIds(@Param("postIds") Collection<Long> postIds);
+}
@@ -0,0 +1,162 @@
+package org.hzj.demo.revision;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按行比较两段文本，找出“哪几行换成了哪几行” (TextDelta 编码 delta、diff 接口都用它)
+ *
+ * 知识点：Myers 差分算法 (git diff 默认的算法)
+ * 在“编辑图”上从左上角走到右下角：向右 = 删除一行，向下 = 插入一行，斜着走 = 这一行没变 (免费)。
+ * 按编辑次数 d = 0, 1, 2 ... 一层层扩展，每层只记录每条对角线能走到的最远点，
+ * 第一次到达终点时的 d 就是最少的编辑次数，时间 O((N+M)·D)，改动越少越快。
+ *
+ * 两个保护：
+ * 1. 先去掉相同的开头和结尾 (大部分修改只动中间几行，剩下的部分很小)
+ * 2. D 超过 maxEdits (几乎整篇重写) 就不再细分，中间部分整体算作“删掉这些、换成那些”
+ *    (回溯要保存每一层的状态，内存是 O(D²)，不能无限制地算下去)
+ */
+final class LineDiff {
+
+    /**
+     * 一处改动：旧文本的 [baseStart, baseEnd) 行换成新文本的 [newStart, newEnd) 行 (行号从 0 开始)
+     * baseStart == baseEnd 是纯插入，newStart == newEnd 是纯删除
+     */
+    record Edit(int baseStart, int baseEnd, int newStart, int newEnd) {
+    }
+
+    private LineDiff() {
+    }
+
+    /**
+     * 按行切分，每一行【保留】行尾的 '\n' (拼回去和原文完全一样)；最后一行可能没有 '\n'
+     */
+    static List<String> lines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    /**
+     * @return 按位置排好序的改动 (相邻的改动之间至少隔着一行没变的)
+     */
+    static List<Edit> diff(List<String> a, List<String> b, int maxEdits) {
+        int prefix = 0;
+        int limit = Math.min(a.size(), b.size());
+        while (prefix < limit && a.get(prefix).equals(b.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && a.get(a.size() - 1 - suffix).equals(b.get(b.size() - 1 - suffix))) {
+            suffix++;
+        }
+        List<String> x = a.subList(prefix, a.size() - suffix);
+        List<String> y = b.subList(prefix, b.size() - suffix);
+        if (x.isEmpty() && y.isEmpty()) {
+            return List.of();
+        }
+        if (x.isEmpty() || y.isEmpty()) {
+            return List.of(new Edit(prefix, prefix + x.size(), prefix, prefix + y.size()));
+        }
+
+        List<int[]> matches = myers(x, y, maxEdits);
+        if (matches == null) {
+            return List.of(new Edit(prefix, prefix + x.size(), prefix, prefix + y.size()));
+        }
+        // 两个相邻的“相同行”之间如果有没匹配上的行，就是一处改动
+        List<Edit> edits = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        for (int[] match : matches) {
+            if (match[0] > i || match[1] > j) {
+                edits.add(new Edit(prefix + i, prefix + match[0], prefix + j, prefix + match[1]));
+            }
+            i = match[0] + 1;
+            j = match[1] + 1;
+        }
+        if (i < x.size() || j < y.size()) {
+            edits.add(new Edit(prefix + i, prefix + x.size(), prefix + j, prefix + y.size()));
+        }
+        return edits;
+    }
+
+    /**
+     * @return 最长的一组“相同行”配对 [a 的行号, b 的行号]，按顺序；编辑次数超过 maxEdits 返回 null
+     */
+    private static List<int[]> myers(List<String> a, List<String> b, int maxEdits) {
+        int n = a.size();
+        int m = b.size();
+        int max = Math.min(n + m, Math.max(1, maxEdits));
+        int offset = n + m + 1;
+        // v[offset + k] = 对角线 k (= x - y) 上目前走到的最远的 x
+        int[] v = new int[2 * offset + 1];
+        // trace.get(d) = 第 d 层开始之前 v 在 k ∈ [-(d-1), d-1] 上的值 (回溯用)
+        List<int[]> trace = new ArrayList<>();
+        for (int d = 0; d <= max; d++) {
+            int[] saved = new int[Math.max(0, 2 * d - 1)];
+            for (int k = -(d - 1); k <= d - 1; k++) {
+                saved[k + d - 1] = v[offset + k];
+            }
+            trace.add(saved);
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];      // 从上面一条对角线向下走 (插入)
+                } else {
+                    x = v[offset + k - 1] + 1;  // 从左边一条对角线向右走 (删除)
+                }
+                int y = x - k;
+                while (x < n && y < m && a.get(x).equals(b.get(y))) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(trace, n, m);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<int[]> backtrack(List<int[]> trace, int n, int m) {
+        List<int[]> matches = new ArrayList<>();
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d >= 0; d--) {
+            int k = x - y;
+            int prevX;
+            int prevY;
+            if (d == 0) {
+                prevX = 0;
+                prevY = 0;
+            } else {
+                int[] v = trace.get(d);
+                int prevK = (k == -d || (k != d && v[k - 1 + d - 1] < v[k + 1 + d - 1])) ? k + 1 : k - 1;
+                prevX = v[prevK + d - 1];
+                prevY = prevX - prevK;
+            }
+            // 斜着走的部分是相同的行
+            while (x > prevX && y > prevY) {
+                x--;
+                y--;
+                matches.add(new int[]{x, y});
+            }
+            x = prevX;
+            y = prevY;
+        }
+        Collections.reverse(matches);
+        return matches;
+    }
+}
@@ -0,0 +1,350 @@
+package org.hzj.demo.revision;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hzj.demo.config.RevisionProperties;
+import org.hzj.demo.model.Post;
+import org.hzj.demo.model.PostRevision;
+import org.hzj.demo.repository.PostRevisionRepository;
+import org.hzj.demo.vo.FeedPage;
+import org.hzj.demo.vo.RevisionDetail;
+import org.hzj.demo.vo.RevisionDiff;
+import org.hzj.demo.vo.RevisionSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 文章的历史版本：写 (每次新增 / 修改文章时)、还原、列表、比较
+ *
+ * 【所有方法都要在文章所在库的事务里调用】(ShardedPostStore 负责开事务，版本和文章在同一个事务里写入)
+ *
+ * 写入规则 (见 PostRevision)：
+ * - 新建文章：版本 0，存快照
+ * - 修改：存相对上一个版本的 delta；距上一个快照满 snapshot-every 个版本，或者 delta 并不比快照小 (几乎整篇重写)，存快照
+ * - 开启之前就有的老文章：第一次修改时先把修改前的样子存成快照 (“基线”)，再存这次的修改
+ */
+@Component
+public class PostRevisionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PostRevisionStore.class);
+
+    /** delta 超过这么多字节才顺便算一下快照有多大 (小 delta 肯定比快照小，不用白白压缩一遍正文) */
+    private static final int SNAPSHOT_CHECK_BYTES = 512;
+
+    /**
+     * 修改之前的状态 (写库之前拿到，写库之后交给 record)
+     *
+     * @param latest  最新的版本；null = 这篇文章还没有历史
+     * @param current 修改之前的文章 (完整正文)；PATCH 只在历史接不上时才读它，其他时候为 null
+     */
+    public record Base(Long postId, PostRevision latest, Post current) {
+    }
+
+    @Autowired
+    private PostRevisionRepository repository;
+
+    @Autowired
+    private RevisionProperties properties;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    // ------------------------------------------------------------------
+    // 写
+    // ------------------------------------------------------------------
+
+    /**
+     * 新建文章：版本 0 (快照)
+     * @param content 完整正文 (post.content 可能已经换成了摘要)
+     * @return 写入的版本 (迁移双写时要同步到目标库)；没开启返回空列表
+     */
+    public List<PostRevision> recordCreated(Post post, String content) {
+        if (!isEnabled()) {
+            return List.of();
+        }
+        PostRevision revision = snapshot(post.getId(), post.getVersion(), post.getTitle(), post.getTags(),
+                content, post.getAuthorId());
+        return List.of(repository.save(revision));
+    }
+
+    /**
+     * PUT：修改之前的文章已经读出来了 (完整正文)
+     */
+    public Base before(Post current) {
+        if (!isEnabled()) {
+            return null;
+        }
+        return new Base(current.getId(), repository.findTopByPostIdOrderByRevisionDesc(current.getId()).orElse(null), current);
+    }
+
+    /**
+     * PATCH：在 UPDATE 之前调用。有历史就只查最新版本的元数据；
+     * 没有历史 (老文章) 或者历史断了 (关闭期间改过) 才读一次整行
+     */
+    public Base beforePatch(Long postId, long expectedVersion, Supplier<Post> current) {
+        if (!isEnabled()) {
+            return null;
+        }
+        PostRevision latest = repository.findTopByPostIdOrderByRevisionDesc(postId).orElse(null);
+        boolean continuous = latest != null && latest.getRevision() == expectedVersion;
+        return new Base(postId, latest, continuous ? null : current.get());
+    }
+
+    /**
+     * 修改之后调用 (同一个事务)
+     *
+     * @param revision 修改之后的版本号 (文章的新 version)
+     * @param title    修改之后的标题；PATCH 没改时为 null
+     * @param tags     修改之后的标签；PATCH 没改时为 null
+     * @param content  修改之后的完整正文；PATCH 没改时为 null
+     * @return 这次写入的版本 (1 个，需要补基线时 2 个)
+     */
+    public List<PostRevision> record(Base base, long revision, String title, List<String> tags,
+                                     String content, Long editorId) {
+        if (base == null) {
+            return List.of();
+        }
+        PostRevision latest = base.latest();
+        if (latest != null && latest.getRevision() >= revision) {
+            // 不应该发生 (版本号只增不减)；不能因为历史记录让文章的修改失败
+            log.warn("文章 {} 已经有版本 {}，跳过版本 {}", base.postId(), latest.getRevision(), revision);
+            return List.of();
+        }
+        List<PostRevision> written = new ArrayList<>(2);
+        Post current = base.current();
+        boolean currentIsPrevious = current != null && current.getVersion() != null && current.getVersion() == revision - 1;
+        if (currentIsPrevious && (latest == null || latest.getRevision() < revision - 1)) {
+            // 基线：修改之前的样子 (老文章第一次修改 / 关闭期间改过)，diff 才有对比的对象
+            // (时间只能记成现在，之前的修改时间已经不知道了)
+            latest = repository.save(snapshot(base.postId(), revision - 1, current.getTitle(), current.getTags(),
+                    current.getContent(), null));
+            written.add(latest);
+        }
+        PostRevision previous = latest;
+        // 修改之前的正文：PUT 手上就有；否则从历史版本还原 (只有真正需要算 delta 时才还原)
+        Supplier<String> baseContent = currentIsPrevious
+                ? current::getContent
+                : () -> restore(previous);
+
+        String newTitle = title != null ? title : current != null ? current.getTitle() : previous.getTitle();
+        List<String> newTags = tags != null ? tags : current != null ? current.getTags() : previous.getTags();
+
+        PostRevision next;
+        if (previous == null || previous.getRevision() != revision - 1
+                || previous.getChain() + 1 >= Math.max(1, properties.getSnapshotEvery())) {
+            // 没有上一个版本 / 版本号不连续 (中间有没记录的修改) / 到了该存快照的时候
+            next = snapshot(base.postId(), revision, newTitle, newTags,
+                    content != null ? content : baseContent.get(), editorId);
+        } else if (content == null) {
+            // 正文没变：一个 COPY 整篇 (不用还原上一版的正文)
+            next = delta(previous, revision, newTitle, newTags, previous.getContentLength(),
+                    TextDelta.unchanged(previous.getContentLength()), editorId);
+        } else {
+            byte[] payload = TextDelta.encode(baseContent.get(), content, properties.getMaxDiffEdits());
+            next = delta(previous, revision, newTitle, newTags, content.length(), payload, editorId);
+            if (payload.length > SNAPSHOT_CHECK_BYTES) {
+                PostRevision full = snapshot(base.postId(), revision, newTitle, newTags, content, editorId);
+                if (full.getStoredBytes() <= payload.length) {
+                    next = full;
+                }
+            }
+        }
+        written.add(repository.save(next));
+        return written;
+    }
+
+    /**
+     * 删除文章 / 迁移清理：删掉这些文章的全部版本
+     */
+    public void deleteAll(Collection<Long> postIds) {
+        if (!postIds.isEmpty()) {
+            repository.deleteByPostIds(postIds);
+        }
+    }
+
+    /**
+     * 迁移用：把源库读出来的版本原样插入当前库 (必须在目标库的写事务里调用)，已经有的跳过
+     * @param postIds 这些版本所属的文章 (用来查目标库里已经有哪些)
+     */
+    public int insertCopies(Collection<Long> postIds, Collection<PostRevision> revisions) {
+        if (revisions.isEmpty()) {
+            return 0;
+        }
+        Set<Long> existing = new HashSet<>(repository.findIdsByPostIds(postIds));
+        int n = 0;
+        for (PostRevision revision : revisions) {
+            if (existing.add(revision.getId())) {
+                entityManager.persist(revision.copy());
+                n++;
+            }
+        }
+        entityManager.flush();
+        return n;
+    }
+
+    /** 迁移用：一批文章在当前库里的全部版本 */
+    public List<PostRevision> findAll(Collection<Long> postIds) {
+        return postIds.isEmpty() ? List.of() : repository.findByPostIdIn(postIds);
+    }
+
+    // ------------------------------------------------------------------
+    // 读
+    // ------------------------------------------------------------------
+
+    /**
+     * 版本列表，新的在前 (游标 = 版本号)
+     */
+    public FeedPage<RevisionSummary> page(Long postId, Long before, int size) {
+        List<RevisionSummary> items = repository.findSummaries(postId,
+                before != null ? before : Long.MAX_VALUE, PageRequest.of(0, size));
+        Long nextCursor = items.size() < size ? null : items.get(items.size() - 1).revision();
+        return new FeedPage<>(items, nextCursor);
+    }
+
+    public Optional<RevisionDetail> detail(Long postId, long revision) {
+        return repository.findByPostIdAndRevision(postId, revision).map(r -> new RevisionDetail(
+                postId, r.getRevision(), r.getTitle(), r.getTags(), restore(r), r.getEditorId(), r.getCreateTime()));
+    }
+
+    /**
+     * 比较两个版本 (from 可以比 to 新，那就是“倒着看”的 diff)
+     * @return 任何一个版本不存在时返回 empty
+     */
+    public Optional<RevisionDiff> diff(Long postId, long from, long to) {
+        Optional<PostRevision> older = repository.findByPostIdAndRevision(postId, from);
+        Optional<PostRevision> newer = repository.findByPostIdAndRevision(postId, to);
+        if (older.isEmpty() || newer.isEmpty()) {
+            return Optional.empty();
+        }
+        List<String> a = LineDiff.lines(restore(older.get()));
+        List<String> b = LineDiff.lines(restore(newer.get()));
+        List<LineDiff.Edit> edits = LineDiff.diff(a, b, properties.getMaxDiffEdits());
+        return Optional.of(new RevisionDiff(postId, from, to,
+                older.get().getTitle(), newer.get().getTitle(),
+                older.get().getTags(), newer.get().getTags(),
+                hunks(a, b, edits, Math.max(0, properties.getDiffContextLines()))));
+    }
+
+    /**
+     * 还原一个版本的正文：找到它前面最近的快照，依次应用中间的 delta
+     * (chain = 距离快照的 delta 个数，一次范围查询就能取出整条链)
+     */
+    String restore(PostRevision target) {
+        if (target.getKind() == PostRevision.Kind.SNAPSHOT) {
+            return TextDelta.restore(target.getPayload());
+        }
+        List<PostRevision> chain = repository.findByPostIdAndRevisionBetweenOrderByRevisionAsc(
+                target.getPostId(), target.getRevision() - target.getChain(), target.getRevision());
+        if (chain.size() != target.getChain() + 1 || chain.get(0).getKind() != PostRevision.Kind.SNAPSHOT) {
+            throw new IllegalStateException("文章 " + target.getPostId() + " 的版本 " + target.getRevision()
+                    + " 无法还原：版本链不完整");
+        }
+        String content = TextDelta.restore(chain.get(0).getPayload());
+        for (int i = 1; i < chain.size(); i++) {
+            PostRevision delta = chain.get(i);
+            if (delta.getBaseRevision() == null || delta.getBaseRevision() != chain.get(i - 1).getRevision()) {
+                throw new IllegalStateException("文章 " + target.getPostId() + " 的版本 " + delta.getRevision()
+                        + " 无法还原：delta 的基础版本对不上");
+            }
+            content = TextDelta.apply(content, delta.getPayload());
+        }
+        return content;
+    }
+
+    private PostRevision snapshot(Long postId, long revision, String title, List<String> tags,
+                                  String content, Long editorId) {
+        byte[] payload = TextDelta.snapshot(content);
+        PostRevision r = newRevision(postId, revision, title, tags, editorId);
+        r.setKind(PostRevision.Kind.SNAPSHOT);
+        r.setChain(0);
+        r.setContentLength(content.length());
+        r.setPayload(payload);
+        r.setStoredBytes(payload.length);
+        return r;
+    }
+
+    private PostRevision delta(PostRevision previous, long revision, String title, List<String> tags,
+                               int contentLength, byte[] payload, Long editorId) {
+        PostRevision r = newRevision(previous.getPostId(), revision, title, tags, editorId);
+        r.setKind(PostRevision.Kind.DELTA);
+        r.setBaseRevision(previous.getRevision());
+        r.setChain(previous.getChain() + 1);
+        r.setContentLength(contentLength);
+        r.setPayload(payload);
+        r.setStoredBytes(payload.length);
+        return r;
+    }
+
+    private PostRevision newRevision(Long postId, long revision, String title, List<String> tags, Long editorId) {
+        PostRevision r = new PostRevision();
+        r.setPostId(postId);
+        r.setRevision(revision);
+        r.setTitle(title);
+        r.setTags(tags == null ? new ArrayList<>() : new ArrayList<>(tags));
+        r.setEditorId(editorId);
+        r.setCreateTime(LocalDateTime.now());
+        return r;
+    }
+
+    /**
+     * 改动 -> "diff -u" 格式的 hunk：相邻改动之间没变的行不超过 2 * context 就合并成一个 hunk
+     */
+    private static List<RevisionDiff.Hunk> hunks(List<String> a, List<String> b, List<LineDiff.Edit> edits, int context) {
+        List<RevisionDiff.Hunk> hunks = new ArrayList<>();
+        int i = 0;
+        while (i < edits.size()) {
+            int j = i;
+            while (j + 1 < edits.size() && edits.get(j + 1).baseStart() - edits.get(j).baseEnd() <= 2 * context) {
+                j++;
+            }
+            LineDiff.Edit first = edits.get(i);
+            LineDiff.Edit last = edits.get(j);
+            int fromStart = Math.max(0, first.baseStart() - context);
+            int fromEnd = Math.min(a.size(), last.baseEnd() + context);
+            // 改动之外的行两边都一样，行号只差一个固定的偏移
+            int toStart = fromStart - (first.baseStart() - first.newStart());
+            int toEnd = fromEnd - (last.baseEnd() - last.newEnd());
+
+            List<String> lines = new ArrayList<>();
+            int pos = fromStart;
+            for (LineDiff.Edit edit : edits.subList(i, j + 1)) {
+                for (; pos < edit.baseStart(); pos++) {
+                    lines.add(" " + strip(a.get(pos)));
+                }
+                for (int k = edit.baseStart(); k < edit.baseEnd(); k++) {
+                    lines.add("-" + strip(a.get(k)));
+                }
+                for (int k = edit.newStart(); k < edit.newEnd(); k++) {
+                    lines.add("+" + strip(b.get(k)));
+                }
+                pos = edit.baseEnd();
+            }
+            for (; pos < fromEnd; pos++) {
+                lines.add(" " + strip(a.get(pos)));
+            }
+            hunks.add(new RevisionDiff.Hunk(fromStart + 1, fromEnd - fromStart, toStart + 1, toEnd - toStart, lines));
+            i = j + 1;
+        }
+        return hunks;
+    }
+
+    private static String strip(String line) {
+        return line.endsWith("\n") ? line.substring(0, line.length() - 1) : line;
+    }
+}
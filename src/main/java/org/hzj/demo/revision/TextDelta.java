@@ -0,0 +1,221 @@
+package org.hzj.demo.revision;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 版本的 payload 编码：快照 = 压缩的正文；delta = 压缩的编辑操作
+ *
+ * delta 是一串操作，按顺序执行就能从旧正文拼出新正文：
+ * - COPY(start, length)：从旧正文拷贝 [start, start + length) 这一段 (按 char 计)
+ * - INSERT(text)：插入一段新文字
+ *
+ * 生成方法：先按行比较 (LineDiff)，没变的行都是 COPY；
+ * 改了的几行再去掉和旧行相同的开头、结尾 (改一个错别字，一整段 (一行) 里也只有中间几个字是 INSERT)，
+ * 所以 delta 的大小和“改了多少字”成正比，而不是和文章长度成正比。
+ * 最后整体用 Deflate 压缩 (COPY 的数字、重复的文字都能再压小不少)。
+ */
+final class TextDelta {
+
+    private static final byte COPY = 1;
+    private static final byte INSERT = 2;
+
+    private TextDelta() {
+    }
+
+    static byte[] snapshot(String content) {
+        return deflate(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String restore(byte[] snapshot) {
+        return new String(inflate(snapshot), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 正文没变 (只改了标题 / 标签)：一个 COPY 整篇，不需要知道旧正文的内容
+     */
+    static byte[] unchanged(int length) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (length > 0) {
+                writeCopy(out, 0, length);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return deflate(bytes.toByteArray());
+    }
+
+    /**
+     * @param maxEdits 按行比较时最多算多少处编辑 (见 LineDiff)
+     */
+    static byte[] encode(String base, String target, int maxEdits) {
+        List<String> baseLines = LineDiff.lines(base);
+        List<String> targetLines = LineDiff.lines(target);
+        // 每一行在正文里的起始位置 (多一个元素 = 正文长度，方便取 [start, end))
+        int[] baseOffsets = offsets(baseLines);
+        int[] targetOffsets = offsets(targetLines);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            Ops ops = new Ops(out);
+            int copied = 0;
+            for (LineDiff.Edit edit : LineDiff.diff(baseLines, targetLines, maxEdits)) {
+                int baseStart = baseOffsets[edit.baseStart()];
+                int baseEnd = baseOffsets[edit.baseEnd()];
+                int targetStart = targetOffsets[edit.newStart()];
+                int targetEnd = targetOffsets[edit.newEnd()];
+                ops.copy(copied, baseStart - copied);
+
+                // 改动的几行里，和旧行相同的开头、结尾也用 COPY
+                int head = 0;
+                int max = Math.min(baseEnd - baseStart, targetEnd - targetStart);
+                while (head < max && base.charAt(baseStart + head) == target.charAt(targetStart + head)) {
+                    head++;
+                }
+                int tail = 0;
+                while (tail < max - head
+                        && base.charAt(baseEnd - 1 - tail) == target.charAt(targetEnd - 1 - tail)) {
+                    tail++;
+                }
+                // INSERT 的文字按 UTF-8 存，不能从一个 emoji (代理对) 中间切开
+                if (head > 0 && Character.isHighSurrogate(target.charAt(targetStart + head - 1))) {
+                    head--;
+                }
+                if (tail > 0 && Character.isLowSurrogate(target.charAt(targetEnd - tail))) {
+                    tail--;
+                }
+                ops.copy(baseStart, head);
+                ops.insert(target.substring(targetStart + head, targetEnd - tail));
+                ops.copy(baseEnd - tail, tail);
+                copied = baseEnd;
+            }
+            ops.copy(copied, base.length() - copied);
+            ops.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return deflate(bytes.toByteArray());
+    }
+
+    static String apply(String base, byte[] delta) {
+        StringBuilder result = new StringBuilder(base.length());
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(inflate(delta)))) {
+            while (true) {
+                int op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException end) {
+                    return result.toString();
+                }
+                if (op == COPY) {
+                    int start = in.readInt();
+                    int length = in.readInt();
+                    if (start < 0 || length < 0 || start + length > base.length()) {
+                        throw new IllegalStateException("delta 和上一个版本对不上: copy " + start + "+" + length
+                                + ", 上一个版本只有 " + base.length() + " 个字符");
+                    }
+                    result.append(base, start, start + length);
+                } else if (op == INSERT) {
+                    byte[] text = new byte[in.readInt()];
+                    in.readFully(text);
+                    result.append(new String(text, StandardCharsets.UTF_8));
+                } else {
+                    throw new IllegalStateException("未知的 delta 操作: " + op);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int[] offsets(List<String> lines) {
+        int[] offsets = new int[lines.size() + 1];
+        for (int i = 0; i < lines.size(); i++) {
+            offsets[i + 1] = offsets[i] + lines.get(i).length();
+        }
+        return offsets;
+    }
+
+    private static void writeCopy(DataOutputStream out, int start, int length) throws IOException {
+        out.writeByte(COPY);
+        out.writeInt(start);
+        out.writeInt(length);
+    }
+
+    /**
+     * 写操作时把首尾相接的 COPY 合并成一个 (大部分 delta 就是 “COPY 前半篇、INSERT 几个字、COPY 后半篇”)
+     */
+    private static final class Ops {
+
+        private final DataOutputStream out;
+        private int copyStart = -1;
+        private int copyLength;
+
+        Ops(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void copy(int start, int length) throws IOException {
+            if (length <= 0) {
+                return;
+            }
+            if (copyStart >= 0 && copyStart + copyLength == start) {
+                copyLength += length;
+                return;
+            }
+            flush();
+            copyStart = start;
+            copyLength = length;
+        }
+
+        void insert(String text) throws IOException {
+            if (text.isEmpty()) {
+                return;
+            }
+            flush();
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(INSERT);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        void flush() throws IOException {
+            if (copyStart >= 0) {
+                writeCopy(out, copyStart, copyLength);
+                copyStart = -1;
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(16, raw.length / 2));
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+            out.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] compressed) {
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package org.hzj.demo.service;
 
+import io.jsonwebtoken.Claims;
+import org.hzj.demo.auth.TokenRevocationList;
+import org.hzj.demo.config.AdminProperties;
+import org.hzj.demo.datasource.ReadYourWrites;
+import org.hzj.demo.datasource.RoutingContext;
 import org.hzj.demo.exception.ResourceNotFoundException; // (借用一下)
+import org.hzj.demo.model.LoginUser;
 import org.hzj.demo.model.User;
 import org.hzj.demo.repository.UserRepository;
 import org.hzj.demo.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -28,6 +35,15 @@ public class AuthService implements UserDetailsService {
     @Autowired
     private JwtUtil jwtUtil; // 2. 注入 JWT 工具类
 
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private TokenRevocationList revocationList;
+
+    @Autowired
+    private AdminProperties adminProperties;
+
     // Redis Key 的前缀
     private static final String CODE_KEY_PREFIX = "login_code:";
     // 验证码 5 分钟过期
@@ -46,18 +62,23 @@ public class AuthService implements UserDetailsService {
         // 1. 这里的 "User"
         //    (因为我们的 import)
         //    正确地指向了 "org.hzj.demo.model.User"
-        User myUser = userRepository.findByPhone(phone)
+        //    (每个带 Token 的请求都会走到这里，所以它走从库；
+        //     从库查不到时，只有“刚注册” (还在读己之写窗口内) 才去主库确认一次，见 findOrCreateUserByPhone)
+        User myUser = readYourWrites.findWithPrimaryFallback(phone, () -> userRepository.findByPhone(phone))
                 .orElseThrow(() ->
                         new UsernameNotFoundException("用户未找到, 手机号: " + phone)
                 );
 
-        // 2. 这里的 "new org.springframework.security.core.userdetails.User"
-        //    我们【【必须】】使用“全名”
-        //    来告诉 Java 我们要 new 的是“另一个” User
-        return new org.springframework.security.core.userdetails.User(
+        // 2. LoginUser 继承自 Spring Security 的 User，
+        //    额外带上我们自己的用户 id (发文章时记录作者用)
+        //    配置成管理员的手机号额外带 ROLE_ADMIN (见 SecurityConfig 里的 hasRole("ADMIN"))
+        return new LoginUser(
+                myUser.getId(),
                 myUser.getPhone(),
                 myUser.getPassword(),
-                new java.util.ArrayList<>()
+                adminProperties.getPhones().contains(myUser.getPhone())
+                        ? AuthorityUtils.createAuthorityList("ROLE_ADMIN")
+                        : AuthorityUtils.NO_AUTHORITIES
         );
     }
 
@@ -124,8 +145,8 @@ public class AuthService implements UserDetailsService {
      * 辅助方法：查找或创建用户
      */
     private User findOrCreateUserByPhone(String phone) {
-        // 1. 尝试按手机号查找
-        Optional<User> userOpt = userRepository.findByPhone(phone);
+        // 1. 尝试按手机号查找 (“查完就可能要写”，所以直接查主库)
+        Optional<User> userOpt = RoutingContext.onPrimary(() -> userRepository.findByPhone(phone));
 
         if (userOpt.isPresent()) {
             // (情况 A) 找到了，是老用户
@@ -140,7 +161,10 @@ public class AuthService implements UserDetailsService {
             // (密码可以先设一个随机值或 null)
             newUser.setPassword("N/A");
 
-            return userRepository.save(newUser);
+            User saved = userRepository.save(newUser);
+            // 新用户马上就会带着 Token 来请求，从库可能还没同步到这一行：窗口内允许回主库查
+            readYourWrites.markWrite(phone);
+            return saved;
         }
     }
 
@@ -168,7 +192,7 @@ public class AuthService implements UserDetailsService {
         // 1. 我们用 "phone" 字段来存储 "github_123456" 这样的唯一 ID
         String phoneKey = "github_" + oauthId;
 
-        Optional<User> userOpt = userRepository.findByPhone(phoneKey);
+        Optional<User> userOpt = RoutingContext.onPrimary(() -> userRepository.findByPhone(phoneKey));
 
         User user;
         if (userOpt.isPresent()) {
@@ -186,9 +210,31 @@ public class AuthService implements UserDetailsService {
             user.setUsername(username);
             user.setPassword("OAUTH_LOGIN"); // (OAuth 登录，密码无意义)
             user = userRepository.save(user);
+            readYourWrites.markWrite(phoneKey);
         }
 
         // 2. 【签发 JWT】
         return jwtUtil.generateToken(user);
     }
+
+    /**
+     * 4. 退出登录：吊销当前这个 Token (其他设备上的不受影响)
+     * (加上 jti 之前签发的老 Token 没有编号，只能把这个用户的 Token 全部吊销)
+     *
+     * @param claims 当前 Token 的声明 (JwtAuthFilter 认证时放进请求属性的)
+     */
+    public void logout(Claims claims) {
+        if (claims.getId() == null) {
+            logoutAll(JwtUtil.userIdOf(claims));
+            return;
+        }
+        revocationList.revokeToken(claims.getId(), claims.getExpiration().getTime());
+    }
+
+    /**
+     * 5. 退出所有设备：吊销这个用户到现在为止签发的所有 Token
+     */
+    public void logoutAll(Long userId) {
+        revocationList.revokeUser(userId);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package org.hzj.demo.service;
+
+import org.hzj.demo.cache.RedisGuard;
+import org.hzj.demo.config.TimelineProperties;
+import org.hzj.demo.exception.ResourceNotFoundException;
+import org.hzj.demo.repository.FollowRepository;
+import org.hzj.demo.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 关注 / 取消关注，以及“大V”集合的维护
+ *
+ * “大V” = 粉丝数超过 timeline.fan-out-threshold 的作者，
+ * 存在 Redis 的 Set (timeline:celebrities) 里，读时间线时要单独去拉他们的文章 (读扩散)。
+ * 关注关系以数据库为准，事务提交之后才去改这个集合；这个集合只是“尽力而为”，
+ * Redis 出错 (或者熔断中) 不影响关注本身，下次关注变化 / 发文章时会再刷新。
+ */
+@Service
+public class FollowService {
+
+    private static final Logger log = LoggerFactory.getLogger(FollowService.class);
+
+    static final String CELEBRITIES_KEY = "timeline:celebrities";
+
+    @Autowired
+    private FollowRepository followRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private TimelineProperties properties;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    /**
+     * 关注 (重复关注不报错)
+     * @return true = 新关注；false = 之前已经关注过了
+     */
+    @Transactional
+    public boolean follow(Long followerId, Long followeeId) {
+        if (followerId.equals(followeeId)) {
+            throw new IllegalArgumentException("不能关注自己");
+        }
+        if (!userRepository.existsById(followeeId)) {
+            throw new ResourceNotFoundException("用户不存在, ID: " + followeeId);
+        }
+        // 并发的重复关注由唯一索引挡住，影响行数为 0，事务照常提交
+        if (followRepository.insertIfAbsent(followerId, followeeId) == 0) {
+            return false;
+        }
+        refreshCelebrityAfterCommit(followeeId, followRepository.countByFolloweeId(followeeId));
+        return true;
+    }
+
+    /**
+     * 取消关注
+     * @return false = 本来就没关注
+     */
+    @Transactional
+    public boolean unfollow(Long followerId, Long followeeId) {
+        if (followRepository.deleteRelation(followerId, followeeId) == 0) {
+            return false;
+        }
+        refreshCelebrityAfterCommit(followeeId, followRepository.countByFolloweeId(followeeId));
+        return true;
+    }
+
+    public long followerCount(Long userId) {
+        return followRepository.countByFolloweeId(userId);
+    }
+
+    public long followingCount(Long userId) {
+        return followRepository.countByFollowerId(userId);
+    }
+
+    public List<Long> followeeIds(Long userId) {
+        return followRepository.findFolloweeIds(userId);
+    }
+
+    public boolean isCelebrity(long followerCount) {
+        return followerCount > properties.getFanOutThreshold();
+    }
+
+    /**
+     * 按最新的粉丝数，把作者加入 / 移出“大V”集合 (Redis 不可用时什么都不做)
+     */
+    public void refreshCelebrity(Long userId, long followerCount) {
+        redisGuard.call(() -> {
+            if (isCelebrity(followerCount)) {
+                stringRedisTemplate.opsForSet().add(CELEBRITIES_KEY, userId.toString());
+            } else {
+                stringRedisTemplate.opsForSet().remove(CELEBRITIES_KEY, userId.toString());
+            }
+            return null;
+        }, () -> null);
+    }
+
+    /**
+     * 事务提交之后再改 Redis：Redis 出错不会让一次正常的关注回滚，回滚了的关注也不会留在“大V”集合里
+     * (afterCommit 里抛出的异常不影响已经提交的事务，只记日志)
+     */
+    private void refreshCelebrityAfterCommit(Long userId, long followerCount) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    refreshCelebrity(userId, followerCount);
+                } catch (Exception e) {
+                    log.warn("刷新大V集合失败 user={}: {}", userId, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * userId 关注的作者里，哪些是“大V”
+     * @return Redis 不可用时返回 null (调用方改为查数据库)
+     */
+    public List<Long> celebrityFolloweesOf(Long userId) {
+        Set<String> celebrities = redisGuard.call(
+                () -> stringRedisTemplate.opsForSet().members(CELEBRITIES_KEY), () -> null);
+        if (celebrities == null) {
+            return null;
+        }
+        if (celebrities.isEmpty()) {
+            return List.of();
+        }
+        return followRepository.findFolloweeIdsIn(userId, celebrities.stream().map(Long::valueOf).toList());
+    }
+}
@@ -1,22 +1,48 @@
 package org.hzj.demo.service;
 
+import org.hzj.demo.async.AsyncLookups;
+import org.hzj.demo.cache.PostCache;
+import org.hzj.demo.cache.HotKeyDetector;
+import org.hzj.demo.cache.LocalPostCache;
+import org.hzj.demo.cache.PostBloomFilter;
+import org.hzj.demo.cache.PostListCache;
+import org.hzj.demo.cache.RedisGuard;
+import org.hzj.demo.cache.ViewCountBuffer;
+import org.hzj.demo.content.PostContentStore;
+import org.hzj.demo.datasource.ReadYourWrites;
+import org.hzj.demo.dto.PostPatchRequest;
 import org.hzj.demo.exception.ResourceNotFoundException;
+import org.hzj.demo.model.LoginUser;
 import org.hzj.demo.model.Post;
+import org.hzj.demo.model.PostField;
+import org.hzj.demo.outbox.OutboxDispatcher;
 import org.hzj.demo.repository.PostRepository;
+import org.hzj.demo.revision.PostRevisionStore;
+import org.hzj.demo.sharding.ShardedPostStore;
+import org.hzj.demo.tag.TagIndex;
+import org.hzj.demo.util.TagUtils;
+import org.hzj.demo.vo.FeedPage;
+import org.hzj.demo.vo.RevisionDetail;
+import org.hzj.demo.vo.RevisionDiff;
+import org.hzj.demo.vo.RevisionSummary;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.yaml.snakeyaml.events.Event;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -44,25 +70,92 @@ public class PostService {
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
 
+    // 读写分离：写完之后，让作者在一小段时间内“读主库”
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    // 分库：blog_posts 的读写都经过它 (按 id 选库，事务也在它里面开)
+    @Autowired
+    private ShardedPostStore postStore;
+
+    // 标签位图索引 (按标签筛选文章)
+    @Autowired
+    private TagIndex tagIndex;
+
+    // 关注时间线 (发文章时推送给粉丝)
+    @Autowired
+    private TimelineService timelineService;
+
+    // 发件箱分发器：写完文章后叫醒它，异步完成清缓存等附带工作
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    // 直接读写 "post" 缓存 (批量接口用：一次 MGET / 一个 pipeline)
+    @Autowired
+    private PostCache postCache;
+
+    @Autowired
+    private PostListCache postListCache;
+
+    // Redis 熔断器和降级用的本地缓存 / 点击数缓冲
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private LocalPostCache localPostCache;
+
+    @Autowired
+    private ViewCountBuffer viewCountBuffer;
+
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+
+    @Autowired
+    private PostBloomFilter postBloomFilter;
+
+    @Autowired
+    private PostContentStore contentStore;
+
+    @Autowired
+    private PostRevisionStore revisionStore;
+
+    @Autowired
+    private AsyncLookups asyncLookups;
+
     // (可选，但推荐) 定义 ZSet 在 Redis 中的 Key
-    private static final String POST_VIEW_COUNT_KEY = "post:view_counts";
+    public static final String POST_VIEW_COUNT_KEY = "post:view_counts";
 
     /**
-     * (GET /posts) 获取所有文章
+     * (GET /posts) 获取所有文章 (按 id 从小到大)
      *
-     * 知识点：@Cacheable(cacheNames = "post_list")
-     * 1. cacheNames = "post_list": 我们给这个缓存“目录”起名叫 "post_list"
-     * 2. key: 我们没有指定 key。此时 Spring 会自动生成一个 key
-     * (比如 "SimpleKey []")，代表“所有文章”。
-     * 3. 第一次调用此方法，会查询数据库，并将 List<Post> 存入 Redis。
-     * 4. 第二次（及以后）调用，会【直接】从 Redis 返回 List<Post>，
-     * 【不会】执行此方法体内的 postRepository.findAll()。
-     */
-    @Cacheable(cacheNames = "post_list")
+     * 以前这里是 @Cacheable(cacheNames = "post_list")：整个 List 存成一个缓存，
+     * 任何一次写入都要把它整个删掉，写得频繁时缓存几乎一直是空的。
+     * 现在由 PostListCache 增量维护 (写入只改动那一篇文章)，见 PostListCache 的注释。
+     */
     public List<Post> getAllPosts() {
-        // (为了验证，我们在日志里加一句话)
-        System.out.println("====== [Service] 正在查询数据库：getAllPosts() ... ======");
-        return postRepository.findAll();
+        return getAllPosts(null);
+    }
+
+    /**
+     * (GET /posts?fields=id,title) 只要部分字段：不要正文时读列表缓存里不带正文的那份，
+     * 查库时也只 SELECT 这几列 (见 PostListCache.range)
+     * @param fields null = 全部字段
+     */
+    public List<Post> getAllPosts(Set<PostField> fields) {
+        return postListCache.range(0, -1, fields);
+    }
+
+    /**
+     * (GET /posts?page=0&size=20) 分页获取文章列表 (按 id 从小到大)
+     * 只从缓存里取这一页的文章 (ZRANGE + HMGET)，不用把整个列表反序列化出来
+     */
+    public List<Post> getPostPage(int page, int size) {
+        return getPostPage(page, size, null);
+    }
+
+    public List<Post> getPostPage(int page, int size, Set<PostField> fields) {
+        long start = (long) page * size;
+        return postListCache.range(start, start + size - 1, fields);
     }
 
     /**
@@ -79,17 +172,304 @@ public class PostService {
     @Cacheable(cacheNames = "post", key = "#id")
     public Optional<Post> getPostById(Long id) {
         System.out.println("====== [Service] 正在查询数据库：getPostById(" + id + ") ... ======");
-        // 1. 先从数据库（或缓存）获取
-        return postRepository.findById(id);
+        // 1. 按 id 找到所在的库，开只读事务查询 (开启读写分离时会走从库)
+        // 2. 从库查不到，可能只是“复制延迟”(文章刚被别人创建)，再去主库确认一次
+        return postStore.findById(id);
+    }
+
+    /**
+     * (GET /posts/{id}) 读一篇文章并把点击数 +1，返回的 Post 带上新的点击数
+     *
+     * 以前 Controller 先调 getPostById (@Cacheable 一次 GET)，再调 incrementViewCount (一次 ZINCRBY)，
+     * 缓存命中时也是两次 Redis 往返。现在：
+     * - 命中：一段 Lua 脚本同时完成 GET + ZINCRBY，一次往返
+     * - 没命中：查库，再用一个 pipeline 写回缓存 + ZINCRBY (不存在的文章不计数)
+     * - Redis 熔断中 (见 RedisGuard)：不访问 Redis，本地缓存 -> 查库，点击数先记在内存里 (ViewCountBuffer)
+     */
+    public Optional<Post> viewPost(Long id) {
+        // 一定不存在的 id (布隆过滤器 / 刚确认过不存在)：不查缓存、不查库
+        if (!postBloomFilter.mightExist(id)) {
+            return Optional.empty();
+        }
+
+        // 热点文章：直接读本机副本，点击数在本机累加 (见 HotKeyDetector)
+        if (hotKeyDetector.record(id)) {
+            Post replica = hotKeyDetector.readReplica(id);
+            if (replica != null) {
+                return Optional.of(replica);
+            }
+        }
+
+        // Optional.empty() = 缓存没命中；null = Redis 不可用
+        Optional<PostCache.ViewedPost> cached = redisGuard.call(
+                () -> Optional.ofNullable(postCache.getAndCountView(id, POST_VIEW_COUNT_KEY)),
+                () -> null);
+        if (cached == null) {
+            return viewPostDegraded(id);
+        }
+        if (cached.isPresent()) {
+            Post post = cached.get().post();
+            post.setViewCount(cached.get().viewCount());
+            return Optional.of(post);
+        }
+
+        Optional<Post> loaded = postStore.findById(id);
+        if (loaded.isEmpty()) {
+            postBloomFilter.recordMissing(id);
+            return loaded;
+        }
+        Post post = loaded.get();
+        // 写回必须在 setViewCount 之前：缓存里的文章不带点击数 (点击数以 ZSet 为准)
+        Long viewCount = redisGuard.call(() -> {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                postCache.appendPutIfAbsent(redis, List.of(post));
+                redis.zIncrBy(POST_VIEW_COUNT_KEY, 1.0, id.toString());
+                return null;
+            });
+            return results.get(1) instanceof Double score ? score.longValue() : null;
+        }, () -> viewCountBuffer.increment(id));
+        post.setViewCount(viewCount);
+        return loaded;
+    }
+
+    /**
+     * Redis 熔断时读文章：本地缓存 (LocalPostCache) -> 查库
+     * 点击数 = 最后一次从 Redis 读到的点击数 + 降级期间缓冲的点击数 (恢复后回放进 Redis)
+     */
+    private Optional<Post> viewPostDegraded(Long id) {
+        Post post = localPostCache.get(id);
+        if (post == null) {
+            post = postStore.findById(id).orElse(null);
+            if (post == null) {
+                postBloomFilter.recordMissing(id);
+                return Optional.empty();
+            }
+            localPostCache.put(id, postCache.serialize(post));
+        }
+        long known = post.getViewCount() != null ? post.getViewCount() : 0;
+        post.setViewCount(known + viewCountBuffer.increment(id));
+        return Optional.of(post);
+    }
+
+    /**
+     * (GET /posts/{id}/content) 只要正文，不增加点击数
+     * 只查 content / contentRef 两列；正文在段文件里的话不读出来，返回它在文件里的位置 (由 Controller 用 sendfile 发送)
+     */
+    public Optional<PostContentStore.Body> getPostBody(Long id) {
+        if (!postBloomFilter.mightExist(id)) {
+            return Optional.empty();
+        }
+        return postStore.findBody(id).map(contentStore::body);
+    }
+
+    /**
+     * (GET /posts/{id}/revisions) 历史版本列表，新的在前 (游标 = 上一页最后一个版本号)
+     * 只查版本表里的几列，不还原正文；版本和文章在同一个库里
+     */
+    public FeedPage<RevisionSummary> getRevisions(Long id, Long cursor, int size) {
+        if (!postBloomFilter.mightExist(id)) {
+            throw new ResourceNotFoundException("文章未找到, ID: " + id);
+        }
+        return postStore.read(postStore.shardOf(id), () -> revisionStore.page(id, cursor, size));
+    }
+
+    /**
+     * (GET /posts/{id}/revisions/{revision}) 某个版本的完整内容 (从最近的快照 + delta 还原)
+     */
+    public RevisionDetail getRevision(Long id, long revision) {
+        return postStore.read(postStore.shardOf(id), () -> revisionStore.detail(id, revision))
+                .orElseThrow(() -> new ResourceNotFoundException("版本未找到, 文章 ID: " + id + ", 版本: " + revision));
+    }
+
+    /**
+     * (GET /posts/{id}/revisions/diff?from=3&to=5) 比较两个版本
+     */
+    public RevisionDiff diffRevisions(Long id, long from, long to) {
+        return postStore.read(postStore.shardOf(id), () -> revisionStore.diff(id, from, to))
+                .orElseThrow(() -> new ResourceNotFoundException("版本未找到, 文章 ID: " + id + ", 版本: " + from + " / " + to));
+    }
+
+    /**
+     * (GET /posts/batch?ids=3,1,2) 一次取回多篇文章 (首页一屏 20~50 篇)
+     *
+     * 逐个调用 getPostById 的话，每篇文章都是：一次缓存 GET + (没命中时) 一次 findById + 一次 ZINCRBY，
+     * 50 篇就是 100 多次网络往返。批量版本不管多少篇都只有三次：
+     * 1. 一条 MGET 查 "post::{id}" 缓存
+     * 2. 没命中的 id 一次 findAllById (分库时每个库一条 IN 查询)
+     * 3. 一个 pipeline：把第 2 步查到的写回缓存 + 每篇文章 ZINCRBY 点击数
+     *
+     * @param requested 已去重；返回结果按 ids 的顺序，不存在的文章直接跳过
+     */
+    public List<Post> getPostsByIds(List<Long> requested) {
+        // 一定不存在的 id 直接跳过 (见 PostBloomFilter)
+        List<Long> ids = requested.stream().filter(postBloomFilter::mightExist).toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // 0. 热点文章读本机副本，点击数也在本机累加 (见 HotKeyDetector)
+        Map<Long, Post> replicas = new HashMap<>();
+        for (Long id : ids) {
+            if (hotKeyDetector.record(id)) {
+                Post replica = hotKeyDetector.readReplica(id);
+                if (replica != null) {
+                    replicas.put(id, replica);
+                }
+            }
+        }
+        List<Long> remote = replicas.isEmpty() ? ids : ids.stream().filter(id -> !replicas.containsKey(id)).toList();
+
+        // 1. 缓存 (Redis 熔断时读本地缓存)
+        Map<Long, Post> found = remote.isEmpty() ? new HashMap<>()
+                : redisGuard.call(() -> postCache.multiGet(remote), () -> localPostCache.getAll(remote));
+
+        // 2. 数据库
+        List<Long> misses = remote.stream().filter(id -> !found.containsKey(id)).toList();
+        List<Post> loaded = misses.isEmpty() ? List.of() : postStore.findAllById(misses);
+        loaded.forEach(post -> found.put(post.getId(), post));
+        misses.stream().filter(id -> !found.containsKey(id)).forEach(postBloomFilter::recordMissing);
+
+        // 下面只给 found 里的文章计数 (本机副本的已经计过了)
+        List<Post> posts = new ArrayList<>(found.size());
+        List<Post> result = new ArrayList<>(found.size() + replicas.size());
+        for (Long id : ids) {
+            Post post = found.get(id);
+            if (post != null) {
+                posts.add(post);
+                result.add(post);
+            } else if (replicas.containsKey(id)) {
+                result.add(replicas.get(id));
+            }
+        }
+        if (posts.isEmpty()) {
+            return result;
+        }
+
+        // 3. 写回缓存 + 增加点击数 (和单篇接口一样，只给存在的文章计数)
+        //    写回必须在 setViewCount 之前：缓存里的文章不带点击数 (点击数以 ZSet 为准)
+        boolean counted = redisGuard.call(() -> {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                postCache.appendPutIfAbsent(redis, loaded);
+                for (Post post : posts) {
+                    redis.zIncrBy(POST_VIEW_COUNT_KEY, 1.0, post.getId().toString());
+                }
+                return null;
+            });
+            // pipeline 的结果按命令顺序返回：前面是 SET NX 的结果，后面是每篇文章新的点击数
+            int offset = loaded.size();
+            for (int i = 0; i < posts.size(); i++) {
+                if (results.get(offset + i) instanceof Double score) {
+                    posts.get(i).setViewCount(score.longValue());
+                    localPostCache.recordViewCount(posts.get(i).getId(), score.longValue());
+                }
+            }
+            return true;
+        }, () -> false);
+        if (!counted) {
+            // Redis 熔断中：点击数先记在内存里
+            for (Post post : posts) {
+                long known = post.getViewCount() != null ? post.getViewCount() : 0;
+                post.setViewCount(known + viewCountBuffer.increment(post.getId()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 预热用：把一批文章加载进 "post" 缓存 (已经在缓存里的跳过，不增加点击数)
+     * @return 新写入缓存的文章数
+     */
+    public int preloadPosts(List<Long> ids) {
+        if (!redisGuard.isAvailable()) {
+            return 0;
+        }
+        Map<Long, Post> cached = postCache.multiGet(ids);
+        List<Long> misses = ids.stream().filter(id -> !cached.containsKey(id)).toList();
+        if (misses.isEmpty()) {
+            return 0;
+        }
+        List<Post> loaded = postStore.findAllById(misses);
+        postCache.putAllIfAbsent(loaded);
+        return loaded.size();
+    }
+
+    /**
+     * 点击数最高的 topN 篇文章的 id (只查 Redis ZSet，不查数据库)
+     */
+    public List<Long> getTopViewedIds(int topN) {
+        Set<String> members = redisGuard.call(
+                () -> stringRedisTemplate.opsForZSet().reverseRange(POST_VIEW_COUNT_KEY, 0, topN - 1),
+                () -> null);
+        if (members == null) {
+            return List.of();
+        }
+        return members.stream().map(Long::parseLong).toList();
+    }
+
+    /**
+     * (GET /posts?tags=java,redis&mode=and) 按标签筛选文章
+     *
+     * 1. 内存位图求交集 (and) / 并集 (or)，得到文章 id (最新的在前，最多 limit 篇)
+     * 2. 按 id 一次性批量查询 (分库时每个库一条 IN 查询)
+     * 3. 按位图给出的顺序排好
+     */
+    public List<Post> getPostsByTags(List<String> tags, boolean matchAll, int limit) {
+        return loadInOrder(tagIndex.query(tags, matchAll, limit));
+    }
+
+    /**
+     * (GET /users/{id}/posts) 作者主页：某个作者的文章，最新的在前，游标分页
+     */
+    public FeedPage<Post> getAuthorPosts(Long authorId, Long cursor, int size) {
+        List<Post> posts = postStore.findByAuthor(authorId, cursor != null ? cursor : Long.MAX_VALUE, size);
+        Long nextCursor = posts.size() < size ? null : posts.get(posts.size() - 1).getId();
+        return new FeedPage<>(posts, nextCursor);
+    }
+
+    /**
+     * (GET /timeline) 关注时间线：Redis 里取一页文章 id，再一次性批量查出文章
+     */
+    public FeedPage<Post> getTimeline(Long userId, Long cursor, int size) {
+        // Redis 熔断时 readTimeline 自己改为从数据库拼 (关注的所有作者的最新文章)；
+        // 里面的数据库查询不放进熔断器，MySQL 慢不会被算成 Redis 慢
+        List<Long> ids = timelineService.readTimeline(userId, cursor, size);
+        Long nextCursor = ids.size() < size ? null : ids.get(ids.size() - 1);
+        return new FeedPage<>(loadInOrder(ids), nextCursor);
+    }
+
+    /**
+     * 按 id 批量查询文章 (分库时每个库一条 IN 查询)，并保持 ids 的顺序
+     */
+    private List<Post> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Post> postMap = postStore.findAllById(ids).stream()
+                .collect(Collectors.toMap(Post::getId, post -> post));
+        return ids.stream()
+                .map(postMap::get)
+                .filter(post -> post != null) // 索引 / 时间线里的 id 对应的文章可能已经被删了，跳过即可
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 所有标签及文章数
+     */
+    public Map<String, Long> getTagCounts() {
+        return tagIndex.counts();
     }
 
     /**
      * 【新功能】增加文章点击率
      * 这是一个“手动”操作，不使用 @Cacheable
+     *
+     * 以前用 try/catch 兜底：Redis 卡住时每次都要等满超时才返回 0。
+     * 现在经过熔断器 (RedisGuard)：熔断中不访问 Redis，点击数先记在内存里 (ViewCountBuffer)，恢复后回放。
      */
     public Long incrementViewCount(Long postId) {
         System.out.println("====== [Service] 正在增加 Redis ZSet score：post " + postId + " ... ======");
-        try {
+        return redisGuard.call(() -> {
             // opsForZSet() -> 获取操作 ZSet 的“命令集”
             // incrementScore(ZSET的Key, 成员, 增加的分数)
             // 这对应 redis-cli 命令: ZINCRBY post:view_counts 1 "post_id_string"
@@ -99,79 +479,120 @@ public class PostService {
                     1.0                    // "分数"：每次点击 +1
             );
             return newScore != null ? newScore.longValue() : 0L;
-        } catch (Exception e) {
-            // 在真实项目中，缓存的失败不应阻断主流程
-            // log.error("增加 Redis 点击率失败: ", e);
-            System.err.println("增加 Redis 点击率失败: " + e.getMessage());
-            return 0L; // 出错时返回 0
-        }
+        }, () -> viewCountBuffer.increment(postId));
     }
 
     /**
      * (POST /posts) 创建新文章
      *
-     * 知识点：@CacheEvict(cacheNames = "post_list", allEntries = true)
-     * 1. 当我们【创建】了一篇新文章时，"post_list" (所有文章)
-     * 这个缓存就“脏”了 (数据过时了)。
-     * 2. 我们必须【清除】它，下次 `getAllPosts()` 就会重新从数据库读取。
-     * 3. allEntries = true: "把 'post_list' 目录下的【所有】缓存都删了"。
+     * 知识点：事务性发件箱 (见 OutboxEvent)
+     * 以前这里用 @CacheEvict 清空 "post_list"，再同步更新标签索引、推送时间线，
+     * 这些附带工作都算在写接口的耗时里，而且 Redis 失败了也没人重试。
+     * 现在写接口只做【一个数据库事务】：插入文章 + 插入一条 CREATED 事件；
+     * 清缓存 / 标签索引 / 时间线由 OutboxDispatcher 在后台批量完成 (失败会重试)。
      */
-    @CacheEvict(cacheNames = "post_list", allEntries = true)
     public Post createPost(Post post) {
         System.out.println("====== [Service] 正在写入数据库：createPost() ... ======");
-        return postRepository.save(post);
+        // 先生成全局唯一的雪花 id，再按 id 写入对应的库
+        if (post.getTags() == null) {
+            post.setTags(List.of());
+        }
+        // 作者 = 当前登录用户 (忽略客户端传来的 authorId)
+        post.setAuthorId(LoginUser.currentUserId());
+        Post saved = postStore.insert(post);
+        readYourWrites.markWrite();
+        // 加进文章 id 布隆过滤器 (并广播给其他节点)，否则别的请求会被判断成“不存在”
+        postBloomFilter.add(saved.getId());
+        // 事务已提交，叫醒分发器立刻处理 (不等下一次轮询)
+        outboxDispatcher.wakeUp();
+        return saved;
     }
 
     /**
      * (PUT /posts/{id}) 更新文章
      *
-     * 知识点：@Caching (一个注解干两件事)
-     * 我们需要干两件事：
-     * 1. 【更新】 "post::id" 这个单篇缓存 (用 @CachePut)
-     * 2. 【清除】 "post_list" 这个列表缓存 (用 @CacheEvict)
-     */
-    @Caching(
-            put = {
-                    // @CachePut 会【总是】执行方法体，并把【返回值】
-                    // 存入 "post::id" 这个 key 中。
-                    @CachePut(cacheNames = "post", key = "#id")
-            },
-            evict = {
-                    // 同时，清除 "post_list" 缓存
-                    @CacheEvict(cacheNames = "post_list", allEntries = true)
-            }
-    )
+     * 以前用 @Caching 同时 @CachePut "post::id" 和 @CacheEvict "post_list"，
+     * 现在和 createPost 一样：文章和 UPDATED 事件在同一个事务里写入，
+     * 缓存由 OutboxDispatcher 清除 ("post::id" 只在缓存里的版本比事件旧时才删)
+     */
     public Post updatePost(Long id, Post postDetails) {
         System.out.println("====== [Service] 正在更新数据库：updatePost(" + id + ") ... ======");
-        Post post = postRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("更新失败, 文章未找到, ID: " + id));
+        // 查询和保存在同一个写事务里 (走主库)，避免“读从库旧数据再写回去”
+        Post saved = postStore.update(id, LoginUser.currentUserId(), post -> {
+            checkAuthor(post);
+            post.setTitle(postDetails.getTitle());
+            post.setContent(postDetails.getContent());
+            // 不传 tags 表示“不修改标签”
+            if (postDetails.getTags() != null) {
+                post.setTags(postDetails.getTags());
+            }
+        }).orElseThrow(() -> new ResourceNotFoundException("更新失败, 文章未找到, ID: " + id));
+        readYourWrites.markWrite();
+        outboxDispatcher.wakeUp();
+        return saved;
+    }
 
-        post.setTitle(postDetails.getTitle());
-        post.setContent(postDetails.getContent());
+    /**
+     * (PATCH /posts/{id}) 部分修改：只改传了的字段
+     *
+     * 和 updatePost 的区别：
+     * 1. updatePost：findById 读出整行 (包括 content 大字段) -> 改 -> save，UPDATE 会写回所有列
+     * 2. patchPost：一条 “UPDATE ... SET 改了的列 WHERE id = ? AND version = ?”，不读整行；
+     *    缓存里的文章也只改这几个字段 (见 PostCache.patch)
+     *
+     * 乐观锁：客户端必须带上它读到的 version，期间别人改过 (version 变了) 就返回 409，
+     * 客户端需要重新读取再修改，而不是悄悄覆盖别人的修改 (lost update)
+     *
+     * @return 新的版本号
+     */
+    public long patchPost(Long id, PostPatchRequest patch) {
+        if (patch.isEmpty()) {
+            throw new IllegalArgumentException("没有要修改的字段 (title / content / tags)");
+        }
+        // key 是 Post 的属性名
+        Map<String, Object> changes = new LinkedHashMap<>();
+        if (patch.getTitle() != null) {
+            changes.put("title", patch.getTitle());
+        }
+        if (patch.getContent() != null) {
+            changes.put("content", patch.getContent());
+        }
+        List<String> tags = patch.getTags() != null ? TagUtils.normalize(patch.getTags()) : null;
+        if (tags != null) {
+            changes.put("tags", tags);
+        }
 
-        return postRepository.save(post); // 返回值 (post) 会被放入 "post::id" 缓存
+        long newVersion = postStore.patch(id, patch.getVersion(), LoginUser.currentUserId(), changes, this::checkAuthor)
+                .orElseThrow(() -> new ResourceNotFoundException("修改失败, 文章未找到, ID: " + id));
+        readYourWrites.markWrite();
+        // 缓存原地修改成功的话，分发器看到缓存已经是新版本，就不会再删它
+        postCache.patch(id, patch.getVersion(), newVersion, changes);
+        outboxDispatcher.wakeUp();
+        return newVersion;
     }
 
     /**
      * (DELETE /posts/{id}) 删除文章
      *
-     * 知识点：@Caching
-     * 我们也需要干两件事：
-     * 1. 【清除】 "post::id" 这个单篇缓存
-     * 2. 【清除】 "post_list" 这个列表缓存
-     */
-    @Caching(
-            evict = {
-                    @CacheEvict(cacheNames = "post", key = "#id"),
-                    @CacheEvict(cacheNames = "post_list", allEntries = true)
-            }
-    )
+     * 一个事务里只有两条 SQL：DELETE (作者判断在 WHERE 里，不先 SELECT 整行) + 插入 DELETED 事件。
+     * 清 "post::id" 缓存、从文章列表缓存里移除、从点击数 ZSet 里移除、标签索引、时间线，都由 OutboxDispatcher 完成。
+     */
     public void deletePost(Long id) {
         System.out.println("====== [Service] 正在删除数据库：deletePost(" + id + ") ... ======");
-        if (!postRepository.existsById(id)) {
+        if (!postStore.delete(id, LoginUser.currentUserId(), this::checkAuthor)) {
             throw new ResourceNotFoundException("删除失败, 文章未找到");
         }
-        postRepository.deleteById(id);
+        readYourWrites.markWrite();
+        outboxDispatcher.wakeUp();
+    }
+
+    /**
+     * 只有作者本人可以修改 / 删除文章 (没有作者的老文章不做限制)
+     */
+    private void checkAuthor(Post post) {
+        if (post.getAuthorId() != null && !post.getAuthorId().equals(LoginUser.currentUserId())) {
+            throw new AccessDeniedException("只能修改或删除自己的文章");
+        }
     }
 
     /**
@@ -180,21 +601,49 @@ public class PostService {
      * @return 排序后的 Post 列表
      */
     public List<Post> getTopViewedPosts(int topN) {
+        return getTopViewedPosts(topN, null);
+    }
+
+    /**
+     * @param fields 只要这些字段 (null = 全部)：查库时只 SELECT 这几列，例如热榜只显示标题时不读 content
+     */
+    public List<Post> getTopViewedPosts(int topN, Set<PostField> fields) {
+        return rankPosts(topViewCounts(topN), fields);
+    }
+
+    /**
+     * 异步版 (GET /posts/top 用)：先在 Redis 线程池里查排行，再在数据库线程池里查文章，
+     * 两步都不占用 Tomcat 线程，每一步各有期限 (见 AsyncLookups)
+     */
+    public CompletableFuture<List<Post>> getTopViewedPostsAsync(int topN, Set<PostField> fields) {
+        return asyncLookups.redis(() -> topViewCounts(topN))
+                .thenCompose(tuples -> tuples.isEmpty()
+                        ? CompletableFuture.completedFuture(List.of())
+                        : asyncLookups.db(() -> rankPosts(tuples, fields)));
+    }
+
+    private Set<ZSetOperations.TypedTuple<String>> topViewCounts(int topN) {
         System.out.println("====== [Service] 正在查询 Redis ZSet：getTopViewedPosts(" + topN + ") ... ======");
 
         // 1. (Redis) 从 ZSet 获取“Top N”的 ID 和分数
         // opsForZSet().reverseRangeWithScores(key, start, end)
         // 对应 redis-cli 命令: ZREVRANGE post:view_counts 0 4 WITHSCORES
         // (start=0, end=topN-1)
-        Set<ZSetOperations.TypedTuple<String>> tuples =
-                stringRedisTemplate.opsForZSet().reverseRangeWithScores(
+        // Redis 不可用 (或者熔断器打开) 时返回空排行，不让异常冒到接口上 (和 getTopViewedIds 一样)
+        Set<ZSetOperations.TypedTuple<String>> tuples = redisGuard.call(
+                () -> stringRedisTemplate.opsForZSet().reverseRangeWithScores(
                         POST_VIEW_COUNT_KEY,
                         0,
                         topN - 1
-                );
+                ),
+                () -> null);
+
+        return tuples == null ? Set.of() : tuples;
+    }
 
+    private List<Post> rankPosts(Set<ZSetOperations.TypedTuple<String>> tuples, Set<PostField> fields) {
         // 如果 Redis 里没数据，返回空列表
-        if (tuples == null || tuples.isEmpty()) {
+        if (tuples.isEmpty()) {
             return List.of(); // Java 9+ 的 List.of()
         }
 
@@ -214,7 +663,10 @@ public class PostService {
         // 3. (DB) 根据 ID 列表，一次性从数据库查出所有 Post
         // postRepository.findAllById() 返回的 List 是【无序】的！
         // (JPA 不保证返回的顺序和
-        List<Post> postsFromDb = postRepository.findAllById(postIdsInOrder);
+        //    (分库时按库分组，每个库查一次，并行执行)
+        List<Post> postsFromDb = fields == null
+                ? postStore.findAllById(postIdsInOrder)
+                : postStore.findProjected(postIdsInOrder, fields);
 
         // 4. (Java) 【关键】按 Redis 的顺序重新排序
         // 我们必须把“无序”的 DB 结果，按照 Redis 返回的“有序”ID 列表重新排序
@@ -229,8 +681,10 @@ public class PostService {
                     @Override
                     public Post apply(Long aLong) {
                         Post post = postMap.get(aLong);
-                        long longValue2 = scoreMap.get(aLong);
-                        post.setViewCount(longValue2);
+                        if (post != null) {
+                            long longValue2 = scoreMap.get(aLong);
+                            post.setViewCount(longValue2);
+                        }
                         return post;
                     }
                 })
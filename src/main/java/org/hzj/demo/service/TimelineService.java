@@ -0,0 +1,320 @@
+package org.hzj.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.hzj.demo.cache.RedisGuard;
+import org.hzj.demo.config.TimelineProperties;
+import org.hzj.demo.model.Post;
+import org.hzj.demo.repository.FollowRepository;
+import org.hzj.demo.sharding.ShardedPostStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 关注时间线 (“首页”：我关注的人发的文章，最新的在前)
+ *
+ * 知识点：写扩散 (fan-out-on-write) vs 读扩散 (fan-out-on-read)
+ * - 写扩散：作者发文章时，把文章 id 推到【每个粉丝】的时间线 (Redis List) 里，
+ *   粉丝读首页时直接 LRANGE 一页，O(页大小)，非常快。
+ *   代价是发一篇文章要写 N 次 (N = 粉丝数)，大V (几十万粉丝) 发一篇就是几十万次写。
+ * - 读扩散：不推送，粉丝读首页时再去把关注的作者的文章拉过来合并。
+ *
+ * 我们混合使用：
+ * - 普通作者 (粉丝数 <= 阈值)：写扩散
+ * - 大V   (粉丝数 >  阈值)：读扩散，只从他自己的“最近文章”列表里取一页，和时间线合并
+ *
+ * Redis 里的数据：
+ * - timeline:{userId}   时间线 (List，最多 max-length 条，最新的在左边)
+ * - user_posts:{userId} 作者最近的文章 (List，最多 author-recent-length 条)
+ * 两者都有过期时间：不活跃的用户不占内存，下次读的时候从数据库重建。
+ * 推送时用 LPUSHX (只有列表已存在才推)，不存在的列表等读的时候再完整重建。
+ *
+ * 每个 Redis 调用各自经过 RedisGuard (数据库查询不放进熔断器，MySQL 慢不会被算成 Redis 慢)：
+ * 写 (推送 / 删除) 都是尽力而为，失败了读的时候会重建；读的途中 Redis 不可用就改为直接查数据库。
+ */
+@Service
+public class TimelineService {
+
+    private static final Logger log = LoggerFactory.getLogger(TimelineService.class);
+
+    private static final String TIMELINE_KEY_PREFIX = "timeline:";
+    private static final String AUTHOR_RECENT_KEY_PREFIX = "user_posts:";
+
+    /**
+     * 占位元素：重建出来的列表可能是空的 (还没关注任何人)，
+     * 而 Redis 里不存在“空列表”，放一个 0 表示“已经建好了，只是没有内容”，读的时候过滤掉
+     */
+    private static final String SENTINEL = "0";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private FollowService followService;
+
+    @Autowired
+    private FollowRepository followRepository;
+
+    @Autowired
+    private ShardedPostStore postStore;
+
+    @Autowired
+    private TimelineProperties properties;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    /** 推送在后台执行，发文章的请求不用等 */
+    private ThreadPoolExecutor fanOutExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        int threads = properties.getFanOutThreads();
+        fanOutExecutor = new ThreadPoolExecutor(
+                threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(10_000),
+                r -> {
+                    Thread t = new Thread(r, "timeline-fanout-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                // 积压太多时由发文章的线程自己推送 (变慢，但不丢)
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanOutExecutor.shutdown();
+    }
+
+    // ------------------------------------------------------------------
+    // 写：发文章 / 删文章 / 关注关系变化
+    // ------------------------------------------------------------------
+
+    /** 文章创建之后调用 (事务已提交) */
+    public void onPostCreated(Post post) {
+        if (post.getAuthorId() == null) {
+            return;
+        }
+        Long authorId = post.getAuthorId();
+        String postId = post.getId().toString();
+        try {
+            pushIfPresent(List.of(AUTHOR_RECENT_KEY_PREFIX + authorId), postId, properties.getAuthorRecentLength());
+        } catch (Exception e) {
+            log.warn("更新作者最近文章失败 author={}: {}", authorId, e.getMessage());
+        }
+        fanOutExecutor.execute(() -> {
+            try {
+                fanOut(authorId, postId);
+            } catch (Exception e) {
+                log.warn("时间线推送失败 author={}, post={}: {}", authorId, postId, e.getMessage());
+            }
+        });
+    }
+
+    /** 文章删除之后调用：只从作者最近文章里移除；粉丝时间线里的 id 读的时候查不到会被跳过 */
+    public void onPostDeleted(Long authorId, Long postId) {
+        if (authorId == null) {
+            return;
+        }
+        try {
+            redisGuard.run(() -> stringRedisTemplate.opsForList().remove(AUTHOR_RECENT_KEY_PREFIX + authorId, 0, postId.toString()));
+        } catch (Exception e) {
+            log.warn("更新作者最近文章失败 author={}: {}", authorId, e.getMessage());
+        }
+    }
+
+    /**
+     * 关注 / 取消关注之后调用 (事务已提交)：丢掉旧时间线，下次读的时候按新的关注列表重建
+     * 尽力而为：Redis 不可用时什么都不做 (关注已经成功了，旧时间线最多 ttl-days 之后过期)
+     */
+    public void onFollowingChanged(Long userId) {
+        redisGuard.call(() -> stringRedisTemplate.delete(TIMELINE_KEY_PREFIX + userId), () -> false);
+    }
+
+    private void fanOut(Long authorId, String postId) {
+        long followers = followService.followerCount(authorId);
+        followService.refreshCelebrity(authorId, followers);
+
+        // 作者自己的首页也能看到自己的文章
+        pushIfPresent(List.of(TIMELINE_KEY_PREFIX + authorId), postId, properties.getMaxLength());
+        if (followService.isCelebrity(followers)) {
+            // 大V：不推送，粉丝读的时候从 user_posts:{authorId} 拉取
+            return;
+        }
+
+        long afterId = 0;
+        while (true) {
+            List<Long> batch = followRepository.findFollowerIds(authorId, afterId,
+                    PageRequest.of(0, properties.getFanOutBatchSize()));
+            if (batch.isEmpty()) {
+                return;
+            }
+            pushIfPresent(batch.stream().map(id -> TIMELINE_KEY_PREFIX + id).toList(), postId, properties.getMaxLength());
+            afterId = batch.get(batch.size() - 1);
+        }
+    }
+
+    /**
+     * 把 postId 推到一批列表的最左边，并截断到 maxLength (一次 pipeline 发送，只有一次网络往返)
+     */
+    private void pushIfPresent(List<String> keys, String postId, int maxLength) {
+        redisGuard.run(() -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (String key : keys) {
+                redis.lPushX(key, postId);
+                redis.lTrim(key, 0, maxLength - 1);
+            }
+            return null;
+        }));
+    }
+
+    // ------------------------------------------------------------------
+    // 读
+    // ------------------------------------------------------------------
+
+    /**
+     * 读 userId 的关注时间线：id < cursor 的最新 size 个文章 id (cursor 为 null = 第一页)
+     * 途中任何一次 Redis 调用失败 (或者熔断中)，都改为 readTimelineFromDatabase
+     */
+    public List<Long> readTimeline(Long userId, Long cursor, int size) {
+        String key = TIMELINE_KEY_PREFIX + userId;
+        Boolean exists = redisGuard.call(() -> stringRedisTemplate.hasKey(key), () -> null);
+        if (exists == null || (!exists && !rebuildTimeline(userId))) {
+            return readTimelineFromDatabase(userId, cursor, size);
+        }
+        redisGuard.call(() -> stringRedisTemplate.expire(key, Duration.ofDays(properties.getTtlDays())), () -> false);
+
+        // 1. 写扩散的部分：直接读一页
+        List<Long> own = page(key, cursor, size);
+        List<Long> celebrities = followService.celebrityFolloweesOf(userId);
+        if (own == null || celebrities == null) {
+            return readTimelineFromDatabase(userId, cursor, size);
+        }
+        Set<Long> merged = new LinkedHashSet<>(own);
+
+        // 2. 读扩散的部分：我关注的每个大V，各取一页
+        for (Long celebrity : celebrities) {
+            String recentKey = authorRecentKey(celebrity);
+            List<Long> recent = recentKey == null ? null : page(recentKey, cursor, size);
+            if (recent == null) {
+                return readTimelineFromDatabase(userId, cursor, size);
+            }
+            merged.addAll(recent);
+        }
+
+        // 3. 合并，按 id 倒序 (最新的在前) 取前 size 个
+        List<Long> result = new ArrayList<>(merged);
+        result.sort(Comparator.reverseOrder());
+        return result.size() > size ? new ArrayList<>(result.subList(0, size)) : result;
+    }
+
+    /**
+     * Redis 不可用时的时间线 (降级)：直接查数据库里我关注的所有作者 (+ 我自己) 最新的文章
+     * 大V 也一起查 (平时大V 的文章是从 Redis 里各自的最近文章列表合并的)
+     */
+    public List<Long> readTimelineFromDatabase(Long userId, Long cursor, int size) {
+        Set<Long> authors = new LinkedHashSet<>(followService.followeeIds(userId));
+        authors.add(userId);
+        List<Long> ids = postStore.findIdsByAuthors(authors, properties.getMaxLength());
+        return ids.stream()
+                .filter(id -> cursor == null || id < cursor)
+                .limit(size)
+                .toList();
+    }
+
+    /**
+     * 从数据库重建时间线：我关注的普通作者 (+ 我自己) 最新的 max-length 篇文章
+     * (大V的文章读的时候再合并，这里不放)
+     * @return false = Redis 不可用，没有建成
+     */
+    private boolean rebuildTimeline(Long userId) {
+        List<Long> celebrities = followService.celebrityFolloweesOf(userId);
+        if (celebrities == null) {
+            return false;
+        }
+        Set<Long> authors = new LinkedHashSet<>(followService.followeeIds(userId));
+        authors.removeAll(celebrities);
+        authors.add(userId);
+        List<Long> ids = postStore.findIdsByAuthors(authors, properties.getMaxLength());
+        return writeList(TIMELINE_KEY_PREFIX + userId, ids);
+    }
+
+    /** 作者最近文章列表的 key；列表不存在时从数据库加载。Redis 不可用时返回 null */
+    private String authorRecentKey(Long authorId) {
+        String key = AUTHOR_RECENT_KEY_PREFIX + authorId;
+        Boolean exists = redisGuard.call(() -> stringRedisTemplate.hasKey(key), () -> null);
+        if (exists == null) {
+            return null;
+        }
+        if (!exists && !writeList(key, postStore.findIdsByAuthors(List.of(authorId), properties.getAuthorRecentLength()))) {
+            return null;
+        }
+        return key;
+    }
+
+    /** @return false = Redis 不可用，没有写成 */
+    private boolean writeList(String key, List<Long> ids) {
+        List<String> values = new ArrayList<>(ids.size() + 1);
+        ids.forEach(id -> values.add(id.toString()));
+        values.add(SENTINEL);
+        return redisGuard.call(() -> {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                redis.del(key);
+                redis.rPush(key, values.toArray(new String[0]));
+                redis.expire(key, Duration.ofDays(properties.getTtlDays()).toSeconds());
+                return null;
+            });
+            return true;
+        }, () -> false);
+    }
+
+    /**
+     * 从一个“最新在左”的列表里取 id < cursor 的 size 个
+     * - 第一页：LRANGE 0 size-1
+     * - 之后：先用 LPOS 找到 cursor 的位置，再从它后面取一页 (都是 O(页大小) 级别)
+     * - cursor 已经不在列表里 (被截断 / 删除)：把整个列表读出来过滤 (列表有长度上限)
+     * @return Redis 不可用时返回 null
+     */
+    private List<Long> page(String key, Long cursor, int size) {
+        List<String> values = redisGuard.call(() -> {
+            if (cursor == null) {
+                return stringRedisTemplate.opsForList().range(key, 0, size - 1);
+            }
+            Long index = stringRedisTemplate.opsForList().indexOf(key, cursor.toString());
+            return index != null
+                    ? stringRedisTemplate.opsForList().range(key, index + 1, index + size)
+                    : stringRedisTemplate.opsForList().range(key, 0, -1);
+        }, () -> null);
+        if (values == null) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>(size);
+        for (String value : values) {
+            long id = Long.parseLong(value);
+            if (id != 0 && (cursor == null || id < cursor) && ids.size() < size) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,47 @@
+package org.hzj.demo.sharding;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 自定义 Actuator 端点：/actuator/resharding
+ * - GET  /actuator/resharding                              查看映射 / 迁移进度
+ * - POST /actuator/resharding {"buckets":"1,2,3","targetShard":2}  把指定的桶搬到 2 号库
+ * - POST /actuator/resharding {}                           自动均衡 (新加一个库之后用)
+ * POST 会搬动数据，只有管理员 (ROLE_ADMIN，见 AdminProperties / SecurityConfig) 才能调用
+ */
+@Component
+@Endpoint(id = "resharding")
+public class ReshardingEndpoint {
+
+    private final ReshardingService reshardingService;
+
+    public ReshardingEndpoint(ReshardingService reshardingService) {
+        this.reshardingService = reshardingService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return reshardingService.snapshot();
+    }
+
+    @WriteOperation
+    public Map<String, Object> move(@Nullable String buckets, @Nullable Integer targetShard) {
+        if (buckets == null || targetShard == null) {
+            return reshardingService.submit(reshardingService.rebalancePlan());
+        }
+        Map<Integer, Integer> plan = new LinkedHashMap<>();
+        Arrays.stream(buckets.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .forEach(bucket -> plan.put(Integer.parseInt(bucket), targetShard));
+        return reshardingService.submit(plan);
+    }
+}
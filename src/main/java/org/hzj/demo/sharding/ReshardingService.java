@@ -0,0 +1,356 @@
+package org.hzj.demo.sharding;
+
+import jakarta.annotation.PreDestroy;
+import org.hzj.demo.config.ShardingProperties;
+import org.hzj.demo.model.Post;
+import org.hzj.demo.model.PostRevision;
+import org.hzj.demo.repository.PostRepository;
+import org.hzj.demo.revision.PostRevisionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * 在线迁移 (resharding)：把一批“桶”从原来的库搬到目标库，全程不停服
+ *
+ * 步骤：
+ * 1. 标记迁移：映射里把这些桶标记为 migrating，等所有节点刷新到新映射，
+ *    从此以后对这些桶的写操作都会“双写”到目标库 (见 ShardedPostStore)
+ * 2. 拷贝：分批扫描源库，把属于这些桶的行拷贝过去；目标库里已经有的按 @Version 比较，
+ *    源库的更新才覆盖 (目标库的可能是双写写进去的更新的数据，不能被拷贝读到的旧数据覆盖)；
+ *    文章的历史版本也一起拷贝 (已有的跳过)
+ * 3. 核对：扫描目标库里属于这些桶的行，源库里已经不存在的 (迁移期间被删了) 删掉 (连同历史版本)，
+ *    源库版本更新的 (双写失败过) 重新拷贝一次
+ * 4. 切换：映射里把桶正式分给目标库、结束双写，再等所有节点刷新
+ * 5. 清理：删除源库里已经不属于它的行 (连同历史版本)
+ *
+ * 同一时间只跑一个迁移任务。
+ */
+@Service
+public class ReshardingService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReshardingService.class);
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardedPostStore store;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private PostRevisionStore revisionStore;
+
+    @Autowired
+    private ShardingProperties properties;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "resharding");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<String, Object> status = new LinkedHashMap<>();
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * 提交迁移任务：plan = 桶 -> 目标库
+     */
+    public synchronized Map<String, Object> submit(Map<Integer, Integer> plan) {
+        if (!shardRouter.isSharded()) {
+            throw new IllegalStateException("没有开启分库 (sharding.enabled=false)");
+        }
+        if ("RUNNING".equals(status.get("state"))) {
+            throw new IllegalStateException("已经有一个迁移任务在运行");
+        }
+        ShardMap map = shardRouter.currentMap();
+        Map<Integer, Integer> effective = new LinkedHashMap<>();
+        plan.forEach((bucket, target) -> {
+            if (bucket < 0 || bucket >= map.buckets()) {
+                throw new IllegalArgumentException("桶编号越界: " + bucket);
+            }
+            if (target < 0 || target >= shardRouter.shardCount()) {
+                throw new IllegalArgumentException("目标库不存在: " + target);
+            }
+            if (map.shardOfBucket(bucket) != target) {
+                effective.put(bucket, target);
+            }
+        });
+        status.clear();
+        status.put("state", effective.isEmpty() ? "DONE" : "RUNNING");
+        status.put("buckets", effective.size());
+        status.put("startedAt", Instant.now().toString());
+        if (!effective.isEmpty()) {
+            worker.submit(() -> run(effective));
+        }
+        return snapshot();
+    }
+
+    /**
+     * 均衡：让每个库分到的桶数量尽量相同 (新增一个库之后调用)
+     */
+    public Map<Integer, Integer> rebalancePlan() {
+        ShardMap map = shardRouter.currentMap();
+        int shards = shardRouter.shardCount();
+        int buckets = map.buckets();
+        Map<Integer, Integer> counts = new HashMap<>(map.bucketCounts());
+        Map<Integer, Integer> plan = new LinkedHashMap<>();
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int from = map.shardOfBucket(bucket);
+            int quota = buckets / shards + (from < buckets % shards ? 1 : 0);
+            if (counts.getOrDefault(from, 0) <= quota) {
+                continue;
+            }
+            for (int to = 0; to < shards; to++) {
+                int toQuota = buckets / shards + (to < buckets % shards ? 1 : 0);
+                if (counts.getOrDefault(to, 0) < toQuota) {
+                    plan.put(bucket, to);
+                    counts.merge(from, -1, Integer::sum);
+                    counts.merge(to, 1, Integer::sum);
+                    break;
+                }
+            }
+        }
+        return plan;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>(status);
+        ShardMap map = shardRouter.currentMap();
+        result.put("mapVersion", map.getVersion());
+        result.put("bucketsPerShard", map.bucketCounts());
+        result.put("migrating", map.getMigrating());
+        return result;
+    }
+
+    private synchronized void update(String key, Object value) {
+        status.put(key, value);
+    }
+
+    private void run(Map<Integer, Integer> plan) {
+        try {
+            // 1. 标记迁移，开始双写
+            update("phase", "MARK");
+            publish(map -> {
+                ShardMap next = map;
+                for (Map.Entry<Integer, Integer> e : plan.entrySet()) {
+                    next = next.withMigration(e.getKey(), e.getValue());
+                }
+                return next;
+            });
+            waitForPropagation();
+
+            ShardMap map = shardRouter.currentMap();
+            Map<Integer, Integer> sourceOf = new HashMap<>();
+            plan.keySet().forEach(bucket -> sourceOf.put(bucket, map.shardOfBucket(bucket)));
+
+            // 2. 拷贝 (每个源库只扫描一遍)
+            update("phase", "COPY");
+            long copied = 0;
+            for (int source : new HashSet<>(sourceOf.values())) {
+                copied += copyFrom(source, plan, map);
+            }
+            update("copied", copied);
+
+            // 3. 核对：目标库里多出来的行 (迁移期间源库删除了) 删掉，比源库旧的行重新拷贝
+            update("phase", "RECONCILE");
+            long removed = 0;
+            long[] refreshed = new long[1];
+            for (int target : new HashSet<>(plan.values())) {
+                removed += reconcile(target, plan, sourceOf, map, refreshed);
+            }
+            update("reconciled", removed);
+            update("refreshed", refreshed[0]);
+
+            // 4. 切换归属，结束双写
+            update("phase", "SWITCH");
+            publish(current -> {
+                ShardMap next = current;
+                for (Map.Entry<Integer, Integer> e : plan.entrySet()) {
+                    next = next.withAssignment(e.getKey(), e.getValue());
+                }
+                return next;
+            });
+            waitForPropagation();
+
+            // 5. 清理源库
+            update("phase", "CLEANUP");
+            long cleaned = 0;
+            for (int source : new HashSet<>(sourceOf.values())) {
+                cleaned += cleanup(source, plan.keySet());
+            }
+            update("cleaned", cleaned);
+
+            update("phase", "FINISHED");
+            update("state", "DONE");
+            update("finishedAt", Instant.now().toString());
+            log.info("迁移完成: {} 个桶, 拷贝 {} 行, 核对删除 {} 行, 重新拷贝 {} 行, 清理 {} 行",
+                    plan.size(), copied, removed, refreshed[0], cleaned);
+        } catch (Exception e) {
+            log.error("迁移失败 (映射里仍标记为迁移中，双写继续生效，可以重新提交)", e);
+            update("state", "FAILED");
+            update("error", e.getMessage());
+        }
+    }
+
+    private long copyFrom(int source, Map<Integer, Integer> plan, ShardMap map) {
+        long copied = 0;
+        long cursor = 0;
+        while (true) {
+            List<Post> batch = scan(source, cursor);
+            if (batch.isEmpty()) {
+                return copied;
+            }
+            cursor = batch.get(batch.size() - 1).getId();
+
+            Map<Integer, List<Post>> byTarget = new HashMap<>();
+            for (Post post : batch) {
+                Integer target = plan.get(map.bucketOf(post.getId()));
+                if (target != null) {
+                    byTarget.computeIfAbsent(target, k -> new ArrayList<>()).add(post);
+                }
+            }
+            for (Map.Entry<Integer, List<Post>> e : byTarget.entrySet()) {
+                List<Long> ids = e.getValue().stream().map(Post::getId).toList();
+                List<PostRevision> revisions = store.write(source, () -> revisionStore.findAll(ids));
+                copied += store.writeCopy(e.getKey(), () -> {
+                    int n = 0;
+                    for (Post post : e.getValue()) {
+                        if (store.upsertCopy(post)) {
+                            n++;
+                        }
+                    }
+                    // 版本不管文章是不是已经双写过去了都要补 (双写只带着迁移开始之后的新版本)
+                    revisionStore.insertCopies(ids, revisions);
+                    return n;
+                });
+            }
+            update("cursor", cursor);
+        }
+    }
+
+    /**
+     * @param refreshed 累加重新拷贝的行数
+     * @return 删除的行数
+     */
+    private long reconcile(int target, Map<Integer, Integer> plan, Map<Integer, Integer> sourceOf, ShardMap map,
+                           long[] refreshed) {
+        long removed = 0;
+        long cursor = 0;
+        while (true) {
+            List<Post> batch = scan(target, cursor);
+            if (batch.isEmpty()) {
+                return removed;
+            }
+            cursor = batch.get(batch.size() - 1).getId();
+
+            Map<Integer, List<Post>> bySource = new HashMap<>();
+            for (Post post : batch) {
+                int bucket = map.bucketOf(post.getId());
+                if (Integer.valueOf(target).equals(plan.get(bucket))) {
+                    bySource.computeIfAbsent(sourceOf.get(bucket), k -> new ArrayList<>()).add(post);
+                }
+            }
+            for (Map.Entry<Integer, List<Post>> e : bySource.entrySet()) {
+                List<Long> ids = e.getValue().stream().map(Post::getId).toList();
+                // 走源库的主库：要和刚写进去的版本号比较，从库可能还没同步到
+                Map<Long, Post> alive = store.write(e.getKey(), () -> postRepository.findAllById(ids)).stream()
+                        .collect(Collectors.toMap(Post::getId, post -> post));
+                List<Long> orphans = ids.stream().filter(id -> !alive.containsKey(id)).toList();
+                List<Post> stale = new ArrayList<>();
+                for (Post copy : e.getValue()) {
+                    Post source = alive.get(copy.getId());
+                    if (source != null && ShardedPostStore.isNewer(source, copy)) {
+                        stale.add(source);
+                    }
+                }
+                if (!stale.isEmpty()) {
+                    List<Long> staleIds = stale.stream().map(Post::getId).toList();
+                    List<PostRevision> revisions = store.write(e.getKey(), () -> revisionStore.findAll(staleIds));
+                    store.writeCopy(target, () -> {
+                        stale.forEach(store::upsertCopy);
+                        revisionStore.insertCopies(staleIds, revisions);
+                        return null;
+                    });
+                    refreshed[0] += stale.size();
+                }
+                if (!orphans.isEmpty()) {
+                    store.write(target, () -> {
+                        postRepository.deleteAllByIdInBatch(orphans);
+                        revisionStore.deleteAll(orphans);
+                        return null;
+                    });
+                    removed += orphans.size();
+                }
+            }
+        }
+    }
+
+    private long cleanup(int source, Set<Integer> buckets) {
+        ShardMap map = shardRouter.currentMap();
+        long cleaned = 0;
+        long cursor = 0;
+        while (true) {
+            List<Post> batch = scan(source, cursor);
+            if (batch.isEmpty()) {
+                return cleaned;
+            }
+            cursor = batch.get(batch.size() - 1).getId();
+            List<Long> moved = batch.stream()
+                    .map(Post::getId)
+                    .filter(id -> buckets.contains(map.bucketOf(id)) && map.shardOf(id) != source)
+                    .toList();
+            if (!moved.isEmpty()) {
+                store.write(source, () -> {
+                    postRepository.deleteAllByIdInBatch(moved);
+                    revisionStore.deleteAll(moved);
+                    return null;
+                });
+                cleaned += moved.size();
+            }
+        }
+    }
+
+    /** 游标分页扫描 (走主库：迁移必须看到最新的数据) */
+    private List<Post> scan(int shard, long afterId) {
+        return store.write(shard, () ->
+                postRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, properties.getMigrationBatchSize())));
+    }
+
+    private void publish(UnaryOperator<ShardMap> change) {
+        for (int attempt = 0; attempt < 10; attempt++) {
+            shardRouter.refresh();
+            ShardMap current = shardRouter.currentMap();
+            if (shardRouter.publish(current, change.apply(current))) {
+                return;
+            }
+        }
+        throw new IllegalStateException("分库映射被并发修改，发布失败");
+    }
+
+    /** 等待所有节点都刷新到新映射 (两个刷新周期) */
+    private void waitForPropagation() throws InterruptedException {
+        Thread.sleep(properties.getMapRefreshIntervalMs() * 2);
+    }
+}
@@ -0,0 +1,34 @@
+package org.hzj.demo.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * 当前线程要访问“几号库” (ThreadLocal)，由 {@link ShardRoutingDataSource} 读取
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /** 没有指定时访问 0 号库 (users 等不分库的表都在这里) */
+    public static int current() {
+        Integer shard = CURRENT.get();
+        return shard != null ? shard : 0;
+    }
+
+    public static <T> T on(int shard, Supplier<T> supplier) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return supplier.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
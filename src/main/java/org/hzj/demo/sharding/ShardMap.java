@@ -0,0 +1,140 @@
+package org.hzj.demo.sharding;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * “桶 -> 库” 映射表 (不可变对象，修改时生成新版本)
+ *
+ * 知识点：为什么要多一层“桶”，而不是直接 id % 库数？
+ * id % N 在扩容 (N -> N+1) 时，几乎【所有】数据都要换库。
+ * 先把 id 固定地映射到 1024 个“桶”，再把桶分配给库：
+ * 扩容时只需要把【一部分桶】整体搬到新库，其他数据一动不动。
+ *
+ * migrating：正在迁移的桶 -> 目标库。迁移期间写操作会“双写”到目标库。
+ */
+public final class ShardMap {
+
+    private final long version;
+    private final int[] assignments;
+    private final Map<Integer, Integer> migrating;
+
+    private ShardMap(long version, int[] assignments, Map<Integer, Integer> migrating) {
+        this.version = version;
+        this.assignments = assignments;
+        this.migrating = Collections.unmodifiableMap(migrating);
+    }
+
+    /** 初始映射：桶 i 分给 i % shardCount 号库 */
+    public static ShardMap initial(int buckets, int shardCount) {
+        int[] assignments = new int[buckets];
+        for (int i = 0; i < buckets; i++) {
+            assignments[i] = i % shardCount;
+        }
+        return new ShardMap(1, assignments, new HashMap<>());
+    }
+
+    /**
+     * id -> 桶。先把 id 的 bit 充分“打散” (murmur3 的 fmix64)，
+     * 因为雪花 id 的低位 (秒内序号) 在低并发时几乎总是 0。
+     */
+    public int bucketOf(long id) {
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) Math.floorMod(h, (long) assignments.length);
+    }
+
+    public int shardOf(long id) {
+        return assignments[bucketOf(id)];
+    }
+
+    /** 这个 id 所在的桶正在迁移吗？是的话返回目标库，否则 -1 */
+    public int migrationTargetOf(long id) {
+        Integer target = migrating.get(bucketOf(id));
+        return target != null ? target : -1;
+    }
+
+    public int shardOfBucket(int bucket) {
+        return assignments[bucket];
+    }
+
+    public int buckets() {
+        return assignments.length;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Map<Integer, Integer> getMigrating() {
+        return migrating;
+    }
+
+    public ShardMap withMigration(int bucket, int targetShard) {
+        Map<Integer, Integer> next = new HashMap<>(migrating);
+        next.put(bucket, targetShard);
+        return new ShardMap(version + 1, assignments.clone(), next);
+    }
+
+    /** 迁移完成：桶正式归属目标库，并结束双写 */
+    public ShardMap withAssignment(int bucket, int shard) {
+        int[] next = assignments.clone();
+        next[bucket] = shard;
+        Map<Integer, Integer> nextMigrating = new HashMap<>(migrating);
+        nextMigrating.remove(bucket);
+        return new ShardMap(version + 1, next, nextMigrating);
+    }
+
+    public ShardMap withoutMigration(int bucket) {
+        Map<Integer, Integer> next = new HashMap<>(migrating);
+        next.remove(bucket);
+        return new ShardMap(version + 1, assignments.clone(), next);
+    }
+
+    /** 每个库分到了多少个桶 */
+    public Map<Integer, Integer> bucketCounts() {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int shard : assignments) {
+            counts.merge(shard, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    public int maxShard() {
+        return Arrays.stream(assignments).max().orElse(0);
+    }
+
+    /**
+     * 序列化格式 (存 Redis)： "版本|桶0的库,桶1的库,...|桶:目标库,桶:目标库"
+     */
+    public String serialize() {
+        StringJoiner assignmentPart = new StringJoiner(",");
+        for (int shard : assignments) {
+            assignmentPart.add(String.valueOf(shard));
+        }
+        StringJoiner migratingPart = new StringJoiner(",");
+        migrating.forEach((bucket, target) -> migratingPart.add(bucket + ":" + target));
+        return version + "|" + assignmentPart + "|" + migratingPart;
+    }
+
+    public static ShardMap parse(String value) {
+        String[] parts = value.split("\\|", -1);
+        long version = Long.parseLong(parts[0]);
+        int[] assignments = Arrays.stream(parts[1].split(",")).mapToInt(Integer::parseInt).toArray();
+        Map<Integer, Integer> migrating = new HashMap<>();
+        if (parts.length > 2 && !parts[2].isEmpty()) {
+            for (String entry : parts[2].split(",")) {
+                String[] kv = entry.split(":");
+                migrating.put(Integer.parseInt(kv[0]), Integer.parseInt(kv[1]));
+            }
+        }
+        return new ShardMap(version, assignments, migrating);
+    }
+}
@@ -0,0 +1,123 @@
+package org.hzj.demo.sharding;
+
+import jakarta.annotation.PostConstruct;
+import org.hzj.demo.config.ShardingProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 分库路由：id -> 几号库
+ *
+ * “桶 -> 库”映射存放在 Redis (post:shard_map)，所有节点定时刷新，
+ * 这样在线迁移 (ReshardingService) 修改映射后，整个集群都能在一个刷新周期内感知到。
+ */
+@Component
+public class ShardRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRouter.class);
+
+    static final String SHARD_MAP_KEY = "post:shard_map";
+
+    /**
+     * 乐观锁式的“比较并替换”：只有 Redis 里的版本号等于 ARGV[1] 时才写入新映射
+     * (映射的格式是 "版本|..."，版本号在第一个 '|' 之前)
+     */
+    private static final DefaultRedisScript<Long> COMPARE_AND_SET = new DefaultRedisScript<>(
+            "local current = redis.call('GET', KEYS[1]) " +
+            "if current and string.sub(current, 1, string.find(current, '|', 1, true) - 1) ~= ARGV[1] then return 0 end " +
+            "redis.call('SET', KEYS[1], ARGV[2]) return 1",
+            Long.class);
+
+    @Autowired
+    private ShardingProperties properties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private int shardCount;
+
+    private volatile ShardMap current;
+
+    @PostConstruct
+    public void init() {
+        shardCount = properties.isEnabled() ? 1 + properties.getShards().size() : 1;
+        ShardMap initial = ShardMap.initial(properties.getBuckets(), shardCount);
+        current = initial;
+        if (!isSharded()) {
+            return;
+        }
+        try {
+            // 集群里第一个启动的节点负责写入初始映射 (SETNX)
+            stringRedisTemplate.opsForValue().setIfAbsent(SHARD_MAP_KEY, initial.serialize());
+            refresh();
+        } catch (Exception e) {
+            log.error("读取分库映射失败，暂时使用初始映射: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${sharding.map-refresh-interval-ms:5000}")
+    public void refresh() {
+        if (!isSharded()) {
+            return;
+        }
+        String value = stringRedisTemplate.opsForValue().get(SHARD_MAP_KEY);
+        if (value == null) {
+            return;
+        }
+        ShardMap loaded = ShardMap.parse(value);
+        if (loaded.maxShard() >= shardCount) {
+            log.error("分库映射引用了 {} 号库，但本节点只配置了 {} 个库，忽略这次刷新", loaded.maxShard(), shardCount);
+            return;
+        }
+        if (loaded.getVersion() != current.getVersion()) {
+            log.info("分库映射更新: v{} -> v{}, 迁移中的桶: {}", current.getVersion(), loaded.getVersion(), loaded.getMigrating());
+            current = loaded;
+        }
+    }
+
+    /**
+     * 发布新映射 (只有 Redis 里仍是 expected 这个版本时才会成功)
+     */
+    public boolean publish(ShardMap expected, ShardMap next) {
+        Long ok = stringRedisTemplate.execute(COMPARE_AND_SET, List.of(SHARD_MAP_KEY),
+                String.valueOf(expected.getVersion()), next.serialize());
+        if (ok != null && ok == 1L) {
+            current = next;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public List<Integer> allShards() {
+        return IntStream.range(0, shardCount).boxed().toList();
+    }
+
+    public ShardMap currentMap() {
+        return current;
+    }
+
+    public int shardOf(long id) {
+        return isSharded() ? current.shardOf(id) : 0;
+    }
+
+    /** 迁移中的桶：返回双写的目标库；否则 -1 */
+    public int migrationTargetOf(long id) {
+        return isSharded() ? current.migrationTargetOf(id) : -1;
+    }
+}
@@ -0,0 +1,603 @@
+package org.hzj.demo.sharding;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.hzj.demo.config.ShardingProperties;
+import org.hzj.demo.content.PostContentStore;
+import org.hzj.demo.datasource.ReadYourWrites;
+import org.hzj.demo.model.OutboxEvent;
+import org.hzj.demo.model.Post;
+import org.hzj.demo.model.PostField;
+import org.hzj.demo.model.PostRevision;
+import org.hzj.demo.repository.OutboxEventRepository;
+import org.hzj.demo.repository.PostRepository;
+import org.hzj.demo.revision.PostRevisionStore;
+import org.hzj.demo.util.ContextSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 分库感知的 Post 存取层 (PostService 通过它访问 blog_posts，而不是直接用 PostRepository)
+ *
+ * 1. 单条读写：按 id 算出几号库，在【那个库】上开事务执行
+ * 2. 列表 / 批量读：分发到所有相关的库并行查询 (scatter)，再按顺序合并 (gather)
+ * 3. 迁移中的桶：写操作额外“双写”到目标库 (见 ReshardingService)
+ * 4. 每个写操作在同一个事务里往发件箱 (post_outbox) 写一条事件，附带工作由 OutboxDispatcher 异步完成
+ * 5. 开启 content-store 时，长正文写库之前存进段文件、读库之后再读回来 (见 PostContentStore)
+ * 6. 每次新增 / 修改在同一个事务里记一个历史版本 (见 PostRevisionStore)，删除文章时一起删掉
+ *
+ * 知识点：为什么事务要在这里开，而不是在 PostService 上加 @Transactional？
+ * 一个事务只会拿【一个】数据库连接，拿连接的那一刻就决定了是哪个库。
+ * 所以必须“先确定库 (ShardContext)，再开事务”，两者的顺序只能在这一层保证。
+ * 没开分库时 (只有 0 号库)，这一层只是多了一个普通的事务模板，没有额外开销。
+ */
+@Component
+public class ShardedPostStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedPostStore.class);
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ShardingProperties properties;
+
+    @Autowired
+    private WorkerIdAllocator workerIdAllocator;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PostContentStore contentStore;
+
+    @Autowired
+    private PostRevisionStore revisionStore;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private TransactionTemplate writeTemplate;
+    private TransactionTemplate readTemplate;
+
+    /** 并行查询各个库的线程池 (只有分库时才创建) */
+    private ThreadPoolExecutor queryExecutor;
+
+    @PostConstruct
+    public void init() {
+        writeTemplate = new TransactionTemplate(transactionManager);
+        readTemplate = new TransactionTemplate(transactionManager);
+        readTemplate.setReadOnly(true);
+
+        if (shardRouter.isSharded()) {
+            AtomicInteger counter = new AtomicInteger();
+            int threads = properties.getQueryThreads();
+            queryExecutor = new ThreadPoolExecutor(
+                    threads, threads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(threads * 64),
+                    r -> {
+                        Thread t = new Thread(r, "shard-query-" + counter.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    // 队列满了就让请求线程自己执行，相当于自动“限流”
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (queryExecutor != null) {
+            queryExecutor.shutdown();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 在指定的库上执行
+    // ------------------------------------------------------------------
+
+    public int shardOf(long postId) {
+        return shardRouter.shardOf(postId);
+    }
+
+    /** 在 shard 号库上开一个只读事务 (开了读写分离时会走从库) */
+    public <T> T read(int shard, Supplier<T> work) {
+        return ShardContext.on(shard, () -> readTemplate.execute(status -> work.get()));
+    }
+
+    /** 在 shard 号库上开一个写事务 */
+    public <T> T write(int shard, Supplier<T> work) {
+        return ShardContext.on(shard, () -> writeTemplate.execute(status -> work.get()));
+    }
+
+    /** 在 postId 所在的库上开一个写事务 */
+    public <T> T writeFor(long postId, Supplier<T> work) {
+        return write(shardOf(postId), work);
+    }
+
+    // ------------------------------------------------------------------
+    // 读
+    // ------------------------------------------------------------------
+
+    public Optional<Post> findById(Long id) {
+        int shard = shardOf(id);
+        return readYourWrites.findWithPrimaryFallback(() -> read(shard, () -> postRepository.findById(id)))
+                .map(contentStore::resolve);
+    }
+
+    /**
+     * (GET /posts/{id}/content) 只查 id、content、contentRef 三列：
+     * 外置的正文【不】读回来 (content 是摘要)，调用方按 contentRef 直接把段文件发给客户端
+     */
+    public Optional<Post> findBody(Long id) {
+        int shard = shardOf(id);
+        Set<PostField> fields = Set.of(PostField.ID, PostField.CONTENT);
+        return readYourWrites.findWithPrimaryFallback(() -> read(shard,
+                () -> project(List.of(id), fields).stream().findFirst()));
+    }
+
+    /**
+     * 所有被文章引用的外置正文的地址 (压缩段文件时用，见 ContentCompactor)
+     */
+    public Set<String> findContentRefs() {
+        List<List<String>> parts = scatter(shardRouter.allShards(), shard -> read(shard, () -> {
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<String> query = cb.createQuery(String.class);
+            Root<Post> root = query.from(Post.class);
+            query.select(root.get("contentRef")).distinct(true).where(cb.isNotNull(root.get("contentRef")));
+            return entityManager.createQuery(query).getResultList();
+        }));
+        Set<String> refs = new HashSet<>();
+        parts.forEach(refs::addAll);
+        return refs;
+    }
+
+    /**
+     * 所有文章：并行查询每个库，再按 id 排序合并
+     * (雪花 id 大致按时间递增，所以结果也大致是“按发布时间”排序)
+     */
+    public List<Post> findAll() {
+        List<List<Post>> parts = scatter(shardRouter.allShards(), shard -> read(shard, postRepository::findAll));
+        List<Post> merged = new ArrayList<>();
+        parts.forEach(merged::addAll);
+        merged.sort(Comparator.comparing(Post::getId));
+        merged.forEach(contentStore::resolve);
+        return merged;
+    }
+
+    /**
+     * 按一批 id 查询：先按库分组，每个库只查一次 (IN 查询)，并行执行
+     * (和 JpaRepository.findAllById 一样，不保证顺序)
+     */
+    public List<Post> findAllById(Collection<Long> ids) {
+        Map<Integer, List<Long>> byShard = groupByShard(ids);
+        List<List<Post>> parts = scatter(byShard.keySet(),
+                shard -> read(shard, () -> postRepository.findAllById(byShard.get(shard))));
+        List<Post> result = new ArrayList<>(ids.size());
+        parts.forEach(result::addAll);
+        result.forEach(contentStore::resolve);
+        return result;
+    }
+
+    /**
+     * 只查 fields 里的列 (稀疏字段集 ?fields=...)：例如只要 id、title 时，SELECT 里根本没有 content 大字段，
+     * 数据库读的、网络传的、Hibernate 创建的都只有这几列
+     * 查出来的 Post 不是托管状态 (没有进持久化上下文)，没查的字段是 null，只能用来输出
+     *
+     * @param ids null = 所有文章
+     * @return 按 id 从小到大
+     */
+    public List<Post> findProjected(Collection<Long> ids, Set<PostField> fields) {
+        if (ids != null && ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, List<Long>> byShard = ids == null ? null : groupByShard(ids);
+        Collection<Integer> shards = ids == null ? shardRouter.allShards() : byShard.keySet();
+        List<List<Post>> parts = scatter(shards,
+                shard -> read(shard, () -> project(byShard == null ? null : byShard.get(shard), fields)));
+        List<Post> merged = new ArrayList<>();
+        parts.forEach(merged::addAll);
+        merged.sort(Comparator.comparing(Post::getId));
+        merged.forEach(contentStore::resolve);
+        return merged;
+    }
+
+    /** 查了 content 列时一起查 contentRef (外置的正文 content 列里只有摘要) */
+    private List<Post> project(List<Long> ids, Set<PostField> fields) {
+        List<PostField> columns = fields.stream().filter(PostField::isPersistent).toList();
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Post> root = query.from(Post.class);
+        List<Selection<?>> selections = new ArrayList<>();
+        for (PostField column : columns) {
+            selections.add(root.get(column.fieldName()).alias(column.fieldName()));
+        }
+        boolean withRef = fields.contains(PostField.CONTENT);
+        if (withRef) {
+            selections.add(root.get("contentRef").alias("contentRef"));
+        }
+        query.multiselect(selections);
+        if (ids != null) {
+            query.where(root.get("id").in(ids));
+        }
+        query.orderBy(cb.asc(root.get("id")));
+        List<Post> posts = new ArrayList<>();
+        for (Tuple row : entityManager.createQuery(query).getResultList()) {
+            Post post = new Post();
+            for (PostField column : columns) {
+                column.set(post, row.get(column.fieldName()));
+            }
+            if (withRef) {
+                post.setContentRef(row.get("contentRef", String.class));
+            }
+            posts.add(post);
+        }
+        return posts;
+    }
+
+    /**
+     * 某个作者 id < before 的最新 size 篇文章 (id 从大到小)
+     * 文章按 id 分库，同一个作者的文章分散在各个库里：
+     * 每个库各取 size 篇 (走 (author_id, id) 索引)，合并后再取前 size 篇
+     */
+    public List<Post> findByAuthor(Long authorId, long before, int size) {
+        List<List<Post>> parts = scatter(shardRouter.allShards(), shard -> read(shard, () ->
+                postRepository.findByAuthorIdAndIdLessThanOrderByIdDesc(authorId, before, PageRequest.of(0, size))));
+        List<Post> merged = new ArrayList<>();
+        parts.forEach(merged::addAll);
+        merged.sort(Comparator.comparing(Post::getId).reversed());
+        List<Post> page = merged.size() > size ? new ArrayList<>(merged.subList(0, size)) : merged;
+        page.forEach(contentStore::resolve);
+        return page;
+    }
+
+    /**
+     * 一批作者最新的 limit 篇文章的 id (id 从大到小)
+     */
+    public List<Long> findIdsByAuthors(Collection<Long> authorIds, int limit) {
+        if (authorIds.isEmpty()) {
+            return List.of();
+        }
+        List<List<Long>> parts = scatter(shardRouter.allShards(), shard -> read(shard, () ->
+                postRepository.findIdsByAuthorIds(authorIds, PageRequest.of(0, limit))));
+        List<Long> merged = new ArrayList<>();
+        parts.forEach(merged::addAll);
+        merged.sort(Comparator.reverseOrder());
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    public Map<Integer, List<Long>> groupByShard(Collection<Long> ids) {
+        Map<Integer, List<Long>> byShard = new LinkedHashMap<>();
+        for (Long id : ids) {
+            byShard.computeIfAbsent(shardOf(id), k -> new ArrayList<>()).add(id);
+        }
+        return byShard;
+    }
+
+    // ------------------------------------------------------------------
+    // 写
+    // ------------------------------------------------------------------
+
+    /**
+     * 新增：先生成全局唯一 id，再根据 id 决定写哪个库
+     * (忽略客户端传来的 id / version，防止“借创建之名覆盖别人的文章”)
+     */
+    public Post insert(Post post) {
+        post.setId(workerIdAllocator.generator().nextId());
+        post.setVersion(null);
+        // 长正文先落盘 (段文件)，行里只写摘要；事务回滚的话段文件里多一条没人引用的正文，压缩时回收
+        String content = contentStore.externalize(post);
+        List<PostRevision> revisions = new ArrayList<>();
+        Post saved = writeFor(post.getId(), () -> {
+            Post inserted = postRepository.save(post);
+            outboxEventRepository.save(OutboxEvent.of(OutboxEvent.Type.CREATED,
+                    inserted.getId(), inserted.getAuthorId(), inserted.getVersion(), inserted.getTags()));
+            // 版本 0 存完整正文 (post 里现在可能只是摘要)
+            revisions.addAll(revisionStore.recordCreated(inserted, content != null ? content : inserted.getContent()));
+            return inserted;
+        });
+        mirrorToMigrationTarget(saved, revisions);
+        if (content != null) {
+            saved.setContent(content);
+        }
+        return saved;
+    }
+
+    /**
+     * 修改：在 id 所在的库上 “查出来 -> 改 -> 保存”，同一个事务
+     * @param editorId 当前用户 (记在历史版本里)
+     * @return 文章不存在时返回 empty
+     */
+    public Optional<Post> update(Long id, Long editorId, Consumer<Post> changes) {
+        String[] content = new String[1];
+        List<PostRevision> revisions = new ArrayList<>();
+        Optional<Post> saved = writeFor(id, () -> postRepository.findById(id).map(post -> {
+            // 先读回完整正文再交给 changes (没改正文的话，下面 externalize 之后又是原来的摘要，content 列不会被 UPDATE)
+            contentStore.resolve(post);
+            PostRevisionStore.Base base = revisionStore.before(post.copy());
+            changes.accept(post);
+            String fullContent = post.getContent();
+            content[0] = contentStore.externalize(post);
+            // flush 之后 version 才是 +1 之后的值，事件里要带上新版本号
+            Post updated = postRepository.saveAndFlush(post);
+            outboxEventRepository.save(OutboxEvent.of(OutboxEvent.Type.UPDATED,
+                    id, updated.getAuthorId(), updated.getVersion(), updated.getTags()));
+            revisions.addAll(revisionStore.record(base, updated.getVersion(),
+                    updated.getTitle(), updated.getTags(), fullContent, editorId));
+            return updated;
+        }));
+        saved.ifPresent(post -> mirrorToMigrationTarget(post, revisions));
+        if (content[0] != null) {
+            saved.ifPresent(post -> post.setContent(content[0]));
+        }
+        return saved;
+    }
+
+    /**
+     * 部分修改：一条 UPDATE 只改 changes 里的列 (不碰 content 这种大字段，除非它就在 changes 里)
+     *
+     *   UPDATE blog_posts SET title = ?, version = version + 1
+     *   WHERE id = ? AND version = ? AND (author_id IS NULL OR author_id = ?)
+     *
+     * 不需要先 SELECT 出整行：版本号 (乐观锁) 和作者都在 WHERE 里判断，没有“读-改-写”之间的空档
+     *
+     * @param expectedVersion 客户端读到的版本号
+     * @param editorId        当前用户 (只能改自己的文章；没有作者的老文章不限制)
+     * @param changes         字段名 (Post 的属性名) -> 新值
+     * @param check           没更新到任何行时，对数据库里的文章做的检查 (例如作者不对，抛 403)
+     * @return 新的版本号；文章不存在时返回 empty
+     * @throws ObjectOptimisticLockingFailureException 版本号对不上 (别人已经改过了)
+     */
+    public Optional<Long> patch(Long id, long expectedVersion, Long editorId,
+                                Map<String, Object> changes, Consumer<Post> check) {
+        int target = shardRouter.migrationTargetOf(id);
+        boolean migrating = target >= 0 && target != shardOf(id);
+        Post[] updated = new Post[1];
+        List<PostRevision> revisions = new ArrayList<>();
+        // 改了正文的话：长正文换成摘要 + contentRef (changes 本身不改，调用方还要用它改缓存)
+        Map<String, Object> columns = contentStore.externalize(changes);
+        Optional<Long> version = writeFor(id, () -> {
+            // 历史版本：通常只查最新版本的几列，不读文章的整行 (读出来的行要 detach，免得下面 findById 拿到改之前的对象)
+            PostRevisionStore.Base base = revisionStore.beforePatch(id, expectedVersion,
+                    () -> postRepository.findById(id).map(post -> {
+                        entityManager.detach(post);
+                        return contentStore.resolve(post);
+                    }).orElse(null));
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaUpdate<Post> update = cb.createCriteriaUpdate(Post.class);
+            Root<Post> root = update.from(Post.class);
+            columns.forEach((name, value) -> {
+                if (value == null) {
+                    update.set(root.<String>get(name), cb.nullLiteral(String.class));
+                } else {
+                    update.set(name, value);
+                }
+            });
+            update.set(root.<Long>get("version"), cb.sum(root.<Long>get("version"), 1L));
+            Predicate author = editorId == null
+                    ? cb.isNull(root.get("authorId"))
+                    : cb.or(cb.isNull(root.get("authorId")), cb.equal(root.get("authorId"), editorId));
+            update.where(cb.equal(root.get("id"), id), cb.equal(root.get("version"), expectedVersion), author);
+
+            if (entityManager.createQuery(update).executeUpdate() == 1) {
+                @SuppressWarnings("unchecked")
+                List<String> tags = (List<String>) changes.get("tags");
+                outboxEventRepository.save(OutboxEvent.of(OutboxEvent.Type.UPDATED,
+                        id, editorId, expectedVersion + 1, tags));
+                revisions.addAll(revisionStore.record(base, expectedVersion + 1,
+                        (String) changes.get("title"), tags, (String) changes.get("content"), editorId));
+                if (migrating) {
+                    // 迁移中的桶要把整行同步到目标库，只有这时才读一次整行
+                    updated[0] = postRepository.findById(id).orElse(null);
+                }
+                return Optional.of(expectedVersion + 1);
+            }
+            // 没更新到：文章不存在 / 不是作者 / 版本号不对，查一次看是哪种
+            Optional<Post> current = postRepository.findById(id);
+            if (current.isEmpty()) {
+                return Optional.<Long>empty();
+            }
+            check.accept(current.get());
+            throw new ObjectOptimisticLockingFailureException(Post.class, id);
+        });
+        if (updated[0] != null) {
+            mirrorToMigrationTarget(updated[0], revisions);
+        }
+        return version;
+    }
+
+    /**
+     * 删除：一条 DELETE (作者判断在 WHERE 里) + 一条发件箱事件，同一个事务
+     *
+     * @param editorId 当前用户 (只能删自己的文章；没有作者的老文章不限制)
+     * @param check    没删到任何行时，对数据库里的文章做的检查 (例如作者不对，抛 403)
+     * @return false = 文章不存在
+     */
+    public boolean delete(Long id, Long editorId, Consumer<Post> check) {
+        boolean deleted = writeFor(id, () -> {
+            if (postRepository.deleteOwned(id, editorId) == 1) {
+                // 删掉的要么是 editorId 自己的文章，要么是没有作者的老文章
+                outboxEventRepository.save(OutboxEvent.of(OutboxEvent.Type.DELETED, id, editorId, null, null));
+                revisionStore.deleteAll(List.of(id));
+                return true;
+            }
+            Optional<Post> current = postRepository.findById(id);
+            current.ifPresent(check);
+            return false;
+        });
+        int target = shardRouter.migrationTargetOf(id);
+        if (deleted && target >= 0 && target != shardOf(id)) {
+            try {
+                write(target, () -> {
+                    postRepository.deleteById(id);
+                    revisionStore.deleteAll(List.of(id));
+                    return null;
+                });
+            } catch (Exception e) {
+                log.warn("迁移双删失败 (迁移任务的核对阶段会修正): id={}, {}", id, e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    // ------------------------------------------------------------------
+    // 迁移相关
+    // ------------------------------------------------------------------
+
+    /**
+     * 迁移期间的“双写”：把最新的一行和这次写入的历史版本同步到目标库
+     * 失败不影响主流程 (源库仍然是权威数据，迁移任务会再拷贝 / 核对一遍)
+     */
+    private void mirrorToMigrationTarget(Post post, List<PostRevision> revisions) {
+        int target = shardRouter.migrationTargetOf(post.getId());
+        if (target < 0 || target == shardOf(post.getId())) {
+            return;
+        }
+        try {
+            writeCopy(target, () -> {
+                upsertCopy(post);
+                revisionStore.insertCopies(List.of(post.getId()), revisions);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("迁移双写失败 (迁移任务会再拷贝一次): id={}, {}", post.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 把另一个库里的一行写到当前库 (拷贝、双写、核对共用；必须在目标库的写事务里调用)
+     * - 当前库里没有：插入
+     * - 有，但版本号比 source 旧：覆盖
+     * - 版本号一样或者更新：不动 (例如拷贝读到的是旧版本，而双写已经把新版本写过来了)
+     *
+     * 先锁住这一行 (findForUpdate) 再比较：拷贝和双写同时写同一行时，后来的一方看到的是先到的一方写完的结果，
+     * 不会出现“旧版本覆盖新版本”。两边同时“插入”同一行时有一方会主键冲突，见 writeCopy
+     * @return 是否写入了
+     */
+    boolean upsertCopy(Post source) {
+        Optional<Post> existing = postRepository.findForUpdate(source.getId());
+        if (existing.isPresent()) {
+            if (!isNewer(source, existing.get())) {
+                return false;
+            }
+            postRepository.delete(existing.get());
+            postRepository.flush();
+        }
+        insertCopy(source);
+        return true;
+    }
+
+    /** candidate 的版本号是否比 current 新 (没有版本号的老数据当作最旧) */
+    static boolean isNewer(Post candidate, Post current) {
+        if (candidate.getVersion() == null) {
+            return false;
+        }
+        return current.getVersion() == null || candidate.getVersion() > current.getVersion();
+    }
+
+    /**
+     * 迁移用：在目标库的写事务里执行 work (work 里用 upsertCopy 写行)
+     * 拷贝和双写同时插入同一行时，后提交的一方主键冲突，整个事务重做一次：
+     * 这次行已经存在，upsertCopy 会锁住它再按版本号决定覆盖还是跳过
+     */
+    <T> T writeCopy(int target, Supplier<T> work) {
+        try {
+            return write(target, work);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("迁移写入主键冲突，重试一次: shard={}, {}", target, e.getMessage());
+            return write(target, work);
+        }
+    }
+
+    /**
+     * 把另一个库里的一行原样插入当前库 (必须在目标库的写事务里调用)
+     */
+    void insertCopy(Post source) {
+        Post copy = source.copy();
+        copy.setVersion(null);
+        entityManager.persist(copy);
+        // 经过 Repository 代理 flush：主键冲突会被翻译成 DataIntegrityViolationException (见 writeCopy)
+        postRepository.flush();
+        postRepository.restoreCopiedMetadata(source.getId(), source.getVersion(), source.getCreateTime());
+    }
+
+    // ------------------------------------------------------------------
+    // scatter-gather
+    // ------------------------------------------------------------------
+
+    /**
+     * 在多个库上并行执行 work，按 shards 的顺序返回结果
+     * (只有一个库时直接在当前线程执行，不经过线程池)
+     */
+    public <T> List<T> scatter(Collection<Integer> shards, Function<Integer, T> work) {
+        if (queryExecutor == null || shards.size() <= 1) {
+            List<T> results = new ArrayList<>(shards.size());
+            for (Integer shard : shards) {
+                results.add(work.apply(shard));
+            }
+            return results;
+        }
+        ContextSnapshot snapshot = ContextSnapshot.capture();
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (Integer shard : shards) {
+            futures.add(queryExecutor.submit(snapshot.wrap(() -> work.apply(shard))));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("分库查询被中断", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException re ? re : new IllegalStateException(cause);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,182 @@
+package org.hzj.demo.sharding;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.hzj.demo.config.ShardingProperties;
+import org.hzj.demo.util.SnowflakeIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 雪花 id 的“节点号”分配
+ *
+ * 两个节点用了同一个节点号，就可能在同一秒生成相同的 id。
+ * - 配置了 sharding.worker-id：直接使用 (适合固定部署)
+ * - 没配置 (-1)：启动时在 Redis 里“抢占”一个空闲节点号 (SET NX + 过期时间)，
+ *   运行期间定时续期；节点挂掉后租约过期，节点号自动释放给别人。
+ *
+ * 知识点：失败时“关闭”(fail closed)，而不是“凑合着用”
+ * - 启动时 Redis 不可用：直接启动失败 (随机挑一个节点号有 1/32 的概率和别人撞上，撞上了就是重复 id)
+ * - 运行中续期一直失败 (Redis 连不上)：租约快到期时停止发号 (nextId 抛异常)，续期成功后自动恢复；
+ *   租约过期之后节点号可能已经被别的节点领走了，继续发号就可能重复
+ * - 续期时发现节点号已经被别人占了：停止发号，重新领一个空闲的节点号，领到之前一直不发号
+ */
+@Component
+public class WorkerIdAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkerIdAllocator.class);
+
+    private static final String LEASE_KEY_PREFIX = "id:worker:";
+    private static final Duration LEASE_TTL = Duration.ofSeconds(60);
+    /** 租约到期前留出的余量 (各机器之间的时钟误差、Redis 命令的耗时)，到了这个时间就不再发号 */
+    private static final Duration LEASE_SAFETY_MARGIN = Duration.ofSeconds(5);
+
+    /**
+     * 续期：租约仍然属于自己 -> 延长；租约不见了 (例如 Redis 重启) -> 重新占上；
+     * 已经被别人占了 -> 返回 0
+     */
+    private static final DefaultRedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "local v = redis.call('GET', KEYS[1]) " +
+            "if v == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+            "if not v then redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) return 1 end " +
+            "return 0",
+            Long.class);
+
+    /** 只有租约仍然属于自己时才释放 */
+    private static final DefaultRedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    @Autowired
+    private ShardingProperties properties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    private volatile SnowflakeIdGenerator generator;
+    private boolean leased;
+
+    @PostConstruct
+    public void init() {
+        long workerId = properties.getWorkerId();
+        if (workerId < 0) {
+            // 领不到 (Redis 不可用 / 节点号都被占了) 直接抛异常，应用启动失败
+            long start = System.currentTimeMillis();
+            workerId = acquire();
+            leased = true;
+            use(new LeasedIdGenerator(workerId, start));
+        } else {
+            use(new SnowflakeIdGenerator(workerId));
+        }
+        log.info("雪花 id 节点号: {}{}", workerId, leased ? " (Redis 租约)" : "");
+    }
+
+    private void use(SnowflakeIdGenerator next) {
+        generator = next;
+        // Hibernate 的 SnowflakeIdentifierGenerator 也用这一个
+        SnowflakeIdGenerator.setGlobal(next);
+    }
+
+    private long acquire() {
+        for (long id = 0; id <= SnowflakeIdGenerator.MAX_WORKER_ID; id++) {
+            Boolean ok;
+            try {
+                ok = stringRedisTemplate.opsForValue().setIfAbsent(LEASE_KEY_PREFIX + id, owner, LEASE_TTL);
+            } catch (Exception e) {
+                throw new IllegalStateException("无法从 Redis 领取雪花 id 节点号，请检查 Redis 或者配置 sharding.worker-id", e);
+            }
+            if (Boolean.TRUE.equals(ok)) {
+                return id;
+            }
+        }
+        throw new IllegalStateException("32 个节点号都被占用了，请配置 sharding.worker-id");
+    }
+
+    @Scheduled(fixedDelay = 20_000)
+    public void renew() {
+        if (!leased) {
+            return;
+        }
+        LeasedIdGenerator current = (LeasedIdGenerator) generator;
+        long workerId = current.getWorkerId();
+        long start = System.currentTimeMillis();
+        try {
+            Long ok = stringRedisTemplate.execute(RENEW, List.of(LEASE_KEY_PREFIX + workerId),
+                    owner, String.valueOf(LEASE_TTL.toMillis()));
+            if (ok != null && ok != 0L) {
+                current.extend(start);
+                return;
+            }
+            // 节点号被别人占了：马上停止发号，换一个空闲的节点号 (用新的生成器，旧的一直保持失效)
+            current.revoke();
+            log.error("节点号 {} 的租约已经被其他节点占用，暂停发号，重新领取节点号", workerId);
+            long next = acquire();
+            use(new LeasedIdGenerator(next, start));
+            log.warn("重新领到节点号 {}，恢复发号", next);
+        } catch (Exception e) {
+            // 不在这里停止发号：租约还没到期，别人领不走；到期前一直续不上，LeasedIdGenerator 会自己停下来
+            log.warn("节点号 {} 续期失败 (租约剩余 {} 毫秒): {}", workerId, current.remainingMillis(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        if (!leased) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE, List.of(LEASE_KEY_PREFIX + generator.getWorkerId()), owner);
+        } catch (Exception ignored) {
+            // 释放失败也没关系，租约到期会自动释放
+        }
+    }
+
+    public SnowflakeIdGenerator generator() {
+        return generator;
+    }
+
+    /** 租约有效期内才发号的生成器 */
+    private static class LeasedIdGenerator extends SnowflakeIdGenerator {
+
+        /** 租约的有效期 (毫秒时间戳，已经减掉了余量)：过了这个时间 nextId 直接失败 */
+        private volatile long validUntil;
+
+        /** @param start 发出抢占命令的时间 */
+        LeasedIdGenerator(long workerId, long start) {
+            super(workerId);
+            extend(start);
+        }
+
+        /** @param start 发出续期 / 抢占命令的时间：Redis 里的租约最早在 start + TTL 过期 */
+        void extend(long start) {
+            validUntil = start + LEASE_TTL.toMillis() - LEASE_SAFETY_MARGIN.toMillis();
+        }
+
+        void revoke() {
+            validUntil = 0;
+        }
+
+        long remainingMillis() {
+            return Math.max(0, validUntil - System.currentTimeMillis());
+        }
+
+        @Override
+        public synchronized long nextId() {
+            if (System.currentTimeMillis() >= validUntil) {
+                throw new IllegalStateException("雪花 id 节点号 " + getWorkerId() + " 的租约已失效，暂停发号 (等待续期成功)");
+            }
+            return super.nextId();
+        }
+    }
+}
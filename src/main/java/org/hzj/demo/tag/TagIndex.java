@@ -0,0 +1,312 @@
+package org.hzj.demo.tag;
+
+import jakarta.annotation.PostConstruct;
+import org.hzj.demo.cluster.ClusterBroadcaster;
+import org.hzj.demo.repository.PostRepository;
+import org.hzj.demo.sharding.ShardRouter;
+import org.hzj.demo.sharding.ShardedPostStore;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 标签位图索引：标签 -> 压缩位图 (Roaring Bitmap，里面是带这个标签的文章 id)
+ *
+ * 知识点：为什么用位图，而不是 SQL (JOIN / LIKE)？
+ * “同时带 java 和 redis 标签的文章” = 两个位图做一次 AND (交集)；
+ * “带 java 或 redis 的文章”         = 两个位图做一次 OR (并集)。
+ * 位图运算是按 64 位一组批量进行的，几百万篇文章也只要几毫秒，而且完全不碰数据库；
+ * 算出 id 之后，再用一次按 id 的批量查询 (findAllById) 把文章取出来。
+ *
+ * 知识点：Roaring Bitmap
+ * 普通位图按最大 id 分配内存，雪花 id 很大 (2^53 级别) 根本放不下。
+ * Roaring 把 id 按高位分块，每块根据稀疏程度选择“数组 / 位图 / 连续区间”三种存储，
+ * 稀疏的时候像数组一样省内存，稠密的时候像位图一样快。
+ *
+ * 一致性：
+ * 1. 启动时从数据库全量重建 (只查 id 和 tags 两列)
+ * 2. 本节点的写操作：提交后立刻更新索引，并广播给其他节点
+ * 3. 定期全量重建一次，兜底 Pub/Sub 可能丢失的消息
+ */
+@Component
+public class TagIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(TagIndex.class);
+
+    private static final String CHANNEL = "post:tag_index";
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private ShardedPostStore postStore;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ClusterBroadcaster broadcaster;
+
+    /** Roaring64NavigableMap 不是线程安全的：查询拿读锁，修改拿写锁 */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<String, Roaring64NavigableMap> bitmaps = new HashMap<>();
+
+    /** 重建期间到达的修改 (重建完成后在新索引上重放一遍)；不在重建时为 null */
+    private List<Change> pending;
+
+    private final Object rebuildLock = new Object();
+
+    private volatile boolean ready;
+
+    /** 一次修改：文章 postId 现在的标签是 tags (空 = 没有标签 / 已删除) */
+    private record Change(long postId, List<String> tags) {
+    }
+
+    @PostConstruct
+    public void init() {
+        broadcaster.subscribe(CHANNEL, this::onMessage);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // 第一次按标签查询时会再试一次
+            log.error("启动时重建标签索引失败: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${tag-index.rebuild-interval-ms:1800000}",
+            fixedDelayString = "${tag-index.rebuild-interval-ms:1800000}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("定时重建标签索引失败 (继续使用旧索引): {}", e.getMessage());
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 写
+    // ------------------------------------------------------------------
+
+    /** 文章新增 / 修改之后调用 (事务已提交) */
+    public void onSaved(long postId, List<String> tags) {
+        List<String> current = tags != null ? tags : List.of();
+        apply(new Change(postId, current));
+        broadcaster.publish(CHANNEL, postId + "|" + String.join(",", current));
+    }
+
+    /** 文章删除之后调用 */
+    public void onDeleted(long postId) {
+        onSaved(postId, List.of());
+    }
+
+    private void onMessage(String message) {
+        int sep = message.indexOf('|');
+        long postId = Long.parseLong(message.substring(0, sep));
+        String csv = message.substring(sep + 1);
+        apply(new Change(postId, csv.isEmpty() ? List.of() : List.of(csv.split(","))));
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(change);
+            }
+            applyTo(bitmaps, change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 先把这篇文章从所有标签里移除，再加到它现在的标签里
+     * (这样不需要知道“修改前”有哪些标签；标签的种类通常只有几百个，移除很便宜)
+     */
+    private static void applyTo(Map<String, Roaring64NavigableMap> target, Change change) {
+        target.values().removeIf(bitmap -> {
+            bitmap.removeLong(change.postId());
+            return bitmap.isEmpty();
+        });
+        for (String tag : change.tags()) {
+            target.computeIfAbsent(tag, k -> new Roaring64NavigableMap()).addLong(change.postId());
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 重建
+    // ------------------------------------------------------------------
+
+    /**
+     * 从所有库全量重建 (在新的 Map 上构建，完成后整体替换，重建期间查询照常使用旧索引)
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            try {
+                long start = System.currentTimeMillis();
+                Map<String, Roaring64NavigableMap> fresh = new HashMap<>();
+                long posts = 0;
+                for (Integer shard : shardRouter.allShards()) {
+                    posts += scanShard(shard, fresh);
+                }
+                fresh.values().forEach(Roaring64NavigableMap::runOptimize);
+
+                lock.writeLock().lock();
+                try {
+                    pending.forEach(change -> applyTo(fresh, change));
+                    bitmaps = fresh;
+                    ready = true;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                log.info("标签索引重建完成: {} 篇带标签的文章, {} 个标签, 耗时 {}ms",
+                        posts, fresh.size(), System.currentTimeMillis() - start);
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    pending = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private long scanShard(int shard, Map<String, Roaring64NavigableMap> target) {
+        long count = 0;
+        long cursor = 0;
+        while (true) {
+            long afterId = cursor;
+            List<Object[]> rows = postStore.read(shard, () ->
+                    postRepository.findTagsAfter(afterId, PageRequest.of(0, SCAN_BATCH_SIZE)));
+            if (rows.isEmpty()) {
+                return count;
+            }
+            for (Object[] row : rows) {
+                long postId = (Long) row[0];
+                for (String tag : (List<String>) row[1]) {
+                    target.computeIfAbsent(tag, k -> new Roaring64NavigableMap()).addLong(postId);
+                }
+                cursor = postId;
+            }
+            count += rows.size();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 查询
+    // ------------------------------------------------------------------
+
+    /**
+     * 按标签查询文章 id (id 从大到小，即“最新的在前”)
+     * @param matchAll true = 同时带有所有标签 (AND)；false = 带有任意一个 (OR)
+     */
+    public List<Long> query(Collection<String> tags, boolean matchAll, int limit) {
+        ensureReady();
+        Roaring64NavigableMap result;
+        lock.readLock().lock();
+        try {
+            result = matchAll ? intersect(tags) : union(tags);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Long> ids = new ArrayList<>();
+        LongIterator it = result.getReverseLongIterator();
+        while (it.hasNext() && ids.size() < limit) {
+            ids.add(it.next());
+        }
+        return ids;
+    }
+
+    /** 交集：从最小的位图开始，结果只会越来越小 */
+    private Roaring64NavigableMap intersect(Collection<String> tags) {
+        List<Roaring64NavigableMap> parts = new ArrayList<>(tags.size());
+        for (String tag : tags) {
+            Roaring64NavigableMap bitmap = bitmaps.get(tag);
+            if (bitmap == null) {
+                return new Roaring64NavigableMap();
+            }
+            parts.add(bitmap);
+        }
+        if (parts.isEmpty()) {
+            return new Roaring64NavigableMap();
+        }
+        parts.sort(Comparator.comparingLong(Roaring64NavigableMap::getLongCardinality));
+        Roaring64NavigableMap result = parts.get(0).clone();
+        for (int i = 1; i < parts.size() && !result.isEmpty(); i++) {
+            result.and(parts.get(i));
+        }
+        return result;
+    }
+
+    private Roaring64NavigableMap union(Collection<String> tags) {
+        Roaring64NavigableMap result = new Roaring64NavigableMap();
+        for (String tag : tags) {
+            Roaring64NavigableMap bitmap = bitmaps.get(tag);
+            if (bitmap != null) {
+                result.or(bitmap);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 所有标签及其文章数 (按文章数倒序)
+     */
+    public Map<String, Long> counts() {
+        ensureReady();
+        lock.readLock().lock();
+        try {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            bitmaps.entrySet().stream()
+                    .sorted(Comparator.comparingLong(
+                            (Map.Entry<String, Roaring64NavigableMap> e) -> e.getValue().getLongCardinality()).reversed())
+                    .forEach(e -> counts.put(e.getKey(), e.getValue().getLongCardinality()));
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureReady() {
+        if (!ready) {
+            synchronized (rebuildLock) {
+                // 双重检查：启动后第一批查询会同时走到这里，排队等锁的线程拿到锁时索引往往已经建好了，
+                // 不再一个接一个地重复全量扫描 (显式调用 rebuild() 的定时 / 手动重建不受影响)
+                if (!ready) {
+                    rebuild();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.hzj.demo.util;
+
+import org.hzj.demo.datasource.RoutingContext;
+import org.hzj.demo.monitor.SqlRequestContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 线程上下文的“快照”
+ *
+ * 知识点：ThreadLocal 不会自动传给线程池里的线程！
+ * 请求线程上有：当前请求 (RequestContextHolder)、登录用户 (SecurityContextHolder)、
+ * SQL 统计上下文、是否强制走主库 ... 把任务丢给别的线程之前先“拍个快照”，
+ * 在工作线程里“恢复”，执行完再“还原”，工作线程就和请求线程看到同样的上下文。
+ */
+public final class ContextSnapshot {
+
+    private final RequestAttributes requestAttributes;
+    private final SecurityContext securityContext;
+    private final SqlRequestContext sqlRequestContext;
+    private final boolean primaryForced;
+
+    private ContextSnapshot() {
+        this.requestAttributes = RequestContextHolder.getRequestAttributes();
+        this.securityContext = SecurityContextHolder.getContext();
+        this.sqlRequestContext = SqlRequestContext.current();
+        this.primaryForced = RoutingContext.isPrimaryForced();
+    }
+
+    public static ContextSnapshot capture() {
+        return new ContextSnapshot();
+    }
+
+    public <T> Callable<T> wrap(Callable<T> task) {
+        return () -> {
+            RequestAttributes previousAttributes = RequestContextHolder.getRequestAttributes();
+            SecurityContext previousSecurity = SecurityContextHolder.getContext();
+            SqlRequestContext previousSql = SqlRequestContext.current();
+            RequestContextHolder.setRequestAttributes(requestAttributes);
+            SecurityContextHolder.setContext(securityContext);
+            SqlRequestContext.restore(sqlRequestContext);
+            try {
+                return primaryForced ? RoutingContext.onPrimary(() -> call(task)) : task.call();
+            } finally {
+                RequestContextHolder.setRequestAttributes(previousAttributes);
+                SecurityContextHolder.setContext(previousSecurity);
+                SqlRequestContext.restore(previousSql);
+            }
+        };
+    }
+
+    public Runnable wrap(Runnable task) {
+        Callable<Object> callable = wrap(() -> {
+            task.run();
+            return null;
+        });
+        return () -> call(callable);
+    }
+
+    private static <T> T call(Callable<T> task) {
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
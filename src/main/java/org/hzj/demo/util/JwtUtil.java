@@ -14,6 +14,7 @@ import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 /**
@@ -64,6 +65,7 @@ public class JwtUtil {
 
         return Jwts.builder()
                 .setClaims(claims)       // 设置自定义声明
+                .id(UUID.randomUUID().toString()) // jti：每个 Token 一个唯一编号，退出登录时按它吊销 (见 TokenRevocationList)
                 .setSubject(subject)     // 设置主题 (手机号)
                 .setIssuedAt(now)        // 设置签发时间
                 .setExpiration(expirationDate) // 设置过期时间 (1 小时)
@@ -77,7 +79,7 @@ public class JwtUtil {
      * 【核心】2. 解析 Token (获取所有声明)
      * (如果签名无效或 Token 过期，这里会抛出异常)
      */
-    private Claims extractAllClaims(String token) {
+    public Claims extractAllClaims(String token) {
         return Jwts.parser()
                 .verifyWith(key)
                 .build()
@@ -103,6 +105,14 @@ public class JwtUtil {
         return extractClaim(token, Claims::getExpiration);
     }
 
+    /**
+     * 5. 从声明里取出用户 id (数字在 JSON 里可能被解析成 Integer 或 Long)
+     */
+    public static Long userIdOf(Claims claims) {
+        Object userId = claims.get("userId");
+        return userId instanceof Number number ? number.longValue() : null;
+    }
+
     /** (辅助工具) */
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
         final Claims claims = extractAllClaims(token);
@@ -0,0 +1,71 @@
+package org.hzj.demo.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 布隆过滤器的位数组 (元素是 long)：文章 id 过滤器 (PostBloomFilter)、JWT 吊销列表 (TokenRevocationList) 共用
+ *
+ * k 个哈希函数，每个元素在位数组里置 k 个位；查询时 k 个位都是 1 才算“可能存在”。
+ * 它说“不存在”就一定不存在；说“可能存在”有 falsePositiveRate 的概率误判。
+ * 不能删除元素，只能整个重建。
+ *
+ * 多线程同时置位用 AtomicLongArray，查询不加锁。
+ */
+public final class LongBloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashes;
+
+    public LongBloomFilter(long expected, double falsePositiveRate) {
+        long n = Math.max(expected, 1);
+        // m = -n * ln(p) / (ln2)^2，k = m / n * ln2
+        long m = Math.max(64, (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+        words = new AtomicLongArray((int) ((m + 63) / 64));
+        bitCount = words.length() * 64L;
+        hashes = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    public void add(long value) {
+        long h1 = mix(value);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if ((words.get(word) & mask) == 0) {
+                words.accumulateAndGet(word, mask, (a, b) -> a | b);
+            }
+        }
+    }
+
+    public boolean mightContain(long value) {
+        long h1 = mix(value);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitCount() {
+        return bitCount;
+    }
+
+    public int hashes() {
+        return hashes;
+    }
+
+    /** murmur3 的 fmix64 */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
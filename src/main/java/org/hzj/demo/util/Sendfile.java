@@ -0,0 +1,62 @@
+package org.hzj.demo.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 把文件的一段直接发给客户端 (GET /posts/{id}/content、附件下载)
+ *
+ * 知识点：零拷贝 (sendfile)
+ * Tomcat 的约定：连接器支持 sendfile 时请求里有 SUPPORT 属性，
+ * Controller 设置好文件名和区间后直接返回，由 Tomcat 调用 sendfile，
+ * 内核把 page cache 里的数据发到 socket，不经过 Java 堆、也不在用户态和内核态之间来回拷贝。
+ * 连接器不支持 (例如开了压缩、换成了别的容器) 时退回 FileChannel.transferTo。
+ */
+public final class Sendfile {
+
+    private static final String SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String START = "org.apache.tomcat.sendfile.start";
+    private static final String END = "org.apache.tomcat.sendfile.end";
+
+    private Sendfile() {
+    }
+
+    /**
+     * 交给 Tomcat 发送文件的 [start, end)
+     * @return true = Tomcat 会发送，调用方不要再写响应体；false = 不支持，调用方自己写 (见 transfer)
+     */
+    public static boolean offer(HttpServletRequest request, Path file, long start, long end) {
+        if (!Boolean.TRUE.equals(request.getAttribute(SUPPORT))) {
+            return false;
+        }
+        request.setAttribute(FILENAME, file.toString());
+        request.setAttribute(START, start);
+        request.setAttribute(END, end);
+        return true;
+    }
+
+    /**
+     * 退路：FileChannel.transferTo 把 [start, end) 写进响应
+     */
+    public static void transfer(Path file, long start, long end, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            while (position < end) {
+                long n = channel.transferTo(position, end - position, target);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.hzj.demo.util;
+
+import java.time.Instant;
+
+/**
+ * 全局唯一 ID 生成器 (“雪花”算法的 53 位变种)
+ *
+ * 知识点：为什么不用数据库自增 (IDENTITY)？
+ * 分库分表之后，每个库都有自己的 AUTO_INCREMENT，id 会重复；
+ * 而且 IDENTITY 必须先 INSERT 才知道 id，我们却需要【先知道 id，才能决定写哪个库】。
+ *
+ * 知识点：为什么是 53 位，而不是经典的 64 位？
+ * 前端 (index.html) 是 JavaScript，Number 只能精确表示 2^53 以内的整数，
+ * 64 位的 id 到了浏览器里末尾几位会被“四舍五入”，文章就打不开了。
+ *
+ * 布局 (共 53 位，永远是正数且 < 2^53)：
+ *   | 32 位：秒级时间戳 (自 2025-01-01 起，约 136 年) | 5 位：节点号 (0~31) | 16 位：秒内序号 (0~65535) |
+ * 同一个节点每秒最多 65536 个 id；用完了就“借用”下一秒，不会阻塞。
+ */
+public class SnowflakeIdGenerator {
+
+    /** 自定义纪元：2025-01-01T00:00:00Z (秒) */
+    public static final long EPOCH_SECONDS = Instant.parse("2025-01-01T00:00:00Z").getEpochSecond();
+
+    public static final int WORKER_BITS = 5;
+    public static final int SEQUENCE_BITS = 16;
+    public static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = WORKER_BITS + SEQUENCE_BITS;
+
+    /** 全局实例 (Hibernate 的 ID 生成器不是 Spring Bean，只能通过静态方式拿到它) */
+    private static volatile SnowflakeIdGenerator global = new SnowflakeIdGenerator(0);
+
+    private final long workerId;
+
+    private long lastSecond = -1L;
+    private long sequence = 0L;
+
+    public SnowflakeIdGenerator(long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId 必须在 0~" + MAX_WORKER_ID + " 之间: " + workerId);
+        }
+        this.workerId = workerId;
+    }
+
+    public static SnowflakeIdGenerator global() {
+        return global;
+    }
+
+    public static void setGlobal(SnowflakeIdGenerator generator) {
+        global = generator;
+    }
+
+    public synchronized long nextId() {
+        long now = currentSecond();
+        if (now > lastSecond) {
+            lastSecond = now;
+            sequence = 0;
+        } else {
+            // 同一秒 (或者时钟回拨了)：继续用 lastSecond，序号 +1
+            sequence++;
+            if (sequence > MAX_SEQUENCE) {
+                // 这一秒的序号用完了：借用下一秒
+                lastSecond++;
+                sequence = 0;
+            }
+        }
+        return (lastSecond << TIMESTAMP_SHIFT) | (workerId << SEQUENCE_BITS) | sequence;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * 从 id 反推出它的生成时间 (秒级)
+     */
+    public static Instant timestampOf(long id) {
+        return Instant.ofEpochSecond((id >>> TIMESTAMP_SHIFT) + EPOCH_SECONDS);
+    }
+
+    protected long currentSecond() {
+        return System.currentTimeMillis() / 1000 - EPOCH_SECONDS;
+    }
+}
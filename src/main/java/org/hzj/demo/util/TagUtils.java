@@ -0,0 +1,46 @@
+package org.hzj.demo.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 标签的“规范化”：去掉首尾空格、统一小写、去重 (保留原顺序)
+ * 这样 "Java"、" java " 都是同一个标签，索引和查询才对得上。
+ *
+ * 逗号是数据库里的分隔符 (见 TagListConverter)，所以 "a,b" 会被拆成两个标签。
+ */
+public final class TagUtils {
+
+    private TagUtils() {
+    }
+
+    public static List<String> normalize(Collection<String> tags) {
+        Set<String> result = new LinkedHashSet<>();
+        if (tags != null) {
+            for (String tag : tags) {
+                if (tag != null) {
+                    result.addAll(parse(tag));
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** 解析 "a, b,c" 这种逗号分隔的字符串 (查询参数 ?tags=a,b) */
+    public static List<String> parse(String csv) {
+        Set<String> result = new LinkedHashSet<>();
+        if (csv != null) {
+            for (String part : csv.split(",")) {
+                String tag = part.trim().toLowerCase(Locale.ROOT);
+                if (!tag.isEmpty()) {
+                    result.add(tag);
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+}
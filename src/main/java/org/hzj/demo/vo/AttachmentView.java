@@ -0,0 +1,22 @@
+package org.hzj.demo.vo;
+
+import org.hzj.demo.attachment.AttachmentStore;
+
+/**
+ * 上传附件的返回值 (POST /attachments)：文章里直接引用 url / thumbnailUrl 即可
+ *
+ * @param thumbnailUrl 缩略图地址 (不是图片时为 null；图片本身不比缩略图宽时就是原图)
+ * @param deduplicated 之前已经有同样内容的文件 (这次没有占用新的空间)
+ */
+public record AttachmentView(String hash, String url, String thumbnailUrl, String contentType, long size,
+                             Integer width, Integer height, boolean deduplicated) {
+
+    public static AttachmentView of(AttachmentStore.Stored stored) {
+        String name = stored.hash() + "." + stored.type().extension();
+        return new AttachmentView(stored.hash(),
+                "/api/v1/attachments/" + name,
+                stored.type().isImage() ? "/api/v1/attachments/thumbnails/" + name : null,
+                stored.type().contentType(), stored.size(),
+                stored.width(), stored.height(), stored.deduplicated());
+    }
+}
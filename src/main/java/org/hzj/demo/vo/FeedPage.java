@@ -0,0 +1,31 @@
+package org.hzj.demo.vo;
+
+import java.util.List;
+
+/**
+ * 游标分页的一页 (作者主页 / 关注时间线)
+ *
+ * 知识点：为什么用“游标” (nextCursor)，而不是 page=3 这样的页码？
+ * 1. 页码分页要 OFFSET，越往后翻数据库扫描的行越多；游标分页 (id < cursor) 永远只扫一页
+ * 2. 翻页期间有新文章插进来，页码分页会出现“重复 / 漏掉”，游标不会
+ *
+ * 用法：第一页不传 cursor；下一页把上一页返回的 nextCursor 原样传回来；nextCursor 为 null 表示没有更多了
+ */
+public class FeedPage<T> {
+
+    private List<T> items;
+    private Long nextCursor;
+
+    public FeedPage() {
+    }
+
+    public FeedPage(List<T> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+    public void setItems(List<T> items) { this.items = items; }
+    public Long getNextCursor() { return nextCursor; }
+    public void setNextCursor(Long nextCursor) { this.nextCursor = nextCursor; }
+}
@@ -0,0 +1,29 @@
+package org.hzj.demo.vo;
+
+import org.hzj.demo.model.Post;
+import org.hzj.demo.model.PostField;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 只输出部分字段的文章 (稀疏字段集 ?fields=id,title,viewCount)
+ * 序列化见 ResponseJsonModule：只写 fields 里的字段，没选的字段连 key 都不输出
+ */
+public record PostView(Post post, Set<PostField> fields) {
+
+    /**
+     * @param fields null = 没传 fields，原样返回 (输出全部字段，和以前完全一样)
+     */
+    public static List<?> of(List<Post> posts, Set<PostField> fields) {
+        if (fields == null) {
+            return posts;
+        }
+        List<PostView> views = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            views.add(new PostView(post, fields));
+        }
+        return views;
+    }
+}
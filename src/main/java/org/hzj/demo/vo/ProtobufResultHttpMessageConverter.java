@@ -0,0 +1,320 @@
+package org.hzj.demo.vo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import org.hzj.demo.model.Post;
+import org.hzj.demo.model.PostField;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 把 ResultVO / Post 按 Protobuf 格式写出 (Accept: application/x-protobuf，注册见 BinaryFormatConfig)
+ *
+ * 消息的定义在 src/main/resources/proto/blog.proto。
+ * 这里没有用 protoc 生成的类：生成的类要先把 Post 拷贝成一个 Protobuf 对象再序列化，
+ * 多一份对象；而 CodedOutputStream 可以直接按字段号写 (和 ResponseJsonModule 直接写 JsonGenerator 一个思路)。
+ *
+ * 知识点：Protobuf 的嵌套消息前面要先写长度，所以每个嵌套消息都是“先算大小 (xxxSize)，再写 (writeXxx)”两遍；
+ * 算大小只是数字节，不分配内存。
+ *
+ * data 的类型对应 Result 里 oneof data 的一个分支；不认识的类型 (例如博客配置) 退回 JSON 编码放进 json 字段。
+ * 只负责输出，请求体仍然只收 JSON。
+ * 【改 blog.proto 的时候记得同步改这里的字段号】
+ */
+public class ProtobufResultHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    public static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+
+    // --- message Result ---
+    private static final int RESULT_CODE = 1;
+    private static final int RESULT_MESSAGE = 2;
+    private static final int RESULT_POST = 3;
+    private static final int RESULT_POSTS = 4;
+    private static final int RESULT_FEED = 5;
+    private static final int RESULT_TEXT = 6;
+    private static final int RESULT_FLAG = 7;
+    private static final int RESULT_NUMBER = 8;
+    private static final int RESULT_COUNTS = 9;
+    private static final int RESULT_JSON = 15;
+
+    // --- message Post ---
+    private static final int POST_VIEW_COUNT = 1;
+    private static final int POST_ID = 2;
+    private static final int POST_VERSION = 3;
+    private static final int POST_TITLE = 4;
+    private static final int POST_CONTENT = 5;
+    private static final int POST_AUTHOR_ID = 6;
+    private static final int POST_TAGS = 7;
+    private static final int POST_CREATE_TIME = 8;
+
+    // --- message PostList / FeedPage / Counts ---
+    private static final int LIST_ITEMS = 1;
+    private static final int FEED_NEXT_CURSOR = 2;
+    private static final int COUNTS_ENTRIES = 1;
+    private static final int ENTRY_KEY = 1;
+    private static final int ENTRY_VALUE = 2;
+
+    private static final Set<PostField> ALL_FIELDS = EnumSet.allOf(PostField.class);
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    // 不认识的 data 类型用它转成 JSON (就是 Spring MVC 输出 JSON 用的那个)
+    private final ObjectMapper objectMapper;
+
+    public ProtobufResultHttpMessageConverter(ObjectMapper objectMapper) {
+        super(APPLICATION_PROTOBUF, new MediaType("application", "protobuf"));
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ResultVO.class.isAssignableFrom(clazz)
+                || Post.class.isAssignableFrom(clazz)
+                || PostView.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("请求体不支持 Protobuf 格式，请用 JSON", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(outputMessage.getBody());
+        if (value instanceof ResultVO<?> result) {
+            writeResult(out, result);
+        } else if (value instanceof PostView view) {
+            writePostFields(out, view.post(), view.fields());
+        } else {
+            writePostFields(out, (Post) value, ALL_FIELDS);
+        }
+        out.flush();
+    }
+
+    // ------------------------------------------------------------------
+    // Result
+    // ------------------------------------------------------------------
+
+    private void writeResult(CodedOutputStream out, ResultVO<?> result) throws IOException {
+        if (result.getCode() != null) {
+            out.writeInt32(RESULT_CODE, result.getCode());
+        }
+        if (result.getMessage() != null) {
+            out.writeString(RESULT_MESSAGE, result.getMessage());
+        }
+        Object data = result.getData();
+        if (data == null) {
+            return;
+        }
+        if (data instanceof Post || data instanceof PostView) {
+            out.writeTag(RESULT_POST, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(postSize(data));
+            writePost(out, data);
+        } else if (data instanceof List<?> list && isPostList(list)) {
+            out.writeTag(RESULT_POSTS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(postListSize(list));
+            writePostList(out, list);
+        } else if (data instanceof FeedPage<?> page && isPostList(page.getItems())) {
+            out.writeTag(RESULT_FEED, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(feedSize(page));
+            writeFeed(out, page);
+        } else if (data instanceof String text) {
+            out.writeString(RESULT_TEXT, text);
+        } else if (data instanceof Boolean flag) {
+            out.writeBool(RESULT_FLAG, flag);
+        } else if (data instanceof Long || data instanceof Integer || data instanceof Short) {
+            out.writeInt64(RESULT_NUMBER, ((Number) data).longValue());
+        } else if (data instanceof Map<?, ?> map && isCounts(map)) {
+            out.writeTag(RESULT_COUNTS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(countsSize(map));
+            writeCounts(out, map);
+        } else {
+            out.writeByteArray(RESULT_JSON, objectMapper.writeValueAsBytes(data));
+        }
+    }
+
+    private static boolean isPostList(List<?> list) {
+        if (list == null) {
+            return false;
+        }
+        for (Object item : list) {
+            if (!(item instanceof Post) && !(item instanceof PostView)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** key 是字符串、value 是整数的 Map (标签 -> 文章数 之类的) */
+    private static boolean isCounts(Map<?, ?> map) {
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!(entry.getKey() instanceof String)
+                    || !(entry.getValue() instanceof Long || entry.getValue() instanceof Integer)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------
+    // PostList / FeedPage
+    // ------------------------------------------------------------------
+
+    private static int postListSize(List<?> list) {
+        int size = 0;
+        for (Object item : list) {
+            size += nestedSize(LIST_ITEMS, postSize(item));
+        }
+        return size;
+    }
+
+    private static void writePostList(CodedOutputStream out, List<?> list) throws IOException {
+        for (Object item : list) {
+            out.writeTag(LIST_ITEMS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(postSize(item));
+            writePost(out, item);
+        }
+    }
+
+    private static int feedSize(FeedPage<?> page) {
+        int size = postListSize(page.getItems());
+        if (page.getNextCursor() != null) {
+            size += CodedOutputStream.computeInt64Size(FEED_NEXT_CURSOR, page.getNextCursor());
+        }
+        return size;
+    }
+
+    private static void writeFeed(CodedOutputStream out, FeedPage<?> page) throws IOException {
+        writePostList(out, page.getItems());
+        if (page.getNextCursor() != null) {
+            out.writeInt64(FEED_NEXT_CURSOR, page.getNextCursor());
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Counts (map<string, int64> 在编码上就是 repeated 的 {key=1, value=2})
+    // ------------------------------------------------------------------
+
+    private static int countsSize(Map<?, ?> map) {
+        int size = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            size += nestedSize(COUNTS_ENTRIES, entrySize(entry));
+        }
+        return size;
+    }
+
+    private static void writeCounts(CodedOutputStream out, Map<?, ?> map) throws IOException {
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            out.writeTag(COUNTS_ENTRIES, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(entrySize(entry));
+            out.writeString(ENTRY_KEY, (String) entry.getKey());
+            out.writeInt64(ENTRY_VALUE, ((Number) entry.getValue()).longValue());
+        }
+    }
+
+    private static int entrySize(Map.Entry<?, ?> entry) {
+        return CodedOutputStream.computeStringSize(ENTRY_KEY, (String) entry.getKey())
+                + CodedOutputStream.computeInt64Size(ENTRY_VALUE, ((Number) entry.getValue()).longValue());
+    }
+
+    // ------------------------------------------------------------------
+    // Post (PostView 只写选中的字段，null 的字段不写)
+    // ------------------------------------------------------------------
+
+    private static int postSize(Object item) {
+        if (item instanceof PostView view) {
+            return postSize(view.post(), view.fields());
+        }
+        return postSize((Post) item, ALL_FIELDS);
+    }
+
+    private static void writePost(CodedOutputStream out, Object item) throws IOException {
+        if (item instanceof PostView view) {
+            writePostFields(out, view.post(), view.fields());
+        } else {
+            writePostFields(out, (Post) item, ALL_FIELDS);
+        }
+    }
+
+    private static int postSize(Post post, Set<PostField> fields) {
+        int size = 0;
+        if (fields.contains(PostField.VIEW_COUNT) && post.getViewCount() != null) {
+            size += CodedOutputStream.computeInt64Size(POST_VIEW_COUNT, post.getViewCount());
+        }
+        if (fields.contains(PostField.ID) && post.getId() != null) {
+            size += CodedOutputStream.computeInt64Size(POST_ID, post.getId());
+        }
+        if (fields.contains(PostField.VERSION) && post.getVersion() != null) {
+            size += CodedOutputStream.computeInt64Size(POST_VERSION, post.getVersion());
+        }
+        if (fields.contains(PostField.TITLE) && post.getTitle() != null) {
+            size += CodedOutputStream.computeStringSize(POST_TITLE, post.getTitle());
+        }
+        if (fields.contains(PostField.CONTENT) && post.getContent() != null) {
+            size += CodedOutputStream.computeStringSize(POST_CONTENT, post.getContent());
+        }
+        if (fields.contains(PostField.AUTHOR_ID) && post.getAuthorId() != null) {
+            size += CodedOutputStream.computeInt64Size(POST_AUTHOR_ID, post.getAuthorId());
+        }
+        if (fields.contains(PostField.TAGS) && post.getTags() != null) {
+            for (String tag : post.getTags()) {
+                size += CodedOutputStream.computeStringSize(POST_TAGS, tag);
+            }
+        }
+        if (fields.contains(PostField.CREATE_TIME) && post.getCreateTime() != null) {
+            size += CodedOutputStream.computeStringSize(POST_CREATE_TIME, DATE_TIME.format(post.getCreateTime()));
+        }
+        return size;
+    }
+
+    private static void writePostFields(CodedOutputStream out, Post post, Set<PostField> fields) throws IOException {
+        if (fields.contains(PostField.VIEW_COUNT) && post.getViewCount() != null) {
+            out.writeInt64(POST_VIEW_COUNT, post.getViewCount());
+        }
+        if (fields.contains(PostField.ID) && post.getId() != null) {
+            out.writeInt64(POST_ID, post.getId());
+        }
+        if (fields.contains(PostField.VERSION) && post.getVersion() != null) {
+            out.writeInt64(POST_VERSION, post.getVersion());
+        }
+        if (fields.contains(PostField.TITLE) && post.getTitle() != null) {
+            out.writeString(POST_TITLE, post.getTitle());
+        }
+        if (fields.contains(PostField.CONTENT) && post.getContent() != null) {
+            out.writeString(POST_CONTENT, post.getContent());
+        }
+        if (fields.contains(PostField.AUTHOR_ID) && post.getAuthorId() != null) {
+            out.writeInt64(POST_AUTHOR_ID, post.getAuthorId());
+        }
+        if (fields.contains(PostField.TAGS) && post.getTags() != null) {
+            for (String tag : post.getTags()) {
+                out.writeString(POST_TAGS, tag);
+            }
+        }
+        if (fields.contains(PostField.CREATE_TIME) && post.getCreateTime() != null) {
+            out.writeString(POST_CREATE_TIME, DATE_TIME.format(post.getCreateTime()));
+        }
+    }
+
+    /** 一个嵌套消息占的字节：tag + 长度 + 内容 */
+    private static int nestedSize(int fieldNumber, int messageSize) {
+        return CodedOutputStream.computeTagSize(fieldNumber)
+                + CodedOutputStream.computeUInt32SizeNoTag(messageSize)
+                + messageSize;
+    }
+}
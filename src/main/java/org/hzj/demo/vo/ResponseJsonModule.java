@@ -0,0 +1,242 @@
+package org.hzj.demo.vo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.hzj.demo.model.Post;
+import org.hzj.demo.model.PostField;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 接口响应 (ResultVO / Post / FeedPage) 的专用 JSON 序列化器 (注册见 JacksonConfig)
+ *
+ * 默认的 BeanSerializer 每个字段都要经过反射 (getter 的 Method.invoke)、
+ * 泛型字段 (ResultVO.data、List 的元素) 每次按运行时类型查一次序列化器、
+ * LocalDateTime 再交给 JavaTimeModule 绕一圈。
+ * 这几个类型是所有接口都要输出的，这里手写成“直接调 getter + 直接写 JsonGenerator”：
+ * - 字段名用 SerializedString (UTF-8 字节提前编码好，每次直接拷贝)
+ * - 边写边输出到响应流 (JsonGenerator 本身就是流式的)，不经过 JsonNode / Map 之类的中间结构
+ * - data 是 Post / List / FeedPage 时直接调用下面的序列化器，其他类型交回 Jackson
+ * - PostView (?fields=...) 和 Post 用同一段代码，只是跳过没选的字段
+ *
+ * 输出和原来逐字节相同 (字段顺序 = 字段的声明顺序，null 也输出，createTime 是 ISO 格式)。
+ * 【给 Post / ResultVO / FeedPage 加字段时记得在这里也加上】
+ * 性能对比见 src/test/java 下的 ResponseSerializationBenchmark
+ */
+public class ResponseJsonModule extends SimpleModule {
+
+    public ResponseJsonModule() {
+        super("ResponseJsonModule");
+        // 按 handledType() 注册 (泛型类只能这样注册)
+        addSerializer(PostSerializer.INSTANCE);
+        addSerializer(PostViewSerializer.INSTANCE);
+        addSerializer(FeedPageSerializer.INSTANCE);
+        addSerializer(ResultVOSerializer.INSTANCE);
+    }
+
+    /** 和 JavaTimeModule 的默认格式一样 (WRITE_DATES_AS_TIMESTAMPS 关闭时) */
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    public static final class PostSerializer extends StdSerializer<Post> {
+
+        static final PostSerializer INSTANCE = new PostSerializer();
+
+        private static final SerializedString VIEW_COUNT = new SerializedString("viewCount");
+        private static final SerializedString ID = new SerializedString("id");
+        private static final SerializedString VERSION = new SerializedString("version");
+        private static final SerializedString TITLE = new SerializedString("title");
+        private static final SerializedString CONTENT = new SerializedString("content");
+        private static final SerializedString AUTHOR_ID = new SerializedString("authorId");
+        private static final SerializedString TAGS = new SerializedString("tags");
+        private static final SerializedString CREATE_TIME = new SerializedString("createTime");
+
+        private PostSerializer() {
+            super(Post.class);
+        }
+
+        private static final Set<PostField> ALL_FIELDS = EnumSet.allOf(PostField.class);
+
+        @Override
+        public void serialize(Post post, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            serialize(post, ALL_FIELDS, gen, provider);
+        }
+
+        /** 只写 fields 里的字段 (顺序固定，和 PostField 的声明顺序一样) */
+        void serialize(Post post, Set<PostField> fields, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(post);
+            if (fields.contains(PostField.VIEW_COUNT)) {
+                gen.writeFieldName(VIEW_COUNT);
+                writeLong(gen, post.getViewCount());
+            }
+            if (fields.contains(PostField.ID)) {
+                gen.writeFieldName(ID);
+                writeLong(gen, post.getId());
+            }
+            if (fields.contains(PostField.VERSION)) {
+                gen.writeFieldName(VERSION);
+                writeLong(gen, post.getVersion());
+            }
+            if (fields.contains(PostField.TITLE)) {
+                gen.writeFieldName(TITLE);
+                gen.writeString(post.getTitle());
+            }
+            if (fields.contains(PostField.CONTENT)) {
+                gen.writeFieldName(CONTENT);
+                gen.writeString(post.getContent());
+            }
+            if (fields.contains(PostField.AUTHOR_ID)) {
+                gen.writeFieldName(AUTHOR_ID);
+                writeLong(gen, post.getAuthorId());
+            }
+            if (fields.contains(PostField.TAGS)) {
+                gen.writeFieldName(TAGS);
+                List<String> tags = post.getTags();
+                if (tags == null) {
+                    gen.writeNull();
+                } else {
+                    gen.writeStartArray(tags, tags.size());
+                    for (String tag : tags) {
+                        gen.writeString(tag);
+                    }
+                    gen.writeEndArray();
+                }
+            }
+            if (fields.contains(PostField.CREATE_TIME)) {
+                gen.writeFieldName(CREATE_TIME);
+                writeDateTime(gen, provider, post.getCreateTime());
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    public static final class PostViewSerializer extends StdSerializer<PostView> {
+
+        static final PostViewSerializer INSTANCE = new PostViewSerializer();
+
+        private PostViewSerializer() {
+            super(PostView.class);
+        }
+
+        @Override
+        public void serialize(PostView view, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            PostSerializer.INSTANCE.serialize(view.post(), view.fields(), gen, provider);
+        }
+    }
+
+    public static final class FeedPageSerializer extends StdSerializer<FeedPage<?>> {
+
+        static final FeedPageSerializer INSTANCE = new FeedPageSerializer();
+
+        private static final SerializedString ITEMS = new SerializedString("items");
+        private static final SerializedString NEXT_CURSOR = new SerializedString("nextCursor");
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private FeedPageSerializer() {
+            super((Class) FeedPage.class);
+        }
+
+        @Override
+        public void serialize(FeedPage<?> page, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(page);
+            gen.writeFieldName(ITEMS);
+            writeList(gen, provider, page.getItems());
+            gen.writeFieldName(NEXT_CURSOR);
+            writeLong(gen, page.getNextCursor());
+            gen.writeEndObject();
+        }
+    }
+
+    public static final class ResultVOSerializer extends StdSerializer<ResultVO<?>> {
+
+        static final ResultVOSerializer INSTANCE = new ResultVOSerializer();
+
+        private static final SerializedString CODE = new SerializedString("code");
+        private static final SerializedString MESSAGE = new SerializedString("message");
+        private static final SerializedString DATA = new SerializedString("data");
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private ResultVOSerializer() {
+            super((Class) ResultVO.class);
+        }
+
+        @Override
+        public void serialize(ResultVO<?> result, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(result);
+            gen.writeFieldName(CODE);
+            Integer code = result.getCode();
+            if (code == null) {
+                gen.writeNull();
+            } else {
+                gen.writeNumber(code);
+            }
+            gen.writeFieldName(MESSAGE);
+            gen.writeString(result.getMessage());
+            gen.writeFieldName(DATA);
+            writeValue(gen, provider, result.getData());
+            gen.writeEndObject();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 公用的小工具
+    // ------------------------------------------------------------------
+
+    /** 常见类型直接写，其他的交回 Jackson (走它自己的序列化器缓存) */
+    private static void writeValue(JsonGenerator gen, SerializerProvider provider, Object value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else if (value instanceof Post post) {
+            PostSerializer.INSTANCE.serialize(post, gen, provider);
+        } else if (value instanceof PostView view) {
+            PostViewSerializer.INSTANCE.serialize(view, gen, provider);
+        } else if (value instanceof List<?> list) {
+            writeList(gen, provider, list);
+        } else if (value instanceof FeedPage<?> page) {
+            FeedPageSerializer.INSTANCE.serialize(page, gen, provider);
+        } else if (value instanceof String text) {
+            gen.writeString(text);
+        } else {
+            provider.defaultSerializeValue(value, gen);
+        }
+    }
+
+    private static void writeList(JsonGenerator gen, SerializerProvider provider, List<?> list) throws IOException {
+        if (list == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartArray(list, list.size());
+        for (Object item : list) {
+            writeValue(gen, provider, item);
+        }
+        gen.writeEndArray();
+    }
+
+    private static void writeLong(JsonGenerator gen, Long value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value);
+        }
+    }
+
+    private static void writeDateTime(JsonGenerator gen, SerializerProvider provider, LocalDateTime value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else if (provider.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)) {
+            // 有人把日期改成了数组格式：交回 JavaTimeModule，保持和配置一致
+            provider.defaultSerializeValue(value, gen);
+        } else {
+            gen.writeString(DATE_TIME.format(value));
+        }
+    }
+}
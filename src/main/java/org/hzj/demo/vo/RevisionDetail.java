@@ -0,0 +1,11 @@
+package org.hzj.demo.vo;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 某个版本的完整内容 (GET /posts/{id}/revisions/{revision})：正文是从快照 + delta 还原出来的
+ */
+public record RevisionDetail(Long postId, long revision, String title, List<String> tags, String content,
+                             Long editorId, LocalDateTime createTime) {
+}
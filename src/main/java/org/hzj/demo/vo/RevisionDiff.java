@@ -0,0 +1,25 @@
+package org.hzj.demo.vo;
+
+import java.util.List;
+
+/**
+ * 两个版本的差异 (GET /posts/{id}/revisions/diff?from=3&to=5)
+ *
+ * 正文按行比较，格式和 "diff -u" 一样：每个 Hunk 是一段改动和它前后的几行上下文，
+ * lines 里每一行以 ' ' (没变)、'-' (from 里有、to 里没有)、'+' (to 里新增的) 开头。
+ * 标题、标签很短，直接给出两个版本的值。
+ */
+public record RevisionDiff(Long postId, long from, long to,
+                           String fromTitle, String toTitle,
+                           List<String> fromTags, List<String> toTags,
+                           List<Hunk> hunks) {
+
+    /**
+     * @param fromLine from 版本里的起始行号 (从 1 开始)
+     * @param fromCount 这一段在 from 版本里占几行
+     * @param toLine   to 版本里的起始行号 (从 1 开始)
+     * @param toCount  这一段在 to 版本里占几行
+     */
+    public record Hunk(int fromLine, int fromCount, int toLine, int toCount, List<String> lines) {
+    }
+}
@@ -0,0 +1,15 @@
+package org.hzj.demo.vo;
+
+import org.hzj.demo.model.PostRevision;
+
+import java.time.LocalDateTime;
+
+/**
+ * 版本列表里的一项 (GET /posts/{id}/revisions)：不含正文，不用还原 delta
+ *
+ * @param contentLength 这个版本正文的字符数
+ * @param storedBytes   这个版本实际占用的存储 (压缩后的 delta / 快照)
+ */
+public record RevisionSummary(long revision, String title, Long editorId, PostRevision.Kind kind,
+                              int contentLength, int storedBytes, LocalDateTime createTime) {
+}
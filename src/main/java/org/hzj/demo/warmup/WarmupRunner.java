@@ -0,0 +1,192 @@
+package org.hzj.demo.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hzj.demo.config.WarmupProperties;
+import org.hzj.demo.contorller.PostController;
+import org.hzj.demo.model.Post;
+import org.hzj.demo.model.User;
+import org.hzj.demo.service.PostService;
+import org.hzj.demo.util.JwtUtil;
+import org.hzj.demo.vo.ResultVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动预热：在 readiness 探针变为 UP 之前，把缓存和 JIT 都“热”起来
+ *
+ * 刚发布的实例：Redis 里的 post::{id} 可能已经过期、JVM 还在解释执行 (JIT 还没编译热点代码)，
+ * 这时候直接接流量，前几分钟的 p99 延迟会明显升高。
+ *
+ * 知识点：为什么放在 ApplicationRunner 里就能“挡住” readiness？
+ * Spring Boot 的启动顺序是：
+ *   容器刷新 (Web 服务器已经在监听端口) -> liveness = CORRECT -> 执行所有 ApplicationRunner
+ *   -> ApplicationReadyEvent -> readiness = ACCEPTING_TRAFFIC
+ * 在这之前 /actuator/health/readiness 返回 OUT_OF_SERVICE，
+ * Kubernetes / 负载均衡不会把流量转过来，而 liveness 是正常的，也不会被当成“卡死”重启。
+ *
+ * 两个阶段：
+ * 1. 缓存：并行预加载点击数最高的 top-posts 篇文章，以及文章列表 (PostListCache)
+ * 2. JIT：反复执行一组模拟请求 (PostController / JwtUtil / JSON 序列化)，
+ *    直到每一轮新增的 JIT 编译耗时降到阈值以下 (说明热点方法基本都编译好了)
+ * 任何一步失败只打日志，不影响启动；整体最多 max-duration-ms。
+ */
+@Component
+@ConditionalOnProperty(prefix = "warmup", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class WarmupRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupRunner.class);
+
+    /** 预加载时每批多少篇 (一次 MGET + 一次 findAllById) */
+    private static final int PRELOAD_BATCH_SIZE = 50;
+
+    @Autowired
+    private WarmupProperties properties;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private PostController postController;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    // Spring MVC 用来输出 JSON 的那个 ObjectMapper
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        long deadline = start + properties.getMaxDurationMs();
+
+        List<Long> hotIds = List.of();
+        try {
+            hotIds = postService.getTopViewedIds(properties.getTopPosts());
+            int loaded = preloadCaches(hotIds, deadline);
+            log.info("预热缓存完成: 热门文章 {} 篇 (新加载 {} 篇), 耗时 {}ms",
+                    hotIds.size(), loaded, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("预热缓存失败 (跳过): {}", e.getMessage());
+        }
+
+        try {
+            warmUpJit(hotIds, deadline);
+        } catch (Exception e) {
+            log.warn("JIT 预热失败 (跳过): {}", e.getMessage());
+        }
+        log.info("预热结束, 总耗时 {}ms, 开始接收流量", System.currentTimeMillis() - start);
+    }
+
+    // ------------------------------------------------------------------
+    // 1. 缓存
+    // ------------------------------------------------------------------
+
+    private int preloadCaches(List<Long> hotIds, long deadline) throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(properties.getThreads(), r -> {
+            Thread t = new Thread(r, "warmup-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            // 文章列表 (缓存没加载时由这一次调用重建)
+            tasks.add(() -> {
+                postService.getAllPosts();
+                return 0;
+            });
+            for (int i = 0; i < hotIds.size(); i += PRELOAD_BATCH_SIZE) {
+                List<Long> batch = hotIds.subList(i, Math.min(i + PRELOAD_BATCH_SIZE, hotIds.size()));
+                tasks.add(() -> postService.preloadPosts(batch));
+            }
+
+            long timeout = Math.max(0, deadline - System.currentTimeMillis());
+            int loaded = 0;
+            for (Future<Integer> future : executor.invokeAll(tasks, timeout, TimeUnit.MILLISECONDS)) {
+                try {
+                    loaded += future.get();
+                } catch (Exception e) {
+                    // 超时被取消 / 某一批失败：少预热一部分而已
+                    log.debug("预加载任务未完成: {}", e.getMessage());
+                }
+            }
+            return loaded;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 2. JIT
+    // ------------------------------------------------------------------
+
+    /**
+     * 一轮一轮地执行模拟请求，直到连续 stable-rounds 轮的新增编译耗时都低于 stable-compile-ms
+     * (JVM 不支持统计编译耗时时，固定跑 stable-rounds 轮)
+     */
+    private void warmUpJit(List<Long> hotIds, long deadline) throws Exception {
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        boolean measurable = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+
+        User user = new User();
+        user.setId(0L);
+        user.setPhone("warmup");
+
+        long lastCompileMs = measurable ? compiler.getTotalCompilationTime() : 0;
+        int rounds = 0;
+        int stable = 0;
+        while (stable < properties.getStableRounds() && System.currentTimeMillis() < deadline) {
+            for (int i = 0; i < properties.getRoundIterations(); i++) {
+                syntheticRequest(hotIds, user, i);
+            }
+            rounds++;
+            if (measurable) {
+                long compileMs = compiler.getTotalCompilationTime();
+                stable = compileMs - lastCompileMs < properties.getStableCompileMs() ? stable + 1 : 0;
+                lastCompileMs = compileMs;
+            } else {
+                stable++;
+            }
+        }
+        log.info("JIT 预热完成: {} 轮 x {} 次模拟请求, 累计编译耗时 {}ms{}",
+                rounds, properties.getRoundIterations(), lastCompileMs,
+                stable < properties.getStableRounds() ? " (到达时间上限，未完全稳定)" : "");
+    }
+
+    /**
+     * 一次“模拟请求”：和真实流量走同样的代码 (Controller -> Service -> 缓存)，再序列化成 JSON
+     * 不调用 GET /posts/{id} 和 /posts/batch 的 Controller 方法，因为它们会增加点击数
+     */
+    private void syntheticRequest(List<Long> hotIds, User user, int i) throws Exception {
+        objectMapper.writeValueAsBytes(postController.getBlogInfo());
+        objectMapper.writeValueAsBytes(postController.searchPosts("warmup"));
+        objectMapper.writeValueAsBytes(postController.getAllPosts(null, "and", 100, 0, 20, null));
+        if (!hotIds.isEmpty()) {
+            Long id = hotIds.get(i % hotIds.size());
+            Post post = postService.getPostById(id).orElse(null);
+            objectMapper.writeValueAsBytes(ResultVO.success(post));
+        }
+
+        // JWT：每个需要登录的请求都要验签 + 解析
+        String token = jwtUtil.generateToken(user);
+        jwtUtil.extractSubject(token);
+        jwtUtil.isTokenExpired(token);
+    }
+}
@@ -0,0 +1,151 @@
+package org.hzj.demo.auth;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hzj.demo.cluster.ClusterBroadcaster;
+import org.hzj.demo.config.JwtProperties;
+import org.hzj.demo.config.TokenRevocationProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenRevocationListTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private final TokenRevocationProperties properties = new TokenRevocationProperties();
+    @SuppressWarnings("unchecked")
+    private final ZSetOperations<String, String> zSet = mock(ZSetOperations.class);
+    private final ClusterBroadcaster broadcaster = mock(ClusterBroadcaster.class);
+    /** channel -> 订阅的处理函数 (模拟其他节点发来的广播) */
+    private final Map<String, Consumer<String>> subscribers = new HashMap<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TokenRevocationList list = new TokenRevocationList();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.setExpirationMs(HOUR);
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        when(redis.opsForZSet()).thenReturn(zSet);
+        doAnswer(invocation -> subscribers.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(broadcaster).subscribe(anyString(), any(Consumer.class));
+
+        properties.setExpectedRevocations(1_000);
+        ReflectionTestUtils.setField(list, "properties", properties);
+        ReflectionTestUtils.setField(list, "jwtProperties", jwtProperties);
+        ReflectionTestUtils.setField(list, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(list, "broadcaster", broadcaster);
+        ReflectionTestUtils.setField(list, "meterRegistry", meterRegistry);
+        list.init();
+    }
+
+    @Test
+    void revokedTokenIsRejectedAndPublished() {
+        long expiresAt = System.currentTimeMillis() + HOUR;
+
+        list.revokeToken("jti-1", expiresAt);
+
+        assertTrue(list.isRevoked("jti-1", 1L, new Date()));
+        assertFalse(list.isRevoked("jti-2", 1L, new Date()));
+        assertFalse(list.isRevoked(null, 1L, new Date()));
+        verify(zSet).add("auth:revoked:tokens", "jti-1", expiresAt);
+        verify(broadcaster).publish("auth:revoked-token", "jti-1:" + expiresAt);
+        assertEquals(1, meterRegistry.get("token_revocation.rejected").counter().count());
+    }
+
+    @Test
+    void alreadyExpiredTokenIsNotRecorded() {
+        list.revokeToken("jti-1", System.currentTimeMillis() - 1);
+
+        assertFalse(list.isRevoked("jti-1", 1L, new Date()));
+        verify(zSet, never()).add(anyString(), anyString(), anyDouble());
+    }
+
+    @Test
+    void redisFailureLeavesTheLocalListUnchanged() {
+        when(zSet.add(anyString(), anyString(), anyDouble())).thenThrow(new RedisConnectionFailureException("down"));
+
+        assertThrows(RedisConnectionFailureException.class,
+                () -> list.revokeToken("jti-1", System.currentTimeMillis() + HOUR));
+        assertFalse(list.isRevoked("jti-1", 1L, new Date()));
+        verify(broadcaster, never()).publish(anyString(), anyString());
+    }
+
+    @Test
+    void revokeUserRejectsTokensIssuedUpToTheRevocation() {
+        long now = System.currentTimeMillis();
+
+        list.revokeUser(7L);
+
+        assertTrue(list.isRevoked("jti-old", 7L, new Date(now - 1_000)));
+        assertFalse(list.isRevoked("jti-new", 7L, new Date(now + 2_000)));
+        assertFalse(list.isRevoked("jti-other", 8L, new Date(now - 1_000)));
+        verify(zSet).add(eq("auth:revoked:users"), eq("7"), anyDouble());
+    }
+
+    @Test
+    void broadcastsFromOtherNodesAreApplied() {
+        long now = System.currentTimeMillis();
+
+        subscribers.get("auth:revoked-token").accept("jti-remote:" + (now + HOUR));
+        subscribers.get("auth:revoked-user").accept("9:" + now);
+
+        assertTrue(list.isRevoked("jti-remote", 1L, new Date()));
+        assertTrue(list.isRevoked("jti-x", 9L, new Date(now - 1_000)));
+    }
+
+    @Test
+    void reloadMergesRedisAndDropsExpiredEntries() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        // 广播丢了：只有 Redis 里有
+        when(zSet.rangeByScoreWithScores(eq("auth:revoked:tokens"), anyDouble(), anyDouble()))
+                .thenReturn(Set.of(ZSetOperations.TypedTuple.of("jti-missed", (double) (now + HOUR))));
+        when(zSet.rangeByScoreWithScores(eq("auth:revoked:users"), anyDouble(), anyDouble()))
+                .thenReturn(Set.of(ZSetOperations.TypedTuple.of("5", (double) now)));
+        list.revokeToken("jti-short", now + 20);
+
+        Thread.sleep(50);
+        list.reload();
+
+        assertTrue(list.isRevoked("jti-missed", 1L, new Date()));
+        assertTrue(list.isRevoked("jti-y", 5L, new Date(now - 1_000)));
+        // Token 已经过期：条目清掉，布隆过滤器重建之后也不再命中 (不算误判)
+        assertFalse(list.isRevoked("jti-short", 1L, new Date()));
+        assertEquals(0, meterRegistry.get("token_revocation.bloom_false_positives").counter().count());
+        assertEquals(1, meterRegistry.get("token_revocation.size").gauge().value());
+        verify(zSet, times(2)).removeRangeByScore(eq("auth:revoked:tokens"), eq(0.0), anyDouble());
+    }
+
+    @Test
+    void disabledListRevokesNothing() {
+        list.revokeToken("jti-1", System.currentTimeMillis() + HOUR);
+        properties.setEnabled(false);
+
+        assertFalse(list.isRevoked("jti-1", 1L, new Date()));
+    }
+}
@@ -0,0 +1,123 @@
+package org.hzj.demo.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hzj.demo.config.HotKeyProperties;
+import org.hzj.demo.model.Post;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HotKeyDetectorTest {
+
+    private final HotKeyProperties properties = new HotKeyProperties();
+    private final LocalPostCache localPostCache = mock(LocalPostCache.class);
+    private final RedisGuard redisGuard = mock(RedisGuard.class);
+    private final ViewCountBuffer viewCountBuffer = mock(ViewCountBuffer.class);
+    private final HotKeyDetector detector = new HotKeyDetector();
+
+    @BeforeEach
+    void setUp() {
+        properties.setThreshold(50);
+        ReflectionTestUtils.setField(detector, "properties", properties);
+        ReflectionTestUtils.setField(detector, "localPostCache", localPostCache);
+        ReflectionTestUtils.setField(detector, "redisGuard", redisGuard);
+        ReflectionTestUtils.setField(detector, "viewCountBuffer", viewCountBuffer);
+        ReflectionTestUtils.setField(detector, "meterRegistry", new SimpleMeterRegistry());
+        detector.init();
+    }
+
+    @Test
+    void promotesOnceTheWindowCountReachesTheThreshold() {
+        for (int i = 1; i < 50; i++) {
+            assertFalse(detector.record(42L));
+        }
+        assertTrue(detector.record(42L));
+        assertTrue(hot().containsKey("42"));
+    }
+
+    @Test
+    void countsStartOverEveryWindow() {
+        for (int i = 0; i < 40; i++) {
+            detector.record(42L);
+        }
+        detector.roll();
+        for (int i = 0; i < 40; i++) {
+            assertFalse(detector.record(42L));
+        }
+        // 上一个窗口的 top-k 记下了这 40 次
+        assertEquals(List.of(Map.of("id", 42L, "count", 40L)), detector.snapshot().get("topLastWindow"));
+    }
+
+    @Test
+    void manyColdKeysDoNotPromoteEachOther() {
+        // 4096 x 4 的 sketch，2000 篇文章各访问 10 次：哈希碰撞只会多估一点，远到不了阈值
+        properties.setThreshold(200);
+        for (int round = 0; round < 10; round++) {
+            for (long id = 1; id <= 2000; id++) {
+                assertFalse(detector.record(id * 1_000_003L));
+            }
+        }
+        assertTrue(hot().isEmpty());
+    }
+
+    @Test
+    void hotKeyExpiresAfterPromoteMs() throws InterruptedException {
+        properties.setPromoteMs(1);
+        for (int i = 0; i < 50; i++) {
+            detector.record(42L);
+        }
+        Thread.sleep(5);
+        detector.roll();
+
+        assertTrue(hot().isEmpty());
+        assertFalse(detector.record(42L));
+    }
+
+    @Test
+    void disabledDetectorNeverPromotes() {
+        properties.setEnabled(false);
+        for (int i = 0; i < 100; i++) {
+            assertFalse(detector.record(42L));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void replicaViewsAreBufferedWhenRedisIsDown() {
+        // 本地副本里的点击数是上次从 Redis 读到的 10 (每次读副本拿到的都是一个新对象)
+        when(localPostCache.getFresh(any(), anyLong())).thenAnswer(invocation -> {
+            Post post = new Post();
+            post.setId(42L);
+            post.setViewCount(10L);
+            return post;
+        });
+        // Redis 不可用：RedisGuard 直接走降级分支
+        when(redisGuard.call(any(Supplier.class), any(Supplier.class)))
+                .thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(1)).get());
+
+        assertEquals(11L, detector.readReplica(42L).getViewCount());
+        assertEquals(12L, detector.readReplica(42L).getViewCount());
+        detector.roll();
+
+        verify(viewCountBuffer).add(42L, 2L);
+        assertEquals(0, detector.snapshot().get("pendingViews"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> hot() {
+        return (Map<String, Long>) detector.snapshot().get("hot");
+    }
+}
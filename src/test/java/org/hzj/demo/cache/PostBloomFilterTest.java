@@ -0,0 +1,129 @@
+package org.hzj.demo.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hzj.demo.cluster.ClusterBroadcaster;
+import org.hzj.demo.config.PostBloomFilterProperties;
+import org.hzj.demo.repository.PostRepository;
+import org.hzj.demo.sharding.ShardRouter;
+import org.hzj.demo.sharding.ShardedPostStore;
+import org.hzj.demo.util.SnowflakeIdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PostBloomFilterTest {
+
+    /** 2025 年的某一秒：生成的 id 都不算“刚创建” (不会被 recent-id-seconds 直接放行) */
+    private static final long OLD_SECOND = 1_000L << (SnowflakeIdGenerator.WORKER_BITS + SnowflakeIdGenerator.SEQUENCE_BITS);
+    private static final int EXISTING = 20_000;
+
+    private final PostBloomFilterProperties properties = new PostBloomFilterProperties();
+    private final PostRepository postRepository = mock(PostRepository.class);
+    private final ShardedPostStore postStore = mock(ShardedPostStore.class);
+    private final ShardRouter shardRouter = mock(ShardRouter.class);
+    private final PostBloomFilter filter = new PostBloomFilter();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties.setExpectedPosts(50_000);
+        ReflectionTestUtils.setField(filter, "properties", properties);
+        ReflectionTestUtils.setField(filter, "postRepository", postRepository);
+        ReflectionTestUtils.setField(filter, "postStore", postStore);
+        ReflectionTestUtils.setField(filter, "shardRouter", shardRouter);
+        ReflectionTestUtils.setField(filter, "broadcaster", mock(ClusterBroadcaster.class));
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        filter.init();
+
+        when(shardRouter.allShards()).thenReturn(List.of(0));
+        when(postStore.read(anyInt(), any(Supplier.class)))
+                .thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(1)).get());
+    }
+
+    @Test
+    void idsAddedWhileRebuildingSurviveTheSwap() throws Exception {
+        CountDownLatch scanStarted = new CountDownLatch(1);
+        CountDownLatch addsDone = new CountDownLatch(1);
+        // 模拟一次很慢的全量扫描：第一批返回之前，另一个线程创建了 1000 篇新文章
+        when(postRepository.findIdsAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            Pageable page = invocation.getArgument(1);
+            if (afterId == 0) {
+                scanStarted.countDown();
+                assertTrue(addsDone.await(5, TimeUnit.SECONDS));
+            }
+            return LongStream.rangeClosed(1, EXISTING)
+                    .map(PostBloomFilterTest::id)
+                    .filter(id -> id > afterId)
+                    .limit(page.getPageSize())
+                    .boxed()
+                    .toList();
+        });
+
+        Thread rebuild = new Thread(filter::rebuild);
+        rebuild.start();
+        assertTrue(scanStarted.await(5, TimeUnit.SECONDS));
+        for (long n = 100_001; n <= 101_000; n++) {
+            filter.add(id(n));
+        }
+        addsDone.countDown();
+        rebuild.join(10_000);
+
+        for (long n = 1; n <= EXISTING; n++) {
+            assertTrue(filter.mightExist(id(n)), "扫描到的文章被判成不存在: " + n);
+        }
+        for (long n = 100_001; n <= 101_000; n++) {
+            assertTrue(filter.mightExist(id(n)), "重建期间创建的文章被判成不存在: " + n);
+        }
+    }
+
+    @Test
+    void rejectsUnknownIdsOnceReady() {
+        when(postRepository.findIdsAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            return afterId == 0 ? List.of(id(1)) : List.of();
+        });
+        // 加载完之前全部放行
+        assertTrue(filter.mightExist(id(2)));
+
+        filter.rebuild();
+
+        assertTrue(filter.mightExist(id(1)));
+        int rejected = 0;
+        for (long n = 1_000; n < 2_000; n++) {
+            if (!filter.mightExist(id(n))) {
+                rejected++;
+            }
+        }
+        assertTrue(rejected > 950, "只拒绝了 " + rejected + " 个");
+    }
+
+    @Test
+    void negativeCacheIsClearedWhenThePostIsCreated() {
+        filter.recordMissing(id(7));
+        assertFalse(filter.mightExist(id(7)));
+
+        filter.add(id(7));
+
+        assertTrue(filter.mightExist(id(7)));
+    }
+
+    private static long id(long n) {
+        return OLD_SECOND | n;
+    }
+}
@@ -0,0 +1,90 @@
+package org.hzj.demo.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hzj.demo.config.RedisConfig;
+import org.hzj.demo.model.Post;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostCacheTest {
+
+    private final RedisCacheConfiguration cacheConfiguration = new RedisConfig().redisCacheConfiguration();
+    private final PostCache postCache = new PostCache();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(postCache, "cacheConfiguration", cacheConfiguration);
+    }
+
+    @Test
+    void patchRoundTripsThroughTheCacheSerializer() throws Exception {
+        String cached = cachedJson(post(3L));
+
+        byte[] patched = postCache.patchJson(cached, 3, 4,
+                Map.of("title", "新标题", "tags", List.of("java", "redis")));
+
+        Post result = read(patched);
+        assertEquals("新标题", result.getTitle());
+        assertEquals(List.of("java", "redis"), result.getTags());
+        assertEquals(4L, result.getVersion());
+        // 没改的字段原样保留
+        assertEquals("很长的正文", result.getContent());
+        assertEquals(42L, result.getAuthorId());
+        assertEquals(LocalDateTime.of(2025, 1, 2, 3, 4, 5), result.getCreateTime());
+    }
+
+    @Test
+    void patchRefusesStaleCacheEntry() throws Exception {
+        assertNull(postCache.patchJson(cachedJson(post(2L)), 3, 4, Map.of("title", "新标题")));
+    }
+
+    /**
+     * EVICT_IF_OLDER 在 Redis 里用 cjson 解析缓存的值，版本号从 doc[2]['version'] 取 (Lua 下标从 1 开始)：
+     * 这里确认真实序列化出来的值就是这个形状 (这个环境没有 Redis / Lua，脚本本身没法在单元测试里执行)
+     */
+    @Test
+    void evictScriptReadsVersionFromTheWrappedObject() throws Exception {
+        JsonNode doc = new ObjectMapper().readTree(cachedJson(post(7L)));
+
+        assertTrue(doc.isArray());
+        assertEquals(Post.class.getName(), doc.get(0).asText());
+        assertTrue(doc.get(1).get("version").isNumber());
+        assertEquals(7L, doc.get(1).get("version").asLong());
+        assertTrue(PostCache.EVICT_IF_OLDER.contains("doc[2]"));
+    }
+
+    private Post post(Long version) {
+        Post post = new Post();
+        post.setId(1001L);
+        post.setTitle("旧标题");
+        post.setContent("很长的正文");
+        post.setAuthorId(42L);
+        post.setTags(List.of("java"));
+        post.setCreateTime(LocalDateTime.of(2025, 1, 2, 3, 4, 5));
+        post.setVersion(version);
+        return post;
+    }
+
+    private String cachedJson(Post post) {
+        ByteBuffer buffer = cacheConfiguration.getValueSerializationPair().write(post);
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    private Post read(byte[] value) {
+        return assertInstanceOf(Post.class, cacheConfiguration.getValueSerializationPair().read(ByteBuffer.wrap(value)));
+    }
+}
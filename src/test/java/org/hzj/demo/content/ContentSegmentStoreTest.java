@@ -0,0 +1,164 @@
+package org.hzj.demo.content;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hzj.demo.config.ContentStoreProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentSegmentStoreTest {
+
+    /** 100KB 一条，1MB 的段文件大约放 10 条 */
+    private static final int BODY_BYTES = 100 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private final ContentStoreProperties properties = new ContentStoreProperties();
+    private ContentSegmentStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setSegmentMaxMb(1);
+        properties.setCompactGarbagePercent(50);
+        properties.setGraceMs(0);
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.shutdown();
+    }
+
+    @Test
+    void sameBodyIsStoredOnce() throws IOException {
+        String first = store.put(body(1));
+        long size = segmentBytes();
+
+        String second = store.put(body(1));
+
+        assertEquals(first, second);
+        assertEquals(size, segmentBytes());
+        assertArrayEquals(body(1), store.read(first));
+        assertNull(store.read("0".repeat(64)));
+    }
+
+    @Test
+    void restartRebuildsTheIndexAndDropsATornTail() throws IOException {
+        List<String> refs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            refs.add(store.put(body(i)));
+        }
+        store.shutdown();
+        // 模拟写到一半进程挂了：最后一个文件末尾多出半条记录
+        Path last = segmentFiles().get(segmentFiles().size() - 1);
+        long intact = Files.size(last);
+        Files.write(last, new byte[]{0x43, 0x53, 0x45, 0x47, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        store = open();
+
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(body(i), store.read(refs.get(i)));
+        }
+        assertEquals(intact, Files.size(last));
+        // 截掉之后还能接着写
+        assertArrayEquals(body(9), store.read(store.put(body(9))));
+    }
+
+    @Test
+    void compactionMovesLiveRecordsAndDeletesTheOldSegment() throws Exception {
+        List<String> refs = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            refs.add(store.put(body(i)));
+        }
+        Path firstSegment = segmentFiles().get(0);
+        // 第一个段文件里只有 0 号和 5 号还有文章引用；第二个段文件是 active，不参与压缩
+        Set<String> live = new HashSet<>(List.of(refs.get(0), refs.get(5), refs.get(10), refs.get(11)));
+        Thread.sleep(5); // 让宽限期 (0ms) 过去
+
+        long reclaimed = store.compact(live);
+
+        assertTrue(reclaimed > 0);
+        for (String ref : live) {
+            assertArrayEquals(body(refs.indexOf(ref)), store.read(ref));
+        }
+        assertNull(store.read(refs.get(1)));
+        // 退役的文件过了宽限期才删 (期间可能还有 sendfile 在读)
+        assertTrue(Files.exists(firstSegment));
+        Thread.sleep(5);
+        store.compact(live);
+        assertFalse(Files.exists(firstSegment));
+
+        // 重启之后，搬走的记录从新位置加载
+        store.shutdown();
+        store = open();
+        for (String ref : live) {
+            assertArrayEquals(body(refs.indexOf(ref)), store.read(ref));
+        }
+        assertNull(store.read(refs.get(1)));
+    }
+
+    @Test
+    void recentlyWrittenBodiesSurviveCompactionDuringTheGracePeriod() throws IOException {
+        properties.setGraceMs(60_000);
+        List<String> refs = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            refs.add(store.put(body(i)));
+        }
+
+        // 数据库里还没有文章引用它们 (事务还没提交)，但都在宽限期内
+        assertEquals(0, store.compact(Set.of()));
+        for (int i = 0; i < 12; i++) {
+            assertArrayEquals(body(i), store.read(refs.get(i)));
+        }
+    }
+
+    private ContentSegmentStore open() throws IOException {
+        ContentSegmentStore opened = new ContentSegmentStore();
+        ReflectionTestUtils.setField(opened, "properties", properties);
+        ReflectionTestUtils.setField(opened, "meterRegistry", new SimpleMeterRegistry());
+        opened.init();
+        return opened;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+
+    private long segmentBytes() throws IOException {
+        long total = 0;
+        for (Path file : segmentFiles()) {
+            total += Files.size(file);
+        }
+        return total;
+    }
+
+    private static byte[] body(int n) {
+        byte[] body = new byte[BODY_BYTES];
+        Arrays.fill(body, (byte) n);
+        body[0] = (byte) (n >> 8);
+        return body;
+    }
+}
@@ -0,0 +1,75 @@
+package org.hzj.demo.datasource;
+
+import org.hzj.demo.config.DataSourceRoutingProperties;
+import org.hzj.demo.config.JwtProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadYourWritesTest {
+
+    private final DataSourceRoutingProperties properties = new DataSourceRoutingProperties();
+    private final JwtProperties jwtProperties = new JwtProperties();
+    private final ReadYourWrites readYourWrites = new ReadYourWrites();
+
+    @BeforeEach
+    void setUp() {
+        properties.setEnabled(true);
+        properties.setReadYourWritesWindowMs(5_000);
+        jwtProperties.setSecret("test-secret");
+        ReflectionTestUtils.setField(readYourWrites, "properties", properties);
+        ReflectionTestUtils.setField(readYourWrites, "jwtProperties", jwtProperties);
+    }
+
+    @Test
+    void acceptsOnlySignedCookiesInsideTheWindow() {
+        long now = System.currentTimeMillis();
+        long until = now + 3_000;
+        String signed = until + "." + ReflectionTestUtils.invokeMethod(readYourWrites, "sign", until);
+
+        assertTrue(readYourWrites.isValidCookie(signed, now));
+        // 过期了
+        assertFalse(readYourWrites.isValidCookie(signed, until));
+        // 没签名 / 签名不对 (老格式的 Cookie、手工伪造的)
+        assertFalse(readYourWrites.isValidCookie(String.valueOf(until), now));
+        assertFalse(readYourWrites.isValidCookie(until + ".forged", now));
+        assertFalse(readYourWrites.isValidCookie((until + 1) + signed.substring(signed.indexOf('.')), now));
+    }
+
+    @Test
+    void rejectsDeadlinesBeyondTheWindowEvenWhenSigned() {
+        long now = System.currentTimeMillis();
+        long farFuture = now + 86_400_000L;
+        String signed = farFuture + "." + ReflectionTestUtils.invokeMethod(readYourWrites, "sign", farFuture);
+
+        assertFalse(readYourWrites.isValidCookie(signed, now));
+    }
+
+    @Test
+    void fallsBackToPrimaryOnlyInsideTheWindow() {
+        AtomicInteger queries = new AtomicInteger();
+
+        // 没写过：从库查不到就是查不到，不再去主库
+        assertEquals(Optional.empty(), readYourWrites.findWithPrimaryFallback("13800000000", () -> {
+            queries.incrementAndGet();
+            return Optional.empty();
+        }));
+        assertEquals(1, queries.get());
+
+        // 刚注册：窗口内允许回主库确认一次
+        readYourWrites.markWrite("13800000000");
+        queries.set(0);
+        readYourWrites.findWithPrimaryFallback("13800000000", () -> {
+            queries.incrementAndGet();
+            return Optional.empty();
+        });
+        assertEquals(2, queries.get());
+    }
+}
@@ -0,0 +1,70 @@
+package org.hzj.demo.monitor;
+
+import org.hzj.demo.config.SqlMonitorProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlStatsRegistryTest {
+
+    private final SqlMonitorProperties properties = new SqlMonitorProperties();
+    private SqlStatsRegistry registry;
+
+    @AfterEach
+    void tearDown() {
+        SqlRequestContext.end();
+        registry.shutdown();
+    }
+
+    @Test
+    void unmatchedRequestsShareOneEndpoint() {
+        registry = new SqlStatsRegistry(properties);
+        // 扫描器乱发的路径：没有路由，接口名一直是占位的 "<unmatched>"
+        for (int i = 0; i < 100; i++) {
+            request(SqlRequestContext.UNMATCHED);
+        }
+
+        Map<String, Object> endpoints = endpoints();
+        assertEquals(1, endpoints.size());
+        assertEquals(100L, stats(endpoints, SqlRequestContext.UNMATCHED).get("requests"));
+    }
+
+    @Test
+    void endpointsAreCappedLikeStatementShapes() {
+        properties.setMaxEndpoints(3);
+        registry = new SqlStatsRegistry(properties);
+        for (int i = 0; i < 10; i++) {
+            request("GET /api/v1/route" + i);
+        }
+
+        Map<String, Object> endpoints = endpoints();
+        // 3 个真实接口 + 1 个 "<other>"
+        assertEquals(4, endpoints.size());
+        assertTrue(endpoints.containsKey(SqlStatsRegistry.OVERFLOW_ENDPOINT));
+        assertEquals(7L, stats(endpoints, SqlStatsRegistry.OVERFLOW_ENDPOINT).get("requests"));
+        // 已经在表里的接口不受上限影响
+        request("GET /api/v1/route0");
+        assertEquals(2L, stats(endpoints(), "GET /api/v1/route0").get("requests"));
+    }
+
+    private void request(String endpoint) {
+        SqlRequestContext context = SqlRequestContext.begin(endpoint);
+        registry.record("select 1", 1, true);
+        SqlRequestContext.end();
+        registry.finishRequest(context);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> endpoints() {
+        return (Map<String, Object>) registry.snapshot(10).get("endpoints");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stats(Map<String, Object> endpoints, String endpoint) {
+        return (Map<String, Object>) endpoints.get(endpoint);
+    }
+}
@@ -0,0 +1,158 @@
+package org.hzj.demo.revision;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextDeltaTest {
+
+    private static final int MAX_EDITS = 200;
+
+    @Test
+    void chainOfDeltasRebuildsEveryVersion() {
+        List<String> versions = List.of(
+                "第一段\n第二段\n第三段\n",
+                "第一段\n第二段，改了一个错别字\n第三段\n",
+                "新的开头\n第一段\n第二段，改了一个错别字\n第三段\n",
+                "新的开头\n第一段\n第三段\n结尾没有换行",
+                "新的开头\n第一段 😀\n第三段\n结尾没有换行",
+                "");
+
+        // 和 PostRevisionStore 一样：版本 0 存快照，之后每个版本存相对上一个版本的 delta，按顺序 apply 还原
+        byte[] snapshot = TextDelta.snapshot(versions.get(0));
+        List<byte[]> deltas = new ArrayList<>();
+        for (int i = 1; i < versions.size(); i++) {
+            deltas.add(TextDelta.encode(versions.get(i - 1), versions.get(i), MAX_EDITS));
+        }
+
+        String content = TextDelta.restore(snapshot);
+        assertEquals(versions.get(0), content);
+        for (int i = 0; i < deltas.size(); i++) {
+            content = TextDelta.apply(content, deltas.get(i));
+            assertEquals(versions.get(i + 1), content, "版本 " + (i + 1));
+        }
+    }
+
+    @Test
+    void randomEditsRoundTrip() {
+        Random random = new Random(42);
+        String content = randomText(random, 200);
+        for (int i = 0; i < 100; i++) {
+            String next = mutate(random, content);
+            // maxEdits 很小时走“整体替换”的分支，也必须能还原
+            int maxEdits = i % 3 == 0 ? 1 : MAX_EDITS;
+            assertEquals(next, TextDelta.apply(content, TextDelta.encode(content, next, maxEdits)), "第 " + i + " 次修改");
+            content = next;
+        }
+    }
+
+    @Test
+    void deltaSizeFollowsTheEditNotTheArticle() {
+        StringBuilder article = new StringBuilder();
+        Random random = new Random(7);
+        for (int i = 0; i < 2_000; i++) {
+            article.append("第 ").append(i).append(" 行 ").append(random.nextLong()).append('\n');
+        }
+        String base = article.toString();
+        String target = base.replace("第 1000 行", "第 一千 行");
+
+        byte[] delta = TextDelta.encode(base, target, MAX_EDITS);
+
+        assertEquals(target, TextDelta.apply(base, delta));
+        assertTrue(delta.length < 64, "delta " + delta.length + " bytes");
+        assertTrue(delta.length * 100 < TextDelta.snapshot(target).length);
+    }
+
+    @Test
+    void emojiIsNeverSplitAcrossCopyAndInsert() {
+        // 😀 和 😁 的高位代理相同，只有低位不同
+        String base = "开头 😀 结尾\n";
+        String target = "开头 😁 结尾\n";
+
+        assertEquals(target, TextDelta.apply(base, TextDelta.encode(base, target, MAX_EDITS)));
+    }
+
+    @Test
+    void unchangedCopiesTheWholeBase() {
+        String content = "正文没变\n只改了标题\n";
+
+        assertEquals(content, TextDelta.apply(content, TextDelta.unchanged(content.length())));
+        assertEquals("", TextDelta.apply("", TextDelta.unchanged(0)));
+    }
+
+    @Test
+    void deltaAgainstTheWrongBaseIsRejected() {
+        byte[] delta = TextDelta.encode("一二三四五六七八九十\n", "一二三四五六七八九十\n追加\n", MAX_EDITS);
+
+        assertThrows(IllegalStateException.class, () -> TextDelta.apply("短\n", delta));
+    }
+
+    @Test
+    void lineDiffReportsChangedRanges() {
+        List<String> a = LineDiff.lines("a\nb\nc\nd\ne");
+        List<String> b = LineDiff.lines("a\nB\nc\nd\nx\ne");
+
+        assertEquals(List.of("a\n", "b\n", "c\n", "d\n", "e"), a);
+        assertEquals(List.of(new LineDiff.Edit(1, 2, 1, 2), new LineDiff.Edit(4, 4, 4, 5)),
+                LineDiff.diff(a, b, MAX_EDITS));
+        assertEquals(List.of(), LineDiff.diff(a, a, MAX_EDITS));
+        // 超过 maxEdits：中间部分整体算一处
+        assertEquals(List.of(new LineDiff.Edit(1, 4, 1, 5)), LineDiff.diff(a, b, 1));
+    }
+
+    private static String mutate(Random random, String content) {
+        List<String> lines = new ArrayList<>(LineDiff.lines(content));
+        int edits = 1 + random.nextInt(4);
+        for (int e = 0; e < edits; e++) {
+            int at = lines.isEmpty() ? 0 : random.nextInt(lines.size());
+            switch (random.nextInt(4)) {
+                case 0 -> lines.add(at, randomText(random, 1));
+                case 1 -> {
+                    if (!lines.isEmpty()) {
+                        lines.remove(at);
+                    }
+                }
+                case 2 -> {
+                    if (!lines.isEmpty()) {
+                        // 行内插几个字 (插在换行符前面，不改变行数)
+                        String line = lines.get(at);
+                        int cut = random.nextInt(line.length());
+                        if (cut > 0 && Character.isHighSurrogate(line.charAt(cut - 1))) {
+                            cut--;
+                        }
+                        lines.set(at, line.substring(0, cut) + randomWord(random) + line.substring(cut));
+                    }
+                }
+                default -> {
+                    if (!lines.isEmpty()) {
+                        lines.set(at, randomText(random, 1));
+                    }
+                }
+            }
+        }
+        return String.join("", lines);
+    }
+
+    private static String randomText(Random random, int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            int words = random.nextInt(6);
+            for (int w = 0; w < words; w++) {
+                text.append(randomWord(random));
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String randomWord(Random random) {
+        String[] words = {"java", "缓存", "数据库", " ", "😀", "😁", "redis", "。"};
+        return words[random.nextInt(words.length)];
+    }
+}
@@ -0,0 +1,102 @@
+package org.hzj.demo.sharding;
+
+import org.hzj.demo.config.ShardingProperties;
+import org.hzj.demo.util.SnowflakeIdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class WorkerIdAllocatorTest {
+
+    private final ShardingProperties properties = new ShardingProperties();
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> values = mock(ValueOperations.class);
+    private final WorkerIdAllocator allocator = new WorkerIdAllocator();
+
+    @BeforeEach
+    void setUp() {
+        when(redis.opsForValue()).thenReturn(values);
+        ReflectionTestUtils.setField(allocator, "properties", properties);
+        ReflectionTestUtils.setField(allocator, "stringRedisTemplate", redis);
+        properties.setWorkerId(-1);
+    }
+
+    @AfterEach
+    void resetGlobal() {
+        SnowflakeIdGenerator.setGlobal(new SnowflakeIdGenerator(0));
+    }
+
+    @Test
+    void refusesToStartWhenRedisIsDown() {
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertThrows(IllegalStateException.class, allocator::init);
+    }
+
+    @Test
+    void configuredWorkerIdDoesNotNeedRedis() {
+        properties.setWorkerId(5);
+
+        allocator.init();
+
+        assertEquals(5, allocator.generator().getWorkerId());
+        allocator.generator().nextId();
+        verifyNoInteractions(redis);
+    }
+
+    @Test
+    void stopsIssuingIdsWhenTheLeaseIsTakenAndNoOtherIdIsFree() {
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        allocator.init();
+        SnowflakeIdGenerator leased = allocator.generator();
+        leased.nextId();
+
+        // 续期发现节点号被别人占了，而且 32 个节点号都没有空闲的
+        when(redis.execute(anyScript(), eq(List.of("id:worker:0")), anyString(), anyString())).thenReturn(0L);
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        allocator.renew();
+
+        assertThrows(IllegalStateException.class, leased::nextId);
+        assertThrows(IllegalStateException.class, () -> SnowflakeIdGenerator.global().nextId());
+    }
+
+    @Test
+    void switchesToAFreshWorkerIdAfterLosingTheLease() {
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        allocator.init();
+        SnowflakeIdGenerator old = allocator.generator();
+
+        when(redis.execute(anyScript(), eq(List.of("id:worker:0")), anyString(), anyString())).thenReturn(0L);
+        when(values.setIfAbsent(eq("id:worker:0"), anyString(), any(Duration.class))).thenReturn(false);
+        allocator.renew();
+
+        assertEquals(1, allocator.generator().getWorkerId());
+        allocator.generator().nextId();
+        // 旧的生成器 (可能还被别的线程拿着) 不能再发号
+        assertThrows(IllegalStateException.class, old::nextId);
+    }
+
+    /** 带类型的 any()：any(RedisScript.class) 是原始类型，会有 unchecked 警告 */
+    private static RedisScript<Long> anyScript() {
+        return any();
+    }
+}
@@ -0,0 +1,70 @@
+package org.hzj.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongBloomFilterTest {
+
+    @Test
+    void neverReportsAnAddedValueAsMissing() {
+        LongBloomFilter filter = new LongBloomFilter(100_000, 0.01);
+        for (long i = 0; i < 100_000; i++) {
+            filter.add(i * 7919);
+        }
+        for (long i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain(i * 7919));
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheTarget() {
+        LongBloomFilter filter = new LongBloomFilter(100_000, 0.01);
+        for (long i = 0; i < 100_000; i++) {
+            filter.add(i);
+        }
+        int falsePositives = 0;
+        for (long i = 1_000_000; i < 1_100_000; i++) {
+            if (filter.mightContain(i)) {
+                falsePositives++;
+            }
+        }
+        // 目标 1%，留一倍余量
+        assertTrue(falsePositives < 2_000, "误判 " + falsePositives + " 次");
+    }
+
+    @Test
+    void sizesBitsAndHashesFromExpectedCountAndRate() {
+        LongBloomFilter filter = new LongBloomFilter(1_000, 0.01);
+        // m = -n ln p / (ln 2)^2 ≈ 9.6 位 / 元素，k ≈ 7
+        assertTrue(filter.bitCount() >= 9_585 && filter.bitCount() < 9_585 + 64);
+        assertEquals(7, filter.hashes());
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws InterruptedException {
+        LongBloomFilter filter = new LongBloomFilter(80_000, 0.01);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            long base = t * 10_000L;
+            // 每个线程写一段连续的值，不同线程的值常常落在同一个 long 字里，检查并发置位不会互相覆盖
+            Thread thread = new Thread(() -> {
+                for (long i = base; i < base + 10_000; i++) {
+                    filter.add(i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (long i = 0; i < 80_000; i++) {
+            assertTrue(filter.mightContain(i));
+        }
+    }
+}
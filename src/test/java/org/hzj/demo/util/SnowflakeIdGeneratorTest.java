@@ -0,0 +1,64 @@
+package org.hzj.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTest {
+
+    @Test
+    void idsAreUniqueIncreasingAndJavaScriptSafe() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        Set<Long> seen = new HashSet<>();
+        long previous = 0;
+        // 超过单秒 65536 个序号，覆盖“借用下一秒”的分支
+        for (int i = 0; i < 200_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            assertTrue(id < (1L << 53));
+            assertTrue(seen.add(id));
+            previous = id;
+        }
+    }
+
+    @Test
+    void differentWorkersNeverCollideInTheSameSecond() {
+        SnowflakeIdGenerator a = fixedClock(1);
+        SnowflakeIdGenerator b = fixedClock(2);
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(seen.add(a.nextId()));
+            assertTrue(seen.add(b.nextId()));
+        }
+    }
+
+    @Test
+    void timestampCanBeRecoveredFromId() {
+        long id = new SnowflakeIdGenerator(3).nextId();
+        Duration drift = Duration.between(SnowflakeIdGenerator.timestampOf(id), Instant.now()).abs();
+        assertTrue(drift.getSeconds() <= 2);
+        assertEquals(3, (id >>> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_WORKER_ID);
+    }
+
+    @Test
+    void rejectsOutOfRangeWorkerId() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(32));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+    }
+
+    private static SnowflakeIdGenerator fixedClock(long workerId) {
+        return new SnowflakeIdGenerator(workerId) {
+            @Override
+            protected long currentSecond() {
+                return 1000;
+            }
+        };
+    }
+}
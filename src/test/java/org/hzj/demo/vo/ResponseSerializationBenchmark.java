@@ -0,0 +1,140 @@
+package org.hzj.demo.vo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.hzj.demo.model.Post;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接口响应 JSON 序列化的微基准：默认的反射序列化 (baseline) vs ResponseJsonModule (specialized)
+ *
+ * 不是单元测试 (类名不以 Test 结尾，mvn test 不会执行)，手动运行：
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.hzj.demo.vo.ResponseSerializationBenchmark
+ *
+ * 输出里看两列：
+ * - Score (ops/us)：吞吐量，越大越好
+ * - gc.alloc.rate.norm (B/op)：每个响应分配多少字节 (GCProfiler)，越小越好
+ *
+ * 两个 ObjectMapper 的配置和 Spring Boot 默认的一样 (JavaTimeModule + 日期输出成 ISO 字符串)，
+ * 输出写进一个复用的 ByteArrayOutputStream (相当于响应的缓冲区)。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    /** 正文长度 (字符数)：短的看序列化器本身的开销，长的看 UTF-8 编码占多少 */
+    @Param({"50", "2000"})
+    private int contentLength;
+
+    private ObjectMapper baseline;
+    private ObjectMapper specialized;
+
+    private ResultVO<Post> single;
+    private ResultVO<List<Post>> page;
+    private ResultVO<FeedPage<Post>> feed;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+
+    @Setup
+    public void setUp() {
+        baseline = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        specialized = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .registerModule(new ResponseJsonModule());
+
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            posts.add(post(1_000_000L + i, contentLength));
+        }
+        single = ResultVO.success(posts.get(0));
+        page = ResultVO.success(posts);
+        feed = ResultVO.success(new FeedPage<>(posts, 999_999L));
+    }
+
+    private static Post post(long id, int contentLength) {
+        Post post = new Post();
+        post.setId(id);
+        post.setVersion(3L);
+        post.setViewCount(12_345L);
+        post.setAuthorId(42L);
+        post.setTitle("Spring Boot 缓存实战 #" + id);
+        post.setContent("正文内容 ".repeat(contentLength / 5 + 1).substring(0, contentLength));
+        post.setTags(List.of("java", "spring", "redis"));
+        post.setCreateTime(LocalDateTime.of(2024, 5, 20, 13, 14, 15));
+        return post;
+    }
+
+    private int write(ObjectMapper mapper, Object value) throws IOException {
+        buffer.reset();
+        mapper.writeValue(buffer, value);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int singleBaseline() throws IOException {
+        return write(baseline, single);
+    }
+
+    @Benchmark
+    public int singleSpecialized() throws IOException {
+        return write(specialized, single);
+    }
+
+    @Benchmark
+    public int listBaseline() throws IOException {
+        return write(baseline, page);
+    }
+
+    @Benchmark
+    public int listSpecialized() throws IOException {
+        return write(specialized, page);
+    }
+
+    @Benchmark
+    public int feedBaseline() throws IOException {
+        return write(baseline, feed);
+    }
+
+    @Benchmark
+    public int feedSpecialized() throws IOException {
+        return write(specialized, feed);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ResponseSerializationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}